@@ -0,0 +1,89 @@
+package it.sk8erboi17.benchmarks;
+
+import it.sk8erboi17.listeners.input.operations.StringCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding a short string out of a direct read buffer: through a {@link StringCache} that finds it
+ * ({@code hit}), through one that never does ({@code miss}, the cost a burst of unique strings adds),
+ * and without a cache, as {@link it.sk8erboi17.listeners.input.operations.ListenData} decodes by default.
+ * <p>
+ * A hit is not meant to be faster than a new string, but to allocate nothing: run with {@code -prof gc}
+ * and compare {@code gc.alloc.rate.norm}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringCacheBenchmark {
+
+    // Distinct strings decoded in turn by the miss benchmark, far more than its cache holds.
+    private static final int UNIQUE = 4096;
+    private static final int REPEATED = 8;
+
+    @Param({"4", "16", "64"})
+    private int length;
+
+    private ByteBuffer[] repeated;
+    private ByteBuffer[] unique;
+    private StringCache hitCache;
+    private StringCache missCache;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        repeated = encodeAll(REPEATED);
+        unique = encodeAll(UNIQUE);
+        hitCache = new StringCache(64, 256);
+        missCache = new StringCache(64, 256);
+        for (ByteBuffer buffer : repeated) {
+            hitCache.get(buffer.position(0), length);
+        }
+    }
+
+    private ByteBuffer[] encodeAll(int count) {
+        ByteBuffer[] buffers = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            String key = String.format("%0" + length + "d", i).substring(0, length);
+            byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+            buffers[i] = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+        }
+        return buffers;
+    }
+
+    @Benchmark
+    public String hit() {
+        ByteBuffer buffer = repeated[next++ & (REPEATED - 1)].position(0);
+        return hitCache.get(buffer, length);
+    }
+
+    @Benchmark
+    public String miss() {
+        ByteBuffer buffer = unique[next++ & (UNIQUE - 1)].position(0);
+        return missCache.get(buffer, length);
+    }
+
+    @Benchmark
+    public String newString() {
+        ByteBuffer buffer = repeated[next++ & (REPEATED - 1)].position(0);
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,136 @@
+package it.sk8erboi17.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How a string gets into the direct buffer of a frame: {@code getBytes()} and a bulk put, as
+ * {@link it.sk8erboi17.network.transformers.encoder.op.FrameEncoder#sendString} does, against a
+ * hand-written UTF-8 encoder with an ASCII fast path that writes straight into the buffer.
+ * <p>
+ * This is the measurement behind keeping {@code getBytes()}: the JDK encodes with intrinsics, which a
+ * loop of single puts into a direct buffer does not match, for ASCII or for text outside Latin-1.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringEncodeBenchmark {
+
+    @Param({"ascii-16", "ascii-40", "ascii-400", "greek-40"})
+    private String text;
+
+    private String[] messages;
+    private ByteBuffer buffer;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        String[] kind = text.split("-");
+        int length = Integer.parseInt(kind[1]);
+        String alphabet = kind[0].equals("ascii")
+                ? "abcdefghijklmnopqrstuvwxyz0123456789{}:,\""
+                : "\u03b1\u03b2\u03b3\u03b4\u03b5\u03b6\u03b7\u03b8\u03b9\u03ba\u03bb\u03bc";
+        messages = new String[64];
+        for (int i = 0; i < messages.length; i++) {
+            StringBuilder builder = new StringBuilder(length);
+            for (int c = 0; c < length; c++) {
+                builder.append(alphabet.charAt((i * 7 + c) % alphabet.length()));
+            }
+            messages[i] = builder.toString();
+        }
+        buffer = ByteBuffer.allocateDirect(4096);
+    }
+
+    private String nextMessage() {
+        return messages[next++ & (messages.length - 1)];
+    }
+
+    @Benchmark
+    public int getBytesAndPut() {
+        String data = nextMessage();
+        ByteBuffer buffer = this.buffer;
+        buffer.clear();
+        byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+        return buffer.position();
+    }
+
+    @Benchmark
+    public int directEncode() {
+        String data = nextMessage();
+        ByteBuffer buffer = this.buffer;
+        buffer.clear();
+        buffer.putInt(encodedLength(data));
+        encode(data, buffer);
+        return buffer.position();
+    }
+
+    private static int encodedLength(String data) {
+        int length = data.length();
+        int bytes = length;
+        for (int i = 0; i < length; i++) {
+            char c = data.charAt(i);
+            if (c >= 0x800) {
+                if (Character.isHighSurrogate(c)) {
+                    // A pair takes 4 bytes for its 2 chars.
+                    bytes += 2;
+                    i++;
+                } else {
+                    bytes += 2;
+                }
+            } else if (c >= 0x80) {
+                bytes++;
+            }
+        }
+        return bytes;
+    }
+
+    private static void encode(String data, ByteBuffer buffer) {
+        int length = data.length();
+        int i = 0;
+        while (i < length) {
+            char c = data.charAt(i);
+            if (c >= 0x80) {
+                break;
+            }
+            buffer.put((byte) c);
+            i++;
+        }
+        for (; i < length; i++) {
+            char c = data.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | c >> 6));
+                buffer.put((byte) (0x80 | c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length) {
+                int codePoint = Character.toCodePoint(c, data.charAt(++i));
+                buffer.put((byte) (0xF0 | codePoint >> 18));
+                buffer.put((byte) (0x80 | codePoint >> 12 & 0x3F));
+                buffer.put((byte) (0x80 | codePoint >> 6 & 0x3F));
+                buffer.put((byte) (0x80 | codePoint & 0x3F));
+            } else {
+                buffer.put((byte) (0xE0 | c >> 12));
+                buffer.put((byte) (0x80 | c >> 6 & 0x3F));
+                buffer.put((byte) (0x80 | c & 0x3F));
+            }
+        }
+    }
+}
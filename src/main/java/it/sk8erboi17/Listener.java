@@ -1,72 +1,198 @@
 package it.sk8erboi17;
 
+import it.sk8erboi17.listeners.input.AsyncInputSocket;
 import it.sk8erboi17.utils.FailWriter;
+import it.sk8erboi17.utils.HashedWheelTimer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.AsynchronousCloseException;
 import java.nio.channels.AsynchronousServerSocketChannel;
 import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.CompletionHandler;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
 /**
  * The Listener class is designed to handle incoming client connections to a server.
  * It utilizes asynchronous I/O provided by Java NIO to accept new connections and manage them using a callback mechanism.
- * The CompletionHandler for accepting connections is now a static inner class to avoid repeated object creation.
+ * <p>
+ * A listener can serve any number of server channels, each with its own accept loop. The next
+ * accept is posted as soon as a connection arrives, before the connection is handed to
+ * {@link ConnectionRequest#acceptConnection} on the listener's executor, so a slow handshake
+ * never throttles the accept rate. {@link #bind(InetSocketAddress, int, ConnectionRequest)} opens
+ * several server channels on the same port with {@code SO_REUSEPORT}, keeping one accept
+ * outstanding per channel and letting the kernel spread incoming connections across them.
+ * <p>
+ * {@link #getInstance()} returns a shared listener for code written against the former singleton.
  */
-public class Listener {
-    private static final Listener instanceListener = new Listener();
+public class Listener implements Closeable {
     private static final Logger log = LoggerFactory.getLogger(Listener.class);
-    private static final ExecutorService executors = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() / 2);
+    private static final Listener instanceListener = new Listener();
+
+    // Pending connections the kernel queues per server channel while the accept loops catch up.
+    public static final int DEFAULT_BACKLOG = 1024;
+    // How long an accept loop waits before accepting again when the process or system ran out of file descriptors.
+    private static final long ACCEPT_RETRY_DELAY_MILLIS = 100;
 
     /**
      * A SINGLE, STATIC, and REUSABLE CompletionHandler for accepting connections.
-     * It is stateless and does not depend on an instance of the Listener class.
+     * The accept loop it belongs to travels in the attachment.
      */
-    private static final CompletionHandler<AsynchronousSocketChannel, ConnectionRequest> acceptCompletionHandler = new CompletionHandler<>() {
+    private static final CompletionHandler<AsynchronousSocketChannel, AcceptLoop> acceptCompletionHandler = new CompletionHandler<>() {
         @Override
-        public void completed(AsynchronousSocketChannel socketChannel, ConnectionRequest attachment) {
-            try {
-                if (attachment != null) {
-                    attachment.acceptConnection(socketChannel, null);
-                }
-            } catch (Exception e) {
-                // Gestisce gli errori all'interno di acceptConnection per un flusso di lavoro coerente
-                failed(e, attachment);
-                return;
-            }
-
-            // Chiedi al serverSocketChannel di accettare una nuova connessione.
-            // Utilizza l'istanza del Listener per ottenere il canale.
-            AsynchronousServerSocketChannel serverChannel = Listener.getInstance().getServerSocketChannel();
-            if (serverChannel != null && serverChannel.isOpen()) {
-                serverChannel.accept(attachment, this);
-            }
+        public void completed(AsynchronousSocketChannel socketChannel, AcceptLoop loop) {
+            // Re-arm first: the next connection is accepted while this one is being handed off.
+            loop.accept();
+            loop.listener.handOff(socketChannel, loop.request);
         }
 
         @Override
-        public void failed(Throwable exc, ConnectionRequest attachment) {
+        public void failed(Throwable exc, AcceptLoop loop) {
+            if (exc instanceof AsynchronousCloseException || exc instanceof ClosedChannelException || !loop.isOpen()) {
+                // The server channel has been closed: the loop ends here.
+                loop.listener.serverChannels.remove(loop.serverChannel);
+                return;
+            }
             log.error("Error with connection {}", exc.getMessage(), exc);
             FailWriter.writeFile("Error with connection ", exc);
-
-            if (attachment != null) {
-                attachment.onConnectionFailed(exc);
+            loop.request.onConnectionFailed(exc);
+            // A failed accept must not stop the server from accepting. Out of file descriptors, an immediate
+            // retry would fail again at once: give the connections being closed some time to free theirs.
+            if (isOutOfDescriptors(exc)) {
+                HashedWheelTimer.shared().schedule(loop::accept, ACCEPT_RETRY_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            } else {
+                loop.accept();
             }
         }
     };
 
-    private AsynchronousServerSocketChannel serverSocketChannel;
+    // EMFILE and ENFILE carry no error code in Java: they are only told apart by their message.
+    private static boolean isOutOfDescriptors(Throwable exc) {
+        String message = exc.getMessage();
+        return message != null && message.contains("Too many open files");
+    }
+
+    private final ExecutorService executors;
+    private final boolean ownsExecutor;
+    private final List<AsynchronousServerSocketChannel> serverChannels = new CopyOnWriteArrayList<>();
+    private volatile boolean closed;
+
+    /**
+     * Creates a listener handing accepted connections to its own pool of threads.
+     */
+    public Listener() {
+        this(Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors() / 2)), true);
+    }
 
+    /**
+     * Creates a listener handing accepted connections to the given executor, which stays owned by the caller.
+     */
+    public Listener(ExecutorService executor) {
+        this(executor, false);
+    }
+
+    private Listener(ExecutorService executors, boolean ownsExecutor) {
+        this.executors = executors;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    /**
+     * Starts an accept loop on an already bound server channel. Can be called for several channels.
+     */
     public void startConnectionListen(AsynchronousServerSocketChannel serverSocketChannel, ConnectionRequest connectionRequest) {
-        this.serverSocketChannel = serverSocketChannel;
+        if (closed) {
+            throw new IllegalStateException("The listener has been closed.");
+        }
+        serverChannels.add(serverSocketChannel);
+        new AcceptLoop(this, serverSocketChannel, connectionRequest).accept();
+    }
+
+    /**
+     * Binds {@code acceptors} server channels to the same address, with {@code SO_REUSEPORT}, and
+     * starts an accept loop on each of them. Falls back to a single channel where the platform
+     * does not support {@code SO_REUSEPORT}.
+     *
+     * @return The bound server channels.
+     */
+    public List<AsynchronousServerSocketChannel> bind(InetSocketAddress address, int acceptors, ConnectionRequest connectionRequest) throws IOException {
+        if (acceptors <= 0) {
+            throw new IllegalArgumentException("The number of acceptors must be positive.");
+        }
+        List<AsynchronousServerSocketChannel> bound = new ArrayList<>(acceptors);
+        try {
+            AsynchronousServerSocketChannel first = AsyncInputSocket.createInput(address, DEFAULT_BACKLOG, acceptors > 1);
+            bound.add(first);
+            if (acceptors > 1 && first.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+                // Port 0 resolves to an ephemeral port: the other channels must join the one actually bound.
+                InetSocketAddress boundAddress = (InetSocketAddress) first.getLocalAddress();
+                for (int i = 1; i < acceptors; i++) {
+                    bound.add(AsyncInputSocket.createInput(boundAddress, DEFAULT_BACKLOG, true));
+                }
+            }
+        } catch (IOException e) {
+            for (AsynchronousServerSocketChannel channel : bound) {
+                closeQuietly(channel);
+            }
+            throw e;
+        }
+        for (AsynchronousServerSocketChannel channel : bound) {
+            startConnectionListen(channel, connectionRequest);
+        }
+        return bound;
+    }
+
+    private void handOff(AsynchronousSocketChannel socketChannel, ConnectionRequest request) {
+        try {
+            executors.execute(() -> {
+                try {
+                    request.acceptConnection(socketChannel, null);
+                } catch (Exception e) {
+                    log.error("Error with connection {}", e.getMessage(), e);
+                    FailWriter.writeFile("Error with connection ", e);
+                    request.onConnectionFailed(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The listener is shutting down: nobody will take care of this connection.
+            closeQuietly(socketChannel);
+        }
+    }
+
+    /**
+     * Stops every accept loop of this listener and, if it owns it, its executor.
+     * Connections already accepted are left open.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (AsynchronousServerSocketChannel channel : serverChannels) {
+            closeQuietly(channel);
+        }
+        serverChannels.clear();
+        if (ownsExecutor) {
+            shutdownExecutor(executors);
+        }
+    }
 
-        // Passa l'istanza di ConnectionRequest come attachment per risolvere il problema di concorrenza.
-        executors.execute(() -> serverSocketChannel.accept(connectionRequest, acceptCompletionHandler));
+    /**
+     * Shuts down the executor of the shared listener. Its server channels are left to their owners.
+     */
+    public static void closeListener() {
+        shutdownExecutor(instanceListener.executors);
     }
 
-    public static void closeListener(){
+    private static void shutdownExecutor(ExecutorService executors) {
         if (executors != null && !executors.isShutdown()) {
             executors.shutdown();
             try {
@@ -81,11 +207,50 @@ public class Listener {
         }
     }
 
+    private static void closeQuietly(Closeable channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.error("Error while closing channel: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the first server channel of this listener, or null if it has none.
+     */
     public AsynchronousServerSocketChannel getServerSocketChannel() {
-        return serverSocketChannel;
+        return serverChannels.isEmpty() ? null : serverChannels.get(0);
+    }
+
+    public List<AsynchronousServerSocketChannel> getServerSocketChannels() {
+        return List.copyOf(serverChannels);
     }
 
     public static Listener getInstance() {
         return instanceListener;
     }
+
+    /**
+     * One accept loop: a server channel with at most one accept outstanding at any time.
+     */
+    private record AcceptLoop(Listener listener, AsynchronousServerSocketChannel serverChannel, ConnectionRequest request) {
+
+        boolean isOpen() {
+            return !listener.closed && serverChannel.isOpen();
+        }
+
+        void accept() {
+            if (!isOpen()) {
+                return;
+            }
+            try {
+                serverChannel.accept(this, acceptCompletionHandler);
+            } catch (RuntimeException e) {
+                if (isOpen()) {
+                    log.error("Unable to post accept: {}", e.getMessage(), e);
+                    FailWriter.writeFile("Unable to post accept: ", e);
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,11 @@
+package it.sk8erboi17.exception;
+
+public class PoolExhaustedException extends Exception {
+
+    public PoolExhaustedException(String message) {
+        super(message);
+    }
+    public PoolExhaustedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
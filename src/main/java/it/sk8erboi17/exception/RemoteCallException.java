@@ -0,0 +1,10 @@
+package it.sk8erboi17.exception;
+
+/**
+ * The peer answered a request with an error response.
+ */
+public class RemoteCallException extends RuntimeException {
+    public RemoteCallException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,168 @@
+package it.sk8erboi17.listeners.group;
+
+import it.sk8erboi17.network.pipeline.in.PipelineIn;
+import it.sk8erboi17.network.pipeline.out.PipelineOut;
+import it.sk8erboi17.network.transformers.encoder.op.PreparedFrame;
+import it.sk8erboi17.network.transport.PipelineChannel;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A set of connections that receive the same messages, such as the players of a match or the members of a room.
+ * <p>
+ * Members are kept in a concurrent hash set, whose bins are locked independently: joining and leaving
+ * cost the same with ten members or ten thousand, and never block a publish. A publish encodes the
+ * message once (see {@link PreparedFrame}) and makes one pass over the members, queueing the shared
+ * frame on each; it sees every member that joined before it started. A publish only queues: each member is
+ * written on its transport's threads, so a slow member never holds up the publisher or the other members.
+ * <p>
+ * Connections leave the group when they close. A member added through its {@link PipelineIn} is removed
+ * as soon as the connection stops being read; any other member is removed by the first publish that finds it closed.
+ * <p>
+ * Thread-safe.
+ */
+public class ChannelGroup {
+
+    /**
+     * How a member is watched for its disconnection, to unregister the watch when it leaves.
+     */
+    private record Membership(PipelineIn pipelineIn, Runnable onDisconnect) {
+    }
+
+    private static final Membership UNWATCHED = new Membership(null, null);
+
+    private final Set<PipelineChannel> channels;
+    private final ConcurrentHashMap<PipelineChannel, Membership> members = new ConcurrentHashMap<>();
+    // Run after a member has left because it closed; may be null.
+    private final Runnable onMemberClosed;
+
+    public ChannelGroup() {
+        this(null);
+    }
+
+    /**
+     * @param onMemberClosed Run, on the thread that detects it, each time a member added through its
+     *                       {@link PipelineIn} leaves the group because it closed; may be null.
+     */
+    ChannelGroup(Runnable onMemberClosed) {
+        this.channels = Collections.unmodifiableSet(members.keySet());
+        this.onMemberClosed = onMemberClosed;
+    }
+
+    /**
+     * Adds a connection, removed from the group as soon as it is closed.
+     *
+     * @return false if the connection is already a member, or already closed.
+     */
+    public boolean add(PipelineIn pipelineIn) {
+        PipelineChannel channel = pipelineIn.getChannel();
+        Runnable onDisconnect = () -> {
+            if (remove(channel) && onMemberClosed != null) {
+                onMemberClosed.run();
+            }
+        };
+        Membership membership = new Membership(pipelineIn, onDisconnect);
+        if (members.putIfAbsent(channel, membership) != null) {
+            return false;
+        }
+        if (!pipelineIn.addDisconnectListener(onDisconnect)) {
+            members.remove(channel, membership);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Adds the connection of a PipelineOut; see {@link #add(PipelineChannel)}.
+     */
+    public boolean add(PipelineOut pipelineOut) {
+        PipelineChannel channel = pipelineOut.getChannel();
+        return channel != null && add(channel);
+    }
+
+    /**
+     * Adds a connection, removed from the group by the first publish that finds it closed.
+     * Add its {@link PipelineIn} instead, if it has one, to remove it as soon as it is closed.
+     *
+     * @return false if the connection is already a member, or already closed.
+     */
+    public boolean add(PipelineChannel channel) {
+        if (!channel.isOpen()) {
+            return false;
+        }
+        return members.putIfAbsent(channel, UNWATCHED) == null;
+    }
+
+    /**
+     * @return false if the connection was not a member.
+     */
+    public boolean remove(PipelineChannel channel) {
+        Membership membership = members.remove(channel);
+        if (membership == null) {
+            return false;
+        }
+        if (membership.pipelineIn() != null) {
+            membership.pipelineIn().removeDisconnectListener(membership.onDisconnect());
+        }
+        return true;
+    }
+
+    public boolean contains(PipelineChannel channel) {
+        return members.containsKey(channel);
+    }
+
+    public int size() {
+        return members.size();
+    }
+
+    public boolean isEmpty() {
+        return members.isEmpty();
+    }
+
+    /**
+     * Returns a live, read-only view of the members.
+     */
+    public Set<PipelineChannel> getChannels() {
+        return channels;
+    }
+
+    /**
+     * Encodes a message once and sends it to every member.
+     *
+     * @return The number of members the message has been queued on.
+     * @throws IllegalArgumentException if the type of the message is not supported.
+     */
+    public int publish(Object message) {
+        if (members.isEmpty()) {
+            return 0;
+        }
+        PreparedFrame frame = PreparedFrame.of(message);
+        try {
+            return publish(frame);
+        } finally {
+            frame.release();
+        }
+    }
+
+    /**
+     * Sends a prepared frame to every member, removing the members found closed.
+     * The frame goes on each member's own outbound queue, the one shared by every writer of the connection,
+     * and is written later on the transport's threads; see {@link PreparedFrame#sendLaterTo}.
+     *
+     * @return The number of members the frame has been queued on.
+     */
+    public int publish(PreparedFrame frame) {
+        int queued = 0;
+        for (PipelineChannel channel : members.keySet()) {
+            if (channel.isOpen()) {
+                frame.sendLaterTo(channel.getEncoder(), null);
+                queued++;
+            } else {
+                remove(channel);
+            }
+        }
+        return queued;
+    }
+}
@@ -0,0 +1,241 @@
+package it.sk8erboi17.listeners.group;
+
+import it.sk8erboi17.listeners.response.Callback;
+import it.sk8erboi17.network.pipeline.out.PipelineOut;
+import it.sk8erboi17.network.pipeline.out.content.Request;
+import it.sk8erboi17.network.transport.PipelineChannel;
+import it.sk8erboi17.utils.FailWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * A fixed number of client connections to one server, used as a single {@link PipelineOut}.
+ * <p>
+ * Every request goes to one of the live connections, picked round-robin or as the one with the
+ * fewest bytes still waiting to be written (see {@link Balancing}). Each connection keeps its own
+ * ordering guarantees, but requests spread across connections may arrive in any order.
+ * <p>
+ * A connection found closed is replaced in the background through
+ * {@link PipelineGroupManager#connectAsync}, retrying every {@code reconnectDelayMillis} until it
+ * succeeds or the pool is closed; meanwhile its share of the traffic goes to the other connections.
+ * Build instances with {@link PipelineClientPoolBuilder}.
+ */
+public class PipelineClientPool implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(PipelineClientPool.class);
+
+    public enum Balancing {
+        // Cycles through the connections.
+        ROUND_ROBIN,
+        // Picks the connection with the fewest bytes queued in its encoder, so a stalled
+        // connection stops receiving traffic until it catches up.
+        LEAST_PENDING_BYTES
+    }
+
+    private final PipelineGroupManager groupManager;
+    private final InetSocketAddress address;
+    private final Balancing balancing;
+    private final long connectTimeoutMillis;
+    private final Executor reconnectExecutor;
+    private final Consumer<PipelineOut> onConnected;
+
+    private final AtomicReferenceArray<PipelineOut> connections;
+    // 1 while the slot is being (re)connected.
+    private final AtomicIntegerArray connecting;
+    private final AtomicInteger next = new AtomicInteger();
+    private volatile boolean closed;
+
+    PipelineClientPool(PipelineGroupManager groupManager, InetSocketAddress address, int size, Balancing balancing,
+                       long connectTimeoutMillis, long reconnectDelayMillis, Consumer<PipelineOut> onConnected) {
+        this.groupManager = groupManager;
+        this.address = address;
+        this.balancing = balancing;
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.reconnectExecutor = CompletableFuture.delayedExecutor(reconnectDelayMillis, TimeUnit.MILLISECONDS);
+        this.onConnected = onConnected;
+        this.connections = new AtomicReferenceArray<>(size);
+        this.connecting = new AtomicIntegerArray(size);
+    }
+
+    /**
+     * Opens every connection of the pool in parallel.
+     *
+     * @return A future completed once all the connections are up, or exceptionally with the first
+     * failure, in which case the pool is closed.
+     */
+    CompletableFuture<PipelineClientPool> start() {
+        CompletableFuture<?>[] attempts = new CompletableFuture<?>[connections.length()];
+        for (int i = 0; i < attempts.length; i++) {
+            connecting.set(i, 1);
+            attempts[i] = connect(i);
+        }
+        return CompletableFuture.allOf(attempts).handle((ignored, exc) -> {
+            if (exc != null) {
+                close();
+                throw exc instanceof CompletionException completion ? completion : new CompletionException(exc);
+            }
+            return this;
+        });
+    }
+
+    /**
+     * Sends the request through one of the live connections.
+     * Fails its callback with a {@link ClosedChannelException} if none is available.
+     */
+    public void handleRequest(Request request) {
+        PipelineOut connection = next();
+        if (connection == null) {
+            Callback callback = request.getCallback();
+            if (callback != null) {
+                callback.completeExceptionally(new ClosedChannelException());
+            }
+            return;
+        }
+        connection.handleRequest(request);
+    }
+
+    /**
+     * Returns the connection the next request would go to, or null if none is currently live.
+     * Useful to send several related requests over the same connection, preserving their order.
+     */
+    public PipelineOut next() {
+        return balancing == Balancing.ROUND_ROBIN ? nextRoundRobin() : leastPendingBytes();
+    }
+
+    private PipelineOut nextRoundRobin() {
+        int size = connections.length();
+        int start = next.getAndIncrement();
+        for (int i = 0; i < size; i++) {
+            int slot = Math.floorMod(start + i, size);
+            PipelineOut connection = live(slot);
+            if (connection != null) {
+                return connection;
+            }
+        }
+        return null;
+    }
+
+    private PipelineOut leastPendingBytes() {
+        int size = connections.length();
+        // Start from a rotating slot so that idle connections share the load instead of the first one taking it all.
+        int start = next.getAndIncrement();
+        PipelineOut best = null;
+        long bestPending = Long.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            PipelineOut connection = live(Math.floorMod(start + i, size));
+            if (connection == null) {
+                continue;
+            }
+            long pending = connection.getChannel().getEncoder().getPendingBytes();
+            if (pending < bestPending) {
+                best = connection;
+                bestPending = pending;
+                if (pending == 0) {
+                    break;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the connection of the slot if it is open; otherwise schedules its replacement and returns null.
+     */
+    private PipelineOut live(int slot) {
+        PipelineOut connection = connections.get(slot);
+        if (connection != null) {
+            PipelineChannel channel = connection.getChannel();
+            if (channel != null && channel.isOpen()) {
+                return connection;
+            }
+        }
+        if (!closed && connecting.compareAndSet(slot, 0, 1)) {
+            log.info("Connection {} of the pool to {} is closed, reconnecting.", slot, address);
+            connections.compareAndSet(slot, connection, null);
+            connect(slot);
+        }
+        return null;
+    }
+
+    private CompletableFuture<PipelineOut> connect(int slot) {
+        return groupManager.connectAsync(address, connectTimeoutMillis, TimeUnit.MILLISECONDS)
+                .whenComplete((connection, exc) -> {
+                    if (exc != null) {
+                        log.error("Unable to connect to {}: {}", address, exc.getMessage());
+                        FailWriter.writeFile("Unable to connect to " + address, exc);
+                        reconnectExecutor.execute(() -> {
+                            if (closed) {
+                                connecting.set(slot, 0);
+                            } else {
+                                connect(slot);
+                            }
+                        });
+                        return;
+                    }
+                    if (closed) {
+                        closeConnection(connection);
+                        return;
+                    }
+                    if (onConnected != null) {
+                        try {
+                            onConnected.accept(connection);
+                        } catch (Exception e) {
+                            log.error("Error while setting up connection to {}: {}", address, e.getMessage(), e);
+                            FailWriter.writeFile("Error while setting up connection to " + address, e);
+                        }
+                    }
+                    connections.set(slot, connection);
+                    connecting.set(slot, 0);
+                    if (closed) {
+                        // close() may have run between the check above and the publication.
+                        closeConnection(connections.getAndSet(slot, null));
+                    }
+                });
+    }
+
+    /**
+     * Returns the number of connections currently open.
+     */
+    public int getLiveConnections() {
+        int live = 0;
+        for (int i = 0; i < connections.length(); i++) {
+            PipelineOut connection = connections.get(i);
+            if (connection != null && connection.getChannel() != null && connection.getChannel().isOpen()) {
+                live++;
+            }
+        }
+        return live;
+    }
+
+    public int getSize() {
+        return connections.length();
+    }
+
+    /**
+     * Closes every connection and stops the reconnections. The group manager is left running.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (int i = 0; i < connections.length(); i++) {
+            closeConnection(connections.getAndSet(i, null));
+        }
+    }
+
+    private static void closeConnection(PipelineOut connection) {
+        if (connection != null && connection.getChannel() != null) {
+            connection.getChannel().close();
+        }
+    }
+}
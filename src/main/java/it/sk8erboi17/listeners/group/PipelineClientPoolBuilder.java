@@ -0,0 +1,74 @@
+package it.sk8erboi17.listeners.group;
+
+import it.sk8erboi17.network.pipeline.out.PipelineOut;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * The PipelineClientPoolBuilder class is a builder class for constructing a PipelineClientPool object.
+ * It provides a fluent API for setting the number of connections, the balancing strategy and the
+ * connect and reconnect timings.
+ */
+public class PipelineClientPoolBuilder {
+
+    private final PipelineGroupManager groupManager;
+    private final InetSocketAddress address;
+    private int size = Runtime.getRuntime().availableProcessors();
+    private PipelineClientPool.Balancing balancing = PipelineClientPool.Balancing.LEAST_PENDING_BYTES;
+    private long connectTimeoutMillis = PipelineGroupManager.DEFAULT_CONNECT_TIMEOUT_MILLIS;
+    private long reconnectDelayMillis = 1_000;
+    private Consumer<PipelineOut> onConnected;
+
+    public PipelineClientPoolBuilder(PipelineGroupManager groupManager, InetSocketAddress address) {
+        this.groupManager = groupManager;
+        this.address = address;
+    }
+
+    public PipelineClientPoolBuilder setSize(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("The pool size must be positive.");
+        }
+        this.size = size;
+        return this;
+    }
+
+    public PipelineClientPoolBuilder setBalancing(PipelineClientPool.Balancing balancing) {
+        this.balancing = balancing;
+        return this;
+    }
+
+    public PipelineClientPoolBuilder setConnectTimeoutMillis(long connectTimeoutMillis) {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        return this;
+    }
+
+    /**
+     * Sets the pause between two attempts to replace a closed connection.
+     */
+    public PipelineClientPoolBuilder setReconnectDelayMillis(long reconnectDelayMillis) {
+        this.reconnectDelayMillis = reconnectDelayMillis;
+        return this;
+    }
+
+    /**
+     * Runs for every connection opened by the pool, replacements included, before it receives
+     * any request; e.g. to read the server's responses with a {@link it.sk8erboi17.network.pipeline.in.PipelineIn}
+     * over {@link PipelineOut#getChannel()}.
+     */
+    public PipelineClientPoolBuilder onConnected(Consumer<PipelineOut> onConnected) {
+        this.onConnected = onConnected;
+        return this;
+    }
+
+    /**
+     * Opens all the connections of the pool in parallel.
+     *
+     * @return A future completed once every connection is up; if any of them cannot be opened, it fails
+     * and the connections already open are closed.
+     */
+    public CompletableFuture<PipelineClientPool> connect() {
+        return new PipelineClientPool(groupManager, address, size, balancing, connectTimeoutMillis, reconnectDelayMillis, onConnected).start();
+    }
+}
@@ -1,5 +1,6 @@
 package it.sk8erboi17.listeners.group;
 
+import it.sk8erboi17.network.pipeline.out.PipelineOut;
 import it.sk8erboi17.utils.FailWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,6 +10,8 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.channels.AsynchronousChannelGroup;
 import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -17,6 +20,32 @@ import java.util.concurrent.TimeUnit;
 public class PipelineGroupManager {
 
     private static final Logger log = LoggerFactory.getLogger(PipelineGroupManager.class);
+
+    // Time allowed to a connection attempt of connectAsync before it is abandoned.
+    public static final long DEFAULT_CONNECT_TIMEOUT_MILLIS = 10_000;
+
+    /**
+     * A SINGLE, STATIC, and REUSABLE CompletionHandler for connections.
+     * The channel and the future to complete travel in the attachment.
+     */
+    private static final CompletionHandler<Void, ConnectContext> connectCompletionHandler = new CompletionHandler<>() {
+        @Override
+        public void completed(Void result, ConnectContext context) {
+            if (!context.future().complete(context.socketChannel())) {
+                // Timed out in the meantime: nobody is waiting for this connection anymore.
+                closeQuietly(context.socketChannel());
+            }
+        }
+
+        @Override
+        public void failed(Throwable exc, ConnectContext context) {
+            closeQuietly(context.socketChannel());
+            context.future().completeExceptionally(exc);
+        }
+    };
+
+    private record ConnectContext(AsynchronousSocketChannel socketChannel, CompletableFuture<AsynchronousSocketChannel> future) {
+    }
     // Manages a group of asynchronous channels, sharing a thread pool.
     private AsynchronousChannelGroup channelGroup;
     private ExecutorService executorService;
@@ -33,7 +62,7 @@ public class PipelineGroupManager {
     }
 
 
-    // Creates a new AsynchronousSocketChannel and connects it to the given address.
+    // Creates a new AsynchronousSocketChannel and connects it to the given address, blocking until it is connected.
     public AsynchronousSocketChannel createChannel(InetSocketAddress address) throws IOException, InterruptedException, ExecutionException {
         // Open a new AsynchronousSocketChannel in the context of the channel group.
         AsynchronousSocketChannel socketChannel = AsynchronousSocketChannel.open(channelGroup);
@@ -42,6 +71,61 @@ public class PipelineGroupManager {
         return socketChannel;
     }
 
+    /**
+     * Opens a connection to the given address without blocking the caller, and wraps it in a {@link PipelineOut}.
+     * Gives up after {@link #DEFAULT_CONNECT_TIMEOUT_MILLIS}.
+     */
+    public CompletableFuture<PipelineOut> connectAsync(InetSocketAddress address) {
+        return connectAsync(address, DEFAULT_CONNECT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Opens a connection to the given address without blocking the caller, and wraps it in a {@link PipelineOut}.
+     * Any number of connections can be in progress at the same time: opening many of them costs about one round trip.
+     *
+     * @return A future completed on a thread of the channel group, or exceptionally with the connect failure
+     * or a {@link java.util.concurrent.TimeoutException} once the timeout expires.
+     */
+    public CompletableFuture<PipelineOut> connectAsync(InetSocketAddress address, long timeout, TimeUnit unit) {
+        return connectChannelAsync(address, timeout, unit).thenApply(PipelineOut::new);
+    }
+
+    /**
+     * Opens an AsynchronousSocketChannel and connects it to the given address without blocking the caller.
+     * The channel is closed if the connection fails or does not complete within the timeout.
+     */
+    public CompletableFuture<AsynchronousSocketChannel> connectChannelAsync(InetSocketAddress address, long timeout, TimeUnit unit) {
+        AsynchronousSocketChannel socketChannel;
+        try {
+            socketChannel = AsynchronousSocketChannel.open(channelGroup);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        CompletableFuture<AsynchronousSocketChannel> future = new CompletableFuture<>();
+        try {
+            socketChannel.connect(address, new ConnectContext(socketChannel, future), connectCompletionHandler);
+        } catch (RuntimeException e) {
+            closeQuietly(socketChannel);
+            return CompletableFuture.failedFuture(e);
+        }
+        // The timeout completes the future first: the late connect then finds it done and closes the channel.
+        future.orTimeout(timeout, unit).whenComplete((channel, exc) -> {
+            if (exc != null) {
+                closeQuietly(socketChannel);
+            }
+        });
+        return future;
+    }
+
+    private static void closeQuietly(AsynchronousSocketChannel socketChannel) {
+        try {
+            socketChannel.close();
+        } catch (IOException e) {
+            log.error("Error while closing channel: {}", e.getMessage());
+        }
+    }
+
     /**
      * Shuts down the executor service and the channel group managed by this instance.
      * This method should be called when the application is shutting down to release resources.
@@ -0,0 +1,133 @@
+package it.sk8erboi17.listeners.group;
+
+import it.sk8erboi17.network.pipeline.in.PipelineIn;
+import it.sk8erboi17.network.pipeline.out.PipelineOut;
+import it.sk8erboi17.network.transformers.encoder.op.PreparedFrame;
+import it.sk8erboi17.network.transport.PipelineChannel;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Publish/subscribe by topic: each topic is a {@link ChannelGroup} of its subscribers.
+ * <p>
+ * A topic exists while it has subscribers. Subscribing and unsubscribing are serialized per topic
+ * with the removal of an empty one, so that nobody ever joins a topic that has just been dropped;
+ * publishing takes no lock at all. Subscribers leave their topics when they close, as members of a
+ * ChannelGroup do: at once if subscribed through their {@link PipelineIn}, otherwise at the next publish.
+ * A topic is dropped as soon as its last subscriber leaves it, either way.
+ * <p>
+ * Thread-safe.
+ */
+public class TopicRegistry {
+
+    private final ConcurrentHashMap<String, ChannelGroup> topics = new ConcurrentHashMap<>();
+    private final Set<String> topicNames = Collections.unmodifiableSet(topics.keySet());
+
+    /**
+     * @return false if the connection is already subscribed, or already closed.
+     */
+    public boolean subscribe(String topic, PipelineIn pipelineIn) {
+        return subscribe(topic, group -> group.add(pipelineIn));
+    }
+
+    /**
+     * @return false if the connection is already subscribed, or already closed.
+     */
+    public boolean subscribe(String topic, PipelineOut pipelineOut) {
+        return subscribe(topic, group -> group.add(pipelineOut));
+    }
+
+    /**
+     * @return false if the connection is already subscribed, or already closed.
+     */
+    public boolean subscribe(String topic, PipelineChannel channel) {
+        return subscribe(topic, group -> group.add(channel));
+    }
+
+    private boolean subscribe(String topic, Predicate<ChannelGroup> join) {
+        boolean[] joined = new boolean[1];
+        topics.compute(topic, (key, group) -> {
+            ChannelGroup target = group != null ? group : new ChannelGroup(() -> dropIfEmpty(key));
+            joined[0] = join.test(target);
+            return target.isEmpty() ? null : target;
+        });
+        return joined[0];
+    }
+
+    /**
+     * @return false if the connection was not subscribed to the topic.
+     */
+    public boolean unsubscribe(String topic, PipelineChannel channel) {
+        boolean[] left = new boolean[1];
+        topics.computeIfPresent(topic, (key, group) -> {
+            left[0] = group.remove(channel);
+            return group.isEmpty() ? null : group;
+        });
+        return left[0];
+    }
+
+    /**
+     * Unsubscribes a connection from every topic.
+     */
+    public void unsubscribeAll(PipelineChannel channel) {
+        for (String topic : topics.keySet()) {
+            unsubscribe(topic, channel);
+        }
+    }
+
+    /**
+     * Encodes a message once and sends it to every subscriber of the topic; nothing is encoded if it has none.
+     *
+     * @return The number of subscribers the message has been queued on.
+     * @throws IllegalArgumentException if the type of the message is not supported.
+     */
+    public int publish(String topic, Object message) {
+        ChannelGroup group = topics.get(topic);
+        if (group == null) {
+            return 0;
+        }
+        int queued = group.publish(message);
+        dropIfEmpty(topic);
+        return queued;
+    }
+
+    /**
+     * Sends a prepared frame to every subscriber of the topic.
+     *
+     * @return The number of subscribers the frame has been queued on.
+     */
+    public int publish(String topic, PreparedFrame frame) {
+        ChannelGroup group = topics.get(topic);
+        if (group == null) {
+            return 0;
+        }
+        int queued = group.publish(frame);
+        dropIfEmpty(topic);
+        return queued;
+    }
+
+    // Subscribers that closed leave their group on their own: the topic is dropped here once nobody is left,
+    // by the publish that found them closed or by the disconnection of the last one subscribed through its PipelineIn.
+    private void dropIfEmpty(String topic) {
+        ChannelGroup group = topics.get(topic);
+        if (group != null && group.isEmpty()) {
+            topics.computeIfPresent(topic, (key, current) -> current.isEmpty() ? null : current);
+        }
+    }
+
+    public int getSubscriberCount(String topic) {
+        ChannelGroup group = topics.get(topic);
+        return group != null ? group.size() : 0;
+    }
+
+    /**
+     * Returns a live, read-only view of the topics with subscribers. A topic whose last subscribers
+     * were added through their PipelineChannel and closed is listed until it is next published to.
+     */
+    public Set<String> getTopics() {
+        return topicNames;
+    }
+}
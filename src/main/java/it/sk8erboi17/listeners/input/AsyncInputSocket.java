@@ -4,6 +4,7 @@ import it.sk8erboi17.listeners.group.PipelineGroupManager;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
 import java.nio.channels.AsynchronousServerSocketChannel;
 
 /**
@@ -20,4 +21,19 @@ public class AsyncInputSocket {
     public static AsynchronousServerSocketChannel createInput(InetSocketAddress inetSocketAddress) throws IOException {
         return AsynchronousServerSocketChannel.open().bind(inetSocketAddress);
     }
+
+    // Same as above, with the size of the pending-connection queue and, when reusePort is set,
+    // SO_REUSEPORT so that several channels can be bound to the same port.
+    public static AsynchronousServerSocketChannel createInput(InetSocketAddress inetSocketAddress, int backlog, boolean reusePort) throws IOException {
+        AsynchronousServerSocketChannel serverChannel = AsynchronousServerSocketChannel.open();
+        try {
+            if (reusePort && serverChannel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+                serverChannel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            }
+            return serverChannel.bind(inetSocketAddress, backlog);
+        } catch (IOException e) {
+            serverChannel.close();
+            throw e;
+        }
+    }
 }
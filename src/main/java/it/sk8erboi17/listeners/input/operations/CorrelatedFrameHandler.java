@@ -0,0 +1,24 @@
+package it.sk8erboi17.listeners.input.operations;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Receives the correlated frames of a connection (see {@link it.sk8erboi17.network.transformers.CorrelatedFrames}),
+ * which ListenData does not decode itself. Called on the thread that reads the connection.
+ */
+public interface CorrelatedFrameHandler {
+
+    /**
+     * @param kind The correlated frame type: request, response or error response.
+     * @param id The correlation id.
+     * @param marker The data type of the wrapped payload.
+     * @param payload The wrapped payload, valid only for the duration of the call.
+     */
+    void onCorrelatedFrame(byte kind, int id, byte marker, ByteBuffer payload);
+
+    /**
+     * The connection has been closed: no more frames will arrive.
+     */
+    default void onDisconnected() {
+    }
+}
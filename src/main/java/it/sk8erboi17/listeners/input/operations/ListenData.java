@@ -3,38 +3,150 @@ package it.sk8erboi17.listeners.input.operations;
 import it.sk8erboi17.exception.ProtocolIncompleteException;
 import it.sk8erboi17.exception.ProtocolViolationException;
 import it.sk8erboi17.listeners.response.Callback;
+import it.sk8erboi17.listeners.response.PayloadView;
+import it.sk8erboi17.listeners.response.TypedCallback;
+import it.sk8erboi17.network.transformers.CompactFrames;
+import it.sk8erboi17.network.transformers.CorrelatedFrames;
+import it.sk8erboi17.network.transformers.DictionaryFrames;
+import it.sk8erboi17.network.transformers.codec.TypeCodecs;
+import it.sk8erboi17.network.transformers.pool.RefCountedBuffer;
 
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
+/**
+ * Decodes the payload of a frame according to its type marker and hands the value to the callback.
+ * When the callback is a {@link TypedCallback} values are delivered through the matching
+ * typed method, without boxing; any other Callback receives the boxed value via complete().
+ * <p>
+ * With leased payloads enabled, byte-array and string payloads are not copied at all:
+ * a TypedCallback receives a {@link PayloadView} over the buffer the frame was read into.
+ * <p>
+ * Correlated frames are handed, still encoded, to the {@link CorrelatedFrameHandler} if one is
+ * configured, and never reach the callback.
+ * <p>
+ * The decoder of a frame is found by a direct lookup of its marker: built-in types first, then the
+ * application types registered in {@link TypeCodecs}, whose decoded values reach the callback via complete().
+ * <p>
+ * Strings of the peer's dictionary (see {@link DictionaryFrames}) are kept by slot for the life of the
+ * connection; a reference delivers the string defined earlier, the same instance every time.
+ */
 public class ListenData {
 
     private static final int INT_BYTES = Integer.BYTES;
+    private static final int LONG_BYTES = Long.BYTES;
     private static final int FLOAT_BYTES = Float.BYTES;
     private static final int DOUBLE_BYTES = Double.BYTES;
     private static final int CHAR_BYTES = Character.BYTES;
 
+    /**
+     * Decodes the payload of one built-in type.
+     */
+    @FunctionalInterface
+    private interface MarkerHandler {
+        void handle(ListenData listenData, ByteBuffer buffer, Callback callback, RefCountedBuffer owner, boolean lengthPrefixed);
+    }
+
+    // Indexed by marker.
+    private static final MarkerHandler[] BUILT_IN = new MarkerHandler[TypeCodecs.FIRST_APPLICATION_MARKER];
+
+    static {
+        BUILT_IN[0x01] = ListenData::handleString;
+        BUILT_IN[0x02] = (listenData, buffer, callback, owner, lengthPrefixed) -> listenData.handleInt(buffer, callback);
+        BUILT_IN[0x03] = (listenData, buffer, callback, owner, lengthPrefixed) -> listenData.handleFloat(buffer, callback);
+        BUILT_IN[0x04] = (listenData, buffer, callback, owner, lengthPrefixed) -> listenData.handleDouble(buffer, callback);
+        BUILT_IN[0x05] = (listenData, buffer, callback, owner, lengthPrefixed) -> listenData.handleChar(buffer, callback);
+        BUILT_IN[0x06] = ListenData::handleByteArray;
+        BUILT_IN[0x07] = (listenData, buffer, callback, owner, lengthPrefixed) -> listenData.handleLong(buffer, callback);
+        BUILT_IN[DictionaryFrames.DEFINE] = (listenData, buffer, callback, owner, lengthPrefixed) -> listenData.handleDictionaryDefine(buffer, callback);
+        BUILT_IN[DictionaryFrames.REFERENCE] = (listenData, buffer, callback, owner, lengthPrefixed) -> listenData.handleDictionaryReference(buffer, callback);
+    }
+
+    private final boolean leasedPayloads;
+    private final CorrelatedFrameHandler correlatedFrameHandler;
+    private final StringCache stringCache;
+    // Indexed by slot; grown as the peer defines higher slots.
+    private String[] dictionary = new String[0];
+
+    public ListenData() {
+        this(false);
+    }
+
+    /**
+     * @param leasedPayloads true to deliver byte-array and string payloads as leased {@link PayloadView}s.
+     */
+    public ListenData(boolean leasedPayloads) {
+        this(leasedPayloads, null);
+    }
+
+    /**
+     * @param leasedPayloads true to deliver byte-array and string payloads as leased {@link PayloadView}s.
+     * @param correlatedFrameHandler The receiver of correlated frames, or null to reject them as unknown.
+     */
+    public ListenData(boolean leasedPayloads, CorrelatedFrameHandler correlatedFrameHandler) {
+        this(leasedPayloads, correlatedFrameHandler, null);
+    }
+
+    /**
+     * @param leasedPayloads true to deliver byte-array and string payloads as leased {@link PayloadView}s.
+     * @param correlatedFrameHandler The receiver of correlated frames, or null to reject them as unknown.
+     * @param stringCache The cache of the strings decoded, or null to allocate every string.
+     *                    Leased string views bypass it.
+     */
+    public ListenData(boolean leasedPayloads, CorrelatedFrameHandler correlatedFrameHandler, StringCache stringCache) {
+        this.leasedPayloads = leasedPayloads;
+        this.correlatedFrameHandler = correlatedFrameHandler;
+        this.stringCache = stringCache;
+    }
+
     public void listen(byte marker, ByteBuffer buffer, Callback callback) {
+        listen(marker, buffer, callback, null);
+    }
+
+    /**
+     * Decodes the payload of a standard frame, whose string and byte-array data is length-prefixed.
+     */
+    public void listen(byte marker, ByteBuffer buffer, Callback callback, RefCountedBuffer owner) {
+        listen(marker, buffer, callback, owner, true);
+    }
+
+    /**
+     * Decodes a frame payload.
+     *
+     * @param owner The buffer {@code buffer} is a slice of, used to lease payload views;
+     *              null if the payload cannot be leased and must be copied.
+     * @param lengthPrefixed false if string and byte-array data spans the whole payload, with no 4-byte
+     *                       length in front, as in compact frames.
+     */
+    public void listen(byte marker, ByteBuffer buffer, Callback callback, RefCountedBuffer owner, boolean lengthPrefixed) {
         if (marker == 0x00) {
             handleHeartbeat(callback);
             return;
         }
-        if (buffer.remaining() == 0) {
+        // Application types may encode to nothing, and so may strings and arrays without a length prefix.
+        if (buffer.remaining() == 0 && lengthPrefixed && marker < TypeCodecs.FIRST_APPLICATION_MARKER) {
             callback.completeExceptionally(new IllegalArgumentException("The provided buffer is empty. Cannot process data."));
             return;
         }
 
         try {
-            switch (marker) {
-                case 0x01 -> handleString(buffer, callback);
-                case 0x02 -> handleInt(buffer, callback);
-                case 0x03 -> handleFloat(buffer, callback);
-                case 0x04 -> handleDouble(buffer, callback);
-                case 0x05 -> handleChar(buffer, callback);
-                case 0x06 -> handleByteArray(buffer, callback);
-                default -> callback.completeExceptionally(new ProtocolViolationException("Unknown marker received: 0x" + String.format("%02X", marker) + ". Remaining buffer: " + buffer.remaining() + " bytes."));
+            if (correlatedFrameHandler != null && CorrelatedFrames.isCorrelated(marker)) {
+                handleCorrelated(marker, buffer);
+                return;
+            }
+            MarkerHandler handler = marker >= 0 && marker < BUILT_IN.length ? BUILT_IN[marker] : null;
+            if (handler != null) {
+                handler.handle(this, buffer, callback, owner, lengthPrefixed);
+                return;
+            }
+            TypeCodecs.Registration<?> registration = TypeCodecs.forMarker(marker);
+            if (registration != null) {
+                callback.complete(registration.codec().decode(buffer));
+                return;
             }
+            callback.completeExceptionally(new ProtocolViolationException("Unknown marker received: 0x" + String.format("%02X", marker) + ". Remaining buffer: " + buffer.remaining() + " bytes."));
         } catch (BufferUnderflowException e) {
             callback.completeExceptionally(new ProtocolIncompleteException("Insufficient data in the buffer for the data type expected by marker 0x" + String.format("%02X", marker) + ". Incomplete or malformed message.", e));
         } catch (Exception e) {
@@ -42,16 +154,38 @@ public class ListenData {
         }
     }
 
+    private void handleCorrelated(byte kind, ByteBuffer buffer) {
+        if (buffer.remaining() < CorrelatedFrames.OVERHEAD) {
+            throw new BufferUnderflowException();
+        }
+        int id = buffer.getInt();
+        byte marker = buffer.get();
+        correlatedFrameHandler.onCorrelatedFrame(kind, id, marker, buffer);
+    }
+
+    /**
+     * Notifies the correlated frame handler, if any, that the connection has been closed.
+     */
+    public void onDisconnected() {
+        if (correlatedFrameHandler != null) {
+            correlatedFrameHandler.onDisconnected();
+        }
+    }
+
+    /**
+     * Returns true if correlated frames of fragmented messages must be reassembled for the handler.
+     */
+    public boolean isHandlingCorrelatedFrames() {
+        return correlatedFrameHandler != null;
+    }
+
     private void handleHeartbeat(Callback callback) {
         // No data needs to be processed for a heartbeat.
         callback.complete(null);
     }
 
-    private void handleString(ByteBuffer buffer, Callback callback) {
-        if (buffer.remaining() < INT_BYTES) {
-            throw new BufferUnderflowException();
-        }
-        int length = buffer.getInt();
+    private void handleString(ByteBuffer buffer, Callback callback, RefCountedBuffer owner, boolean lengthPrefixed) {
+        int length = dataLength(buffer, lengthPrefixed);
 
         if (length < 0) {
             throw new ProtocolViolationException("Protocol violation: Invalid negative string length received: " + length);
@@ -60,11 +194,81 @@ public class ListenData {
             throw new ProtocolViolationException("Protocol violation: Stated string length " + length + " is greater than remaining buffer size " + buffer.remaining());
         }
 
+        if (leasedPayloads && callback instanceof TypedCallback typed) {
+            typed.completeStringView(leasePayload(buffer, length, owner));
+            return;
+        }
 
-        byte[] stringBytes = new byte[length];
-        buffer.get(stringBytes);
-        String data = new String(stringBytes, StandardCharsets.UTF_8);
-        callback.complete(data);
+        String data;
+        if (stringCache != null) {
+            data = stringCache.get(buffer, length);
+        } else if (buffer.hasArray()) {
+            // Decode straight out of a heap buffer, such as a reassembled message: no intermediate array.
+            data = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+        } else {
+            byte[] stringBytes = new byte[length];
+            buffer.get(stringBytes);
+            data = new String(stringBytes, StandardCharsets.UTF_8);
+        }
+        if (callback instanceof TypedCallback typed) {
+            typed.completeString(data);
+        } else {
+            callback.complete(data);
+        }
+    }
+
+    private void handleDictionaryDefine(ByteBuffer buffer, Callback callback) {
+        int slot = readSlot(buffer);
+        int length = buffer.remaining();
+        if (length > DictionaryFrames.MAX_STRING_LENGTH) {
+            throw new ProtocolViolationException("Protocol violation: Dictionary string of " + length + " bytes exceeds the maximum of " + DictionaryFrames.MAX_STRING_LENGTH);
+        }
+        String data;
+        if (stringCache != null) {
+            data = stringCache.get(buffer, length);
+        } else {
+            byte[] stringBytes = new byte[length];
+            buffer.get(stringBytes);
+            data = new String(stringBytes, StandardCharsets.UTF_8);
+        }
+        if (slot >= dictionary.length) {
+            dictionary = Arrays.copyOf(dictionary, Math.min(Math.max(slot + 1, dictionary.length * 2), DictionaryFrames.MAX_SLOTS));
+        }
+        dictionary[slot] = data;
+        completeString(data, callback);
+    }
+
+    private void handleDictionaryReference(ByteBuffer buffer, Callback callback) {
+        int slot = readSlot(buffer);
+        String data = slot < dictionary.length ? dictionary[slot] : null;
+        if (data == null) {
+            throw new ProtocolViolationException("Protocol violation: Reference to undefined dictionary slot " + slot);
+        }
+        completeString(data, callback);
+    }
+
+    private static int readSlot(ByteBuffer buffer) {
+        int slot = 0;
+        for (int i = 0; i < CompactFrames.MAX_VARINT_SIZE; i++) {
+            byte b = buffer.get();
+            slot |= (b & 0x7F) << (7 * i);
+            if (b >= 0) {
+                if (slot < 0 || slot >= DictionaryFrames.MAX_SLOTS) {
+                    throw new ProtocolViolationException("Protocol violation: Invalid dictionary slot received: " + slot);
+                }
+                return slot;
+            }
+        }
+        throw new ProtocolViolationException("Protocol violation: Malformed dictionary slot.");
+    }
+
+    private static void completeString(String data, Callback callback) {
+        if (callback instanceof TypedCallback typed) {
+            typed.completeString(data);
+        } else {
+            callback.complete(data);
+        }
     }
 
     private void handleInt(ByteBuffer buffer, Callback callback) {
@@ -72,7 +276,23 @@ public class ListenData {
             throw new BufferUnderflowException();
         }
         int data = buffer.getInt();
-        callback.complete(data);
+        if (callback instanceof TypedCallback typed) {
+            typed.completeInt(data);
+        } else {
+            callback.complete(data);
+        }
+    }
+
+    private void handleLong(ByteBuffer buffer, Callback callback) {
+        if (buffer.remaining() < LONG_BYTES) {
+            throw new BufferUnderflowException();
+        }
+        long data = buffer.getLong();
+        if (callback instanceof TypedCallback typed) {
+            typed.completeLong(data);
+        } else {
+            callback.complete(data);
+        }
     }
 
     private void handleFloat(ByteBuffer buffer, Callback callback) {
@@ -80,7 +300,11 @@ public class ListenData {
             throw new BufferUnderflowException();
         }
         float data = buffer.getFloat();
-        callback.complete(data);
+        if (callback instanceof TypedCallback typed) {
+            typed.completeFloat(data);
+        } else {
+            callback.complete(data);
+        }
     }
 
     private void handleDouble(ByteBuffer buffer, Callback callback) {
@@ -88,7 +312,11 @@ public class ListenData {
             throw new BufferUnderflowException();
         }
         double data = buffer.getDouble();
-        callback.complete(data);
+        if (callback instanceof TypedCallback typed) {
+            typed.completeDouble(data);
+        } else {
+            callback.complete(data);
+        }
     }
 
     private void handleChar(ByteBuffer buffer, Callback callback) {
@@ -96,14 +324,15 @@ public class ListenData {
             throw new BufferUnderflowException();
         }
         char data = buffer.getChar();
-        callback.complete(data);
+        if (callback instanceof TypedCallback typed) {
+            typed.completeChar(data);
+        } else {
+            callback.complete(data);
+        }
     }
 
-    private void handleByteArray(ByteBuffer buffer, Callback callback) {
-        if (buffer.remaining() < INT_BYTES) {
-            throw new BufferUnderflowException();
-        }
-        int length = buffer.getInt();
+    private void handleByteArray(ByteBuffer buffer, Callback callback, RefCountedBuffer owner, boolean lengthPrefixed) {
+        int length = dataLength(buffer, lengthPrefixed);
 
         if (length < 0) {
             throw new ProtocolViolationException("Protocol violation: Invalid negative byte array length received: " + length);
@@ -112,8 +341,37 @@ public class ListenData {
             throw new ProtocolViolationException("Protocol violation: Stated byte array length " + length + " is greater than remaining buffer size " + buffer.remaining());
         }
 
+        if (leasedPayloads && callback instanceof TypedCallback typed) {
+            typed.completeBytesView(leasePayload(buffer, length, owner));
+            return;
+        }
+
         byte[] data = new byte[length];
         buffer.get(data);
-        callback.complete(data);
+        if (callback instanceof TypedCallback typed) {
+            typed.completeBytes(data);
+        } else {
+            callback.complete(data);
+        }
+    }
+
+    private static int dataLength(ByteBuffer buffer, boolean lengthPrefixed) {
+        if (!lengthPrefixed) {
+            return buffer.remaining();
+        }
+        if (buffer.remaining() < INT_BYTES) {
+            throw new BufferUnderflowException();
+        }
+        return buffer.getInt();
+    }
+
+    private static PayloadView leasePayload(ByteBuffer buffer, int length, RefCountedBuffer owner) {
+        ByteBuffer payload = buffer.slice(buffer.position(), length);
+        buffer.position(buffer.position() + length);
+        return owner != null ? PayloadView.of(payload, owner) : PayloadView.copyOf(payload);
+    }
+
+    public boolean isLeasingPayloads() {
+        return leasedPayloads;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,100 @@
+package it.sk8erboi17.listeners.input.operations;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Returns the same {@link String} instance for short strings received over and over, such as
+ * symbols, keys and enum-like values, instead of allocating a new one for every message.
+ * <p>
+ * The cache is a fixed table of two-entry sets, indexed by a hash of the received bytes. A string
+ * whose bytes match an entry of its set is returned without allocating anything; any other is decoded
+ * and evicts the older entry of the set. Its memory is so bounded by the number of entries and the
+ * maximum length, and a burst of unique strings can only evict, never grow it.
+ * <p>
+ * The hash only reads the first and last 8 bytes, so its cost does not grow with the length; the
+ * full bytes are always compared before an entry is returned.
+ * <p>
+ * Not thread-safe: one instance serves one connection, on the thread that decodes it.
+ */
+public final class StringCache {
+
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    // Entry i holds the string decoded from keys[i]. Sets are pairs of entries: 2k and 2k + 1, the newer first.
+    private final byte[][] keys;
+    private final String[] values;
+    private final int mask;
+    private final int maxLength;
+    // The bytes being looked up, copied out of the read buffer in one bulk transfer.
+    private final byte[] scratch;
+
+    /**
+     * @param entries The number of strings kept, rounded up to a power of two.
+     * @param maxLength The length, in bytes, above which strings are never cached.
+     */
+    public StringCache(int entries, int maxLength) {
+        if (entries <= 0 || entries > 1 << 20 || maxLength <= 0 || maxLength > 1 << 16) {
+            throw new IllegalArgumentException("Invalid string cache size: " + entries + " entries of up to " + maxLength + " bytes.");
+        }
+        int size = Math.max(Integer.highestOneBit(entries - 1) << 1, 2);
+        this.keys = new byte[size][];
+        this.values = new String[size];
+        this.mask = size - 2;
+        this.maxLength = maxLength;
+        this.scratch = new byte[maxLength];
+    }
+
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    /**
+     * Returns the string of the next {@code length} bytes of the buffer, UTF-8 encoded, and moves past them.
+     *
+     * @return The cached instance if these bytes are in the cache, otherwise a new string.
+     */
+    public String get(ByteBuffer buffer, int length) {
+        if (length > maxLength) {
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = scratch;
+        buffer.get(bytes, 0, length);
+
+        int set = hash(bytes, length) & mask;
+        for (int i = set; i <= set + 1; i++) {
+            byte[] key = keys[i];
+            if (key != null && Arrays.equals(key, 0, key.length, bytes, 0, length)) {
+                return values[i];
+            }
+        }
+
+        byte[] key = Arrays.copyOf(bytes, length);
+        String value = new String(key, StandardCharsets.UTF_8);
+        keys[set + 1] = keys[set];
+        values[set + 1] = values[set];
+        keys[set] = key;
+        values[set] = value;
+        return value;
+    }
+
+    private static int hash(byte[] bytes, int length) {
+        long bits;
+        if (length >= Long.BYTES) {
+            bits = (long) LONGS.get(bytes, 0) ^ Long.rotateLeft((long) LONGS.get(bytes, length - Long.BYTES), 29);
+        } else {
+            bits = 0;
+            for (int i = 0; i < length; i++) {
+                bits = bits << 8 | (bytes[i] & 0xFF);
+            }
+        }
+        bits = (bits ^ length) * 0x9E3779B97F4A7C15L;
+        return (int) (bits >>> 32);
+    }
+}
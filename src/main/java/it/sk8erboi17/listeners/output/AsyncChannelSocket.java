@@ -1,11 +1,14 @@
 package it.sk8erboi17.listeners.output;
 
 import it.sk8erboi17.listeners.group.PipelineGroupManager;
+import it.sk8erboi17.network.pipeline.out.PipelineOut;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.channels.AsynchronousSocketChannel;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  *  The Connection Management from client side
@@ -32,6 +35,16 @@ public class AsyncChannelSocket {
         return socketChannel;
     }
 
+    // Static method to connect to the given InetSocketAddress without blocking; see PipelineGroupManager#connectAsync.
+    public static CompletableFuture<PipelineOut> connectAsync(InetSocketAddress inetSocketAddress) {
+        return pipelineGroupManager.connectAsync(inetSocketAddress);
+    }
+
+    // Same as above, with an explicit connect timeout.
+    public static CompletableFuture<PipelineOut> connectAsync(InetSocketAddress inetSocketAddress, long timeout, TimeUnit unit) {
+        return pipelineGroupManager.connectAsync(inetSocketAddress, timeout, unit);
+    }
+
     // Static method to close an AsynchronousSocketChannel if it is open.
     public static void closeChannelSocketChannel(AsynchronousSocketChannel socketChannel) {
         // Check if the socket channel is not null and is open.
@@ -1,10 +1,15 @@
 package it.sk8erboi17.listeners.response;
 
 import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
 
 /**
  * A builder class for creating instances of Callback.
  * It allows setting custom actions for completion and exceptions using method chaining.
+ * Type-specific actions (onInt, onDouble, ...) receive decoded values without boxing;
+ * types without a specific action fall back to onComplete.
  */
 public class CallbackBuilder {
     // Consumer to be executed when the operation completes successfully.
@@ -13,6 +18,17 @@ public class CallbackBuilder {
     // Consumer to be executed when the operation fails with an exception.
     private Consumer<Throwable> onException;
 
+    // Optional type-specific consumers.
+    private IntConsumer onInt;
+    private LongConsumer onLong;
+    private TypedCallback.FloatConsumer onFloat;
+    private DoubleConsumer onDouble;
+    private TypedCallback.CharConsumer onChar;
+    private Consumer<String> onString;
+    private Consumer<byte[]> onBytes;
+    private Consumer<PayloadView> onBytesView;
+    private Consumer<PayloadView> onStringView;
+
     // Sets the onComplete action and returns the builder instance.
     public CallbackBuilder onComplete(Consumer<Object> onComplete) {
         this.onComplete = onComplete;
@@ -25,8 +41,55 @@ public class CallbackBuilder {
         return this;
     }
 
+    public CallbackBuilder onInt(IntConsumer onInt) {
+        this.onInt = onInt;
+        return this;
+    }
+
+    public CallbackBuilder onLong(LongConsumer onLong) {
+        this.onLong = onLong;
+        return this;
+    }
+
+    public CallbackBuilder onFloat(TypedCallback.FloatConsumer onFloat) {
+        this.onFloat = onFloat;
+        return this;
+    }
+
+    public CallbackBuilder onDouble(DoubleConsumer onDouble) {
+        this.onDouble = onDouble;
+        return this;
+    }
+
+    public CallbackBuilder onChar(TypedCallback.CharConsumer onChar) {
+        this.onChar = onChar;
+        return this;
+    }
+
+    public CallbackBuilder onString(Consumer<String> onString) {
+        this.onString = onString;
+        return this;
+    }
+
+    public CallbackBuilder onBytes(Consumer<byte[]> onBytes) {
+        this.onBytes = onBytes;
+        return this;
+    }
+
+    // Receives byte-array payloads as leased views; the consumer must release every view it gets.
+    public CallbackBuilder onBytesView(Consumer<PayloadView> onBytesView) {
+        this.onBytesView = onBytesView;
+        return this;
+    }
+
+    // Receives string payloads as leased views; the consumer must release every view it gets.
+    public CallbackBuilder onStringView(Consumer<PayloadView> onStringView) {
+        this.onStringView = onStringView;
+        return this;
+    }
+
     // Builds and returns an instance of SimpleCallback with the provided actions.
     public Callback build() {
-        return new SimpleCallback(onComplete, onException);
+        return new SimpleCallback(onComplete, onException, onInt, onLong, onFloat, onDouble, onChar, onString, onBytes, onBytesView, onStringView);
     }
 }
@@ -0,0 +1,110 @@
+package it.sk8erboi17.listeners.response;
+
+import it.sk8erboi17.network.transformers.pool.RefCountedBuffer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A leased, read-only view over the payload of a byte-array or string frame.
+ * <p>
+ * The view points straight into the buffer the frame was read into: nothing is copied.
+ * While at least one view is alive the connection reads into a different buffer, so the
+ * bytes stay valid until every view has been released. The consumer that receives a view
+ * owns it and MUST call {@link #release()} exactly once when done with it; forgetting to
+ * do so keeps the underlying buffer out of the pool, and a second release is rejected.
+ */
+public final class PayloadView {
+
+    private final ByteBuffer buffer;
+    private final RefCountedBuffer owner;
+    // Guards the lease of this view: the shared count is only ever lowered once per view.
+    private final AtomicBoolean released = new AtomicBoolean();
+    private Utf8Sequence chars;
+
+    private PayloadView(ByteBuffer buffer, RefCountedBuffer owner) {
+        this.buffer = buffer;
+        this.owner = owner;
+    }
+
+    /**
+     * Creates a view over {@code payload}, which must be backed by {@code owner}'s buffer.
+     * The owner is retained on behalf of the new view.
+     */
+    public static PayloadView of(ByteBuffer payload, RefCountedBuffer owner) {
+        owner.retain();
+        return new PayloadView(payload.asReadOnlyBuffer(), owner);
+    }
+
+    /**
+     * Creates a view over a private heap copy of {@code payload}, for sources that cannot be leased.
+     */
+    public static PayloadView copyOf(ByteBuffer payload) {
+        ByteBuffer copy = ByteBuffer.allocate(payload.remaining());
+        copy.put(payload.duplicate()).flip();
+        return new PayloadView(copy.asReadOnlyBuffer(), new RefCountedBuffer(copy, null));
+    }
+
+    /**
+     * The payload bytes, from position to limit. The buffer is read-only.
+     */
+    public ByteBuffer buffer() {
+        return buffer;
+    }
+
+    public int length() {
+        return buffer.remaining();
+    }
+
+    /**
+     * The payload interpreted as UTF-8, decoded lazily. Only valid until the view is released.
+     */
+    public CharSequence asCharSequence() {
+        if (chars == null) {
+            chars = new Utf8Sequence(buffer.duplicate());
+        }
+        return chars;
+    }
+
+    /**
+     * Copies the payload to the heap. The copy stays valid after the view is released.
+     */
+    public byte[] toByteArray() {
+        byte[] data = new byte[buffer.remaining()];
+        buffer.get(buffer.position(), data);
+        return data;
+    }
+
+    /**
+     * Decodes the payload as a UTF-8 String. The string stays valid after the view is released.
+     */
+    @Override
+    public String toString() {
+        return chars != null ? chars.toString() : StandardCharsets.UTF_8.decode(buffer.duplicate()).toString();
+    }
+
+    /**
+     * Returns a new, independently positioned view over the same bytes, with its own lease.
+     */
+    public PayloadView retainedDuplicate() {
+        if (released.get()) {
+            throw new IllegalStateException("Payload view already released.");
+        }
+        owner.retain();
+        return new PayloadView(buffer.duplicate(), owner);
+    }
+
+    /**
+     * Ends the lease of this view.
+     *
+     * @return true if this was the last lease on the underlying buffer.
+     * @throws IllegalStateException if this view has already been released.
+     */
+    public boolean release() {
+        if (!released.compareAndSet(false, true)) {
+            throw new IllegalStateException("Payload view already released.");
+        }
+        return owner.release();
+    }
+}
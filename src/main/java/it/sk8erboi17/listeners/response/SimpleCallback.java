@@ -1,18 +1,48 @@
 package it.sk8erboi17.listeners.response;
 
 import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
 
-public class SimpleCallback implements Callback {
+public class SimpleCallback implements TypedCallback {
     // Consumer to be executed when the operation completes successfully.
     private final Consumer<Object> onComplete;
 
     // Consumer to be executed when the operation fails with an exception.
     private final Consumer<Throwable> onException;
 
+    // Optional type-specific consumers; when absent the value is boxed and passed to onComplete.
+    private final IntConsumer onInt;
+    private final LongConsumer onLong;
+    private final FloatConsumer onFloat;
+    private final DoubleConsumer onDouble;
+    private final CharConsumer onChar;
+    private final Consumer<String> onString;
+    private final Consumer<byte[]> onBytes;
+    private final Consumer<PayloadView> onBytesView;
+    private final Consumer<PayloadView> onStringView;
+
     // Constructor that initializes the completion and exception handlers.
     public SimpleCallback(Consumer<Object> onComplete, Consumer<Throwable> onException) {
+        this(onComplete, onException, null, null, null, null, null, null, null, null, null);
+    }
+
+    SimpleCallback(Consumer<Object> onComplete, Consumer<Throwable> onException,
+                   IntConsumer onInt, LongConsumer onLong, FloatConsumer onFloat, DoubleConsumer onDouble,
+                   CharConsumer onChar, Consumer<String> onString, Consumer<byte[]> onBytes,
+                   Consumer<PayloadView> onBytesView, Consumer<PayloadView> onStringView) {
         this.onComplete = onComplete;
         this.onException = onException;
+        this.onInt = onInt;
+        this.onLong = onLong;
+        this.onFloat = onFloat;
+        this.onDouble = onDouble;
+        this.onChar = onChar;
+        this.onString = onString;
+        this.onBytes = onBytes;
+        this.onBytesView = onBytesView;
+        this.onStringView = onStringView;
     }
 
     // Method invoked when the operation completes successfully.
@@ -30,4 +60,85 @@ public class SimpleCallback implements Callback {
             onException.accept(throwable);
         }
     }
+
+    @Override
+    public void completeInt(int value) {
+        if (onInt != null) {
+            onInt.accept(value);
+        } else if (onComplete != null) {
+            onComplete.accept(value);
+        }
+    }
+
+    @Override
+    public void completeLong(long value) {
+        if (onLong != null) {
+            onLong.accept(value);
+        } else if (onComplete != null) {
+            onComplete.accept(value);
+        }
+    }
+
+    @Override
+    public void completeFloat(float value) {
+        if (onFloat != null) {
+            onFloat.accept(value);
+        } else if (onComplete != null) {
+            onComplete.accept(value);
+        }
+    }
+
+    @Override
+    public void completeDouble(double value) {
+        if (onDouble != null) {
+            onDouble.accept(value);
+        } else if (onComplete != null) {
+            onComplete.accept(value);
+        }
+    }
+
+    @Override
+    public void completeChar(char value) {
+        if (onChar != null) {
+            onChar.accept(value);
+        } else if (onComplete != null) {
+            onComplete.accept(value);
+        }
+    }
+
+    @Override
+    public void completeString(String value) {
+        if (onString != null) {
+            onString.accept(value);
+        } else if (onComplete != null) {
+            onComplete.accept(value);
+        }
+    }
+
+    @Override
+    public void completeBytes(byte[] value) {
+        if (onBytes != null) {
+            onBytes.accept(value);
+        } else if (onComplete != null) {
+            onComplete.accept(value);
+        }
+    }
+
+    @Override
+    public void completeBytesView(PayloadView payload) {
+        if (onBytesView != null) {
+            onBytesView.accept(payload);
+        } else {
+            TypedCallback.super.completeBytesView(payload);
+        }
+    }
+
+    @Override
+    public void completeStringView(PayloadView payload) {
+        if (onStringView != null) {
+            onStringView.accept(payload);
+        } else {
+            TypedCallback.super.completeStringView(payload);
+        }
+    }
 }
@@ -0,0 +1,76 @@
+package it.sk8erboi17.listeners.response;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Receives large messages incrementally, as their bytes arrive, instead of as one reassembled payload.
+ * <p>
+ * When a pipeline is given a StreamConsumer, every message that arrives split in fragments
+ * (that is, every message larger than the pool's largest size class) is streamed to it:
+ * {@link #onStart(long, byte)} once, {@link #onChunk(ByteBuffer)} any number of times, then
+ * {@link #onEnd()}. Nothing is buffered by the pipeline, so memory per connection stays bounded
+ * by the read buffer whatever the message size. Smaller messages keep going to the Callback.
+ * <p>
+ * For byte-array and string messages the 4-byte length prefix is stripped: the chunks are exactly
+ * the bytes (or the UTF-8 encoded string) that were sent.
+ * <p>
+ * All methods are called on the connection's read thread, one message at a time.
+ */
+public interface StreamConsumer {
+
+    /**
+     * A message starts.
+     *
+     * @param length The number of bytes the chunks of this message will add up to.
+     * @param marker The data type marker of the message (0x06 for byte arrays, 0x01 for strings).
+     */
+    void onStart(long length, byte marker);
+
+    /**
+     * The next bytes of the message. The buffer is a view of the connection's read buffer:
+     * it is only valid during this call and must be consumed (or copied) before returning.
+     */
+    void onChunk(ByteBuffer chunk);
+
+    /**
+     * The last chunk of the message has been delivered.
+     */
+    void onEnd();
+
+    /**
+     * The message will not be completed: a previous method threw, the sender violated the
+     * protocol, or the connection was closed. No more chunks of this message will be delivered.
+     */
+    default void onAbort(Throwable cause) {
+    }
+
+    /**
+     * A consumer that writes every message, back to back, to the given channel
+     * (for instance a {@link java.nio.channels.FileChannel}). The channel is not closed.
+     */
+    static StreamConsumer toChannel(WritableByteChannel sink) {
+        return new StreamConsumer() {
+            @Override
+            public void onStart(long length, byte marker) {
+            }
+
+            @Override
+            public void onChunk(ByteBuffer chunk) {
+                try {
+                    while (chunk.hasRemaining()) {
+                        sink.write(chunk);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public void onEnd() {
+            }
+        };
+    }
+}
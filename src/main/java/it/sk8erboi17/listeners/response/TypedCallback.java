@@ -0,0 +1,81 @@
+package it.sk8erboi17.listeners.response;
+
+/**
+ * A Callback that can receive decoded values without boxing them.
+ * ListenData dispatches every decoded frame to the method matching its type.
+ * Each method defaults to boxing the value and forwarding it to {@link #complete(Object)},
+ * so an implementation only overrides the types it cares about and a plain Callback
+ * keeps working unchanged.
+ * <p>
+ * When a pipeline is built with leased payloads enabled, byte-array and string frames arrive
+ * through {@link #completeBytesView(PayloadView)} and {@link #completeStringView(PayloadView)}
+ * instead. Their defaults copy the payload, release the view and fall back to the copying methods.
+ */
+public interface TypedCallback extends Callback {
+
+    default void completeInt(int value) {
+        complete(value);
+    }
+
+    default void completeLong(long value) {
+        complete(value);
+    }
+
+    default void completeFloat(float value) {
+        complete(value);
+    }
+
+    default void completeDouble(double value) {
+        complete(value);
+    }
+
+    default void completeChar(char value) {
+        complete(value);
+    }
+
+    default void completeString(String value) {
+        complete(value);
+    }
+
+    default void completeBytes(byte[] value) {
+        complete(value);
+    }
+
+    /**
+     * Receives a byte-array payload without copying it. The implementation owns the view and must release it.
+     */
+    default void completeBytesView(PayloadView payload) {
+        byte[] data;
+        try {
+            data = payload.toByteArray();
+        } finally {
+            payload.release();
+        }
+        completeBytes(data);
+    }
+
+    /**
+     * Receives a string payload as UTF-8 bytes without decoding it. The implementation owns the view and must release it.
+     */
+    default void completeStringView(PayloadView payload) {
+        String data;
+        try {
+            data = payload.toString();
+        } finally {
+            payload.release();
+        }
+        completeString(data);
+    }
+
+    // The JDK has no primitive consumers for these two types.
+
+    @FunctionalInterface
+    interface FloatConsumer {
+        void accept(float value);
+    }
+
+    @FunctionalInterface
+    interface CharConsumer {
+        void accept(char value);
+    }
+}
@@ -0,0 +1,75 @@
+package it.sk8erboi17.listeners.response;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A CharSequence over UTF-8 bytes that decodes lazily.
+ * Pure ASCII content - the common case for keys and identifiers - is served straight from
+ * the bytes without ever being decoded; anything else is decoded once, on first access.
+ * The sequence is only valid as long as the bytes it reads from are.
+ */
+public final class Utf8Sequence implements CharSequence {
+
+    private final ByteBuffer bytes;
+    // 0 = not yet inspected, 1 = ASCII, 2 = decoded into 'decoded'
+    private int state;
+    private String decoded;
+
+    public Utf8Sequence(ByteBuffer bytes) {
+        this.bytes = bytes;
+    }
+
+    @Override
+    public int length() {
+        inspect();
+        return state == 1 ? bytes.remaining() : decoded.length();
+    }
+
+    @Override
+    public char charAt(int index) {
+        inspect();
+        if (state == 1) {
+            if (index < 0 || index >= bytes.remaining()) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return (char) bytes.get(bytes.position() + index);
+        }
+        return decoded.charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        inspect();
+        if (state == 1) {
+            if (start < 0 || end > bytes.remaining() || start > end) {
+                throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + bytes.remaining());
+            }
+            return new Utf8Sequence(bytes.slice(bytes.position() + start, end - start));
+        }
+        return decoded.subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        if (decoded == null) {
+            decoded = StandardCharsets.UTF_8.decode(bytes.duplicate()).toString();
+        }
+        return decoded;
+    }
+
+    private void inspect() {
+        if (state != 0) {
+            return;
+        }
+        int limit = bytes.limit();
+        for (int i = bytes.position(); i < limit; i++) {
+            if (bytes.get(i) < 0) {
+                toString();
+                state = 2;
+                return;
+            }
+        }
+        state = 1;
+    }
+}
@@ -0,0 +1,26 @@
+package it.sk8erboi17.listeners.response;
+
+/**
+ * Notified when a connection's outbound queue crosses its watermarks
+ * (see {@link it.sk8erboi17.network.transformers.encoder.AbstractDataEncoder#setWatermarks(long, long)}).
+ * <p>
+ * The typical use is to stop producing, or to pause reading the connection the data comes from,
+ * while the queue is full, and to resume once it has drained:
+ * <pre>{@code
+ * out.getEncoder().setWritabilityListener(writable -> {
+ *     if (writable) source.resumeReading(); else source.pauseReading();
+ * });
+ * }</pre>
+ * Called on whichever thread crossed the watermark, a sender or the writer, and must not block.
+ * Notifications from different threads may race: when the order matters, act on
+ * {@link it.sk8erboi17.network.transformers.encoder.AbstractDataEncoder#isWritable()} rather than on the argument.
+ */
+@FunctionalInterface
+public interface WritabilityListener {
+
+    /**
+     * @param writable false once the queued bytes have exceeded the high watermark,
+     *                 true once they have dropped below the low watermark again.
+     */
+    void onWritabilityChanged(boolean writable);
+}
@@ -1,13 +1,18 @@
 package it.sk8erboi17.network;
 
 import it.sk8erboi17.listeners.response.Callback;
+import it.sk8erboi17.listeners.response.PayloadView;
+import it.sk8erboi17.listeners.response.TypedCallback;
+
 import java.util.Collection;
 
 /**
  * This class aggregates multiple callbacks. When an operation completes,
  * AggregateCallback ensures that all registered callbacks are notified with the result or exception.
+ * Primitive values are forwarded unboxed to every TypedCallback; they are boxed at most
+ * once, and only if at least one plain Callback is registered.
  */
-public class AggregateCallback implements Callback {
+public class AggregateCallback implements TypedCallback {
 
     // A collection of callbacks that will be notified when an operation completes or fails.
     private final Collection<Callback> callbacks;
@@ -33,4 +38,140 @@ public class AggregateCallback implements Callback {
             callback.completeExceptionally(throwable);
         }
     }
+
+    @Override
+    public void completeInt(int value) {
+        Integer boxed = null;
+        for (Callback callback : callbacks) {
+            if (callback instanceof TypedCallback typed) {
+                typed.completeInt(value);
+            } else {
+                if (boxed == null) {
+                    boxed = value;
+                }
+                callback.complete(boxed);
+            }
+        }
+    }
+
+    @Override
+    public void completeLong(long value) {
+        Long boxed = null;
+        for (Callback callback : callbacks) {
+            if (callback instanceof TypedCallback typed) {
+                typed.completeLong(value);
+            } else {
+                if (boxed == null) {
+                    boxed = value;
+                }
+                callback.complete(boxed);
+            }
+        }
+    }
+
+    @Override
+    public void completeFloat(float value) {
+        Float boxed = null;
+        for (Callback callback : callbacks) {
+            if (callback instanceof TypedCallback typed) {
+                typed.completeFloat(value);
+            } else {
+                if (boxed == null) {
+                    boxed = value;
+                }
+                callback.complete(boxed);
+            }
+        }
+    }
+
+    @Override
+    public void completeDouble(double value) {
+        Double boxed = null;
+        for (Callback callback : callbacks) {
+            if (callback instanceof TypedCallback typed) {
+                typed.completeDouble(value);
+            } else {
+                if (boxed == null) {
+                    boxed = value;
+                }
+                callback.complete(boxed);
+            }
+        }
+    }
+
+    @Override
+    public void completeChar(char value) {
+        Character boxed = null;
+        for (Callback callback : callbacks) {
+            if (callback instanceof TypedCallback typed) {
+                typed.completeChar(value);
+            } else {
+                if (boxed == null) {
+                    boxed = value;
+                }
+                callback.complete(boxed);
+            }
+        }
+    }
+
+    @Override
+    public void completeString(String value) {
+        for (Callback callback : callbacks) {
+            if (callback instanceof TypedCallback typed) {
+                typed.completeString(value);
+            } else {
+                callback.complete(value);
+            }
+        }
+    }
+
+    @Override
+    public void completeBytes(byte[] value) {
+        for (Callback callback : callbacks) {
+            if (callback instanceof TypedCallback typed) {
+                typed.completeBytes(value);
+            } else {
+                callback.complete(value);
+            }
+        }
+    }
+
+    @Override
+    public void completeBytesView(PayloadView payload) {
+        try {
+            byte[] copy = null;
+            for (Callback callback : callbacks) {
+                if (callback instanceof TypedCallback typed) {
+                    // Every consumer gets its own lease and its own position.
+                    typed.completeBytesView(payload.retainedDuplicate());
+                } else {
+                    if (copy == null) {
+                        copy = payload.toByteArray();
+                    }
+                    callback.complete(copy);
+                }
+            }
+        } finally {
+            payload.release();
+        }
+    }
+
+    @Override
+    public void completeStringView(PayloadView payload) {
+        try {
+            String copy = null;
+            for (Callback callback : callbacks) {
+                if (callback instanceof TypedCallback typed) {
+                    typed.completeStringView(payload.retainedDuplicate());
+                } else {
+                    if (copy == null) {
+                        copy = payload.toString();
+                    }
+                    callback.complete(copy);
+                }
+            }
+        } finally {
+            payload.release();
+        }
+    }
 }
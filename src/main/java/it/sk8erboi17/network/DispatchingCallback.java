@@ -0,0 +1,282 @@
+package it.sk8erboi17.network;
+
+import it.sk8erboi17.listeners.response.Callback;
+import it.sk8erboi17.listeners.response.PayloadView;
+import it.sk8erboi17.listeners.response.TypedCallback;
+import it.sk8erboi17.network.transport.PipelineChannel;
+import it.sk8erboi17.utils.StripedExecutor;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Moves the delivery of a connection's messages off the thread that reads it.
+ * <p>
+ * The messages decoded from one read are recorded in a batch, without boxing primitives, and the
+ * whole batch is handed to the connection's stripe of a {@link StripedExecutor} in a single task
+ * once the read has been decoded (see {@link #flush()}). There it is replayed, in order, to the
+ * target callback. Since a connection always uses the same stripe, its messages keep their order.
+ * <p>
+ * Leased payload views stay valid off the read thread: they hold a reference to their buffer.
+ * The recording side is only used by the thread that reads the connection.
+ * <p>
+ * When the worker falls behind, reading is paused instead of piling up batches: once more than
+ * {@code maxPendingBatches} batches of the connection wait for the worker, the channel stops being
+ * read, and it is resumed when half of them have been delivered.
+ */
+public class DispatchingCallback implements TypedCallback {
+
+    private static final byte OBJECT = 0;
+    private static final byte EXCEPTION = 1;
+    private static final byte INT = 2;
+    private static final byte LONG = 3;
+    private static final byte FLOAT = 4;
+    private static final byte DOUBLE = 5;
+    private static final byte CHAR = 6;
+    private static final byte STRING = 7;
+    private static final byte BYTES = 8;
+    private static final byte BYTES_VIEW = 9;
+    private static final byte STRING_VIEW = 10;
+
+    /**
+     * Batches a connection may have waiting for the worker before its reading is paused, when none is configured.
+     */
+    public static final int DEFAULT_MAX_PENDING_BATCHES = 64;
+
+    private final Callback target;
+    private final StripedExecutor executor;
+    private final int stripe;
+    private final PipelineChannel channel;
+    private final int maxPendingBatches;
+    private final int resumePendingBatches;
+    // Batches handed to the worker and not delivered yet.
+    private final AtomicInteger pendingBatches = new AtomicInteger();
+    // True while this callback keeps the channel paused. Changed under the lock of this callback.
+    private volatile boolean paused;
+    // The batch being recorded for the current read; null until its first message.
+    private Batch batch;
+
+    /**
+     * Dispatches without ever pausing the connection.
+     */
+    public DispatchingCallback(Callback target, StripedExecutor executor) {
+        this(target, executor, null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param channel The connection whose reading is paused while the worker falls behind, or null to never pause it.
+     * @param maxPendingBatches The batches that may wait for the worker before reading is paused.
+     */
+    public DispatchingCallback(Callback target, StripedExecutor executor, PipelineChannel channel, int maxPendingBatches) {
+        if (maxPendingBatches <= 0) {
+            throw new IllegalArgumentException("The pending batches limit must be positive.");
+        }
+        this.target = target;
+        this.executor = executor;
+        this.stripe = executor.nextStripe();
+        this.channel = channel;
+        this.maxPendingBatches = maxPendingBatches;
+        this.resumePendingBatches = maxPendingBatches / 2;
+    }
+
+    /**
+     * Hands the messages recorded since the last flush to the worker. Called at the end of every read.
+     */
+    public void flush() {
+        Batch current = batch;
+        if (current != null) {
+            batch = null;
+            if (pendingBatches.incrementAndGet() > maxPendingBatches && !paused) {
+                pauseIfBehind();
+            }
+            executor.execute(stripe, current);
+        }
+    }
+
+    private Batch batch() {
+        if (batch == null) {
+            batch = new Batch(this);
+        }
+        return batch;
+    }
+
+    private void batchDelivered() {
+        if (pendingBatches.decrementAndGet() <= resumePendingBatches && paused) {
+            resumeIfCaughtUp();
+        }
+    }
+
+    private synchronized void pauseIfBehind() {
+        if (channel == null || paused || pendingBatches.get() <= maxPendingBatches) {
+            return;
+        }
+        paused = true;
+        channel.pauseReading();
+        // The worker may have caught up before it could see the pause: then nobody else resumes.
+        resumeIfCaughtUp();
+    }
+
+    private synchronized void resumeIfCaughtUp() {
+        if (paused && pendingBatches.get() <= resumePendingBatches) {
+            paused = false;
+            channel.resumeReading();
+        }
+    }
+
+    @Override
+    public void complete(Object o) {
+        batch().add(OBJECT, 0, o);
+    }
+
+    @Override
+    public void completeExceptionally(Throwable throwable) {
+        batch().add(EXCEPTION, 0, throwable);
+    }
+
+    @Override
+    public void completeInt(int value) {
+        batch().add(INT, value, null);
+    }
+
+    @Override
+    public void completeLong(long value) {
+        batch().add(LONG, value, null);
+    }
+
+    @Override
+    public void completeFloat(float value) {
+        batch().add(FLOAT, Float.floatToRawIntBits(value), null);
+    }
+
+    @Override
+    public void completeDouble(double value) {
+        batch().add(DOUBLE, Double.doubleToRawLongBits(value), null);
+    }
+
+    @Override
+    public void completeChar(char value) {
+        batch().add(CHAR, value, null);
+    }
+
+    @Override
+    public void completeString(String value) {
+        batch().add(STRING, 0, value);
+    }
+
+    @Override
+    public void completeBytes(byte[] value) {
+        batch().add(BYTES, 0, value);
+    }
+
+    @Override
+    public void completeBytesView(PayloadView payload) {
+        batch().add(BYTES_VIEW, 0, payload);
+    }
+
+    @Override
+    public void completeStringView(PayloadView payload) {
+        batch().add(STRING_VIEW, 0, payload);
+    }
+
+    /**
+     * The messages of one read, as parallel arrays: primitives are kept in {@code values}, the rest in {@code objects}.
+     */
+    private static final class Batch implements Runnable {
+        private final DispatchingCallback owner;
+        private final Callback target;
+        private byte[] kinds = new byte[16];
+        private long[] values = new long[16];
+        private Object[] objects = new Object[16];
+        private int size;
+
+        private Batch(DispatchingCallback owner) {
+            this.owner = owner;
+            this.target = owner.target;
+        }
+
+        void add(byte kind, long value, Object object) {
+            if (size == kinds.length) {
+                int capacity = size << 1;
+                kinds = Arrays.copyOf(kinds, capacity);
+                values = Arrays.copyOf(values, capacity);
+                objects = Arrays.copyOf(objects, capacity);
+            }
+            kinds[size] = kind;
+            values[size] = value;
+            objects[size] = object;
+            size++;
+        }
+
+        @Override
+        public void run() {
+            TypedCallback typed = target instanceof TypedCallback t ? t : null;
+            try {
+                for (int i = 0; i < size; i++) {
+                    try {
+                        deliver(typed, kinds[i], values[i], objects[i]);
+                    } catch (Exception e) {
+                        // One failing message must not swallow the rest of the batch.
+                        target.completeExceptionally(e);
+                    }
+                }
+            } finally {
+                owner.batchDelivered();
+            }
+        }
+
+        private void deliver(TypedCallback typed, byte kind, long value, Object object) {
+            if (kind == EXCEPTION) {
+                target.completeExceptionally((Throwable) object);
+                return;
+            }
+            if (kind == BYTES_VIEW || kind == STRING_VIEW) {
+                deliverView(typed, kind, (PayloadView) object);
+                return;
+            }
+            if (typed == null) {
+                target.complete(box(kind, value, object));
+                return;
+            }
+            switch (kind) {
+                case INT -> typed.completeInt((int) value);
+                case LONG -> typed.completeLong(value);
+                case FLOAT -> typed.completeFloat(Float.intBitsToFloat((int) value));
+                case DOUBLE -> typed.completeDouble(Double.longBitsToDouble(value));
+                case CHAR -> typed.completeChar((char) value);
+                case STRING -> typed.completeString((String) object);
+                case BYTES -> typed.completeBytes((byte[]) object);
+                default -> typed.complete(object);
+            }
+        }
+
+        private static Object box(byte kind, long value, Object object) {
+            return switch (kind) {
+                case INT -> (int) value;
+                case LONG -> value;
+                case FLOAT -> Float.intBitsToFloat((int) value);
+                case DOUBLE -> Double.longBitsToDouble(value);
+                case CHAR -> (char) value;
+                default -> object;
+            };
+        }
+
+        private void deliverView(TypedCallback typed, byte kind, PayloadView payload) {
+            if (typed != null) {
+                if (kind == BYTES_VIEW) {
+                    typed.completeBytesView(payload);
+                } else {
+                    typed.completeStringView(payload);
+                }
+                return;
+            }
+            // A plain callback cannot own a view: hand it a copy.
+            Object copy;
+            try {
+                copy = kind == BYTES_VIEW ? payload.toByteArray() : payload.toString();
+            } finally {
+                payload.release();
+            }
+            target.complete(copy);
+        }
+    }
+}
@@ -1,10 +1,15 @@
 package it.sk8erboi17.network.pipeline.in;
 
+import it.sk8erboi17.listeners.input.operations.CorrelatedFrameHandler;
 import it.sk8erboi17.listeners.input.operations.ListenData;
+import it.sk8erboi17.listeners.input.operations.StringCache;
 import it.sk8erboi17.network.transformers.decoder.op.FrameDecoder;
 import it.sk8erboi17.listeners.response.Callback;
-import it.sk8erboi17.network.transformers.decoder.DataDecoder;
+import it.sk8erboi17.listeners.response.StreamConsumer;
 import it.sk8erboi17.network.transformers.pool.ByteBuffersPool;
+import it.sk8erboi17.network.transport.AioPipelineChannel;
+import it.sk8erboi17.network.transport.IdleMonitor;
+import it.sk8erboi17.network.transport.PipelineChannel;
 
 import java.nio.channels.AsynchronousSocketChannel;
 
@@ -16,6 +21,10 @@ import java.nio.channels.AsynchronousSocketChannel;
  */
 public class PipelineIn {
 
+    private final PipelineChannel channel;
+    private final FrameDecoder frameDecoder;
+    private IdleMonitor idleMonitor;
+
     /**
      * Constructor to initialize and start the inbound data pipeline for a new client.
      *
@@ -23,31 +32,145 @@ public class PipelineIn {
      * @param maxFrameLength The maximum allowed size for a single data frame, to configure the decoder.
      */
     public PipelineIn(AsynchronousSocketChannel client, Callback callback,int maxFrameLength) {
+        this(client, callback, maxFrameLength, false);
+    }
+
+    /**
+     * Constructor to initialize and start the inbound data pipeline for a new client.
+     *
+     * @param client The newly accepted AsynchronousSocketChannel for the client.
+     * @param maxFrameLength The maximum allowed size for a single data frame, to configure the decoder.
+     * @param leasedPayloads true to deliver byte-array and string payloads as leased, zero-copy views.
+     */
+    public PipelineIn(AsynchronousSocketChannel client, Callback callback, int maxFrameLength, boolean leasedPayloads) {
+        this(client, callback, maxFrameLength, Math.max(maxFrameLength, FrameDecoder.DEFAULT_MAX_MESSAGE_LENGTH), leasedPayloads, null);
+    }
+
+    /**
+     * Constructor to initialize and start the inbound data pipeline for a new client.
+     *
+     * @param client The newly accepted AsynchronousSocketChannel for the client.
+     * @param maxFrameLength The maximum allowed size for a single data frame, to configure the decoder.
+     * @param maxMessageLength The maximum allowed size of a message sent as several fragments.
+     * @param leasedPayloads true to deliver byte-array and string payloads as leased, zero-copy views.
+     * @param streamConsumer The consumer fragmented messages are streamed to as they arrive, or null
+     *                       to reassemble them and deliver them to the callback.
+     */
+    public PipelineIn(AsynchronousSocketChannel client, Callback callback, int maxFrameLength, int maxMessageLength,
+                      boolean leasedPayloads, StreamConsumer streamConsumer) {
+        this(AioPipelineChannel.of(client), callback, maxFrameLength, maxMessageLength, leasedPayloads, streamConsumer);
+        // Clients idle for this long used to be dropped by the read timeout: keep doing so.
+        watchIdle(IdleMonitor.DEFAULT_READ_IDLE_MILLIS, 0);
+    }
+
+    /**
+     * Constructor to initialize and start the inbound data pipeline for a new client, over any transport.
+     *
+     * @param channel The connection to read from.
+     * @param maxFrameLength The maximum allowed size for a single data frame, to configure the decoder.
+     * @param maxMessageLength The maximum allowed size of a message sent as several fragments.
+     * @param leasedPayloads true to deliver byte-array and string payloads as leased, zero-copy views.
+     * @param streamConsumer The consumer fragmented messages are streamed to as they arrive, or null
+     *                       to reassemble them and deliver them to the callback.
+     */
+    public PipelineIn(PipelineChannel channel, Callback callback, int maxFrameLength, int maxMessageLength,
+                      boolean leasedPayloads, StreamConsumer streamConsumer) {
+        this(channel, callback, maxFrameLength, maxMessageLength, leasedPayloads, streamConsumer, null);
+    }
+
+    /**
+     * Constructor to initialize and start the inbound data pipeline for a new client, over any transport.
+     *
+     * @param channel The connection to read from.
+     * @param maxFrameLength The maximum allowed size for a single data frame, to configure the decoder.
+     * @param maxMessageLength The maximum allowed size of a message sent as several fragments.
+     * @param leasedPayloads true to deliver byte-array and string payloads as leased, zero-copy views.
+     * @param streamConsumer The consumer fragmented messages are streamed to as they arrive, or null
+     *                       to reassemble them and deliver them to the callback.
+     * @param correlatedFrameHandler The receiver of request and response frames, or null if the
+     *                               connection does not carry any.
+     */
+    public PipelineIn(PipelineChannel channel, Callback callback, int maxFrameLength, int maxMessageLength,
+                      boolean leasedPayloads, StreamConsumer streamConsumer, CorrelatedFrameHandler correlatedFrameHandler) {
+        this(channel, callback, maxFrameLength, maxMessageLength, leasedPayloads, streamConsumer, correlatedFrameHandler, null);
+    }
+
+    /**
+     * Constructor to initialize and start the inbound data pipeline for a new client, over any transport.
+     *
+     * @param channel The connection to read from.
+     * @param maxFrameLength The maximum allowed size for a single data frame, to configure the decoder.
+     * @param maxMessageLength The maximum allowed size of a message sent as several fragments.
+     * @param leasedPayloads true to deliver byte-array and string payloads as leased, zero-copy views.
+     * @param streamConsumer The consumer fragmented messages are streamed to as they arrive, or null
+     *                       to reassemble them and deliver them to the callback.
+     * @param correlatedFrameHandler The receiver of request and response frames, or null if the
+     *                               connection does not carry any.
+     * @param stringCache The cache of this connection's repeated strings, or null to allocate every string.
+     */
+    public PipelineIn(PipelineChannel channel, Callback callback, int maxFrameLength, int maxMessageLength,
+                      boolean leasedPayloads, StreamConsumer streamConsumer, CorrelatedFrameHandler correlatedFrameHandler,
+                      StringCache stringCache) {
         // --- 1. Create the business logic components ---
         // ListenData contains the logic for what to do with a decoded message.
-        ListenData listenDataProcessor = new ListenData();
+        ListenData listenDataProcessor = new ListenData(leasedPayloads, correlatedFrameHandler, stringCache);
 
         // The initial buffer size for the FrameDecoder can be a sensible default.
-        // This is for the internal reassembly buffer, NOT the read buffer.
-        int initialDecoderBufferSize = ByteBuffersPool.LARGE_SIZE;
+        // This is for the internal reassembly buffer, NOT the read buffer: it only holds
+        // a frame split across two reads, and grows on demand up to maxFrameLength.
+        int initialDecoderBufferSize = ByteBuffersPool.MEDIUM_SIZE;
 
         // --- 2. Create the stateful frame decoder ---
         // This object will live for the duration of the connection and manage frame reassembly.
         // These fields are now INSTANCE fields, not static.
         // They belong to a single client's pipeline.
-        FrameDecoder frameDecoder = new FrameDecoder(
+        this.channel = channel;
+        this.frameDecoder = new FrameDecoder(
                 initialDecoderBufferSize,
                 maxFrameLength,
-                listenDataProcessor
+                maxMessageLength,
+                listenDataProcessor,
+                streamConsumer
         );
 
-        // --- 3. Create the stateless I/O engine ---
-        // Pass the channel and the frame decoder it needs to feed.
-        DataDecoder dataDecoder = new DataDecoder(client, callback, frameDecoder);
+        // --- 3. Start the engine! ---
+        // The transport feeds the frame decoder: for AIO this kicks off the asynchronous
+        // read loop (DataDecoder), which will now run for the lifetime of the connection.
+        channel.startReading(frameDecoder, callback);
+    }
+
+    /**
+     * Watches the connection for inactivity on the shared timer, replacing any previous setting.
+     *
+     * @param readIdleMillis Closes the connection once nothing has been received for this long; 0 to never close it.
+     * @param writeIdleMillis Sends a heartbeat once nothing has been sent for this long; 0 to never send one.
+     */
+    public synchronized void watchIdle(long readIdleMillis, long writeIdleMillis) {
+        if (idleMonitor != null) {
+            idleMonitor.cancel();
+        }
+        idleMonitor = IdleMonitor.watch(channel, frameDecoder, readIdleMillis, writeIdleMillis);
+    }
+
+    public FrameDecoder getFrameDecoder() {
+        return frameDecoder;
+    }
+
+    public PipelineChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Runs an action once the connection has been closed and stops being read, e.g. to drop it
+     * from the groups it belongs to. The action runs on the thread that reads the connection.
+     *
+     * @return false if the connection is already closed, in which case the action is not run.
+     */
+    public boolean addDisconnectListener(Runnable listener) {
+        return frameDecoder.addDisconnectListener(listener);
+    }
 
-        // --- 4. Start the engine! ---
-        // This kicks off the asynchronous read loop, which will now run for the
-        // lifetime of the connection.
-        dataDecoder.startDecoding();
+    public void removeDisconnectListener(Runnable listener) {
+        frameDecoder.removeDisconnectListener(listener);
     }
 }
\ No newline at end of file
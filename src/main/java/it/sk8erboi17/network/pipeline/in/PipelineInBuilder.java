@@ -1,7 +1,16 @@
 package it.sk8erboi17.network.pipeline.in;
 
+import it.sk8erboi17.listeners.input.operations.CorrelatedFrameHandler;
+import it.sk8erboi17.listeners.input.operations.StringCache;
 import it.sk8erboi17.listeners.response.Callback;
+import it.sk8erboi17.listeners.response.StreamConsumer;
 import it.sk8erboi17.network.AggregateCallback;
+import it.sk8erboi17.network.DispatchingCallback;
+import it.sk8erboi17.network.transformers.decoder.op.FrameDecoder;
+import it.sk8erboi17.network.transport.AioPipelineChannel;
+import it.sk8erboi17.network.transport.IdleMonitor;
+import it.sk8erboi17.network.transport.PipelineChannel;
+import it.sk8erboi17.utils.StripedExecutor;
 
 import java.nio.channels.AsynchronousSocketChannel;
 import java.util.List;
@@ -13,12 +22,26 @@ import java.util.List;
  */
 public class PipelineInBuilder {
 
-    private final AsynchronousSocketChannel client;
+    private final PipelineChannel channel;
     private int bufferSize = 8196;
     private AggregateCallback aggregateCallback;
+    private int maxMessageLength = FrameDecoder.DEFAULT_MAX_MESSAGE_LENGTH;
+    private boolean leasedPayloads;
+    private StreamConsumer streamConsumer;
+    private CorrelatedFrameHandler correlatedFrameHandler;
+    private long readIdleMillis = IdleMonitor.DEFAULT_READ_IDLE_MILLIS;
+    private long writeIdleMillis;
+    private StripedExecutor dispatchExecutor;
+    private int maxPendingBatches = DispatchingCallback.DEFAULT_MAX_PENDING_BATCHES;
+    private int stringCacheEntries;
+    private int stringCacheMaxLength;
 
     public PipelineInBuilder(AsynchronousSocketChannel client) {
-        this.client = client;
+        this(AioPipelineChannel.of(client));
+    }
+
+    public PipelineInBuilder(PipelineChannel channel) {
+        this.channel = channel;
     }
 
     public PipelineInBuilder configureAggregateCallback(List<Callback> callbacks) {
@@ -31,8 +54,110 @@ public class PipelineInBuilder {
         return this;
     }
 
+    /**
+     * Sets the largest message accepted when it arrives split in fragments; it is reassembled in memory.
+     */
+    public PipelineInBuilder setMaxMessageLength(int maxMessageLength) {
+        this.maxMessageLength = maxMessageLength;
+        return this;
+    }
+
+    /**
+     * Delivers byte-array and string payloads as leased {@link it.sk8erboi17.listeners.response.PayloadView}s
+     * pointing into the read buffer, instead of copying them. Consumers must release every view they receive.
+     */
+    public PipelineInBuilder leasePayloads(boolean leasedPayloads) {
+        this.leasedPayloads = leasedPayloads;
+        return this;
+    }
+
+    /**
+     * Streams messages that arrive split in fragments to the given consumer as their bytes arrive,
+     * instead of reassembling them in memory; {@link #setMaxMessageLength(int)} then no longer applies.
+     */
+    public PipelineInBuilder streamLargeMessages(StreamConsumer streamConsumer) {
+        this.streamConsumer = streamConsumer;
+        return this;
+    }
+
+    /**
+     * Hands request and response frames to the given handler instead of rejecting them;
+     * see {@link it.sk8erboi17.network.rpc.RpcChannel}.
+     */
+    public PipelineInBuilder handleCorrelatedFrames(CorrelatedFrameHandler correlatedFrameHandler) {
+        this.correlatedFrameHandler = correlatedFrameHandler;
+        return this;
+    }
+
+    /**
+     * Closes the connection once nothing has been received for {@code readIdleMillis}, and sends a
+     * heartbeat once nothing has been sent for {@code writeIdleMillis}; 0 disables either check.
+     * Defaults to a 15 s read idle and no heartbeats. Heartbeats reach the peer's callbacks as {@code null}.
+     */
+    public PipelineInBuilder setIdleTimeouts(long readIdleMillis, long writeIdleMillis) {
+        if (readIdleMillis < 0 || writeIdleMillis < 0) {
+            throw new IllegalArgumentException("Idle timeouts cannot be negative.");
+        }
+        this.readIdleMillis = readIdleMillis;
+        this.writeIdleMillis = writeIdleMillis;
+        return this;
+    }
+
+    /**
+     * Runs the callbacks on a stripe of the given executor instead of the thread that reads the
+     * connection, so that slow callbacks never hold up the I/O threads. The messages of each read
+     * are handed over as one batch, and a connection always uses the same stripe: its messages are
+     * still delivered in order, one at a time. Streamed messages and correlated frames are still
+     * delivered on the reading thread.
+     *
+     * <p>
+     * Reading is paused while more than {@link DispatchingCallback#DEFAULT_MAX_PENDING_BATCHES} batches
+     * of the connection wait for their stripe.
+     *
+     * @param executor The executor, e.g. {@link StripedExecutor#shared()}, or null to run the callbacks on the reading thread.
+     */
+    public PipelineInBuilder dispatchCallbacks(StripedExecutor executor) {
+        return dispatchCallbacks(executor, DispatchingCallback.DEFAULT_MAX_PENDING_BATCHES);
+    }
+
+    /**
+     * Runs the callbacks on a stripe of the given executor; see {@link #dispatchCallbacks(StripedExecutor)}.
+     *
+     * @param maxPendingBatches The batches that may wait for the stripe before reading is paused;
+     *                          reading resumes once half of them have been delivered.
+     */
+    public PipelineInBuilder dispatchCallbacks(StripedExecutor executor, int maxPendingBatches) {
+        if (maxPendingBatches <= 0) {
+            throw new IllegalArgumentException("The pending batches limit must be positive.");
+        }
+        this.dispatchExecutor = executor;
+        this.maxPendingBatches = maxPendingBatches;
+        return this;
+    }
+
+    /**
+     * Returns the same String instance for short strings received repeatedly, such as symbols
+     * and keys, instead of allocating one per message; see {@link StringCache}. The cache belongs to
+     * the connection and holds at most {@code entries} strings of up to {@code maxLength} bytes.
+     */
+    public PipelineInBuilder cacheStrings(int entries, int maxLength) {
+        if (entries <= 0 || maxLength <= 0) {
+            throw new IllegalArgumentException("String cache sizes must be positive.");
+        }
+        this.stringCacheEntries = entries;
+        this.stringCacheMaxLength = maxLength;
+        return this;
+    }
+
     public PipelineIn build() {
-        return new PipelineIn(client, aggregateCallback, bufferSize);
+        Callback callback = aggregateCallback;
+        if (dispatchExecutor != null && callback != null) {
+            callback = new DispatchingCallback(callback, dispatchExecutor, channel, maxPendingBatches);
+        }
+        StringCache stringCache = stringCacheEntries > 0 ? new StringCache(stringCacheEntries, stringCacheMaxLength) : null;
+        PipelineIn pipelineIn = new PipelineIn(channel, callback, bufferSize, maxMessageLength, leasedPayloads, streamConsumer, correlatedFrameHandler, stringCache);
+        pipelineIn.watchIdle(readIdleMillis, writeIdleMillis);
+        return pipelineIn;
     }
 
 }
\ No newline at end of file
@@ -3,14 +3,17 @@ package it.sk8erboi17.network.pipeline.out;
 import it.sk8erboi17.exception.ProtocolIncompleteException;
 import it.sk8erboi17.listeners.response.Callback;
 import it.sk8erboi17.network.pipeline.out.content.Request;
-import it.sk8erboi17.network.transformers.encoder.DataEncoder;
+import it.sk8erboi17.network.transformers.encoder.AbstractDataEncoder;
 import it.sk8erboi17.network.transformers.encoder.op.FrameEncoder;
+import it.sk8erboi17.network.transformers.encoder.op.PreparedFrame;
+import it.sk8erboi17.network.transport.AioPipelineChannel;
+import it.sk8erboi17.network.transport.PipelineChannel;
 import it.sk8erboi17.utils.FailWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
 import java.nio.channels.AsynchronousSocketChannel;
+import java.util.function.Consumer;
 
 /**
  * The PipelineOut class is responsible for managing the output pipeline for
@@ -20,6 +23,7 @@ import java.nio.channels.AsynchronousSocketChannel;
 public class PipelineOut {
     private static final Logger log = LoggerFactory.getLogger(PipelineOut.class);
     private AsynchronousSocketChannel client;
+    private PipelineChannel channel;
     private FrameEncoder frameEncoder;
 
     /**
@@ -31,9 +35,22 @@ public class PipelineOut {
             throw new IllegalArgumentException("Client channel cannot be null.");
         }
         this.client = client;
+        this.channel = AioPipelineChannel.of(client);
+        this.frameEncoder = new FrameEncoder(channel.getEncoder());
+    }
 
-        DataEncoder dataEncoder = new DataEncoder(this.client);
-        this.frameEncoder = new FrameEncoder(dataEncoder);
+    /**
+     * Constructs a PipelineOut over a connection of any transport.
+     * It writes through the channel's own outbound queue, shared with every other writer of the channel.
+     * @param channel The non-null connection to write data to.
+     */
+    public PipelineOut(PipelineChannel channel) {
+        if (channel == null) {
+            throw new IllegalArgumentException("Channel cannot be null.");
+        }
+        this.channel = channel;
+        this.client = channel instanceof AioPipelineChannel aio ? aio.getSocketChannel() : null;
+        this.frameEncoder = new FrameEncoder(channel.getEncoder());
     }
 
     public void handleRequest(Request request) {
@@ -45,63 +62,155 @@ public class PipelineOut {
         final Object message = request.getMessage();
         final Callback callback = request.getCallback();
 
-        if (message == null) {
-            frameEncoder.sendHeartbeat(callback);
-            return;
+        try {
+            // Null sends a heartbeat; any other type is dispatched on its class, built-in or registered in TypeCodecs.
+            frameEncoder.send(message, callback);
+        } catch (IllegalArgumentException e) {
+            log.error("Unsupported message: {}", e.getMessage());
+            FailWriter.writeFile("Error with type: ", new ProtocolIncompleteException(e.getMessage()));
         }
+    }
 
-        if (message instanceof String s) {
-            frameEncoder.sendString(s, callback);
-            return;
-        }
+    /**
+     * Sends string and byte-array messages of at least {@code threshold} bytes compressed with the
+     * given codec, when that makes them smaller; see {@link FrameEncoder#enableCompression(byte, int)}.
+     * The receiving side inflates them transparently.
+     *
+     * @param codecId The codec, e.g. {@link it.sk8erboi17.network.transformers.compression.CompressionCodecs#DEFLATE}.
+     */
+    public void enableCompression(byte codecId, int threshold) {
+        frameEncoder.enableCompression(codecId, threshold);
+    }
 
-        if (message instanceof Integer i) {
-            frameEncoder.sendInt(i, callback);
-            return;
-        }
+    /**
+     * Stops compressing, and frees the memory of the codec.
+     */
+    public void disableCompression() {
+        frameEncoder.disableCompression();
+    }
 
-        if (message instanceof Float v) {
-            frameEncoder.sendFloat(v, callback);
+    /**
+     * Sends a frame encoded in advance, without encoding or copying it again.
+     * It bypasses this PipelineOut's compression and string dictionary.
+     */
+    public void send(PreparedFrame frame, Callback callback) {
+        if (channel == null) {
+            log.warn("Attempting to send a prepared frame on a non-existent channel.");
             return;
         }
+        frame.sendTo(channel.getEncoder(), callback);
+    }
 
-        if (message instanceof Double v) {
-            frameEncoder.sendDouble(v, callback);
-            return;
-        }
+    /**
+     * Sends one frame, encoded once, to every open and writable channel: each write is a view of the same shared buffer.
+     * A channel above its high watermark is skipped, so that one slow receiver cannot pile up broadcasts in memory;
+     * see {@link it.sk8erboi17.network.transformers.encoder.AbstractDataEncoder#isWritable()}.
+     * Nothing is written on the calling thread, so a blocking transport cannot hold up the other channels.
+     * A channel closing meanwhile simply drops its write.
+     *
+     * @return The number of channels the frame has been queued on.
+     */
+    public static int broadcast(PreparedFrame frame, Iterable<? extends PipelineChannel> channels) {
+        return broadcast(frame, channels, null);
+    }
 
-        if (message instanceof Character c) {
-            frameEncoder.sendChar(c, callback);
-            return;
+    /**
+     * Sends one frame to every open channel, as {@link #broadcast(PreparedFrame, Iterable)} does, and reports
+     * the channels skipped because they were not writable.
+     *
+     * @param onSkipped Called, on this thread, with each open channel the frame was not queued on
+     *                  because it was above its high watermark; may be null.
+     * @return The number of channels the frame has been queued on.
+     */
+    public static int broadcast(PreparedFrame frame, Iterable<? extends PipelineChannel> channels, Consumer<PipelineChannel> onSkipped) {
+        int queued = 0;
+        for (PipelineChannel target : channels) {
+            if (!target.isOpen()) {
+                continue;
+            }
+            AbstractDataEncoder encoder = target.getEncoder();
+            if (!encoder.isWritable()) {
+                if (onSkipped != null) {
+                    onSkipped.accept(target);
+                }
+                continue;
+            }
+            frame.sendLaterTo(encoder, null);
+            queued++;
         }
+        return queued;
+    }
 
-        if (message instanceof byte[] bytes) {
-            frameEncoder.sendByteArray(bytes, callback);
-            return;
+    /**
+     * Encodes a message once and sends it to every open and writable channel; see {@link #broadcast(PreparedFrame, Iterable)}.
+     *
+     * @throws IllegalArgumentException if the type of the message is not supported.
+     */
+    public static int broadcast(Object message, Iterable<? extends PipelineChannel> channels) {
+        return broadcast(message, channels, null);
+    }
+
+    /**
+     * Encodes a message once and sends it to every open channel; see {@link #broadcast(PreparedFrame, Iterable, Consumer)}.
+     *
+     * @throws IllegalArgumentException if the type of the message is not supported.
+     */
+    public static int broadcast(Object message, Iterable<? extends PipelineChannel> channels, Consumer<PipelineChannel> onSkipped) {
+        PreparedFrame frame = PreparedFrame.of(message);
+        try {
+            return broadcast(frame, channels, onSkipped);
+        } finally {
+            frame.release();
         }
+    }
+
+    /**
+     * Sends small messages with the varint header of compact frames; see {@link FrameEncoder#enableCompactHeaders()}.
+     * The peer must run a version that understands them.
+     */
+    public void enableCompactHeaders() {
+        frameEncoder.enableCompactHeaders();
+    }
 
-        log.error("Unsupported message type: {}", message.getClass().getName());
-        FailWriter.writeFile("Error with type: ",  new ProtocolIncompleteException("Unsupported message type: " + message.getClass().getName()));
+    /**
+     * Sends repeated short strings as references to a dictionary of {@code capacity} slots;
+     * see {@link FrameEncoder#enableStringDictionary(int)}. Only one PipelineOut per connection may enable it.
+     * The peer must run a version that understands dictionary frames.
+     */
+    public void enableStringDictionary(int capacity) {
+        frameEncoder.enableStringDictionary(capacity);
     }
 
+    /**
+     * Returns false while more bytes are queued on the connection than its high watermark allows;
+     * see {@link it.sk8erboi17.network.transformers.encoder.AbstractDataEncoder#isWritable()}.
+     */
+    public boolean isWritable() {
+        return channel != null && channel.getEncoder().isWritable();
+    }
+
+    /**
+     * Returns the asynchronous channel of an AIO connection, or null for the other transports.
+     */
     public AsynchronousSocketChannel getClient() {
         return client;
     }
 
+    public PipelineChannel getChannel() {
+        return channel;
+    }
+
     public void setClient(AsynchronousSocketChannel newClient) {
         if (this.client != null && this.client.isOpen() && this.client != newClient) {
-            try {
-                this.client.close(); // old connection
-            } catch (IOException e) {
-                log.error("Error with close {}", e.getMessage(), e);
-                FailWriter.writeFile("Error with close ", e);
-            }
+            // Close the old connection through its channel, which fails its queued writes.
+            AioPipelineChannel.of(this.client).close();
         }
         this.client = newClient;
         if (this.client != null && this.client.isOpen()) {
-            DataEncoder dataEncoder = new DataEncoder(this.client);
-            this.frameEncoder = new FrameEncoder(dataEncoder);
+            this.channel = AioPipelineChannel.of(this.client);
+            this.frameEncoder = new FrameEncoder(channel.getEncoder());
         } else {
+            this.channel = null;
             this.frameEncoder = null;
         }
     }
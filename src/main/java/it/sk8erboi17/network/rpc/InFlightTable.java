@@ -0,0 +1,84 @@
+package it.sk8erboi17.network.rpc;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * The requests of a connection waiting for their response, indexed by correlation id.
+ * <p>
+ * Lock-free: a fixed power-of-two array of slots, where an id lives in slot {@code id & mask}.
+ * Ids come from a counter, so consecutive requests use consecutive slots and a slot is only
+ * reused once the counter wraps around the table; a slot still busy at that point is skipped.
+ * Every removal is a compare-and-set on the slot, so a response, a timeout and a disconnection
+ * racing for the same request agree on a single winner.
+ */
+final class InFlightTable {
+
+    private final AtomicReferenceArray<RpcChannel.PendingCall> slots;
+    private final int mask;
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    InFlightTable(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Invalid in-flight capacity: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(Math.max(1, size));
+        this.mask = slots.length() - 1;
+    }
+
+    /**
+     * Assigns an id to the call and stores it.
+     *
+     * @return false if every slot is taken.
+     */
+    boolean register(RpcChannel.PendingCall call) {
+        for (int attempt = 0; attempt < slots.length(); attempt++) {
+            int id = nextId.getAndIncrement();
+            call.id = id;
+            // The CAS publishes the id along with the call.
+            if (slots.compareAndSet(id & mask, null, call)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes and returns the call waiting for {@code id}, or null if there is none anymore.
+     */
+    RpcChannel.PendingCall remove(int id) {
+        int slot = id & mask;
+        RpcChannel.PendingCall call = slots.get(slot);
+        if (call != null && call.id == id && slots.compareAndSet(slot, call, null)) {
+            return call;
+        }
+        return null;
+    }
+
+    /**
+     * Removes the call if it is still waiting.
+     *
+     * @return true if this invocation removed it.
+     */
+    boolean remove(RpcChannel.PendingCall call) {
+        return slots.compareAndSet(call.id & mask, call, null);
+    }
+
+    /**
+     * Removes every waiting call and passes it to {@code action}.
+     */
+    void drain(Consumer<RpcChannel.PendingCall> action) {
+        for (int i = 0; i < slots.length(); i++) {
+            RpcChannel.PendingCall call = slots.getAndSet(i, null);
+            if (call != null) {
+                action.accept(call);
+            }
+        }
+    }
+
+    int capacity() {
+        return slots.length();
+    }
+}
@@ -0,0 +1,245 @@
+package it.sk8erboi17.network.rpc;
+
+import it.sk8erboi17.exception.RemoteCallException;
+import it.sk8erboi17.listeners.input.operations.CorrelatedFrameHandler;
+import it.sk8erboi17.listeners.input.operations.ListenData;
+import it.sk8erboi17.listeners.response.Callback;
+import it.sk8erboi17.network.transformers.CorrelatedFrames;
+import it.sk8erboi17.network.transformers.encoder.op.FrameEncoder;
+import it.sk8erboi17.network.transport.PipelineChannel;
+import it.sk8erboi17.utils.FailWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Request/response calls multiplexed over one connection.
+ * <p>
+ * Every request carries a correlation id (see {@link CorrelatedFrames}) and waits in a lock-free
+ * {@link InFlightTable} until the response with the same id arrives, its deadline expires or the
+ * connection closes, whichever comes first. Any number of calls can be in flight at once, up to the
+ * table's capacity, and responses may arrive in any order. Both ends of a connection can call and
+ * serve at the same time: requests received are passed to the {@link RpcHandler}.
+ * <p>
+ * Frames without a correlation id keep flowing to the pipeline's callbacks as usual. Build
+ * instances with {@link RpcChannelBuilder}, which also starts reading the connection.
+ */
+public class RpcChannel implements CorrelatedFrameHandler, Closeable {
+    private static final Logger log = LoggerFactory.getLogger(RpcChannel.class);
+
+    private final PipelineChannel channel;
+    private final FrameEncoder frameEncoder;
+    private final RpcHandler handler;
+    private final InFlightTable inFlight;
+    private final long defaultTimeoutMillis;
+    // Decodes the wrapped values. Never leases: the read buffer is reused as soon as a frame has been handled.
+    private final ListenData values = new ListenData();
+    // Receives the decoded value of a response. Only used by the thread that reads the connection.
+    private final ResponseReceiver responseReceiver = new ResponseReceiver();
+    private volatile boolean closed;
+
+    RpcChannel(PipelineChannel channel, RpcHandler handler, int maxInFlight, long defaultTimeoutMillis) {
+        this.channel = channel;
+        this.frameEncoder = new FrameEncoder(channel.getEncoder());
+        this.handler = handler;
+        this.inFlight = new InFlightTable(maxInFlight);
+        this.defaultTimeoutMillis = defaultTimeoutMillis;
+    }
+
+    /**
+     * Sends a request and waits for its response for the default timeout.
+     */
+    public CompletableFuture<Object> call(Object request) {
+        return call(request, defaultTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sends a request: a String, a boxed primitive, a byte[], a ByteBuffer or null.
+     *
+     * @return A future completed with the response, or exceptionally with a {@link RemoteCallException}
+     * if the peer answered with an error, a {@link java.util.concurrent.TimeoutException} once the
+     * deadline expires, a {@link ClosedChannelException} if the connection closes first, or a
+     * {@link RejectedExecutionException} if too many calls are already in flight.
+     */
+    public CompletableFuture<Object> call(Object request, long timeout, TimeUnit unit) {
+        if (closed || !channel.isOpen()) {
+            return CompletableFuture.failedFuture(new ClosedChannelException());
+        }
+        PendingCall call = new PendingCall();
+        if (!inFlight.register(call)) {
+            return CompletableFuture.failedFuture(new RejectedExecutionException("Too many calls in flight: " + inFlight.capacity()));
+        }
+        call.future.orTimeout(timeout, unit).whenComplete((response, exc) -> {
+            if (exc != null) {
+                // Timed out or failed: free the slot, a late response will find it empty.
+                inFlight.remove(call);
+            }
+        });
+        if (closed) {
+            // The connection closed while we were registering: the drain may have missed us.
+            failCall(call, new ClosedChannelException());
+            return call.future;
+        }
+        try {
+            frameEncoder.sendCorrelated(CorrelatedFrames.REQUEST, call.id, request, call);
+        } catch (IllegalArgumentException e) {
+            failCall(call, e);
+        }
+        return call.future;
+    }
+
+    @Override
+    public void onCorrelatedFrame(byte kind, int id, byte marker, ByteBuffer payload) {
+        switch (kind) {
+            case CorrelatedFrames.REQUEST -> values.listen(marker, payload, new IncomingRequest(id));
+            case CorrelatedFrames.RESPONSE, CorrelatedFrames.ERROR_RESPONSE -> {
+                PendingCall call = inFlight.remove(id);
+                if (call == null) {
+                    // Its deadline has expired already.
+                    log.debug("Dropping response {} from {}: nobody is waiting for it.", id, channel.getRemoteAddress());
+                    return;
+                }
+                responseReceiver.call = call;
+                responseReceiver.error = kind == CorrelatedFrames.ERROR_RESPONSE;
+                try {
+                    values.listen(marker, payload, responseReceiver);
+                } finally {
+                    responseReceiver.call = null;
+                }
+            }
+            default -> log.warn("Unknown correlated frame type {} from {}.", kind, channel.getRemoteAddress());
+        }
+    }
+
+    @Override
+    public void onDisconnected() {
+        closed = true;
+        inFlight.drain(call -> call.future.completeExceptionally(new ClosedChannelException()));
+    }
+
+    private void failCall(PendingCall call, Throwable exc) {
+        if (inFlight.remove(call)) {
+            call.future.completeExceptionally(exc);
+        }
+    }
+
+    /**
+     * Closes the connection; every call still in flight fails with a {@link ClosedChannelException}.
+     */
+    @Override
+    public void close() {
+        channel.close();
+        onDisconnected();
+    }
+
+    public PipelineChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Returns the number of calls this channel can keep in flight.
+     */
+    public int getMaxInFlight() {
+        return inFlight.capacity();
+    }
+
+    /**
+     * A request waiting for its response. As a Callback, it is notified of the outcome of the request's write.
+     */
+    static final class PendingCall implements Callback {
+        // Written before the call is published in the table, read only after.
+        int id;
+        final CompletableFuture<Object> future = new CompletableFuture<>();
+
+        @Override
+        public void complete(Object o) {
+            // The request has been written: now the response is awaited.
+        }
+
+        @Override
+        public void completeExceptionally(Throwable throwable) {
+            // The request could not be written; the stage added by call() frees its slot.
+            future.completeExceptionally(throwable);
+        }
+    }
+
+    private static final class ResponseReceiver implements Callback {
+        private PendingCall call;
+        private boolean error;
+
+        @Override
+        public void complete(Object o) {
+            if (error) {
+                call.future.completeExceptionally(new RemoteCallException(String.valueOf(o)));
+            } else {
+                call.future.complete(o);
+            }
+        }
+
+        @Override
+        public void completeExceptionally(Throwable throwable) {
+            call.future.completeExceptionally(throwable);
+        }
+    }
+
+    /**
+     * A request received from the peer. As a Callback, it receives the decoded request value.
+     */
+    private final class IncomingRequest implements Callback, RpcReply {
+        private static final AtomicIntegerFieldUpdater<IncomingRequest> REPLIED =
+                AtomicIntegerFieldUpdater.newUpdater(IncomingRequest.class, "replied");
+
+        private final int id;
+        private volatile int replied;
+
+        private IncomingRequest(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public void complete(Object request) {
+            if (handler == null) {
+                fail("No handler for requests on this connection.");
+                return;
+            }
+            try {
+                handler.onRequest(request, this);
+            } catch (Exception e) {
+                log.error("Request handler failed: {}", e.getMessage(), e);
+                FailWriter.writeFile("Request handler failed: ", e);
+                fail(e.toString());
+            }
+        }
+
+        @Override
+        public void completeExceptionally(Throwable throwable) {
+            fail("Malformed request: " + throwable.getMessage());
+        }
+
+        @Override
+        public void reply(Object response) {
+            if (REPLIED.compareAndSet(this, 0, 1)) {
+                try {
+                    frameEncoder.sendCorrelated(CorrelatedFrames.RESPONSE, id, response, null);
+                } catch (IllegalArgumentException e) {
+                    replied = 0;
+                    fail(e.getMessage());
+                }
+            }
+        }
+
+        @Override
+        public void fail(String message) {
+            if (REPLIED.compareAndSet(this, 0, 1)) {
+                frameEncoder.sendCorrelated(CorrelatedFrames.ERROR_RESPONSE, id, message, null);
+            }
+        }
+    }
+}
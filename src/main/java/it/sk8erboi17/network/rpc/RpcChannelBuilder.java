@@ -0,0 +1,85 @@
+package it.sk8erboi17.network.rpc;
+
+import it.sk8erboi17.listeners.response.Callback;
+import it.sk8erboi17.network.pipeline.in.PipelineInBuilder;
+import it.sk8erboi17.network.transport.AioPipelineChannel;
+import it.sk8erboi17.network.transport.PipelineChannel;
+
+import java.nio.channels.AsynchronousSocketChannel;
+import java.util.List;
+
+/**
+ * The RpcChannelBuilder class is a builder class for constructing an RpcChannel object.
+ * Building the channel also builds the connection's inbound pipeline, so no other PipelineIn
+ * must be built for the same connection; to send plain frames as well, wrap
+ * {@link RpcChannel#getChannel()} in a {@link it.sk8erboi17.network.pipeline.out.PipelineOut}.
+ */
+public class RpcChannelBuilder {
+
+    private final PipelineChannel channel;
+    private RpcHandler handler;
+    private int maxInFlight = 4096;
+    private long defaultTimeoutMillis = 30_000;
+    private List<Callback> callbacks = List.of();
+    private int maxMessageLength = -1;
+
+    public RpcChannelBuilder(AsynchronousSocketChannel client) {
+        this(AioPipelineChannel.of(client));
+    }
+
+    public RpcChannelBuilder(PipelineChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Serves the requests sent by the peer. Without a handler every request is answered with an error.
+     */
+    public RpcChannelBuilder onRequest(RpcHandler handler) {
+        this.handler = handler;
+        return this;
+    }
+
+    /**
+     * Sets the number of calls that can wait for a response at the same time; rounded up to a power of two.
+     */
+    public RpcChannelBuilder setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    public RpcChannelBuilder setDefaultTimeoutMillis(long defaultTimeoutMillis) {
+        this.defaultTimeoutMillis = defaultTimeoutMillis;
+        return this;
+    }
+
+    /**
+     * Receives the frames that are neither requests nor responses.
+     */
+    public RpcChannelBuilder configureAggregateCallback(List<Callback> callbacks) {
+        this.callbacks = callbacks;
+        return this;
+    }
+
+    /**
+     * Sets the largest request or response accepted when it arrives split in fragments.
+     */
+    public RpcChannelBuilder setMaxMessageLength(int maxMessageLength) {
+        this.maxMessageLength = maxMessageLength;
+        return this;
+    }
+
+    /**
+     * Creates the channel and starts reading the connection.
+     */
+    public RpcChannel build() {
+        RpcChannel rpcChannel = new RpcChannel(channel, handler, maxInFlight, defaultTimeoutMillis);
+        PipelineInBuilder pipelineIn = new PipelineInBuilder(channel)
+                .configureAggregateCallback(callbacks)
+                .handleCorrelatedFrames(rpcChannel);
+        if (maxMessageLength > 0) {
+            pipelineIn.setMaxMessageLength(maxMessageLength);
+        }
+        pipelineIn.build();
+        return rpcChannel;
+    }
+}
@@ -0,0 +1,18 @@
+package it.sk8erboi17.network.rpc;
+
+/**
+ * Serves the requests received by an {@link RpcChannel}.
+ */
+@FunctionalInterface
+public interface RpcHandler {
+
+    /**
+     * Called on the thread that reads the connection, once per request. Must not block: slow work
+     * should be handed off to another thread, which answers through {@code reply} when done.
+     * An exception thrown here is sent back to the caller as an error response.
+     *
+     * @param request The decoded request: a String, a boxed primitive, a byte[] or null.
+     * @param reply The way back to the caller; exactly one of its methods must eventually be called.
+     */
+    void onRequest(Object request, RpcReply reply);
+}
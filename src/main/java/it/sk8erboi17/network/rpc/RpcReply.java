@@ -0,0 +1,19 @@
+package it.sk8erboi17.network.rpc;
+
+/**
+ * The pending answer to one request received by an {@link RpcChannel}. Safe to use from any thread;
+ * only the first call counts.
+ */
+public interface RpcReply {
+
+    /**
+     * Answers the request. The response can be any type a PipelineOut can send, or null.
+     */
+    void reply(Object response);
+
+    /**
+     * Answers the request with an error: the caller's future fails with a
+     * {@link it.sk8erboi17.exception.RemoteCallException} carrying {@code message}.
+     */
+    void fail(String message);
+}
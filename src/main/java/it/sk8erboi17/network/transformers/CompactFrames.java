@@ -0,0 +1,76 @@
+package it.sk8erboi17.network.transformers;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Wire constants of compact frames, shared by encoder and decoder.
+ * <p>
+ * A compact frame has its own start marker and a variable-length header:
+ * <pre>
+ * [START (0x02)][LENGTH (varint, 1-5 bytes)][DATA_TYPE][PAYLOAD]
+ * </pre>
+ * LENGTH counts the data type and the payload, as in standard frames, and is encoded 7 bits per byte,
+ * least significant group first, with the high bit set on every byte but the last. The payload of a
+ * string or byte-array frame is the data alone: the frame length already tells where it ends, so the
+ * 4-byte length prefix of standard frames is dropped. A 4-byte int thus costs 7 bytes instead of 10,
+ * and a short string 7 bytes less.
+ * <p>
+ * Only uncorrelated frames that fit in a single pooled buffer are sent compact; larger, fragmented,
+ * compressed and correlated frames keep the standard header. Decoders always understand both headers,
+ * even interleaved on the same connection.
+ */
+public final class CompactFrames {
+
+    public static final byte START_MARKER = 0x02;
+
+    public static final int MAX_VARINT_SIZE = 5;
+
+    /** Largest header of a compact frame: start marker and a 5-byte length. */
+    public static final int MAX_HEADER_SIZE = 1 + MAX_VARINT_SIZE;
+
+    private CompactFrames() {
+    }
+
+    /**
+     * Returns the number of bytes {@link #putVarint} writes for a non-negative value.
+     */
+    public static int varintSize(int value) {
+        if (value < (1 << 7)) {
+            return 1;
+        }
+        if (value < (1 << 14)) {
+            return 2;
+        }
+        if (value < (1 << 21)) {
+            return 3;
+        }
+        return value < (1 << 28) ? 4 : 5;
+    }
+
+    public static void putVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Reads the varint starting at {@code index}, without moving the buffer's position.
+     * The caller has checked that it ends within the buffer.
+     *
+     * @return The value, or -1 if the varint is longer than 5 bytes or does not fit a non-negative int.
+     */
+    public static int getVarint(ByteBuffer buffer, int index) {
+        int value = 0;
+        for (int i = 0; i < MAX_VARINT_SIZE; i++) {
+            byte b = buffer.get(index + i);
+            value |= (b & 0x7F) << (7 * i);
+            if (b >= 0) {
+                // The fifth byte only carries the top 4 bits of an int, and the sign bit must stay clear.
+                return i == MAX_VARINT_SIZE - 1 && (b & 0xF8) != 0 ? -1 : value;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,36 @@
+package it.sk8erboi17.network.transformers;
+
+import it.sk8erboi17.network.transformers.pool.ByteBuffersPool;
+
+/**
+ * Wire constants of compressed frames, shared by encoder and decoder.
+ * <p>
+ * A string or byte-array frame may carry its data compressed, flagged by the high bit of its data type:
+ * <pre>
+ * [START][LENGTH][DATA_TYPE | COMPRESSED][CODEC][ORIGINAL_LENGTH (4 bytes)][COMPRESSED DATA]
+ * </pre>
+ * CODEC identifies the {@link it.sk8erboi17.network.transformers.compression.CompressionCodec} that
+ * compressed the data, and ORIGINAL_LENGTH is the number of bytes it inflates to: the bytes of the
+ * array or the UTF-8 encoded string, without the 4-byte length prefix the uncompressed frame would carry.
+ * Decoders always understand compressed frames, so a sender may enable compression on its own.
+ */
+public final class CompressedFrames {
+
+    public static final byte COMPRESSED = (byte) 0x80;
+
+    /** Bytes a compressed frame adds in front of the compressed data: the codec and the original length. */
+    public static final int OVERHEAD = 1 + Integer.BYTES;
+
+    /**
+     * Largest original length of compressed data: once inflated behind its length prefix, it must fit the
+     * pool's largest size class. Larger payloads are sent uncompressed, in fragments.
+     */
+    public static final int MAX_ORIGINAL_LENGTH = ByteBuffersPool.LARGE_SIZE - Integer.BYTES;
+
+    private CompressedFrames() {
+    }
+
+    public static boolean isCompressed(byte marker) {
+        return (marker & COMPRESSED) != 0;
+    }
+}
@@ -0,0 +1,29 @@
+package it.sk8erboi17.network.transformers;
+
+/**
+ * Wire constants of request/response frames, shared by encoder and decoder.
+ * <p>
+ * A correlated frame wraps an ordinary typed payload behind a correlation id:
+ * <pre>
+ * [START][LENGTH][REQUEST | RESPONSE | ERROR_RESPONSE][ID (4 bytes)][DATA_TYPE][PAYLOAD]
+ * </pre>
+ * A response carries the id of the request it answers; an error response carries a string
+ * payload describing the failure. Correlated messages too large for one frame are fragmented
+ * like any other message, with the correlated type as their DATA_TYPE.
+ */
+public final class CorrelatedFrames {
+
+    public static final byte REQUEST = 0x0A;
+    public static final byte RESPONSE = 0x0B;
+    public static final byte ERROR_RESPONSE = 0x0C;
+
+    /** Bytes a correlated frame adds in front of the wrapped payload: the id and the wrapped data type. */
+    public static final int OVERHEAD = Integer.BYTES + 1;
+
+    private CorrelatedFrames() {
+    }
+
+    public static boolean isCorrelated(byte marker) {
+        return marker == REQUEST || marker == RESPONSE || marker == ERROR_RESPONSE;
+    }
+}
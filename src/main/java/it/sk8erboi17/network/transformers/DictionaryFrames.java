@@ -0,0 +1,35 @@
+package it.sk8erboi17.network.transformers;
+
+/**
+ * Wire constants of the per-connection string dictionary, shared by encoder and decoder.
+ * <p>
+ * A sender with the dictionary enabled sends a short string the first time as a definition, which
+ * assigns it a slot, and from then on as a reference to that slot:
+ * <pre>
+ * [START][LENGTH][DEFINE][SLOT (varint)][UTF-8 BYTES]
+ * [START][LENGTH][REFERENCE][SLOT (varint)]
+ * </pre>
+ * Both deliver the string to the receiver, exactly as a string frame would. SLOT is encoded as the
+ * length of compact frames (see {@link CompactFrames}), and the bytes of a definition span the rest
+ * of the payload.
+ * <p>
+ * Only the sender decides which string a slot holds: once its dictionary is full, it evicts its
+ * least recently sent string and defines the next one in the freed slot. The receiver just records
+ * every definition in the slot it names, and since frames arrive in the order they were sent, both
+ * tables always agree without any acknowledgement. Decoders always understand dictionary frames, and
+ * bound what a peer can make them hold with {@link #MAX_SLOTS} and {@link #MAX_STRING_LENGTH}.
+ */
+public final class DictionaryFrames {
+
+    public static final byte DEFINE = 0x0D;
+    public static final byte REFERENCE = 0x0E;
+
+    /** Largest number of slots of a dictionary. */
+    public static final int MAX_SLOTS = 16 * 1024;
+
+    /** Largest UTF-8 length of a string kept in a dictionary; longer strings are always sent in full. */
+    public static final int MAX_STRING_LENGTH = 256;
+
+    private DictionaryFrames() {
+    }
+}
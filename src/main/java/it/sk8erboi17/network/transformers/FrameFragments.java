@@ -0,0 +1,34 @@
+package it.sk8erboi17.network.transformers;
+
+import it.sk8erboi17.network.transformers.pool.ByteBuffersPool;
+
+/**
+ * Wire constants of the continuation-frame protocol, shared by encoder and decoder.
+ * <p>
+ * A message whose frame would not fit in the pool's largest size class is split into
+ * fragments, each one an ordinary frame no larger than {@link ByteBuffersPool#LARGE_SIZE}:
+ * <pre>
+ * first:        [START][LENGTH][FRAGMENT_START][DATA_TYPE][TOTAL_LENGTH (8 bytes)][CHUNK]
+ * continuation: [START][LENGTH][FRAGMENT_CONTINUATION][CHUNK]
+ * </pre>
+ * The chunks, concatenated, are the payload the message would have carried as a single frame.
+ * The message ends when TOTAL_LENGTH payload bytes have been received. The fragments of a
+ * message are written back to back, never interleaved with other frames of the same connection.
+ */
+public final class FrameFragments {
+
+    public static final byte FRAGMENT_START = 0x08;
+    public static final byte FRAGMENT_CONTINUATION = 0x09;
+
+    /** Size of [START][LENGTH]. */
+    public static final int FRAME_HEADER_SIZE = 1 + Integer.BYTES;
+    /** Largest value of the LENGTH field of a fragment: a whole fragment fits the largest pool class. */
+    public static final int MAX_FRAGMENT_LENGTH = ByteBuffersPool.LARGE_SIZE - FRAME_HEADER_SIZE;
+    /** Bytes of the first fragment that precede its chunk: marker, data type and total length. */
+    public static final int START_OVERHEAD = 1 + 1 + Long.BYTES;
+    /** Bytes of a continuation fragment that precede its chunk: the marker. */
+    public static final int CONTINUATION_OVERHEAD = 1;
+
+    private FrameFragments() {
+    }
+}
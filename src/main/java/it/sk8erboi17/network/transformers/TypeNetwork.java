@@ -1,6 +1,10 @@
 package it.sk8erboi17.network.transformers;
 
 public enum TypeNetwork {
+    // Asynchronous channels and completion handlers, run by the channel group's threads.
     AIO,
-    NIO
+    // Non-blocking channels multiplexed by a fixed set of selector event loops.
+    NIO,
+    // Blocking channels, one virtual thread per connection (platform threads before Java 21).
+    VIRTUAL
 }
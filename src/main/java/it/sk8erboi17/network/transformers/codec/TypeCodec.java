@@ -0,0 +1,32 @@
+package it.sk8erboi17.network.transformers.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes and decodes an application type, so that its instances travel as frames of their own
+ * marker instead of being serialized into byte arrays first. Register codecs with {@link TypeCodecs}.
+ * <p>
+ * Implementations must be thread-safe: a codec is shared by every connection, and {@link #encode}
+ * is called by any sending thread.
+ *
+ * @param <T> The type encoded.
+ */
+public interface TypeCodec<T> {
+
+    /**
+     * Returns the exact number of bytes {@link #encode} will write for this value.
+     */
+    int sizeOf(T value);
+
+    /**
+     * Writes the value at the position of {@code out}, which has at least {@link #sizeOf} bytes remaining:
+     * straight into the frame, with no intermediate copy.
+     */
+    void encode(T value, ByteBuffer out);
+
+    /**
+     * Reads a value from the remaining bytes of a frame payload. The buffer is only valid during the
+     * call: anything kept must be copied out of it.
+     */
+    T decode(ByteBuffer payload);
+}
@@ -0,0 +1,127 @@
+package it.sk8erboi17.network.transformers.codec;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The registry of application types sent as frames of their own (see {@link TypeCodec}).
+ * <p>
+ * Receivers find the codec of a frame by a direct lookup of its marker; senders find the codec of a
+ * value by its class, through a per-class cache that every registration invalidates. A type must be registered, under
+ * the same marker, on both ends of a connection, before the first frame of that type is sent.
+ * <p>
+ * Markers up to {@link #FIRST_APPLICATION_MARKER} are reserved to the built-in types, and the high bit
+ * flags compressed frames: application markers go from 0x10 to 0x7F.
+ */
+public final class TypeCodecs {
+
+    public static final byte FIRST_APPLICATION_MARKER = 0x10;
+    public static final byte LAST_APPLICATION_MARKER = 0x7F;
+
+    /**
+     * A registered type: the marker its frames carry, and its codec.
+     */
+    public record Registration<T>(byte marker, Class<T> type, TypeCodec<T> codec) {
+    }
+
+    // Indexed by marker. Copied on write: lookups read it without locking.
+    private static volatile Registration<?>[] byMarker = new Registration<?>[LAST_APPLICATION_MARKER + 1];
+    private static final Map<Class<?>, Registration<?>> byType = new ConcurrentHashMap<>();
+    // Incremented by every registration: a class resolved under an older version is resolved again.
+    private static volatile int version;
+
+    private record Resolved(int version, Registration<?> registration) {
+    }
+
+    private static final ClassValue<Resolved> RESOLVED = new ClassValue<>() {
+        @Override
+        protected Resolved computeValue(Class<?> type) {
+            // Read before the lookup: a registration made during it makes the result stale, never wrong for good.
+            int current = version;
+            return new Resolved(current, lookup(type));
+        }
+    };
+
+    private TypeCodecs() {
+    }
+
+    /**
+     * Registers an application type.
+     *
+     * @param marker The marker of its frames, from 0x10 to 0x7F.
+     * @param type The class of the values; subclasses are encoded with the same codec.
+     * @throws IllegalArgumentException if the marker is out of range, or the marker or the type is already registered.
+     */
+    public static synchronized <T> void register(byte marker, Class<T> type, TypeCodec<T> codec) {
+        if (marker < FIRST_APPLICATION_MARKER) {
+            throw new IllegalArgumentException("Marker 0x" + String.format("%02X", marker) + " is not an application marker (0x10-0x7F).");
+        }
+        if (type == null || codec == null) {
+            throw new IllegalArgumentException("Type and codec cannot be null.");
+        }
+        if (byMarker[marker] != null) {
+            throw new IllegalArgumentException("Marker 0x" + String.format("%02X", marker) + " is already registered for " + byMarker[marker].type().getName() + ".");
+        }
+        if (byType.containsKey(type)) {
+            throw new IllegalArgumentException("Type " + type.getName() + " is already registered.");
+        }
+        Registration<T> registration = new Registration<>(marker, type, codec);
+        Registration<?>[] updated = byMarker.clone();
+        updated[marker] = registration;
+        byType.put(type, registration);
+        byMarker = updated;
+        version++;
+    }
+
+    /**
+     * Returns the registration of a marker, or null if none.
+     */
+    public static Registration<?> forMarker(byte marker) {
+        Registration<?>[] registrations = byMarker;
+        return marker >= 0 && marker < registrations.length ? registrations[marker] : null;
+    }
+
+    /**
+     * Returns the registration of the class, or of its nearest registered superclass or interface, or null if none.
+     * Superclasses come first, nearest first. Then interfaces: those declared by the class, in declaration order,
+     * then those of its superclasses, then the interfaces they extend. Cached per class until the next registration.
+     */
+    public static Registration<?> forType(Class<?> type) {
+        Resolved resolved = RESOLVED.get(type);
+        if (resolved.version() != version) {
+            RESOLVED.remove(type);
+            resolved = RESOLVED.get(type);
+        }
+        return resolved.registration();
+    }
+
+    private static Registration<?> lookup(Class<?> type) {
+        for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+            Registration<?> registration = byType.get(current);
+            if (registration != null) {
+                return registration;
+            }
+        }
+        ArrayDeque<Class<?>> pending = new ArrayDeque<>();
+        for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+            pending.addAll(Arrays.asList(current.getInterfaces()));
+        }
+        Set<Class<?>> seen = new HashSet<>();
+        Class<?> candidate;
+        while ((candidate = pending.poll()) != null) {
+            if (!seen.add(candidate)) {
+                continue;
+            }
+            Registration<?> registration = byType.get(candidate);
+            if (registration != null) {
+                return registration;
+            }
+            pending.addAll(Arrays.asList(candidate.getInterfaces()));
+        }
+        return null;
+    }
+}
@@ -0,0 +1,42 @@
+package it.sk8erboi17.network.transformers.compression;
+
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+
+/**
+ * Compresses and decompresses the data of compressed frames (see {@link it.sk8erboi17.network.transformers.CompressedFrames}).
+ * <p>
+ * Every connection gets its own instances from {@link CompressionCodecs}, so that the usually
+ * expensive compressor state is created once and reused for every frame of the connection.
+ * {@link #compress} may be called by several sending threads at once; {@link #decompress} is only
+ * called by the thread that reads the connection.
+ */
+public interface CompressionCodec {
+
+    /**
+     * Returns the id written in the frames this codec compresses.
+     */
+    byte getId();
+
+    /**
+     * Compresses the remaining bytes of {@code src} into {@code dst}, advancing both positions.
+     *
+     * @return false if the compressed data does not fit in the remaining space of {@code dst}:
+     * the frame is then sent uncompressed, and the content of {@code dst} does not matter.
+     */
+    boolean compress(ByteBuffer src, ByteBuffer dst);
+
+    /**
+     * Decompresses {@code src} into {@code dst}, which has exactly the original length remaining.
+     *
+     * @throws DataFormatException if the data is corrupt or does not inflate to the expected length.
+     */
+    void decompress(ByteBuffer src, ByteBuffer dst) throws DataFormatException;
+
+    /**
+     * Frees the resources of this instance, called once its connection is closed or stops using it.
+     * Afterwards {@link #compress} must return false, and {@link #decompress} fail.
+     */
+    default void end() {
+    }
+}
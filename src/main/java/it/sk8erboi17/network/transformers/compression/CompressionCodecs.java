@@ -0,0 +1,52 @@
+package it.sk8erboi17.network.transformers.compression;
+
+import java.util.function.Supplier;
+
+/**
+ * The registry of compression codecs, by the id they write in compressed frames.
+ * <p>
+ * Decoders look the id of every compressed frame up here, so a codec must be registered, under the
+ * same id, on both ends of a connection. DEFLATE is always available.
+ */
+public final class CompressionCodecs {
+
+    public static final byte DEFLATE = 1;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static final Supplier<CompressionCodec>[] factories = new Supplier[256];
+
+    static {
+        register(DEFLATE, DeflateCodec::new);
+    }
+
+    private CompressionCodecs() {
+    }
+
+    /**
+     * Registers the factory of a codec. It is called once per connection that uses the codec.
+     *
+     * @param id The codec's id, as returned by {@link CompressionCodec#getId()}.
+     */
+    public static synchronized void register(byte id, Supplier<CompressionCodec> factory) {
+        if (factory == null) {
+            throw new IllegalArgumentException("Factory cannot be null.");
+        }
+        factories[id & 0xFF] = factory;
+    }
+
+    /**
+     * Creates a new instance of a registered codec.
+     *
+     * @throws IllegalArgumentException if no codec is registered with this id.
+     */
+    public static CompressionCodec create(byte id) {
+        Supplier<CompressionCodec> factory;
+        synchronized (CompressionCodecs.class) {
+            factory = factories[id & 0xFF];
+        }
+        if (factory == null) {
+            throw new IllegalArgumentException("Unknown compression codec: " + id);
+        }
+        return factory.get();
+    }
+}
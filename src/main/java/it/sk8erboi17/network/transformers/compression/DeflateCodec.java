@@ -0,0 +1,97 @@
+package it.sk8erboi17.network.transformers.compression;
+
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The JDK's DEFLATE, without the zlib wrapper. The Deflater and the Inflater are created once per
+ * connection and reset between frames; they hold native memory until {@link #end()} is called,
+ * which the encoder and decoder of the connection do once it is closed.
+ */
+public class DeflateCodec implements CompressionCodec {
+
+    private final int level;
+    private Deflater deflater;
+    private Inflater inflater;
+    private boolean ended;
+
+    public DeflateCodec() {
+        this(Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param level The compression level, from {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION}.
+     */
+    public DeflateCodec(int level) {
+        this.level = level;
+    }
+
+    @Override
+    public byte getId() {
+        return CompressionCodecs.DEFLATE;
+    }
+
+    @Override
+    public synchronized boolean compress(ByteBuffer src, ByteBuffer dst) {
+        if (ended) {
+            return false;
+        }
+        if (deflater == null) {
+            deflater = new Deflater(level, true);
+        }
+        try {
+            deflater.setInput(src);
+            deflater.finish();
+            while (!deflater.finished()) {
+                if (!dst.hasRemaining()) {
+                    return false;
+                }
+                deflater.deflate(dst);
+            }
+            return true;
+        } finally {
+            deflater.reset();
+        }
+    }
+
+    @Override
+    public synchronized void decompress(ByteBuffer src, ByteBuffer dst) throws DataFormatException {
+        if (ended) {
+            throw new DataFormatException("The codec has been ended.");
+        }
+        if (inflater == null) {
+            inflater = new Inflater(true);
+        }
+        try {
+            inflater.setInput(src);
+            while (dst.hasRemaining()) {
+                if (inflater.inflate(dst) == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+            }
+            if (dst.hasRemaining()) {
+                throw new DataFormatException("Compressed data does not inflate to the announced length.");
+            }
+        } finally {
+            inflater.reset();
+        }
+    }
+
+    /**
+     * Frees the native memory of the compressor and the decompressor.
+     */
+    @Override
+    public synchronized void end() {
+        ended = true;
+        if (deflater != null) {
+            deflater.end();
+            deflater = null;
+        }
+        if (inflater != null) {
+            inflater.end();
+            inflater = null;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package it.sk8erboi17.network.transformers.decoder;
+
+import it.sk8erboi17.exception.MaxBufferSizeExceededException;
+import it.sk8erboi17.exception.PoolExhaustedException;
+import it.sk8erboi17.network.transformers.pool.ByteBuffersPool;
+import it.sk8erboi17.network.transformers.pool.RefCountedBuffer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The single read buffer owned by one connection.
+ * <p>
+ * The buffer is leased from the pool lazily, on the first read, and then reused for the
+ * following reads instead of being acquired and released for each one. Its size adapts to the
+ * traffic: a read that fills the buffer completely promotes it to the next size class, while
+ * a run of small reads demotes it, so idle connections only pin a small buffer.
+ * <p>
+ * Every connection starts from the smallest size class: a transport that must arm a read before any
+ * data arrives (AIO, blocking) pins one such buffer per idle connection, so the pool's cap for that
+ * class, {@code maxBytesPerClass / 256} buffers (262144 with the defaults), bounds how many idle
+ * connections read from pooled memory. The NIO transport only attaches a buffer once the socket is
+ * readable, and releases it when the socket has been drained, so its idle connections pin nothing.
+ * <p>
+ * The buffer is reference counted: payload views leased to consumers keep it alive.
+ * If any view is still alive when the next read is armed, the connection simply lets go of
+ * its own reference and reads into a fresh buffer; the old one returns to the pool when the
+ * last view is released.
+ * <p>
+ * Not thread-safe: a connection has at most one read outstanding at any time.
+ */
+public class AdaptiveReadBuffer {
+
+    private static final int[] SIZES = {ByteBuffersPool.SMALL_SIZE, ByteBuffersPool.MEDIUM_SIZE, ByteBuffersPool.LARGE_SIZE};
+    private static final int INITIAL_INDEX = 0;
+    // Consecutive small reads required before shrinking, to avoid flapping between classes.
+    private static final int SHRINK_THRESHOLD = 8;
+
+    private final ByteBuffersPool pool;
+    private RefCountedBuffer lease;
+    private int sizeIndex = INITIAL_INDEX;
+    private int smallReads;
+
+    public AdaptiveReadBuffer(ByteBuffersPool pool) {
+        if (pool == null) {
+            throw new IllegalArgumentException("Pool cannot be null.");
+        }
+        this.pool = pool;
+    }
+
+    /**
+     * Returns the connection's buffer, cleared and ready for the next read,
+     * leasing one from the pool if none is currently attached.
+     */
+    public ByteBuffer attach() throws MaxBufferSizeExceededException, PoolExhaustedException {
+        if (lease != null && (lease.refCnt() > 1 || lease.buffer().capacity() != SIZES[sizeIndex])) {
+            release();
+        }
+        if (lease == null) {
+            lease = new RefCountedBuffer(pool.acquire(SIZES[sizeIndex]), pool);
+        }
+        ByteBuffer buffer = lease.buffer();
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Feeds the outcome of the last read into the sizing heuristic.
+     * The new size takes effect on the next {@link #attach()}.
+     *
+     * @param bytesRead The number of bytes the last read produced.
+     */
+    public void record(int bytesRead) {
+        if (bytesRead >= SIZES[sizeIndex] && sizeIndex < SIZES.length - 1) {
+            sizeIndex++;
+            smallReads = 0;
+        } else if (sizeIndex > 0 && bytesRead <= SIZES[sizeIndex - 1]) {
+            if (++smallReads >= SHRINK_THRESHOLD) {
+                sizeIndex--;
+                smallReads = 0;
+            }
+        } else {
+            smallReads = 0;
+        }
+    }
+
+    /**
+     * Drops the connection's reference to the buffer, which returns to the pool once no
+     * payload view holds it anymore. The next {@link #attach()} leases a new one.
+     */
+    public void release() {
+        if (lease != null) {
+            RefCountedBuffer toRelease = lease;
+            lease = null;
+            toRelease.release();
+        }
+    }
+
+    public ByteBuffer getBuffer() {
+        return lease != null ? lease.buffer() : null;
+    }
+
+    public RefCountedBuffer getLease() {
+        return lease;
+    }
+}
@@ -1,6 +1,7 @@
 package it.sk8erboi17.network.transformers.decoder;
 
 import it.sk8erboi17.exception.MaxBufferSizeExceededException;
+import it.sk8erboi17.exception.PoolExhaustedException;
 import it.sk8erboi17.network.transformers.decoder.op.FrameDecoder;
 import it.sk8erboi17.listeners.output.AsyncChannelSocket;
 import it.sk8erboi17.listeners.response.Callback;
@@ -11,16 +12,16 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.channels.AsynchronousCloseException;
 import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.CompletionHandler;
-import java.nio.channels.InterruptedByTimeoutException;
-import java.util.concurrent.TimeUnit;
 
 /**
  * Acts as a stateless I/O engine that feeds a stateful SocketFrameDecoder.
- * It runs an asynchronous read loop, acquiring a temporary buffer from a pool for each read,
- * passing it to the frame decoder, and ensuring the buffer is always released.
+ * It runs an asynchronous read loop on the single read buffer owned by the connection
+ * (see {@link AdaptiveReadBuffer}), passing every read to the frame decoder.
+ * The buffer is leased on the first read and returned to the pool when the connection ends,
+ * so an idle connection never takes more than one buffer from the pool.
  */
 public class DataDecoder {
 
@@ -30,6 +31,7 @@ public class DataDecoder {
     private final FrameDecoder frameDecoder;
     private final ByteBuffersPool pool;
     private final Callback callback;
+    private final ReadContext context;
 
     public DataDecoder(AsynchronousSocketChannel socketChannel,Callback callback, FrameDecoder frameDecoder) {
         if (socketChannel == null || frameDecoder == null) {
@@ -39,6 +41,8 @@ public class DataDecoder {
         this.frameDecoder = frameDecoder;
         this.callback = callback;
         this.pool = ByteBuffersPool.getInstance();
+        // The context holds the stateful components needed by the handler.
+        this.context = new ReadContext(socketChannel, frameDecoder, callback, pool);
     }
 
     /**
@@ -47,20 +51,51 @@ public class DataDecoder {
      * within the CompletionHandler.
      */
     public void startDecoding() {
-        // The context holds the stateful components needed by the handler.
-        ReadContext context = new ReadContext(socketChannel, frameDecoder,callback, pool);
-        armNextRead(context);
+        if (!context.park()) {
+            armNextRead(context);
+        }
+    }
+
+    /**
+     * Stops issuing reads once the current one completes; see {@link #resumeDecoding()}.
+     */
+    public void pauseDecoding() {
+        context.setPaused(true);
+    }
+
+    /**
+     * Issues reads again after {@link #pauseDecoding()}.
+     */
+    public void resumeDecoding() {
+        context.setPaused(false);
+        if (context.unpark()) {
+            armNextRead(context);
+        }
+    }
+
+    public boolean isPaused() {
+        return context.isPaused();
     }
 
     /**
-     * Acquires a new buffer and schedules the next asynchronous read.
+     * Lets a parked read loop notice that the channel has been closed, so that it releases the
+     * connection's resources: closing the channel only interrupts a pending read.
+     */
+    public void onChannelClosed() {
+        if (context.unpark()) {
+            armNextRead(context);
+        }
+    }
+
+    /**
+     * Attaches the connection's read buffer and schedules the next asynchronous read.
      */
     private static void armNextRead(ReadContext context) {
-        ByteBuffer tempReadBuffer;
+        ByteBuffer readBuffer;
         try {
-            // Acquire a fresh, temporary buffer for this specific read operation.
-            tempReadBuffer = context.getPool().acquire(ByteBuffersPool.LARGE_SIZE);
-        } catch (InterruptedException | MaxBufferSizeExceededException e) {
+            // Reuse the buffer owned by this connection; it is only leased from the pool the first time.
+            readBuffer = context.getReadBuffer().attach();
+        } catch (MaxBufferSizeExceededException | PoolExhaustedException e) {
             log.error("Failed to acquire buffer for read operation. Closing connection for {}.", getRemoteAddressSafe(context.getChannel()), e);
             FailWriter.writeFile("Failed to acquire buffer for read operation. Closing connection for " +getRemoteAddressSafe(context.getChannel()), e);
             AsyncChannelSocket.closeChannelSocketChannel(context.getChannel());
@@ -68,11 +103,10 @@ public class DataDecoder {
             return;
         }
 
-        ReadOperationContext operationContext = new ReadOperationContext(context, tempReadBuffer);
+        // No timeout here: dead peers are detected by the connection's IdleMonitor, not by every read.
         context.getChannel().read(
-                tempReadBuffer,
-                15, TimeUnit.SECONDS, // if client send no hearthbeat is dead
-                operationContext,
+                readBuffer,
+                context,
                 readCompletionHandler
         );
     }
@@ -85,72 +119,62 @@ public class DataDecoder {
         }
     }
 
-    /**
-     * Holds the context for a single read operation, including the temporary buffer.
-     */
-    private record ReadOperationContext(ReadContext parentContext, ByteBuffer buffer) {}
-
     /**
      * A SINGLE, STATIC, and REUSABLE CompletionHandler for reading. It's stateless.
      */
-    private static final CompletionHandler<Integer, ReadOperationContext> readCompletionHandler =
+    private static final CompletionHandler<Integer, ReadContext> readCompletionHandler =
             new CompletionHandler<>() {
                 @Override
-                public void completed(Integer bytesRead, ReadOperationContext opContext) {
-                    ReadContext context = opContext.parentContext;
-                    ByteBuffer buffer = opContext.buffer;
+                public void completed(Integer bytesRead, ReadContext context) {
+                    AdaptiveReadBuffer readBuffer = context.getReadBuffer();
 
-                     if (bytesRead == -1) {
+                    if (bytesRead == -1) {
                         log.info("Client {} disconnected.", getRemoteAddressSafe(context.getChannel()));
                         context.getFrameDecoder().onClientDisconnected(context.getChannel());
-                        releaseBuffer(context.getPool(), buffer);
+                        releaseBuffer(readBuffer);
                         AsyncChannelSocket.closeChannelSocketChannel(context.getChannel());
                         return;
                     }
 
-
                     try {
                         // Pass the newly read data to the stateful frame decoder.
-                        context.getFrameDecoder().decode(context.getChannel(), buffer, opContext.parentContext().getCallback());
+                        context.getFrameDecoder().decode(context.getChannel(), readBuffer.getLease(), context.getCallback());
                     } catch (Exception e) {
                         FailWriter.writeFile("Frame decoder threw an exception for client " + getRemoteAddressSafe(context.getChannel()) + ". Closing connection.", e);
-                        failed(e, opContext);
+                        failed(e, context);
                         return;
-                    } finally {
-                        releaseBuffer(context.getPool(), buffer);
                     }
 
-                    // Re-arm the loop for the next read, which will acquire a new buffer.
+                    readBuffer.record(bytesRead);
+                    if (context.park()) {
+                        // Paused: resumeDecoding() will re-arm the loop.
+                        return;
+                    }
+                    // Re-arm the loop for the next read, which reuses the same buffer.
                     armNextRead(context);
                 }
 
                 @Override
-                public void failed(Throwable exc, ReadOperationContext opContext) {
-                    ReadContext context = opContext.parentContext;
-
-                    if (exc instanceof InterruptedByTimeoutException) {
-                        log.warn("Timeout: Client {} inactive.", getRemoteAddressSafe(context.getChannel()));
-                    } else if (exc instanceof AsynchronousCloseException) {                        log.info("Connection to {} was closed during read.", getRemoteAddressSafe(context.getChannel()));
+                public void failed(Throwable exc, ReadContext context) {
+                    if (exc instanceof ClosedChannelException) {
+                        log.info("Connection to {} was closed during read.", getRemoteAddressSafe(context.getChannel()));
                         FailWriter.writeFile("Connection to "+ getRemoteAddressSafe(context.getChannel()) +" was closed during read.", exc);
                     } else {
                         log.error("Read operation failed for client {}: {}", getRemoteAddressSafe(context.getChannel()), exc.getMessage(), exc);
                         FailWriter.writeFile("Read operation failed for client "+ getRemoteAddressSafe(context.getChannel()), exc);
                     }
 
-                    releaseBuffer(context.getPool(), opContext.buffer);
+                    releaseBuffer(context.getReadBuffer());
                     context.getFrameDecoder().onClientDisconnected(context.getChannel());
                     AsyncChannelSocket.closeChannelSocketChannel(context.getChannel());
                 }
 
-                private static void releaseBuffer(ByteBuffersPool pool, ByteBuffer buffer) {
-                    if (pool != null && buffer != null) {
-                        try {
-                            pool.release(buffer);
-                        } catch (InterruptedException e) {
-                            Thread.currentThread().interrupt();
-                            log.error("Thread interrupted while releasing buffer", e);
-                            FailWriter.writeFile("Thread interrupted while releasing buffer", e);
-                        }
+                private static void releaseBuffer(AdaptiveReadBuffer readBuffer) {
+                    try {
+                        readBuffer.release();
+                    } catch (IllegalArgumentException e) {
+                        log.error("Buffer could not be returned to the pool", e);
+                        FailWriter.writeFile("Buffer could not be returned to the pool", e);
                     }
                 }
             };
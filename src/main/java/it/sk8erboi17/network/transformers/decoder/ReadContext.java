@@ -5,6 +5,7 @@ import it.sk8erboi17.listeners.response.Callback;
 import it.sk8erboi17.network.transformers.pool.ByteBuffersPool;
 
 import java.nio.channels.AsynchronousSocketChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Holds the long-lived, stateful components for the entire connection.
@@ -15,12 +16,18 @@ public class ReadContext{
     private FrameDecoder frameDecoder;
     private Callback callback;
     private ByteBuffersPool pool;
+    private final AdaptiveReadBuffer readBuffer;
+    // True while reads are suspended on request.
+    private volatile boolean paused;
+    // True while the read loop is stopped because of a pause: no read is pending.
+    private final AtomicBoolean parked = new AtomicBoolean(false);
 
     public ReadContext(AsynchronousSocketChannel channel, FrameDecoder frameDecoder, Callback callback, ByteBuffersPool pool) {
         this.channel = channel;
         this.frameDecoder = frameDecoder;
         this.pool = pool;
         this.callback = callback;
+        this.readBuffer = new AdaptiveReadBuffer(pool);
     }
 
     public FrameDecoder getFrameDecoder() {
@@ -47,6 +54,10 @@ public class ReadContext{
         this.pool = pool;
     }
 
+    public AdaptiveReadBuffer getReadBuffer() {
+        return readBuffer;
+    }
+
     public Callback getCallback() {
         return callback;
     }
@@ -54,4 +65,34 @@ public class ReadContext{
     public void setCallback(Callback callback) {
         this.callback = callback;
     }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    public void setPaused(boolean paused) {
+        this.paused = paused;
+    }
+
+    /**
+     * Stops the read loop if reads are paused.
+     *
+     * @return true if the loop is now parked; false if it must go on, because reads are not
+     * paused or were resumed concurrently.
+     */
+    public boolean park() {
+        if (!paused) {
+            return false;
+        }
+        parked.set(true);
+        // A resume may have run before the loop was marked parked, and missed it.
+        return paused || !parked.compareAndSet(true, false);
+    }
+
+    /**
+     * @return true if the read loop was parked, in which case the caller must restart it.
+     */
+    public boolean unpark() {
+        return parked.compareAndSet(true, false);
+    }
 }
\ No newline at end of file
@@ -1,127 +1,597 @@
 package it.sk8erboi17.network.transformers.decoder.op;
 
-import it.sk8erboi17.exception.MaxFrameLengthExceededException;
 import it.sk8erboi17.listeners.input.operations.ListenData;
 import it.sk8erboi17.listeners.response.Callback;
+import it.sk8erboi17.listeners.response.StreamConsumer;
+import it.sk8erboi17.exception.ProtocolIncompleteException;
+import it.sk8erboi17.exception.ProtocolViolationException;
+import it.sk8erboi17.network.DispatchingCallback;
+import it.sk8erboi17.network.transformers.CompactFrames;
+import it.sk8erboi17.network.transformers.CompressedFrames;
+import it.sk8erboi17.network.transformers.CorrelatedFrames;
+import it.sk8erboi17.network.transformers.FrameFragments;
+import it.sk8erboi17.network.transformers.compression.CompressionCodec;
+import it.sk8erboi17.network.transformers.compression.CompressionCodecs;
+import it.sk8erboi17.network.transformers.encoder.AbstractDataEncoder;
+import it.sk8erboi17.network.transformers.pool.ByteBuffersPool;
+import it.sk8erboi17.network.transformers.pool.RefCountedBuffer;
+import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channel;
 import java.nio.channels.AsynchronousSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.DataFormatException;
 
 /**
  * Optimized and Secure SocketFrameDecoder for high performance.
  * Responsible for framing messages based on a length-prefixed protocol.
  * The protocol is [START_MARKER (1 byte)][LENGTH (4 bytes)][DATA_TYPE (1 byte)][PAYLOAD (N bytes)]
+ * <p>
+ * One decoder belongs to exactly one connection. Complete frames are parsed in place,
+ * straight out of the buffer that was just read: payloads are handed to {@link ListenData}
+ * as slices of that buffer, without any intermediate copy. Only a frame that is still
+ * incomplete at the end of a read is spilled into a small accumulation buffer, and only
+ * until the bytes that complete it arrive.
+ * <p>
+ * Fragmented messages (see {@link FrameFragments}) are reassembled into a buffer sized from
+ * the total length announced by their first fragment, bounded by {@code maxMessageLength},
+ * and delivered as if they had arrived in a single frame, unless a {@link StreamConsumer} is
+ * configured: then their chunks are handed to it straight from the read buffer as they arrive,
+ * and nothing is reassembled. Compressed frames (see {@link CompressedFrames}) are inflated into a
+ * pooled buffer, with the connection's own instance of their codec, and delivered as if they had
+ * arrived uncompressed. Compact frames (see {@link CompactFrames}), with their varint length, are
+ * parsed in place just like standard ones. Since no fragment is larger than
+ * the pool's largest size class, frames up to that size are always accepted, whatever the
+ * configured {@code maxFrameLength}.
  */
 public class FrameDecoder {
 
     private static final Logger LOGGER = Logger.getLogger(FrameDecoder.class.getName());
 
     private static final byte START_MARKER = 0x01;
+    private static final int HEADER_SIZE = 1 + Integer.BYTES;
 
     final int MAX_GARBAGE_TOLERANCE = 8192;
 
-    private final ConcurrentHashMap<Channel, ByteBuffer> clientBuffers = new ConcurrentHashMap<>();
+    public static final int DEFAULT_MAX_MESSAGE_LENGTH = 16 * 1024 * 1024;
+
     private final int initialBufferSize;
     private final int maxFrameLength;
+    private final int maxMessageLength;
     private final ListenData listenDataProcessor;
+    private final StreamConsumer streamConsumer;
+
+    // Holds the trailing partial frame of the previous read, starting at its START_MARKER.
+    // Allocated lazily: connections that only ever receive whole frames never need it.
+    private ByteBuffer accumulationBuffer;
+
+    // Reassembly state of the fragmented message in progress, if any.
+    private ByteBuffer messageBuffer;
+    private byte messageMarker;
+
+    // State of the message being streamed to the StreamConsumer, if any.
+    private boolean streaming;
+    private long streamRemaining;
+    private boolean streamFailed;
+
+    // Decompressors of this connection, by codec id; allocated with the first compressed frame.
+    private CompressionCodec[] decompressors;
+
+    // System.nanoTime() of the last read handed to the decoder, for idle detection.
+    private volatile long lastReadNanos = System.nanoTime();
+    // Set once the connection stops being read; listeners run at that point, see addDisconnectListener.
+    private final Set<Runnable> disconnectListeners = ConcurrentHashMap.newKeySet();
+    private volatile boolean disconnected;
 
     public FrameDecoder(int initialBufferSize, int maxFrameLength, ListenData listenDataProcessor) {
-        if (initialBufferSize <= 0 || maxFrameLength <= 0) {
+        this(initialBufferSize, maxFrameLength, Math.max(maxFrameLength, DEFAULT_MAX_MESSAGE_LENGTH), listenDataProcessor);
+    }
+
+    /**
+     * @param initialBufferSize Initial size of the buffer holding a frame split across reads.
+     * @param maxFrameLength The maximum allowed length of a single frame.
+     * @param maxMessageLength The maximum allowed payload length of a fragmented message.
+     * @param listenDataProcessor The processor that receives the decoded payloads.
+     */
+    public FrameDecoder(int initialBufferSize, int maxFrameLength, int maxMessageLength, ListenData listenDataProcessor) {
+        this(initialBufferSize, maxFrameLength, maxMessageLength, listenDataProcessor, null);
+    }
+
+    /**
+     * @param initialBufferSize Initial size of the buffer holding a frame split across reads.
+     * @param maxFrameLength The maximum allowed length of a single frame.
+     * @param maxMessageLength The maximum allowed payload length of a reassembled fragmented message.
+     * @param listenDataProcessor The processor that receives the decoded payloads.
+     * @param streamConsumer The consumer fragmented messages are streamed to, or null to reassemble them.
+     */
+    public FrameDecoder(int initialBufferSize, int maxFrameLength, int maxMessageLength, ListenData listenDataProcessor, StreamConsumer streamConsumer) {
+        if (initialBufferSize <= 0 || maxFrameLength <= 0 || maxMessageLength <= 0) {
             throw new IllegalArgumentException("Buffer sizes must be positive.");
         }
         if (listenDataProcessor == null) {
             throw new IllegalArgumentException("listenDataProcessor cannot be null.");
         }
         this.initialBufferSize = initialBufferSize;
-        this.maxFrameLength = maxFrameLength;
+        this.maxFrameLength = Math.max(maxFrameLength, FrameFragments.MAX_FRAGMENT_LENGTH);
+        this.maxMessageLength = maxMessageLength;
         this.listenDataProcessor = listenDataProcessor;
+        this.streamConsumer = streamConsumer;
     }
 
+    /**
+     * Decodes every complete frame contained in the bytes just read.
+     * On return the read buffer has been fully consumed and can be reused for the next read.
+     *
+     * @param clientChannel The channel the bytes were read from, used for error handling.
+     * @param newlyReadBuffer The read buffer, in write mode (as left by the read).
+     * @param callback The callback that receives the decoded messages.
+     */
     public void decode(Channel clientChannel, ByteBuffer newlyReadBuffer, Callback callback) {
-        ByteBuffer clientBuffer = clientBuffers.computeIfAbsent(clientChannel, k -> ByteBuffer.allocate(initialBufferSize));
+        decode(clientChannel, newlyReadBuffer, null, callback);
+    }
 
+    /**
+     * Same as {@link #decode(Channel, ByteBuffer, Callback)}, for a read buffer that can be
+     * leased to consumers: payload views handed out by ListenData keep {@code readLease} alive.
+     */
+    public void decode(Channel clientChannel, RefCountedBuffer readLease, Callback callback) {
+        decode(clientChannel, readLease.buffer(), readLease, callback);
+    }
+
+    private void decode(Channel clientChannel, ByteBuffer newlyReadBuffer, RefCountedBuffer readLease, Callback callback) {
+        lastReadNanos = System.nanoTime();
         newlyReadBuffer.flip();
-        ByteBuffer combinedBuffer = appendToClientBuffer(clientBuffer, newlyReadBuffer);
-        clientBuffers.put(clientChannel, combinedBuffer);
 
-        combinedBuffer.flip();
-        processFrames(clientChannel, combinedBuffer, callback);
-        combinedBuffer.compact();
+        try {
+            if (accumulationBuffer != null && accumulationBuffer.position() > 0) {
+                if (!completePendingFrame(clientChannel, newlyReadBuffer, callback)) {
+                    return;
+                }
+            }
+
+            processFrames(clientChannel, newlyReadBuffer, readLease, callback);
+
+            if (newlyReadBuffer.hasRemaining()) {
+                spillPartialFrame(newlyReadBuffer);
+            }
+        } finally {
+            if (callback instanceof DispatchingCallback dispatching) {
+                // Everything decoded from this read goes to the worker as one batch.
+                dispatching.flush();
+            }
+        }
     }
 
-    private void processFrames(Channel channel, ByteBuffer buffer, Callback callback) {
-        while (true) {
-            if (!findAndSkipToStartMarker(buffer, MAX_GARBAGE_TOLERANCE)) {
+    /**
+     * Parses and delivers frames in place. Returns when the buffer is exhausted or when
+     * only a partial frame is left, in which case the position is left on its START_MARKER.
+     */
+    private void processFrames(Channel channel, ByteBuffer buffer, RefCountedBuffer owner, Callback callback) {
+        while (buffer.hasRemaining()) {
+            if (!findAndSkipToStartMarker(buffer, channel)) {
                 return;
             }
 
-            buffer.mark();
+            int frameStart = buffer.position() - 1;
 
-            if (buffer.remaining() < Integer.BYTES) {
-                buffer.reset();
+            int headerSize = headerSize(buffer, frameStart, buffer.limit());
+            if (headerSize == 0) {
+                buffer.position(frameStart);
                 return;
             }
 
-            int frameLength = buffer.getInt();
+            int frameLength = frameLength(buffer, frameStart);
 
-            if (frameLength <= 0 || frameLength > maxFrameLength) {
-                logError("Invalid frame length received: " + frameLength + ". Max allowed: " + maxFrameLength + ". Closing connection.", channel);
-                try {
-                    channel.close();
-                } catch (IOException e) {
-                    logError("Error closing channel after invalid frame length: " + e.getMessage(), channel);
-                }
-                buffer.clear();
+            if (!isValidFrameLength(frameLength, channel)) {
+                buffer.position(buffer.limit());
                 return;
             }
 
+            buffer.position(frameStart + headerSize);
             if (buffer.remaining() < frameLength) {
-                buffer.reset();
+                buffer.position(frameStart);
+                return;
+            }
+
+            boolean compact = buffer.get(frameStart) == CompactFrames.START_MARKER;
+            if (!deliverFrame(channel, buffer, owner, frameLength, compact, callback)) {
+                buffer.position(buffer.limit());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Delivers the frame whose type byte is at the buffer's position and advances past it.
+     *
+     * @return false if the frame violated the protocol and the channel has been closed.
+     */
+    private boolean deliverFrame(Channel channel, ByteBuffer buffer, RefCountedBuffer owner, int frameLength, boolean compact, Callback callback) {
+        byte dataTypeMarker = buffer.get();
+        int actualPayloadSize = frameLength - 1;
+        ByteBuffer payloadBuffer = buffer.slice(buffer.position(), actualPayloadSize);
+        buffer.position(buffer.position() + actualPayloadSize);
+
+        if (dataTypeMarker == FrameFragments.FRAGMENT_START || dataTypeMarker == FrameFragments.FRAGMENT_CONTINUATION) {
+            return appendFragment(channel, dataTypeMarker, payloadBuffer, callback);
+        }
+        if (messageBuffer != null || streaming) {
+            return protocolViolation("Frame received in the middle of a fragmented message.", channel);
+        }
+        dispatch(channel, dataTypeMarker, payloadBuffer, owner, !compact, callback);
+        return true;
+    }
+
+    /**
+     * @param lengthPrefixed false for compact frames, whose string and byte-array data has no length prefix.
+     */
+    private void dispatch(Channel channel, byte dataTypeMarker, ByteBuffer payloadBuffer, RefCountedBuffer owner, boolean lengthPrefixed, Callback callback) {
+        try {
+            if (CompressedFrames.isCompressed(dataTypeMarker)) {
+                dispatchCompressed(dataTypeMarker, payloadBuffer, callback);
                 return;
             }
+            listenDataProcessor.listen(dataTypeMarker, payloadBuffer, callback, owner, lengthPrefixed);
+        } catch (ProtocolViolationException | ProtocolIncompleteException | DataFormatException e) {
+            // The frame boundaries are intact: only this message is lost, the connection stays usable.
+            logError("Malformed compressed frame", e, channel);
+            if (callback != null) {
+                callback.completeExceptionally(e);
+            }
+        } catch (Exception e) {
+            logError("Error processing decoded frame", e, channel);
+        }
+    }
+
+    /**
+     * Inflates a compressed frame behind its 4-byte length prefix, in a pooled buffer, and delivers it
+     * as the uncompressed frame. The buffer is never leased: it returns to the pool right after.
+     */
+    private void dispatchCompressed(byte dataTypeMarker, ByteBuffer payload, Callback callback) throws Exception {
+        byte marker = (byte) (dataTypeMarker & ~CompressedFrames.COMPRESSED);
+        if (marker != 0x01 && marker != 0x06) {
+            throw new ProtocolViolationException("Protocol violation: compressed frame of data type " + marker + ".");
+        }
+        if (payload.remaining() < CompressedFrames.OVERHEAD) {
+            throw new ProtocolIncompleteException("Compressed frame of " + payload.remaining() + " bytes, shorter than its " + CompressedFrames.OVERHEAD + "-byte header.");
+        }
+        byte codecId = payload.get();
+        int originalLength = payload.getInt();
+        if (originalLength < 0 || originalLength > CompressedFrames.MAX_ORIGINAL_LENGTH) {
+            throw new ProtocolViolationException("Protocol violation: invalid original length of compressed frame: " + originalLength + ".");
+        }
+
+        ByteBuffersPool pool = ByteBuffersPool.getInstance();
+        ByteBuffer inflated = pool.acquire(Integer.BYTES + originalLength);
+        try {
+            inflated.putInt(originalLength);
+            decompressor(codecId).decompress(payload, inflated.slice(Integer.BYTES, originalLength));
+            inflated.limit(Integer.BYTES + originalLength).position(0);
+            listenDataProcessor.listen(marker, inflated, callback, null);
+        } finally {
+            AbstractDataEncoder.releaseBuffer(pool, inflated);
+        }
+    }
+
+    private void endDecompressors() {
+        CompressionCodec[] codecs = decompressors;
+        decompressors = null;
+        if (codecs == null) {
+            return;
+        }
+        for (CompressionCodec codec : codecs) {
+            if (codec != null) {
+                try {
+                    codec.end();
+                } catch (Exception e) {
+                    LOGGER.log(Level.WARNING, "Failed to end a decompressor", e);
+                }
+            }
+        }
+    }
+
+    private CompressionCodec decompressor(byte codecId) throws DataFormatException {
+        if (decompressors == null) {
+            decompressors = new CompressionCodec[256];
+        }
+        CompressionCodec codec = decompressors[codecId & 0xFF];
+        if (codec == null) {
+            try {
+                codec = CompressionCodecs.create(codecId);
+            } catch (IllegalArgumentException e) {
+                throw new DataFormatException(e.getMessage());
+            }
+            decompressors[codecId & 0xFF] = codec;
+        }
+        return codec;
+    }
+
+    /**
+     * Copies a fragment's chunk into the message being reassembled, and delivers the
+     * message once its last byte has arrived.
+     *
+     * @return false if the fragment violated the protocol and the channel has been closed.
+     */
+    private boolean appendFragment(Channel channel, byte fragmentMarker, ByteBuffer fragment, Callback callback) {
+        if (fragmentMarker == FrameFragments.FRAGMENT_START) {
+            if (messageBuffer != null || streaming) {
+                return protocolViolation("Fragmented message started before the previous one ended.", channel);
+            }
+            if (fragment.remaining() < FrameFragments.START_OVERHEAD - 1) {
+                return protocolViolation("Truncated first fragment.", channel);
+            }
+            byte dataTypeMarker = fragment.get();
+            long totalLength = fragment.getLong();
+            // Correlated messages are always reassembled: their handler needs the whole value.
+            if (streamConsumer != null && !CorrelatedFrames.isCorrelated(dataTypeMarker)) {
+                return startStream(channel, dataTypeMarker, totalLength, fragment);
+            }
+            if (totalLength <= 0 || totalLength > maxMessageLength) {
+                return protocolViolation("Invalid fragmented message length: " + totalLength + ". Max allowed: " + maxMessageLength + ".", channel);
+            }
+            messageMarker = dataTypeMarker;
+            messageBuffer = ByteBuffer.allocate((int) totalLength);
+        } else if (streaming) {
+            return streamChunk(channel, fragment);
+        } else if (messageBuffer == null) {
+            return protocolViolation("Continuation fragment without a first fragment.", channel);
+        }
+
+        if (fragment.remaining() > messageBuffer.remaining()) {
+            return protocolViolation("Fragments exceed the announced message length.", channel);
+        }
+        messageBuffer.put(fragment);
+        if (messageBuffer.hasRemaining()) {
+            return true;
+        }
+
+        ByteBuffer message = messageBuffer.flip();
+        messageBuffer = null;
+        RefCountedBuffer owner = listenDataProcessor.isLeasingPayloads() ? new RefCountedBuffer(message, null) : null;
+        dispatch(channel, messageMarker, message, owner, true, callback);
+        if (owner != null) {
+            owner.release();
+        }
+        return true;
+    }
+
+    /**
+     * Starts streaming a fragmented message, stripping the length prefix of byte-array and string payloads.
+     */
+    private boolean startStream(Channel channel, byte dataTypeMarker, long totalLength, ByteBuffer fragment) {
+        long length = totalLength;
+        if (dataTypeMarker == 0x01 || dataTypeMarker == 0x06) {
+            if (fragment.remaining() < Integer.BYTES) {
+                return protocolViolation("Truncated first fragment.", channel);
+            }
+            length = totalLength - Integer.BYTES;
+            if (fragment.getInt() != length) {
+                return protocolViolation("Stated payload length does not match the fragmented message length.", channel);
+            }
+        }
+        if (length < 0) {
+            return protocolViolation("Invalid fragmented message length: " + totalLength + ".", channel);
+        }
 
+        streaming = true;
+        streamRemaining = length;
+        streamFailed = false;
+        try {
+            streamConsumer.onStart(length, dataTypeMarker);
+        } catch (Exception e) {
+            failStream("Stream consumer failed to start a message", e, channel);
+        }
+        return streamChunk(channel, fragment);
+    }
+
+    private boolean streamChunk(Channel channel, ByteBuffer chunk) {
+        if (chunk.remaining() > streamRemaining) {
+            return protocolViolation("Fragments exceed the announced message length.", channel);
+        }
+        streamRemaining -= chunk.remaining();
+        if (!streamFailed && chunk.hasRemaining()) {
             try {
-                byte dataTypeMarker = buffer.get();
-                int actualPayloadSize = frameLength - 1;
-                ByteBuffer payloadBuffer = buffer.slice();
-                payloadBuffer.limit(actualPayloadSize);
-                listenDataProcessor.listen(dataTypeMarker, payloadBuffer, callback);
-                buffer.position(buffer.position() + actualPayloadSize);
+                streamConsumer.onChunk(chunk);
             } catch (Exception e) {
-                logError("Error processing decoded frame", e, channel);
+                // Keep consuming the remaining fragments, so the connection stays usable.
+                failStream("Stream consumer failed to process a chunk", e, channel);
+            }
+        }
+        if (streamRemaining == 0) {
+            streaming = false;
+            if (!streamFailed) {
+                try {
+                    streamConsumer.onEnd();
+                } catch (Exception e) {
+                    logError("Stream consumer failed to end a message", e, channel);
+                }
             }
         }
+        return true;
     }
 
-    private boolean findAndSkipToStartMarker(ByteBuffer buffer, int scanLimit) {
-        int bytesScanned = 0;
-        while (buffer.hasRemaining() && bytesScanned < scanLimit) {
-            if (buffer.get() == START_MARKER) {
-                return true;
+    private void failStream(String message, Exception e, Channel channel) {
+        logError(message, e, channel);
+        streamFailed = true;
+        abortStream(e);
+    }
+
+    private void abortStream(Throwable cause) {
+        try {
+            streamConsumer.onAbort(cause);
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Stream consumer failed to abort a message", e);
+        }
+    }
+
+    private boolean protocolViolation(String message, Channel channel) {
+        logError(message + " Closing connection.", channel);
+        messageBuffer = null;
+        if (streaming) {
+            streaming = false;
+            if (!streamFailed) {
+                abortStream(new IOException(message));
             }
-            bytesScanned++;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logError("Error closing channel after protocol violation: " + e.getMessage(), channel);
         }
         return false;
     }
 
-    private ByteBuffer appendToClientBuffer(ByteBuffer clientBuffer, ByteBuffer newBytes) {
-        if (clientBuffer.remaining() < newBytes.remaining()) {
-            int newSize = Math.max(clientBuffer.capacity() * 2, clientBuffer.position() + newBytes.remaining());
-            if (newSize > maxFrameLength) {
-                throw new MaxFrameLengthExceededException("Buffer cannot grow beyond maxFrameLength");
+    /**
+     * Feeds the new bytes into the frame left incomplete by the previous read.
+     *
+     * @return true if the pending frame was completed and delivered, false if the
+     * new bytes were all consumed and the frame is still incomplete.
+     */
+    private boolean completePendingFrame(Channel channel, ByteBuffer input, Callback callback) {
+        // Byte by byte: a compact frame may end before a standard header would.
+        int headerSize;
+        while ((headerSize = headerSize(accumulationBuffer, 0, accumulationBuffer.position())) == 0) {
+            if (!input.hasRemaining()) {
+                return false;
             }
+            accumulationBuffer.put(input.get());
+        }
+
+        int frameLength = frameLength(accumulationBuffer, 0);
+        if (!isValidFrameLength(frameLength, channel)) {
+            accumulationBuffer = null;
+            input.position(input.limit());
+            return false;
+        }
+
+        int frameSize = headerSize + frameLength;
+        ensureAccumulationCapacity(frameSize);
+        transfer(input, accumulationBuffer, frameSize - accumulationBuffer.position());
+        if (accumulationBuffer.position() < frameSize) {
+            return false;
+        }
+
+        accumulationBuffer.flip();
+        accumulationBuffer.position(headerSize);
+        // Payload views may outlive this call: lease the accumulation buffer too, and abandon it if still leased.
+        RefCountedBuffer owner = listenDataProcessor.isLeasingPayloads() ? new RefCountedBuffer(accumulationBuffer, null) : null;
+        boolean compact = accumulationBuffer.get(0) == CompactFrames.START_MARKER;
+        if (!deliverFrame(channel, accumulationBuffer, owner, frameLength, compact, callback)) {
+            accumulationBuffer = null;
+            input.position(input.limit());
+            return false;
+        }
+        if (owner != null && !owner.release()) {
+            accumulationBuffer = null;
+        } else {
+            resetAccumulationBuffer();
+        }
+        return true;
+    }
+
+    /**
+     * Copies the trailing partial frame (starting at its START_MARKER) into the accumulation buffer.
+     */
+    private void spillPartialFrame(ByteBuffer input) {
+        int start = input.position();
+        int headerSize = headerSize(input, start, input.limit());
+        // Once the header is complete its length has already been validated by processFrames: size the buffer for the whole frame.
+        int required = headerSize == 0 ? CompactFrames.MAX_HEADER_SIZE : headerSize + frameLength(input, start);
+        ensureAccumulationCapacity(Math.max(required, input.remaining()));
+        accumulationBuffer.put(input);
+    }
+
+    private void ensureAccumulationCapacity(int required) {
+        if (accumulationBuffer == null) {
+            accumulationBuffer = ByteBuffer.allocate(Math.max(initialBufferSize, required));
+        } else if (accumulationBuffer.capacity() < required) {
+            int newSize = Math.min(Math.max(accumulationBuffer.capacity() * 2, required), CompactFrames.MAX_HEADER_SIZE + maxFrameLength);
             ByteBuffer newBuffer = ByteBuffer.allocate(newSize);
-            clientBuffer.flip();
-            newBuffer.put(clientBuffer);
-            clientBuffer = newBuffer;
+            accumulationBuffer.flip();
+            newBuffer.put(accumulationBuffer);
+            accumulationBuffer = newBuffer;
+        }
+    }
+
+    private void resetAccumulationBuffer() {
+        if (accumulationBuffer.capacity() > initialBufferSize) {
+            // Do not pin the memory of an unusually large frame for the rest of the connection.
+            accumulationBuffer = null;
+        } else {
+            accumulationBuffer.clear();
+        }
+    }
+
+    private static void transfer(ByteBuffer src, ByteBuffer dst, int max) {
+        int length = Math.min(max, src.remaining());
+        dst.put(src.slice(src.position(), length));
+        src.position(src.position() + length);
+    }
+
+    /**
+     * Returns the size of the header of the frame whose start marker is at {@code start}, standard or
+     * compact, or 0 if the bytes before {@code end} do not complete it yet.
+     * An overlong varint counts as complete: {@link #frameLength} then rejects it.
+     */
+    private static int headerSize(ByteBuffer buffer, int start, int end) {
+        if (buffer.get(start) == START_MARKER) {
+            return end - start >= HEADER_SIZE ? HEADER_SIZE : 0;
+        }
+        int varintEnd = Math.min(end, start + CompactFrames.MAX_HEADER_SIZE);
+        for (int i = start + 1; i < varintEnd; i++) {
+            if (buffer.get(i) >= 0) {
+                return i + 1 - start;
+            }
+        }
+        return end - start >= CompactFrames.MAX_HEADER_SIZE ? CompactFrames.MAX_HEADER_SIZE : 0;
+    }
+
+    /**
+     * Reads the length of the frame whose complete header starts at {@code start}; negative if malformed.
+     */
+    private static int frameLength(ByteBuffer buffer, int start) {
+        if (buffer.get(start) == START_MARKER) {
+            return buffer.getInt(start + 1);
+        }
+        return CompactFrames.getVarint(buffer, start + 1);
+    }
+
+    private boolean isValidFrameLength(int frameLength, Channel channel) {
+        if (frameLength > 0 && frameLength <= maxFrameLength) {
+            return true;
+        }
+        logError("Invalid frame length received: " + frameLength + ". Max allowed: " + maxFrameLength + ". Closing connection.", channel);
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logError("Error closing channel after invalid frame length: " + e.getMessage(), channel);
+        }
+        return false;
+    }
+
+    /**
+     * Skips bytes up to and including the next start marker, standard or compact.
+     *
+     * @return true if a marker was found, false if the buffer was exhausted.
+     */
+    private boolean findAndSkipToStartMarker(ByteBuffer buffer, Channel channel) {
+        int bytesScanned = 0;
+        while (buffer.hasRemaining()) {
+            byte b = buffer.get();
+            if (b == START_MARKER || b == CompactFrames.START_MARKER) {
+                if (bytesScanned > MAX_GARBAGE_TOLERANCE) {
+                    logError("Skipped " + bytesScanned + " bytes of garbage before a frame.", channel);
+                }
+                return true;
+            }
+            bytesScanned++;
         }
-        clientBuffer.put(newBytes);
-        return clientBuffer;
+        return false;
     }
 
     private void logError(String message, Channel channel) {
@@ -157,8 +627,54 @@ public class FrameDecoder {
         }
     }
 
+    /**
+     * Returns the {@link System#nanoTime()} of the last bytes received, or of the creation of the decoder.
+     */
+    public long getLastReadNanos() {
+        return lastReadNanos;
+    }
+
+    /**
+     * Adds an action to run, once, on the thread that reads the connection when it stops being read.
+     *
+     * @return false if the connection has already been disconnected, in which case the action is not run.
+     */
+    public boolean addDisconnectListener(Runnable listener) {
+        disconnectListeners.add(listener);
+        // Either the disconnection sees the listener, or we see the disconnection.
+        return !(disconnected && disconnectListeners.remove(listener));
+    }
+
+    public void removeDisconnectListener(Runnable listener) {
+        disconnectListeners.remove(listener);
+    }
+
     public void onClientDisconnected(Channel clientChannel) {
-        clientBuffers.remove(clientChannel);
+        accumulationBuffer = null;
+        messageBuffer = null;
+        if (streaming) {
+            streaming = false;
+            if (!streamFailed) {
+                abortStream(new EOFException("Connection closed in the middle of a streamed message."));
+            }
+        }
+        try {
+            listenDataProcessor.onDisconnected();
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Correlated frame handler failed on disconnection", e);
+        }
+        endDecompressors();
+        disconnected = true;
+        for (Runnable listener : disconnectListeners) {
+            // Whoever removes a listener runs it: never twice, even if the disconnection is reported twice.
+            if (disconnectListeners.remove(listener)) {
+                try {
+                    listener.run();
+                } catch (Exception e) {
+                    LOGGER.log(Level.WARNING, "Disconnect listener failed", e);
+                }
+            }
+        }
         LOGGER.info("Removed buffer for disconnected client.");
     }
 }
@@ -0,0 +1,545 @@
+package it.sk8erboi17.network.transformers.encoder;
+
+import it.sk8erboi17.listeners.response.Callback;
+import it.sk8erboi17.listeners.response.WritabilityListener;
+import it.sk8erboi17.network.transformers.pool.ByteBuffersPool;
+import it.sk8erboi17.network.transformers.pool.RefCountedBuffer;
+import it.sk8erboi17.utils.FailWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The outbound queue of a connection, independent of the transport that performs the writes.
+ * This class is a network-level component, focused solely on I/O.
+ * <p>
+ * Frames are never written directly by the caller: they are appended to a lock-free
+ * multi-producer queue owned by this encoder. Only one write is in flight at any time,
+ * so concurrent senders can no longer trigger a {@link java.nio.channels.WritePendingException}.
+ * While a write is pending, new frames simply queue up; when it completes, everything
+ * that accumulated in the meantime is flushed with a single gathering write.
+ * <p>
+ * A queued write may span several buffers (for instance a pooled header followed by
+ * a caller-owned payload): they always go out back to back, and the callback fires once
+ * the last one has been fully written.
+ * <p>
+ * An encoder owns the outbound side of its channel: create exactly one per channel.
+ * <p>
+ * The queue itself is unbounded. Producers bound it through the watermarks: once the queued bytes
+ * exceed the high watermark the encoder is no longer {@link #isWritable() writable}, and becomes
+ * writable again only when they drop below the low watermark; each transition is signalled to the
+ * {@link WritabilityListener}, if any.
+ * <p>
+ * Subclasses only perform the writes (see {@link #write(ByteBuffer[], int)}): {@link DataEncoder}
+ * with asynchronous channels, the NIO and blocking transports with plain socket channels.
+ */
+public abstract class AbstractDataEncoder implements FrameSink {
+    private static final Logger log = LoggerFactory.getLogger(AbstractDataEncoder.class);
+
+    // Upper bound of buffers handed to a single gathering write (well below IOV_MAX).
+    private static final int MAX_GATHER = 64;
+
+    public static final long DEFAULT_LOW_WATERMARK = 512 * 1024;
+    public static final long DEFAULT_HIGH_WATERMARK = 1024 * 1024;
+
+    private static final AtomicIntegerFieldUpdater<AbstractDataEncoder> UNWRITABLE =
+            AtomicIntegerFieldUpdater.newUpdater(AbstractDataEncoder.class, "unwritable");
+
+    private final ByteBuffersPool pool;
+
+    // MPSC queue: any thread may offer, only the current writer polls.
+    private final Queue<WriteContext> outboundQueue = new ConcurrentLinkedQueue<>();
+    // True while a thread owns the write loop (a write is in flight or being prepared).
+    private final AtomicBoolean writing = new AtomicBoolean(false);
+    private volatile boolean closed;
+    // Bytes accepted by send() and neither written nor failed yet.
+    private final AtomicLong pendingBytes = new AtomicLong();
+    // System.nanoTime() of the last completed write, for idle detection.
+    private volatile long lastWriteNanos = System.nanoTime();
+    private volatile long lowWatermark = DEFAULT_LOW_WATERMARK;
+    private volatile long highWatermark = DEFAULT_HIGH_WATERMARK;
+    // 1 from the moment the pending bytes exceed the high watermark until they drop below the low one.
+    private volatile int unwritable;
+    private volatile WritabilityListener writabilityListener;
+    // Run once when the transport reports the channel closed; see addCloseListener.
+    private final Set<Runnable> closeListeners = ConcurrentHashMap.newKeySet();
+    private volatile boolean channelClosed;
+
+    // Batch state, only touched by the thread that owns 'writing'.
+    private final ByteBuffer[] gatherBuffers = new ByteBuffer[MAX_GATHER];
+    // Writes taken off the queue and not completed yet; only the first one can be partially written.
+    private final ArrayDeque<WriteContext> inFlight = new ArrayDeque<>();
+    // Index of the first buffer of inFlight.peekFirst() that still has bytes to write.
+    private int headIndex;
+    private int gatherCount;
+    // Bytes of the gathered buffers when the current write started.
+    private long gatheredBytes;
+
+    protected AbstractDataEncoder() {
+        this.pool = ByteBuffersPool.getInstance();
+    }
+
+    /**
+     * Starts writing {@code buffers[0..count)} to the channel. Called by the owner of the write loop only,
+     * with at most one write outstanding.
+     *
+     * @return true if the write has completed (possibly partially) before returning; false if it is
+     * still pending, in which case the subclass must later call {@link #writeCompleted()} or {@link #writeFailed(Throwable)}.
+     * @throws IOException if the write fails immediately.
+     */
+    protected abstract boolean write(ByteBuffer[] buffers, int count) throws IOException;
+
+    protected abstract boolean isChannelOpen();
+
+    /**
+     * Closes the channel after a write failure.
+     */
+    protected abstract void closeChannel();
+
+    /**
+     * The core method to send a ByteBuffer. It handles buffer management
+     * and asynchronous I/O, without knowing the data's content or protocol.
+     * Safe to call from any number of threads concurrently; frames are written
+     * in the order they are enqueued.
+     *
+     * @param buffer The ByteBuffer to send. Ownership passes to the encoder, which releases it to the pool.
+     * @param callback The callback to notify upon completion or failure.
+     */
+    public void send(ByteBuffer buffer, Callback callback) {
+        send(WriteContext.pooled(buffer, callback));
+    }
+
+    /**
+     * Sends a pooled header immediately followed by a caller-owned payload, with no copy
+     * of the payload. The payload's position and limit are not modified; its content must
+     * not change until the callback reports completion, after which it can be reused.
+     *
+     * @param header The header to send. Ownership passes to the encoder, which releases it to the pool.
+     * @param payload The caller's buffer, heap or direct. It is never released to the pool.
+     * @param callback The callback to notify once both buffers have been written.
+     */
+    public void send(ByteBuffer header, ByteBuffer payload, Callback callback) {
+        send(WriteContext.pooledHeader(header, payload, callback));
+    }
+
+    /**
+     * Enqueues a write. Its buffers go out back to back, never interleaved with other writes.
+     *
+     * @param context The write to enqueue; its pooled buffer, if any, is released by the encoder.
+     */
+    @Override
+    public void send(WriteContext context) {
+        if (enqueue(context)) {
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * Enqueues a write like {@link #send(WriteContext)}, but never writes on the calling thread: if the
+     * write loop is idle, it is started on {@link #writeExecutor()}. For callers that must neither block
+     * nor perform I/O, such as timer tasks, or a publish that must not wait on any one of many connections.
+     */
+    public void sendLater(WriteContext context) {
+        if (enqueue(context) && writing.compareAndSet(false, true)) {
+            writeExecutor().execute(this::flush);
+        }
+    }
+
+    /**
+     * Returns the executor {@link #sendLater(WriteContext)} starts the write loop on: the transport's own
+     * I/O thread where there is one. The default runs it on the calling thread, which suits transports
+     * whose writes never block.
+     */
+    protected Executor writeExecutor() {
+        return Runnable::run;
+    }
+
+    /**
+     * Adds the write to the queue.
+     *
+     * @return false if the channel is closed, in which case the write has been failed.
+     */
+    private boolean enqueue(WriteContext context) {
+        if (pendingBytes.addAndGet(context.remaining()) > highWatermark && unwritable == 0) {
+            updateWritability();
+        }
+        if (closed || !isChannelOpen()) {
+            log.warn("Attempting to send on a closed channel.");
+            failContext(context, new ClosedChannelException());
+            return false;
+        }
+
+        outboundQueue.offer(context);
+
+        if (closed) {
+            // The channel failed while we were enqueueing: nobody else will drain this frame.
+            failQueued(new ClosedChannelException());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Adds an action to run, once, when the channel is closed, e.g. to free the native memory of a
+     * compressor. It runs on the thread that closes the channel.
+     *
+     * @return false if the channel has already been closed, in which case the action is not run.
+     */
+    @Override
+    public boolean addCloseListener(Runnable listener) {
+        closeListeners.add(listener);
+        // Either the closing sees the listener, or we see the closing.
+        return !(channelClosed && closeListeners.remove(listener));
+    }
+
+    @Override
+    public void removeCloseListener(Runnable listener) {
+        closeListeners.remove(listener);
+    }
+
+    /**
+     * Called by the transport once the channel is closed: runs the close listeners. Idempotent.
+     */
+    public void onChannelClosed() {
+        channelClosed = true;
+        for (Runnable listener : closeListeners) {
+            // Whoever removes a listener runs it: never twice, even if the closing is reported twice.
+            if (closeListeners.remove(listener)) {
+                try {
+                    listener.run();
+                } catch (Exception e) {
+                    log.error("Close listener failed: {}", e.getMessage(), e);
+                    FailWriter.writeFile("Close listener failed: ", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of frames waiting for the current write to complete.
+     */
+    public int getQueuedFrames() {
+        return outboundQueue.size();
+    }
+
+    /**
+     * Returns the number of bytes sent through this encoder and not written to the channel yet.
+     * Cheap enough to be read on every send, e.g. to pick the least loaded of several connections.
+     */
+    public long getPendingBytes() {
+        return pendingBytes.get();
+    }
+
+    /**
+     * Returns false while the bytes waiting to be written are above the watermarks: producers should
+     * hold back until it turns true again, as signalled to the {@link WritabilityListener}.
+     * The encoder keeps accepting writes either way.
+     */
+    public boolean isWritable() {
+        return unwritable == 0;
+    }
+
+    /**
+     * Sets the pending bytes above which the encoder turns unwritable, and below which it turns writable again.
+     */
+    public void setWatermarks(long lowWatermark, long highWatermark) {
+        if (lowWatermark < 0 || highWatermark < lowWatermark) {
+            throw new IllegalArgumentException("Watermarks must satisfy 0 <= low <= high.");
+        }
+        this.lowWatermark = lowWatermark;
+        this.highWatermark = highWatermark;
+        updateWritability();
+    }
+
+    public long getLowWatermark() {
+        return lowWatermark;
+    }
+
+    public long getHighWatermark() {
+        return highWatermark;
+    }
+
+    /**
+     * Sets the listener notified of every writability change, or null to remove it.
+     */
+    public void setWritabilityListener(WritabilityListener writabilityListener) {
+        this.writabilityListener = writabilityListener;
+    }
+
+    /**
+     * Flips the writability if the pending bytes have crossed a watermark. Loops, because the
+     * pending bytes may cross back while a flip is being made: no transition can be lost.
+     */
+    private void updateWritability() {
+        while (true) {
+            long pending = pendingBytes.get();
+            boolean writable;
+            if (unwritable == 0 && pending > highWatermark) {
+                if (!UNWRITABLE.compareAndSet(this, 0, 1)) {
+                    continue;
+                }
+                writable = false;
+            } else if (unwritable == 1 && pending < lowWatermark) {
+                if (!UNWRITABLE.compareAndSet(this, 1, 0)) {
+                    continue;
+                }
+                writable = true;
+            } else {
+                return;
+            }
+            notifyWritability(writable);
+        }
+    }
+
+    private void notifyWritability(boolean writable) {
+        WritabilityListener listener = writabilityListener;
+        if (listener == null) {
+            return;
+        }
+        try {
+            listener.onWritabilityChanged(writable);
+        } catch (Exception e) {
+            log.error("Writability listener failed: {}", e.getMessage(), e);
+            FailWriter.writeFile("Writability listener failed: ", e);
+        }
+    }
+
+    private void releasePending(long bytes) {
+        if (pendingBytes.addAndGet(-bytes) < lowWatermark && unwritable == 1) {
+            updateWritability();
+        }
+    }
+
+    /**
+     * Returns the {@link System#nanoTime()} of the last completed write, or of the creation of the encoder.
+     */
+    public long getLastWriteNanos() {
+        return lastWriteNanos;
+    }
+
+    /**
+     * Takes ownership of the write loop if no write is currently in flight.
+     */
+    private void scheduleFlush() {
+        if (writing.compareAndSet(false, true)) {
+            flush();
+        }
+    }
+
+    /**
+     * Fills the gather array with up to {@link #MAX_GATHER} pending buffers, topping up the
+     * current batch from the queue, and writes them with a single gathering write; writes that
+     * complete synchronously are followed by the next batch in the same loop.
+     * Must only be called by the owner of the write loop.
+     */
+    private void flush() {
+        while (true) {
+            completeWrittenFrames();
+
+            int count = 0;
+            boolean first = true;
+            for (WriteContext context : inFlight) {
+                count = gather(context, first ? headIndex : 0, count);
+                first = false;
+                if (count == MAX_GATHER) {
+                    break;
+                }
+            }
+            WriteContext context;
+            while (count < MAX_GATHER && (context = outboundQueue.poll()) != null) {
+                inFlight.addLast(context);
+                count = gather(context, 0, count);
+            }
+            // Writes made only of empty buffers have nothing to wait for.
+            completeWrittenFrames();
+
+            if (count == 0) {
+                writing.set(false);
+                // A producer may have enqueued after our poll but before we released ownership.
+                if (!outboundQueue.isEmpty() && writing.compareAndSet(false, true)) {
+                    continue;
+                }
+                return;
+            }
+
+            gatherCount = count;
+            gatheredBytes = remaining(gatherBuffers, count);
+            try {
+                if (!write(gatherBuffers, count)) {
+                    return;
+                }
+            } catch (IOException | RuntimeException e) {
+                writeFailed(e);
+                return;
+            }
+            clearGather();
+        }
+    }
+
+    /**
+     * Notifies the end of a pending write, and continues with the rest of the batch and the queue.
+     */
+    protected final void writeCompleted() {
+        clearGather();
+        flush();
+    }
+
+    /**
+     * Notifies the failure of a pending write: every queued frame is failed and the channel closed.
+     */
+    protected final void writeFailed(Throwable exc) {
+        log.error("Error during asynchronous data send: {}", exc.getMessage(), exc);
+        FailWriter.writeFile("Error during asynchronous data send: ", exc);
+        // Keep ownership of the write loop: the encoder is dead from now on.
+        failAll(exc);
+    }
+
+    private void clearGather() {
+        if (gatherCount > 0) {
+            lastWriteNanos = System.nanoTime();
+        }
+        releasePending(gatheredBytes - remaining(gatherBuffers, gatherCount));
+        gatheredBytes = 0;
+        Arrays.fill(gatherBuffers, 0, gatherCount, null);
+        gatherCount = 0;
+    }
+
+    private static long remaining(ByteBuffer[] buffers, int count) {
+        long remaining = 0;
+        for (int i = 0; i < count; i++) {
+            remaining += buffers[i].remaining();
+        }
+        return remaining;
+    }
+
+    private int gather(WriteContext context, int from, int count) {
+        ByteBuffer[] buffers = context.buffers();
+        for (int i = from; i < buffers.length && count < MAX_GATHER; i++) {
+            if (buffers[i].hasRemaining()) {
+                gatherBuffers[count++] = buffers[i];
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Completes, in order, every write of the current batch whose buffers have all been written.
+     */
+    private void completeWrittenFrames() {
+        WriteContext context;
+        while ((context = inFlight.peekFirst()) != null) {
+            ByteBuffer[] buffers = context.buffers();
+            while (headIndex < buffers.length && !buffers[headIndex].hasRemaining()) {
+                headIndex++;
+            }
+            if (headIndex < buffers.length) {
+                return;
+            }
+            inFlight.pollFirst();
+            headIndex = 0;
+
+            releaseBuffer(pool, context.pooledBuffer());
+            releaseShared(context.sharedBuffer());
+            notifyCompleted(context.originalCallback());
+        }
+    }
+
+    /**
+     * Fails the in-flight batch and every queued frame, then closes the channel.
+     */
+    private void failAll(Throwable exc) {
+        closed = true;
+        Arrays.fill(gatherBuffers, null);
+        gatherCount = 0;
+        gatheredBytes = 0;
+        WriteContext context;
+        while ((context = inFlight.pollFirst()) != null) {
+            failContext(context, exc);
+        }
+        headIndex = 0;
+        failQueued(exc);
+        closeChannel();
+        // Sends fail on 'closed' from now on: releasing the loop cannot restart it.
+        writing.set(false);
+    }
+
+    private void failQueued(Throwable exc) {
+        WriteContext context;
+        while ((context = outboundQueue.poll()) != null) {
+            failContext(context, exc);
+        }
+    }
+
+    private void failContext(WriteContext context, Throwable exc) {
+        releasePending(context.remaining());
+        releaseBuffer(pool, context.pooledBuffer());
+        releaseShared(context.sharedBuffer());
+        notifyFailed(context.originalCallback(), exc);
+    }
+
+    /**
+     * Runs a callback of the write loop: whatever it throws is reported, and never stops the loop.
+     */
+    private static void notifyCompleted(Callback callback) {
+        if (callback == null) {
+            return;
+        }
+        try {
+            callback.complete(null);
+        } catch (Exception e) {
+            log.error("Write callback failed: {}", e.getMessage(), e);
+            FailWriter.writeFile("Write callback failed: ", e);
+        }
+    }
+
+    private static void notifyFailed(Callback callback, Throwable exc) {
+        if (callback == null) {
+            return;
+        }
+        try {
+            callback.completeExceptionally(exc);
+        } catch (Exception e) {
+            log.error("Write callback failed: {}", e.getMessage(), e);
+            FailWriter.writeFile("Write callback failed: ", e);
+        }
+    }
+
+    private static void releaseShared(RefCountedBuffer buffer) {
+        if (buffer != null) {
+            try {
+                buffer.release();
+            } catch (IllegalStateException e) {
+                log.error("Shared buffer released too many times", e);
+                FailWriter.writeFile("Shared buffer released too many times", e);
+            }
+        }
+    }
+
+    /**
+     * Safely releases a buffer back to the pool. This is a static helper method
+     * to make the CompletionHandler's logic simpler and more robust.
+     */
+    public static void releaseBuffer(ByteBuffersPool pool, ByteBuffer buffer) {
+        if (buffer != null) {
+            try {
+                pool.release(buffer);
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                log.error("Buffer could not be returned to the pool", e);
+                FailWriter.writeFile("Buffer could not be returned to the pool", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package it.sk8erboi17.network.transformers.encoder;
+
+/**
+ * Where a {@link it.sk8erboi17.network.transformers.encoder.op.FrameEncoder} hands the frames it builds:
+ * the outbound queue of a connection ({@link AbstractDataEncoder}), or anything else that takes
+ * encoded frames, such as a buffer that keeps a frame to send it later to many connections.
+ * <p>
+ * A sink takes ownership of every write handed to it: it must release the write's pooled buffer
+ * and notify its callback, if any, exactly once.
+ */
+public interface FrameSink {
+
+    /**
+     * Takes a write. Its buffers form one unit and must be kept in order.
+     */
+    void send(WriteContext context);
+
+    /**
+     * Adds an action to run, once, when the sink is closed and takes no more frames.
+     * A sink that is never closed ignores it.
+     *
+     * @return false if the sink has already been closed, in which case the action is not run.
+     */
+    default boolean addCloseListener(Runnable listener) {
+        return true;
+    }
+
+    default void removeCloseListener(Runnable listener) {
+    }
+}
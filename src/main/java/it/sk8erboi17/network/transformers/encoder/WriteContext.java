@@ -1,16 +1,58 @@
 package it.sk8erboi17.network.transformers.encoder;
 
 import it.sk8erboi17.listeners.response.Callback;
-import it.sk8erboi17.network.transformers.pool.ByteBuffersPool;
+import it.sk8erboi17.network.transformers.pool.RefCountedBuffer;
 
 import java.nio.ByteBuffer;
-import java.nio.channels.AsynchronousSocketChannel;
 
 /**
- * A record to hold the state of a single write operation.
- * It contains the buffer, the original callback, and references to the
- * necessary components for the completion handler to be fully stateless.
+ * A record to hold the state of a single queued write.
+ * The buffers are written in order, as one unit: no other write is interleaved with them.
+ * Only {@code pooledBuffer} belongs to the pool and is released once everything is written;
+ * the other buffers are owned by the caller, who is told through the callback when they can be reused.
+ * A write of a buffer shared by several connections holds one reference to it instead, released the same way.
+ *
+ * @param buffers The buffers to write, in order.
+ * @param originalCallback The callback to notify once every buffer has been written, may be null.
+ * @param pooledBuffer The buffer to give back to the pool on completion, or null.
+ * @param sharedBuffer The shared buffer to release once on completion, or null.
  */
-public record WriteContext(ByteBuffer buffer, Callback originalCallback, AsynchronousSocketChannel channel, ByteBuffersPool pool) {
+public record WriteContext(ByteBuffer[] buffers, Callback originalCallback, ByteBuffer pooledBuffer, RefCountedBuffer sharedBuffer) {
 
+    public WriteContext(ByteBuffer[] buffers, Callback originalCallback, ByteBuffer pooledBuffer) {
+        this(buffers, originalCallback, pooledBuffer, null);
+    }
+
+    /**
+     * A write of a single buffer leased from the pool.
+     */
+    public static WriteContext pooled(ByteBuffer buffer, Callback callback) {
+        return new WriteContext(new ByteBuffer[]{buffer}, callback, buffer);
+    }
+
+    /**
+     * A write of a header leased from the pool, immediately followed by a caller-owned payload
+     * whose position and limit are left untouched.
+     */
+    public static WriteContext pooledHeader(ByteBuffer header, ByteBuffer payload, Callback callback) {
+        return new WriteContext(new ByteBuffer[]{header, payload.slice()}, callback, header);
+    }
+
+    /**
+     * A write of a view of a shared buffer, whose reference the caller has already retained for it.
+     */
+    public static WriteContext shared(ByteBuffer view, Callback callback, RefCountedBuffer owner) {
+        return new WriteContext(new ByteBuffer[]{view}, callback, null, owner);
+    }
+
+    /**
+     * Returns the number of bytes still to be written.
+     */
+    public long remaining() {
+        long remaining = 0;
+        for (ByteBuffer buffer : buffers) {
+            remaining += buffer.remaining();
+        }
+        return remaining;
+    }
 }
@@ -1,8 +1,20 @@
 package it.sk8erboi17.network.transformers.encoder.op;
 
+import it.sk8erboi17.network.transformers.CompactFrames;
+import it.sk8erboi17.network.transformers.CompressedFrames;
+import it.sk8erboi17.network.transformers.CorrelatedFrames;
+import it.sk8erboi17.network.transformers.DictionaryFrames;
+import it.sk8erboi17.network.transformers.FrameFragments;
+import it.sk8erboi17.network.transformers.codec.TypeCodec;
+import it.sk8erboi17.network.transformers.codec.TypeCodecs;
+import it.sk8erboi17.network.transformers.compression.CompressionCodec;
+import it.sk8erboi17.network.transformers.compression.CompressionCodecs;
 import it.sk8erboi17.network.transformers.encoder.DataEncoder;
+import it.sk8erboi17.network.transformers.encoder.FrameSink;
+import it.sk8erboi17.network.transformers.encoder.WriteContext;
 import it.sk8erboi17.network.transformers.pool.ByteBuffersPool;
 import it.sk8erboi17.exception.MaxBufferSizeExceededException;
+import it.sk8erboi17.exception.PoolExhaustedException;
 import it.sk8erboi17.listeners.response.Callback;
 import it.sk8erboi17.utils.FailWriter;
 import org.slf4j.Logger;
@@ -15,16 +27,66 @@ import java.util.function.Consumer;
 /**
  * Handles the logic for building and sending frames.
  * This class is a protocol-level component, focused on data serialization.
- * It uses a DataEncoder instance to perform the actual network I/O.
+ * It hands the frames to a {@link FrameSink}, usually a DataEncoder that performs the actual network I/O.
  */
 public class FrameEncoder {
     private static final byte START_MARKER = 0x01;
+    private static final int HEADER_SIZE = 1 + Integer.BYTES + 1;
+    // Below this size copying the payload next to the header is cheaper than a second buffer in the write.
+    private static final int ZERO_COPY_THRESHOLD = ByteBuffersPool.MEDIUM_SIZE;
+    // Frame type of the frames that carry no correlation id.
+    private static final byte UNCORRELATED = 0;
+    // Heartbeats never change: one read-only frame is shared by every connection, each write uses its own view.
+    private static final ByteBuffer HEARTBEAT_FRAME = ByteBuffer.allocateDirect(HEADER_SIZE)
+            .put(START_MARKER).putInt(1).put((byte) 0x00).flip().asReadOnlyBuffer();
+    private static final ByteBuffer COMPACT_HEARTBEAT_FRAME = ByteBuffer.allocateDirect(3)
+            .put(CompactFrames.START_MARKER).put((byte) 1).put((byte) 0x00).flip().asReadOnlyBuffer();
     private static final Logger log = LoggerFactory.getLogger(FrameEncoder.class);
 
-    private final DataEncoder dataEncoder;
+    /**
+     * Sends a value of one type, uncorrelated or in a correlated frame.
+     */
+    @FunctionalInterface
+    private interface ValueWriter {
+        void write(FrameEncoder encoder, byte kind, int id, Object value, Callback callback);
+    }
+
+    // Application types: the registry is asked at every send, through its own per-class cache, so that a later
+    // registration, e.g. of a more specific type, is seen.
+    private static final ValueWriter REGISTERED = (encoder, kind, id, value, callback) -> {
+        TypeCodecs.Registration<?> registration = TypeCodecs.forType(value.getClass());
+        if (registration == null) {
+            throw new IllegalArgumentException("Unsupported message type: " + value.getClass().getName());
+        }
+        encoder.sendEncoded(kind, id, registration, value, callback);
+    };
+
+    // The writer of every class sent so far, resolved once per class instead of walking an instanceof chain per message.
+    private static final ClassValue<ValueWriter> WRITERS = new ClassValue<>() {
+        @Override
+        protected ValueWriter computeValue(Class<?> type) {
+            return writerFor(type);
+        }
+    };
+
+    private final FrameSink dataEncoder;
     private final ByteBuffersPool pool;
+    // Null while compression is off.
+    private volatile Compression compression;
+    // Frees the codec once the channel is closed.
+    private final Runnable compressionCloser = this::endCompression;
+    private volatile boolean compactHeaders;
+    // Null while the string dictionary is off.
+    private volatile StringDictionary dictionary;
+
+    private record Compression(CompressionCodec codec, int threshold) {
+    }
 
-    public FrameEncoder(DataEncoder dataEncoder) {
+    /**
+     * @param dataEncoder Where the frames go: usually the outbound queue of a connection
+     *                    (an {@link it.sk8erboi17.network.transformers.encoder.AbstractDataEncoder}).
+     */
+    public FrameEncoder(FrameSink dataEncoder) {
         if (dataEncoder == null) {
             throw new IllegalArgumentException("DataEncoder cannot be null.");
         }
@@ -32,81 +94,578 @@ public class FrameEncoder {
         this.pool = ByteBuffersPool.getInstance();
     }
 
+    /**
+     * Compresses the string and byte-array frames whose data is at least {@code threshold} bytes long,
+     * with a new instance of the registered codec reserved to this encoder (see {@link CompressedFrames}).
+     * A frame is only sent compressed if that makes it smaller. Data larger than
+     * {@link CompressedFrames#MAX_ORIGINAL_LENGTH} is never compressed, nor is the data of correlated frames.
+     * The codec is ended, and its memory freed, when compression is disabled or the channel closed.
+     *
+     * @param codecId The id of the codec in {@link CompressionCodecs}, e.g. {@link CompressionCodecs#DEFLATE}.
+     * @param threshold The minimum data length worth compressing.
+     */
+    public synchronized void enableCompression(byte codecId, int threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("The compression threshold cannot be negative.");
+        }
+        endCompression();
+        this.compression = new Compression(CompressionCodecs.create(codecId), threshold);
+        if (!dataEncoder.addCloseListener(compressionCloser)) {
+            // Already closed: nothing will be sent anyway.
+            endCompression();
+        }
+    }
+
+    public synchronized void disableCompression() {
+        dataEncoder.removeCloseListener(compressionCloser);
+        endCompression();
+    }
+
+    // A sender may still be compressing with the old codec: once ended, it falls back to an uncompressed frame.
+    private synchronized void endCompression() {
+        Compression current = compression;
+        compression = null;
+        if (current != null) {
+            current.codec().end();
+        }
+    }
+
+    /**
+     * Sends the frames that fit in a single pooled buffer with the compact header (see {@link CompactFrames}).
+     * Receivers of this version always understand compact frames; older ones do not, so only enable it
+     * once the peer is known to run this version.
+     */
+    public void enableCompactHeaders() {
+        this.compactHeaders = true;
+    }
+
+    public void disableCompactHeaders() {
+        this.compactHeaders = false;
+    }
+
+    /**
+     * Sends repeated short strings as references to a per-connection dictionary (see {@link DictionaryFrames}):
+     * the first time a string is sent it is defined in a slot, and from then on only the slot is sent.
+     * Once {@code capacity} strings are defined, the least recently sent one gives up its slot.
+     * <p>
+     * Dictionary frames must reach the peer in the order their slots were assigned: enable the
+     * dictionary on a single encoder per connection. Receivers always understand dictionary frames.
+     *
+     * @param capacity The number of slots, up to {@link DictionaryFrames#MAX_SLOTS}.
+     */
+    public void enableStringDictionary(int capacity) {
+        if (capacity <= 0 || capacity > DictionaryFrames.MAX_SLOTS) {
+            throw new IllegalArgumentException("The dictionary capacity must be between 1 and " + DictionaryFrames.MAX_SLOTS + ".");
+        }
+        this.dictionary = new StringDictionary(capacity);
+    }
+
+    public void disableStringDictionary() {
+        this.dictionary = null;
+    }
+
     /**
      * Sends a heartbeat message to the server to keep the connection alive.
-     * A heartbeat is a special frame with marker 0x00 and no payload.
+     * A heartbeat is a special frame with marker 0x00 and no payload; it is written from a
+     * shared pre-encoded frame, without taking a buffer from the pool.
      * @param callback The callback to notify upon completion or failure.
      */
     public void sendHeartbeat(Callback callback) {
-        byte marker = 0x00;
-        int payloadSize = 0;
-        Consumer<ByteBuffer> payloadWriter = buffer -> { /* No-op */ };
-        buildAndSendFrame(marker, payloadSize, callback, payloadWriter);
+        ByteBuffer frame = compactHeaders ? COMPACT_HEARTBEAT_FRAME : HEARTBEAT_FRAME;
+        dataEncoder.send(new WriteContext(new ByteBuffer[]{frame.duplicate()}, callback, null));
     }
 
     public void sendInt(int data, Callback callback) {
         byte marker = 0x02;
-        buildAndSendFrame(marker, Integer.BYTES, callback, buffer -> buffer.putInt(data));
+        buildAndSendFrame(UNCORRELATED, 0, marker, Integer.BYTES, callback, buffer -> buffer.putInt(data));
+    }
+
+    public void sendLong(long data, Callback callback) {
+        byte marker = 0x07;
+        buildAndSendFrame(UNCORRELATED, 0, marker, Long.BYTES, callback, buffer -> buffer.putLong(data));
     }
 
     public void sendString(String data, Callback callback) {
+        if (trySendFromDictionary(data, callback)) {
+            return;
+        }
         byte marker = 0x01;
+        // getBytes() beats encoding straight into the frame buffer: see StringEncodeBenchmark under src/jmh.
         byte[] stringBytes = data.getBytes(StandardCharsets.UTF_8);
-        int payloadSize = Integer.BYTES + stringBytes.length;
-        Consumer<ByteBuffer> payloadWriter = buffer -> {
-            buffer.putInt(stringBytes.length);
-            buffer.put(stringBytes);
-        };
-        buildAndSendFrame(marker, payloadSize, callback, payloadWriter);
+        if (trySendCompressed(marker, ByteBuffer.wrap(stringBytes), callback)) {
+            return;
+        }
+        if (stringBytes.length > ZERO_COPY_THRESHOLD) {
+            // The encoded bytes are private to this call: send them in place instead of copying them again.
+            sendLengthPrefixed(UNCORRELATED, 0, marker, ByteBuffer.wrap(stringBytes), callback);
+            return;
+        }
+        sendSmallData(UNCORRELATED, 0, marker, ByteBuffer.wrap(stringBytes), callback);
     }
 
     public void sendFloat(float data, Callback callback) {
         byte marker = 0x03;
-        buildAndSendFrame(marker, Float.BYTES, callback, buffer -> buffer.putFloat(data));
+        buildAndSendFrame(UNCORRELATED, 0, marker, Float.BYTES, callback, buffer -> buffer.putFloat(data));
     }
 
     public void sendDouble(double data, Callback callback) {
         byte marker = 0x04;
-        buildAndSendFrame(marker, Double.BYTES, callback, buffer -> buffer.putDouble(data));
+        buildAndSendFrame(UNCORRELATED, 0, marker, Double.BYTES, callback, buffer -> buffer.putDouble(data));
     }
 
     public void sendChar(char data, Callback callback) {
         byte marker = 0x05;
-        buildAndSendFrame(marker, Character.BYTES, callback, buffer -> buffer.putChar(data));
+        buildAndSendFrame(UNCORRELATED, 0, marker, Character.BYTES, callback, buffer -> buffer.putChar(data));
     }
 
+    /**
+     * Sends a byte array. The array is copied before this method returns, so the caller may modify
+     * it right away; to send large data without a copy, use {@link #sendByteBuffer(ByteBuffer, Callback)}.
+     */
     public void sendByteArray(byte[] data, Callback callback) {
-        byte marker = 0x06;
-        int payloadSize = Integer.BYTES + data.length;
-        Consumer<ByteBuffer> payloadWriter = buffer -> {
-            buffer.putInt(data.length);
-            buffer.put(data);
-        };
-        buildAndSendFrame(marker, payloadSize, callback, payloadWriter);
+        if (trySendCompressed((byte) 0x06, ByteBuffer.wrap(data), callback)) {
+            return;
+        }
+        sendArrayCopy(UNCORRELATED, 0, data, callback);
+    }
+
+    /**
+     * Sends a copy of a byte array: into the pooled frame if the frame fits one, otherwise into a
+     * private heap copy written behind a pooled header, or as fragments.
+     */
+    private void sendArrayCopy(byte kind, int id, byte[] data, Callback callback) {
+        if (HEADER_SIZE + correlationOverhead(kind) + Integer.BYTES + data.length <= ByteBuffersPool.LARGE_SIZE) {
+            sendSmallData(kind, id, (byte) 0x06, ByteBuffer.wrap(data), callback);
+            return;
+        }
+        sendLengthPrefixed(kind, id, (byte) 0x06, ByteBuffer.wrap(data.clone()), callback);
+    }
+
+    /**
+     * Sends the remaining bytes of a caller-owned buffer, heap or direct, as a byte-array frame.
+     * Only the header is taken from the pool: header and data go out together in one gathering
+     * write, without copying the data. Direct buffers also avoid the copy the JDK makes for heap
+     * buffers inside the socket write. Data larger than the pool's largest size class is sent
+     * as a sequence of fragments, still without being copied.
+     * <p>
+     * The buffer's position and limit are left untouched. Its content must not change until the
+     * callback reports completion; from then on the caller may reuse it.
+     *
+     * @param data The bytes to send, from position to limit.
+     * @param callback The callback notified once the data has been written and the buffer can be reused.
+     */
+    public void sendByteBuffer(ByteBuffer data, Callback callback) {
+        if (trySendCompressed((byte) 0x06, data, callback)) {
+            return;
+        }
+        sendLengthPrefixed(UNCORRELATED, 0, (byte) 0x06, data, callback);
+    }
+
+    /**
+     * Sends a value wrapped in a correlated frame (see {@link CorrelatedFrames}). The value is encoded
+     * exactly as the matching sendX method would, and follows the same copy and fragmentation rules.
+     *
+     * @param kind {@link CorrelatedFrames#REQUEST}, {@link CorrelatedFrames#RESPONSE} or {@link CorrelatedFrames#ERROR_RESPONSE}.
+     * @param id The correlation id.
+     * @param message The value: a String, a boxed primitive, a byte[], a ByteBuffer, or null for an empty payload.
+     * @param callback The callback to notify upon completion or failure.
+     */
+    public void sendCorrelated(byte kind, int id, Object message, Callback callback) {
+        if (!CorrelatedFrames.isCorrelated(kind)) {
+            throw new IllegalArgumentException("Not a correlated frame type: " + kind);
+        }
+        if (message == null) {
+            buildAndSendFrame(kind, id, (byte) 0x00, 0, callback, buffer -> { /* No-op */ });
+            return;
+        }
+        WRITERS.get(message.getClass()).write(this, kind, id, message, callback);
+    }
+
+    /**
+     * Sends a value of any supported type: a String, a boxed primitive, a byte[], a ByteBuffer,
+     * or a type registered in {@link TypeCodecs}. Null sends a heartbeat.
+     *
+     * @throws IllegalArgumentException if the type is not supported.
+     */
+    public void send(Object message, Callback callback) {
+        if (message == null) {
+            sendHeartbeat(callback);
+            return;
+        }
+        WRITERS.get(message.getClass()).write(this, UNCORRELATED, 0, message, callback);
+    }
+
+    /**
+     * Sends a value of a registered application type. The codec writes straight into a pooled frame;
+     * values too large for one are encoded into a heap buffer first, and sent as fragments.
+     */
+    private <T> void sendEncoded(byte kind, int id, TypeCodecs.Registration<T> registration, Object message, Callback callback) {
+        T value = registration.type().cast(message);
+        TypeCodec<T> codec = registration.codec();
+        int size = codec.sizeOf(value);
+        if (size < 0) {
+            throw new IllegalArgumentException("Negative encoded size for " + registration.type().getName() + ": " + size);
+        }
+        if (HEADER_SIZE + correlationOverhead(kind) + size <= ByteBuffersPool.LARGE_SIZE) {
+            buildAndSendFrame(kind, id, registration.marker(), size, callback, buffer -> encodeExactly(codec, value, size, buffer));
+            return;
+        }
+        ByteBuffer data = ByteBuffer.allocate(size);
+        try {
+            encodeExactly(codec, value, size, data);
+        } catch (Exception e) {
+            log.error("Error while encoding a {}", registration.type().getName(), e);
+            FailWriter.writeFile("Error while encoding a message. Cause: ", e);
+            if (callback != null) {
+                callback.completeExceptionally(e);
+            }
+            return;
+        }
+        data.flip();
+        sendFragmented(kind, id, registration.marker(), data, callback, false);
+    }
+
+    private static <T> void encodeExactly(TypeCodec<T> codec, T value, int size, ByteBuffer out) {
+        int start = out.position();
+        codec.encode(value, out);
+        if (out.position() - start != size) {
+            throw new IllegalStateException("Codec wrote " + (out.position() - start) + " bytes, sizeOf returned " + size + ".");
+        }
+    }
+
+    private static ValueWriter writerFor(Class<?> type) {
+        if (type == String.class) {
+            return (encoder, kind, id, value, callback) -> {
+                if (kind == UNCORRELATED) {
+                    encoder.sendString((String) value, callback);
+                } else {
+                    encoder.sendLengthPrefixed(kind, id, (byte) 0x01, ByteBuffer.wrap(((String) value).getBytes(StandardCharsets.UTF_8)), callback);
+                }
+            };
+        }
+        if (type == Integer.class) {
+            return (encoder, kind, id, value, callback) -> {
+                int i = (Integer) value;
+                encoder.buildAndSendFrame(kind, id, (byte) 0x02, Integer.BYTES, callback, buffer -> buffer.putInt(i));
+            };
+        }
+        if (type == Float.class) {
+            return (encoder, kind, id, value, callback) -> {
+                float f = (Float) value;
+                encoder.buildAndSendFrame(kind, id, (byte) 0x03, Float.BYTES, callback, buffer -> buffer.putFloat(f));
+            };
+        }
+        if (type == Double.class) {
+            return (encoder, kind, id, value, callback) -> {
+                double d = (Double) value;
+                encoder.buildAndSendFrame(kind, id, (byte) 0x04, Double.BYTES, callback, buffer -> buffer.putDouble(d));
+            };
+        }
+        if (type == Character.class) {
+            return (encoder, kind, id, value, callback) -> {
+                char c = (Character) value;
+                encoder.buildAndSendFrame(kind, id, (byte) 0x05, Character.BYTES, callback, buffer -> buffer.putChar(c));
+            };
+        }
+        if (type == Long.class) {
+            return (encoder, kind, id, value, callback) -> {
+                long l = (Long) value;
+                encoder.buildAndSendFrame(kind, id, (byte) 0x07, Long.BYTES, callback, buffer -> buffer.putLong(l));
+            };
+        }
+        if (type == byte[].class) {
+            return (encoder, kind, id, value, callback) -> {
+                if (kind == UNCORRELATED) {
+                    encoder.sendByteArray((byte[]) value, callback);
+                } else {
+                    encoder.sendArrayCopy(kind, id, (byte[]) value, callback);
+                }
+            };
+        }
+        if (ByteBuffer.class.isAssignableFrom(type)) {
+            return (encoder, kind, id, value, callback) -> {
+                if (kind == UNCORRELATED) {
+                    encoder.sendByteBuffer((ByteBuffer) value, callback);
+                } else {
+                    encoder.sendLengthPrefixed(kind, id, (byte) 0x06, (ByteBuffer) value, callback);
+                }
+            };
+        }
+        return REGISTERED;
+    }
+
+    /**
+     * Sends a [LENGTH (4 bytes)][DATA] payload, where DATA are the remaining bytes of {@code data}.
+     * Small payloads are copied into a single pooled frame; larger ones are written in place behind
+     * a pooled header; payloads whose frame would exceed the pool's largest size class are split
+     * into fragments (see {@link FrameFragments}).
+     */
+    private void sendLengthPrefixed(byte kind, int id, byte marker, ByteBuffer data, Callback callback) {
+        int length = data.remaining();
+        if (length <= ZERO_COPY_THRESHOLD) {
+            sendSmallData(kind, id, marker, data, callback);
+            return;
+        }
+        int prefix = correlationOverhead(kind);
+        if (1 + prefix + Integer.BYTES + length > FrameFragments.MAX_FRAGMENT_LENGTH) {
+            sendFragmented(kind, id, marker, data, callback, true);
+            return;
+        }
+
+        ByteBuffer header;
+        try {
+            header = pool.acquire(HEADER_SIZE + prefix + Integer.BYTES);
+        } catch (MaxBufferSizeExceededException | PoolExhaustedException e) {
+            failAcquire(e, callback);
+            return;
+        }
+
+        header.put(START_MARKER);
+        header.putInt(1 + prefix + Integer.BYTES + length);
+        putType(header, kind, id, marker);
+        header.putInt(length);
+        header.flip();
+        dataEncoder.send(WriteContext.pooledHeader(header, data, callback));
+    }
+
+    /**
+     * Copies string or byte-array data into a single pooled frame: behind its 4-byte length,
+     * or alone if the frame is compact.
+     */
+    private void sendSmallData(byte kind, int id, byte marker, ByteBuffer data, Callback callback) {
+        int length = data.remaining();
+        if (isCompact(kind)) {
+            buildAndSendFrame(true, kind, id, marker, length, callback, buffer -> buffer.put(data.duplicate()));
+            return;
+        }
+        buildAndSendFrame(false, kind, id, marker, Integer.BYTES + length, callback, buffer -> {
+            buffer.putInt(length);
+            buffer.put(data.duplicate());
+        });
+    }
+
+    /**
+     * Splits a payload into fragments, preceded by its 4-byte length if {@code lengthPrefixed}. The caller's data is not copied: every
+     * fragment is a small header followed by a slice of {@code data}, and all the headers are
+     * carved out of one pooled buffer. The whole message is enqueued as a single write, so the
+     * fragments are pipelined back to back in gathering writes and the callback fires once,
+     * after the last one.
+     */
+    private void sendFragmented(byte kind, int id, byte marker, ByteBuffer data, Callback callback, boolean lengthPrefixed) {
+        ByteBuffer payload = data.slice();
+        int length = payload.remaining();
+        int prefix = correlationOverhead(kind) + (lengthPrefixed ? Integer.BYTES : 0);
+        int startHeaderSize = FrameFragments.FRAME_HEADER_SIZE + FrameFragments.START_OVERHEAD + prefix;
+        int continuationHeaderSize = FrameFragments.FRAME_HEADER_SIZE + FrameFragments.CONTINUATION_OVERHEAD;
+        // The first chunk also carries the correlation id and the 4-byte length prefix, if any, which live in the start header.
+        int firstChunk = FrameFragments.MAX_FRAGMENT_LENGTH - FrameFragments.START_OVERHEAD - prefix;
+        int chunk = FrameFragments.MAX_FRAGMENT_LENGTH - FrameFragments.CONTINUATION_OVERHEAD;
+        int continuations = (int) (((long) length - firstChunk + chunk - 1) / chunk);
+        int headersSize = startHeaderSize + continuations * continuationHeaderSize;
+
+        ByteBuffer headers;
+        ByteBuffer pooledHeaders = null;
+        if (headersSize <= ByteBuffersPool.LARGE_SIZE) {
+            try {
+                headers = pool.acquire(headersSize);
+            } catch (MaxBufferSizeExceededException | PoolExhaustedException e) {
+                failAcquire(e, callback);
+                return;
+            }
+            pooledHeaders = headers;
+        } else {
+            // Only for messages of hundreds of megabytes: not worth a pooled buffer.
+            headers = ByteBuffer.allocate(headersSize);
+        }
+
+        ByteBuffer[] buffers = new ByteBuffer[2 * (continuations + 1)];
+        headers.put(START_MARKER);
+        headers.putInt(FrameFragments.START_OVERHEAD + prefix + firstChunk);
+        headers.put(FrameFragments.FRAGMENT_START);
+        // A correlated message is fragmented as a whole: its id and data type open the reassembled payload.
+        headers.put(kind == UNCORRELATED ? marker : kind);
+        headers.putLong(prefix + (long) length);
+        if (kind != UNCORRELATED) {
+            headers.putInt(id);
+            headers.put(marker);
+        }
+        if (lengthPrefixed) {
+            headers.putInt(length);
+        }
+        buffers[0] = headers.slice(0, startHeaderSize);
+        buffers[1] = payload.slice(0, firstChunk);
+
+        int offset = firstChunk;
+        for (int i = 1; i <= continuations; i++) {
+            int size = Math.min(chunk, length - offset);
+            int headerOffset = headers.position();
+            headers.put(START_MARKER);
+            headers.putInt(FrameFragments.CONTINUATION_OVERHEAD + size);
+            headers.put(FrameFragments.FRAGMENT_CONTINUATION);
+            buffers[2 * i] = headers.slice(headerOffset, continuationHeaderSize);
+            buffers[2 * i + 1] = payload.slice(offset, size);
+            offset += size;
+        }
+
+        log.trace("Sending {} bytes as {} fragment(s).", length, continuations + 1);
+        dataEncoder.send(new WriteContext(buffers, callback, pooledHeaders));
+    }
+
+    /**
+     * Sends a string as a dictionary reference, or as a definition the first time, if the dictionary is on
+     * and the string short enough. Slot assignment and queueing happen under the dictionary's lock, so
+     * that the peer sees definitions and references in the same order.
+     *
+     * @return false if nothing has been sent, and the string must be sent in full.
+     */
+    private boolean trySendFromDictionary(String data, Callback callback) {
+        StringDictionary current = dictionary;
+        // Every char takes at least one byte.
+        if (current == null || data.length() > DictionaryFrames.MAX_STRING_LENGTH) {
+            return false;
+        }
+        synchronized (current) {
+            int slot = current.lookup(data);
+            if (slot >= 0) {
+                buildAndSendFrame(UNCORRELATED, 0, DictionaryFrames.REFERENCE, CompactFrames.varintSize(slot), callback,
+                        buffer -> CompactFrames.putVarint(buffer, slot));
+                return true;
+            }
+            byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > DictionaryFrames.MAX_STRING_LENGTH) {
+                return false;
+            }
+            int defined = current.assign(data);
+            boolean sent = buildAndSendFrame(UNCORRELATED, 0, DictionaryFrames.DEFINE, CompactFrames.varintSize(defined) + bytes.length, callback, buffer -> {
+                CompactFrames.putVarint(buffer, defined);
+                buffer.put(bytes);
+            });
+            if (!sent) {
+                // The peer never got the definition: the slot must not be referenced.
+                current.release(data);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Sends the remaining bytes of {@code data} as a compressed frame, if compression is on, the data
+     * is within the size limits, and the compressed frame is smaller than the plain one would be.
+     * The data is copied by the compression: the caller may reuse it as soon as this method returns.
+     *
+     * @return false if nothing has been sent, and the data must be sent uncompressed.
+     */
+    private boolean trySendCompressed(byte marker, ByteBuffer data, Callback callback) {
+        Compression current = compression;
+        int length = data.remaining();
+        if (current == null || length < current.threshold() || length > CompressedFrames.MAX_ORIGINAL_LENGTH) {
+            return false;
+        }
+        int dataOffset = HEADER_SIZE + CompressedFrames.OVERHEAD;
+        // The compressed data replaces the 4-byte length prefix too, but the codec and length fields cost 5 bytes.
+        int budget = Math.min(length - 2, ByteBuffersPool.LARGE_SIZE - dataOffset);
+        if (budget <= 0) {
+            return false;
+        }
+
+        ByteBuffer frame;
+        try {
+            frame = pool.acquire(dataOffset + budget);
+        } catch (MaxBufferSizeExceededException | PoolExhaustedException e) {
+            // Let the uncompressed path report it.
+            return false;
+        }
+
+        ByteBuffer compressed = frame.slice(dataOffset, budget);
+        boolean fits;
+        try {
+            fits = current.codec().compress(data.duplicate(), compressed);
+        } catch (Exception e) {
+            log.error("Compression failed, sending the frame uncompressed. Cause: {}", e.getMessage(), e);
+            FailWriter.writeFile("Compression failed, sending the frame uncompressed. Cause: ", e);
+            fits = false;
+        }
+        if (!fits) {
+            DataEncoder.releaseBuffer(pool, frame);
+            return false;
+        }
+
+        int compressedLength = compressed.position();
+        frame.put(START_MARKER);
+        frame.putInt(1 + CompressedFrames.OVERHEAD + compressedLength);
+        frame.put((byte) (marker | CompressedFrames.COMPRESSED));
+        frame.put(current.codec().getId());
+        frame.putInt(length);
+        frame.position(dataOffset + compressedLength);
+        frame.flip();
+        dataEncoder.send(WriteContext.pooled(frame, callback));
+        return true;
+    }
+
+    private boolean isCompact(byte kind) {
+        return kind == UNCORRELATED && compactHeaders;
+    }
+
+    private static int correlationOverhead(byte kind) {
+        return kind == UNCORRELATED ? 0 : CorrelatedFrames.OVERHEAD;
+    }
+
+    /**
+     * Writes the frame type: the data type alone, or the correlated type followed by the id and the data type.
+     */
+    private static void putType(ByteBuffer buffer, byte kind, int id, byte marker) {
+        if (kind == UNCORRELATED) {
+            buffer.put(marker);
+        } else {
+            buffer.put(kind);
+            buffer.putInt(id);
+            buffer.put(marker);
+        }
+    }
+
+    private void failAcquire(Exception e, Callback callback) {
+        log.error("Failed to acquire buffer to send data. Cause: {}", e.getMessage());
+        FailWriter.writeFile("Failed to acquire buffer to send data. Cause: ", e);
+        if (callback != null) {
+            callback.completeExceptionally(e);
+        }
     }
 
     /**
      * The core method. It acquires a buffer, assembles the entire frame by
      * executing the 'payloadWriter', and initiates the asynchronous send.
      *
+     * @param kind The correlated frame type, or {@link #UNCORRELATED}.
+     * @param id The correlation id, ignored for uncorrelated frames.
      * @param dataTypeMarker Marker for the data type.
      * @param payloadSize The size in bytes of the payload only.
      * @param callback The callback to notify of the result.
      * @param payloadWriter The action that writes the payload into the provided buffer.
+     * @return true if the frame has been queued; otherwise the callback has been failed.
      */
-    private void buildAndSendFrame(byte dataTypeMarker, int payloadSize, Callback callback, Consumer<ByteBuffer> payloadWriter) {
-        int totalPacketSize = 1 + Integer.BYTES + payloadSize;
+    private boolean buildAndSendFrame(byte kind, int id, byte dataTypeMarker, int payloadSize, Callback callback, Consumer<ByteBuffer> payloadWriter) {
+        return buildAndSendFrame(isCompact(kind), kind, id, dataTypeMarker, payloadSize, callback, payloadWriter);
+    }
+
+    /**
+     * @param compact true to write the compact header (see {@link CompactFrames}), decided once by the
+     *                caller since string and byte-array payloads differ between the two.
+     */
+    private boolean buildAndSendFrame(boolean compact, byte kind, int id, byte dataTypeMarker, int payloadSize, Callback callback, Consumer<ByteBuffer> payloadWriter) {
+        payloadSize += correlationOverhead(kind);
+        int frameLength = payloadSize + 1;
+        int totalPacketSize = (compact ? 1 + CompactFrames.varintSize(frameLength) : HEADER_SIZE - 1) + frameLength;
 
         ByteBuffer outputBuffer;
         try {
             outputBuffer = pool.acquire(totalPacketSize);
-        } catch (InterruptedException | MaxBufferSizeExceededException e) {
+        } catch (MaxBufferSizeExceededException | PoolExhaustedException e) {
             log.error("Failed to acquire buffer to send data. Cause: {}", e.getMessage());
             FailWriter.writeFile("Failed to acquire buffer to send data. Cause: ", e);
             if (callback != null) {
                 callback.completeExceptionally(e);
             }
-            return;
+            return false;
         }
 
         if (outputBuffer.capacity() < totalPacketSize) {
@@ -117,17 +676,20 @@ public class FrameEncoder {
             if (callback != null) {
                 callback.completeExceptionally(e);
             }
+            return false;
         }
 
         try {
-            outputBuffer.put(START_MARKER);
-            outputBuffer.putInt(payloadSize + 1);
-            outputBuffer.put(dataTypeMarker);
+            if (compact) {
+                outputBuffer.put(CompactFrames.START_MARKER);
+                CompactFrames.putVarint(outputBuffer, frameLength);
+            } else {
+                outputBuffer.put(START_MARKER);
+                outputBuffer.putInt(frameLength);
+            }
+            putType(outputBuffer, kind, id, dataTypeMarker);
             payloadWriter.accept(outputBuffer);
             outputBuffer.flip();
-
-            // Delega l'invio al DataEncoder, che è il responsabile dell'I/O di rete.
-            dataEncoder.send(outputBuffer, callback);
         } catch (Exception e) {
             log.error("Error while assembling the frame", e);
             FailWriter.writeFile("Error while assembling the frame. Cause: ", e);
@@ -135,6 +697,12 @@ public class FrameEncoder {
             if (callback != null) {
                 callback.completeExceptionally(e);
             }
+            return false;
         }
+
+        // Delega l'invio al DataEncoder, che è il responsabile dell'I/O di rete.
+        // From here the buffer and the callback belong to the encoder, which may complete both before returning.
+        dataEncoder.send(WriteContext.pooled(outputBuffer, callback));
+        return true;
     }
 }
@@ -0,0 +1,185 @@
+package it.sk8erboi17.network.transformers.encoder.op;
+
+import it.sk8erboi17.exception.MaxBufferSizeExceededException;
+import it.sk8erboi17.exception.PoolExhaustedException;
+import it.sk8erboi17.listeners.response.Callback;
+import it.sk8erboi17.network.transformers.encoder.AbstractDataEncoder;
+import it.sk8erboi17.network.transformers.encoder.FrameSink;
+import it.sk8erboi17.network.transformers.encoder.WriteContext;
+import it.sk8erboi17.network.transformers.pool.ByteBuffersPool;
+import it.sk8erboi17.network.transformers.pool.RefCountedBuffer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A message encoded once, ready to be written as it is to any number of connections.
+ * <p>
+ * The frame, fragments included for large messages, is encoded into a single shared buffer: every
+ * send writes a read-only view of it, and holds a reference to it until the write completes or fails.
+ * Sending a prepared frame to N connections thus costs one encoding and one buffer, instead of N of each.
+ * <p>
+ * A prepared frame can be sent any number of times, from any thread, until its creator calls
+ * {@link #release()}; the buffer goes back to the pool once it has been released and every write
+ * of it has completed. Frames too large for the pool are encoded into a direct buffer of their own.
+ * <p>
+ * The frame is encoded with no per-connection state: strings are always sent in full, never as
+ * references to a connection's string dictionary, and nothing is compressed.
+ */
+public final class PreparedFrame {
+
+    private final RefCountedBuffer owner;
+    // Read-only, position 0 and limit at the end of the frame: every send writes a duplicate.
+    private final ByteBuffer frame;
+
+    private PreparedFrame(RefCountedBuffer owner) {
+        this.owner = owner;
+        this.frame = owner.buffer().asReadOnlyBuffer();
+    }
+
+    /**
+     * Encodes a message with the standard header.
+     *
+     * @param message Any type {@link FrameEncoder#send(Object, Callback)} supports; null prepares a heartbeat.
+     * @throws IllegalArgumentException if the type is not supported.
+     * @throws IllegalStateException if the frame could not be encoded, e.g. because the pool is exhausted.
+     */
+    public static PreparedFrame of(Object message) {
+        return of(message, false);
+    }
+
+    /**
+     * Encodes a message.
+     *
+     * @param compactHeaders true to use the compact header when the frame fits one (see {@link FrameEncoder#enableCompactHeaders()}).
+     *                       Only send it to peers that understand compact frames.
+     * @throws IllegalArgumentException if the type is not supported.
+     * @throws IllegalStateException if the frame could not be encoded, e.g. because the pool is exhausted.
+     */
+    public static PreparedFrame of(Object message, boolean compactHeaders) {
+        FrameCollector capture = new FrameCollector();
+        FrameEncoder encoder = new FrameEncoder(capture);
+        if (compactHeaders) {
+            encoder.enableCompactHeaders();
+        }
+        encoder.send(message, capture);
+        if (capture.failure != null) {
+            throw new IllegalStateException("Failed to prepare the frame: " + capture.failure.getMessage(), capture.failure);
+        }
+        if (capture.frame == null) {
+            throw new IllegalStateException("Failed to prepare the frame: nothing was encoded.");
+        }
+        return new PreparedFrame(capture.frame);
+    }
+
+    /**
+     * Returns the size of the frame on the wire, in bytes.
+     */
+    public int size() {
+        return frame.remaining();
+    }
+
+    /**
+     * Queues the frame on a connection's outbound queue, without copying it.
+     *
+     * @param encoder The outbound queue of the connection.
+     * @param callback The callback to notify once the frame has been written, may be null.
+     * @throws IllegalStateException if the frame has already been released.
+     */
+    public void sendTo(AbstractDataEncoder encoder, Callback callback) {
+        owner.retain();
+        encoder.send(WriteContext.shared(frame.duplicate(), callback, owner));
+    }
+
+    /**
+     * Queues the frame like {@link #sendTo(AbstractDataEncoder, Callback)}, but never writes on the calling
+     * thread; see {@link AbstractDataEncoder#sendLater(WriteContext)}. For fan-outs, which must not wait
+     * on a slow connection whose transport writes blocking.
+     *
+     * @throws IllegalStateException if the frame has already been released.
+     */
+    public void sendLaterTo(AbstractDataEncoder encoder, Callback callback) {
+        owner.retain();
+        encoder.sendLater(WriteContext.shared(frame.duplicate(), callback, owner));
+    }
+
+    /**
+     * Returns the number of references held on the shared buffer: the creator's, until {@link #release()},
+     * and one per write not yet completed. Zero once the buffer is back in the pool.
+     */
+    int refCnt() {
+        return owner.refCnt();
+    }
+
+    /**
+     * Gives up the creator's reference. The frame can no longer be sent; writes already queued
+     * still complete, and the last one returns the buffer to the pool.
+     */
+    public void release() {
+        owner.release();
+    }
+
+    /**
+     * Keeps the single write the frame encoder produces for a message. A frame built in one pooled
+     * buffer is kept as it is; a frame spread over several buffers is gathered into one.
+     */
+    private static final class FrameCollector implements FrameSink, Callback {
+
+        private final ByteBuffersPool pool = ByteBuffersPool.getInstance();
+        private RefCountedBuffer frame;
+        private Throwable failure;
+
+        @Override
+        public void send(WriteContext context) {
+            ByteBuffer[] buffers = context.buffers();
+            ByteBuffer pooled = context.pooledBuffer();
+            if (frame == null && failure == null && context.sharedBuffer() == null
+                    && buffers.length == 1 && buffers[0] == pooled) {
+                frame = new RefCountedBuffer(pooled, pool);
+                return;
+            }
+            try {
+                if (frame != null) {
+                    throw new IllegalStateException("A prepared frame is a single write.");
+                }
+                frame = gather(context);
+            } catch (MaxBufferSizeExceededException | PoolExhaustedException | RuntimeException e) {
+                failure = e;
+            } finally {
+                AbstractDataEncoder.releaseBuffer(pool, pooled);
+                if (context.sharedBuffer() != null) {
+                    context.sharedBuffer().release();
+                }
+            }
+        }
+
+        private RefCountedBuffer gather(WriteContext context) throws MaxBufferSizeExceededException, PoolExhaustedException {
+            long size = context.remaining();
+            if (size > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Frame too large to be prepared: " + size + " bytes.");
+            }
+            ByteBuffer buffer;
+            ByteBuffersPool owner = null;
+            if (size <= ByteBuffersPool.LARGE_SIZE) {
+                buffer = pool.acquire((int) size);
+                owner = pool;
+            } else {
+                buffer = ByteBuffer.allocateDirect((int) size);
+            }
+            for (ByteBuffer source : context.buffers()) {
+                buffer.put(source.duplicate());
+            }
+            buffer.flip();
+            return new RefCountedBuffer(buffer, owner);
+        }
+
+        @Override
+        public void complete(Object o) {
+            // The write is never performed.
+        }
+
+        @Override
+        public void completeExceptionally(Throwable throwable) {
+            failure = throwable;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package it.sk8erboi17.network.transformers.encoder.op;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The sending side of a connection's string dictionary (see {@link it.sk8erboi17.network.transformers.DictionaryFrames}):
+ * the slot of every string defined so far, in least recently sent order.
+ * <p>
+ * Not thread-safe: the frame encoder holds its lock from the lookup until the frame has been queued,
+ * so that definitions and references reach the wire in the order the slots were assigned.
+ */
+final class StringDictionary {
+
+    private final int capacity;
+    // Access-ordered: the eldest entry is the least recently sent string.
+    private final Map<String, Integer> slots = new LinkedHashMap<>(16, 0.75f, true);
+    private final int[] freeSlots;
+    private int freeCount;
+    private int nextSlot;
+
+    StringDictionary(int capacity) {
+        this.capacity = capacity;
+        this.freeSlots = new int[capacity];
+    }
+
+    /**
+     * Returns the slot of the string, marking it as the most recently sent, or -1 if it has none.
+     */
+    int lookup(String s) {
+        Integer slot = slots.get(s);
+        return slot != null ? slot : -1;
+    }
+
+    /**
+     * Assigns a slot to a string that has none: a free one, or that of the least recently sent string once full.
+     */
+    int assign(String s) {
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else if (nextSlot < capacity) {
+            slot = nextSlot++;
+        } else {
+            Iterator<Integer> eldest = slots.values().iterator();
+            slot = eldest.next();
+            eldest.remove();
+        }
+        slots.put(s, slot);
+        return slot;
+    }
+
+    /**
+     * Frees the slot of a string whose definition could not be sent.
+     */
+    void release(String s) {
+        Integer slot = slots.remove(s);
+        if (slot != null) {
+            freeSlots[freeCount++] = slot;
+        }
+    }
+}
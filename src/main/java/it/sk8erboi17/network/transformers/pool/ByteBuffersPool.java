@@ -1,82 +1,386 @@
 package it.sk8erboi17.network.transformers.pool;
 
-import it.sk8erboi17.exception.IllegalSizeException;
 import it.sk8erboi17.exception.MaxBufferSizeExceededException;
-import it.sk8erboi17.utils.FailWriter;
+import it.sk8erboi17.exception.PoolExhaustedException;
+import it.sk8erboi17.network.transport.blocking.VirtualThreads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.ref.Cleaner;
 import java.nio.ByteBuffer;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
-    public class ByteBuffersPool {
-    private static final ByteBuffersPool instance = new ByteBuffersPool();
+/**
+ * A size-classed slab allocator of direct ByteBuffers.
+ * <p>
+ * Every size class is served in three tiers, none of which ever blocks:
+ * <ol>
+ *     <li>a small per-thread magazine, touched without any synchronization;</li>
+ *     <li>a lock-free shared depot, used to refill and spill magazines in batches;</li>
+ *     <li>fresh allocation, as long as the class is below its configured cap.</li>
+ * </ol>
+ * Nothing is allocated up front: the pool grows on demand and gives idle memory back
+ * once the depot holds more than {@link PoolConfig#maxIdleBytesPerClass()}.
+ * When a class is at its cap the {@link PoolConfig.ExhaustionPolicy} decides whether the
+ * caller gets an exception or an unpooled heap buffer; heap buffers are recognised on
+ * release and simply dropped.
+ * <p>
+ * Virtual threads skip the magazines and go straight to the depots: there may be one per connection,
+ * and each would otherwise keep its own cache of buffers until it is garbage collected.
+ * <p>
+ * The pool knows which of its buffers are leased: releasing one twice, or one it never handed out,
+ * throws an {@link IllegalStateException} instead of letting two callers lease the same buffer.
+ */
+public class ByteBuffersPool {
+    private static final Logger log = LoggerFactory.getLogger(ByteBuffersPool.class);
+    private static final Cleaner cleaner = Cleaner.create();
 
-    private static final int POOL_SIZE = 40;
-    private static final int SMALL_SIZE = 256;
-    private static final int MEDIUM_SIZE = 4096;
+    public static final int SMALL_SIZE = 256;
+    public static final int MEDIUM_SIZE = 4096;
     public static final int LARGE_SIZE = 65536;
-    private static final Logger log = LoggerFactory.getLogger(ByteBuffersPool.class);
 
-    private final BlockingQueue<ByteBuffer> smallBuffers = new ArrayBlockingQueue<>(POOL_SIZE);
-    private final BlockingQueue<ByteBuffer> mediumBuffers = new ArrayBlockingQueue<>(POOL_SIZE);
-    private final BlockingQueue<ByteBuffer> largeBuffers = new ArrayBlockingQueue<>(POOL_SIZE);
-
-    private ByteBuffersPool() {
-        for (int i = 0; i < POOL_SIZE; i++) {
-            try {
-                smallBuffers.put(ByteBuffer.allocateDirect(SMALL_SIZE));
-                mediumBuffers.put(ByteBuffer.allocateDirect(MEDIUM_SIZE));
-                largeBuffers.put(ByteBuffer.allocateDirect(LARGE_SIZE));
-            } catch (InterruptedException e) {
-                log.error("Error while creating pool {} ", e.getMessage(),e);
-                FailWriter.writeFile("Error while creating pool ", e);
-                Thread.currentThread().interrupt();
+    private static final ByteBuffersPool instance = new ByteBuffersPool(PoolConfig.defaults());
 
-            }
+    private final PoolConfig config;
+    private final SizeClass[] sizeClasses;
+    private final ThreadLocal<MagazineSet> magazines;
+
+    public ByteBuffersPool(PoolConfig config) {
+        if (config == null) {
+            throw new IllegalArgumentException("PoolConfig cannot be null.");
         }
+        this.config = config;
+        this.sizeClasses = new SizeClass[]{
+                new SizeClass(SMALL_SIZE, config),
+                new SizeClass(MEDIUM_SIZE, config),
+                new SizeClass(LARGE_SIZE, config)
+        };
+        this.magazines = ThreadLocal.withInitial(this::newMagazineSet);
     }
 
-    public ByteBuffer acquire(int size) throws InterruptedException, MaxBufferSizeExceededException {
-        ByteBuffer byteBuffer;
-        if(size <= SMALL_SIZE){
-            byteBuffer = smallBuffers.take();
-        }else if(size <= MEDIUM_SIZE){
-            byteBuffer = mediumBuffers.take();
-        }else if(size <= LARGE_SIZE){
-            byteBuffer = largeBuffers.take();
-        }else {
+    /**
+     * Leases a cleared buffer whose capacity is the smallest size class that fits {@code size}.
+     * Never blocks.
+     *
+     * @throws MaxBufferSizeExceededException if {@code size} is larger than {@link #LARGE_SIZE}.
+     * @throws PoolExhaustedException if the size class is at its cap and the policy is FAIL_FAST.
+     */
+    public ByteBuffer acquire(int size) throws MaxBufferSizeExceededException, PoolExhaustedException {
+        int index = classIndexForSize(size);
+        if (index < 0) {
             throw new MaxBufferSizeExceededException("Dimensione richiesta (" + size + ") non valida o supera la massima consentita (" + LARGE_SIZE + ")");
         }
+        SizeClass sizeClass = sizeClasses[index];
 
+        ByteBuffer byteBuffer;
+        if (VirtualThreads.isCurrentThreadVirtual()) {
+            byteBuffer = sizeClass.pollDepot();
+        } else {
+            Magazine magazine = magazines.get().magazines[index];
+            byteBuffer = magazine.pop();
+            if (byteBuffer == null) {
+                byteBuffer = sizeClass.refill(magazine);
+            }
+        }
+        if (byteBuffer == null) {
+            byteBuffer = sizeClass.grow();
+        }
+        if (byteBuffer == null) {
+            return onExhausted(sizeClass);
+        }
+
+        sizeClass.leased.add(new Lease(byteBuffer));
+        sizeClass.live.increment();
         byteBuffer.clear();
+        byteBuffer.order(ByteOrder.BIG_ENDIAN);
         return byteBuffer;
     }
 
-    public void release(ByteBuffer byteBuffer) throws InterruptedException {
-        if(byteBuffer == null) {
+    /**
+     * Gives a buffer back to the pool. Never blocks; unpooled fallback buffers are dropped.
+     *
+     * @throws IllegalArgumentException if the buffer does not have the capacity of a size class.
+     * @throws IllegalStateException if the buffer is not currently leased from this pool, e.g. because it has already been released.
+     */
+    public void release(ByteBuffer byteBuffer) {
+        if (byteBuffer == null) {
             throw new NullPointerException("Null buffer size");
         }
-        int size = byteBuffer.capacity();
+        int index = classIndexForCapacity(byteBuffer.capacity());
+        if (index < 0) {
+            throw new IllegalArgumentException("Attempted to release a buffer with an illegal capacity: " + byteBuffer.capacity());
+        }
+        if (!byteBuffer.isDirect()) {
+            // Fallback allocation handed out while the class was exhausted: let the GC have it.
+            return;
+        }
 
-        if (size != SMALL_SIZE && size != MEDIUM_SIZE && size != LARGE_SIZE)  {
-            throw new IllegalArgumentException("Attempted to release a buffer with an illegal capacity: " + size);
+        SizeClass sizeClass = sizeClasses[index];
+        if (!sizeClass.leased.remove(new Lease(byteBuffer))) {
+            throw new IllegalStateException("Attempted to release a buffer that is not leased from this pool: already released?");
         }
+        sizeClass.live.decrement();
 
-        if (size == SMALL_SIZE) {
-            smallBuffers.put(byteBuffer);
-        } else if (size == MEDIUM_SIZE) {
-            mediumBuffers.put(byteBuffer);
-        } else {
-            largeBuffers.put(byteBuffer);
+        if (VirtualThreads.isCurrentThreadVirtual()) {
+            sizeClass.returnToDepot(byteBuffer);
+            return;
+        }
+        Magazine magazine = magazines.get().magazines[index];
+        if (!magazine.push(byteBuffer)) {
+            sizeClass.spill(magazine, magazine.capacity() / 2);
+            if (!magazine.push(byteBuffer)) {
+                sizeClass.returnToDepot(byteBuffer);
+            }
         }
+    }
 
+    /**
+     * Releases every idle buffer held in the shared depots, returning their memory to the system.
+     * Buffers cached in thread-local magazines are left untouched.
+     */
+    public void trim() {
+        for (SizeClass sizeClass : sizeClasses) {
+            sizeClass.trim();
+        }
     }
 
+    /**
+     * Returns a snapshot of the counters of every size class, smallest first.
+     */
+    public List<PoolStats> stats() {
+        List<PoolStats> stats = new ArrayList<>(sizeClasses.length);
+        for (SizeClass sizeClass : sizeClasses) {
+            stats.add(sizeClass.stats());
+        }
+        return stats;
+    }
+
+    public PoolConfig getConfig() {
+        return config;
+    }
+
+    private ByteBuffer onExhausted(SizeClass sizeClass) throws PoolExhaustedException {
+        sizeClass.exhaustions.increment();
+        if (config.exhaustionPolicy() == PoolConfig.ExhaustionPolicy.FAIL_FAST) {
+            throw new PoolExhaustedException("Buffer pool exhausted for size class " + sizeClass.bufferSize
+                    + " (" + sizeClass.maxBuffers + " buffers allocated)");
+        }
+        sizeClass.fallbackAllocations.increment();
+        log.debug("Size class {} exhausted, falling back to an unpooled heap buffer.", sizeClass.bufferSize);
+        return ByteBuffer.allocate(sizeClass.bufferSize);
+    }
+
+    private static int classIndexForSize(int size) {
+        if (size <= SMALL_SIZE) {
+            return 0;
+        } else if (size <= MEDIUM_SIZE) {
+            return 1;
+        } else if (size <= LARGE_SIZE) {
+            return 2;
+        }
+        return -1;
+    }
+
+    private static int classIndexForCapacity(int capacity) {
+        return switch (capacity) {
+            case SMALL_SIZE -> 0;
+            case MEDIUM_SIZE -> 1;
+            case LARGE_SIZE -> 2;
+            default -> -1;
+        };
+    }
+
+    private MagazineSet newMagazineSet() {
+        Magazine[] threadMagazines = new Magazine[sizeClasses.length];
+        for (int i = 0; i < threadMagazines.length; i++) {
+            threadMagazines[i] = new Magazine(config.magazineSize());
+        }
+        MagazineSet set = new MagazineSet(threadMagazines);
+        // When the owning thread dies its magazines become unreachable: hand the buffers back to the depots.
+        cleaner.register(set, new MagazineReclaimer(threadMagazines, sizeClasses));
+        return set;
+    }
 
     public static ByteBuffersPool getInstance() {
         return instance;
     }
 
-}
\ No newline at end of file
+    /**
+     * One size class: the shared depot plus its accounting.
+     */
+    private static final class SizeClass {
+        private final int bufferSize;
+        private final int maxBuffers;
+        private final int maxIdleBuffers;
+        private final int refillBatch;
+
+        private final Queue<ByteBuffer> depot = new ConcurrentLinkedQueue<>();
+        // The buffers currently handed out, to catch a buffer released twice.
+        private final Set<Lease> leased = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger depotSize = new AtomicInteger();
+        private final AtomicInteger allocated = new AtomicInteger();
+        private final AtomicInteger highWater = new AtomicInteger();
+        private final LongAdder live = new LongAdder();
+        private final LongAdder fallbackAllocations = new LongAdder();
+        private final LongAdder exhaustions = new LongAdder();
+
+        private SizeClass(int bufferSize, PoolConfig config) {
+            this.bufferSize = bufferSize;
+            this.maxBuffers = (int) Math.max(1, Math.min(Integer.MAX_VALUE, config.maxBytesPerClass() / bufferSize));
+            this.maxIdleBuffers = (int) Math.min(Integer.MAX_VALUE, config.maxIdleBytesPerClass() / bufferSize);
+            this.refillBatch = Math.max(1, config.magazineSize() / 2);
+        }
+
+        /**
+         * Moves up to half a magazine from the depot into {@code magazine} and returns one more buffer.
+         */
+        private ByteBuffer refill(Magazine magazine) {
+            ByteBuffer first = pollDepot();
+            if (first == null) {
+                return null;
+            }
+            for (int i = 1; i < refillBatch; i++) {
+                ByteBuffer next = pollDepot();
+                if (next == null) {
+                    break;
+                }
+                if (!magazine.push(next)) {
+                    returnToDepot(next);
+                    break;
+                }
+            }
+            return first;
+        }
+
+        private ByteBuffer pollDepot() {
+            ByteBuffer buffer = depot.poll();
+            if (buffer != null) {
+                depotSize.decrementAndGet();
+            }
+            return buffer;
+        }
+
+        private ByteBuffer grow() {
+            int count = allocated.incrementAndGet();
+            if (count > maxBuffers) {
+                allocated.decrementAndGet();
+                return null;
+            }
+            int high;
+            while (count > (high = highWater.get()) && !highWater.compareAndSet(high, count)) {
+                Thread.onSpinWait();
+            }
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+
+        private void spill(Magazine magazine, int count) {
+            for (int i = 0; i < count; i++) {
+                ByteBuffer buffer = magazine.pop();
+                if (buffer == null) {
+                    return;
+                }
+                returnToDepot(buffer);
+            }
+        }
+
+        private void returnToDepot(ByteBuffer buffer) {
+            if (depotSize.incrementAndGet() > maxIdleBuffers) {
+                // Enough idle memory already: drop this buffer and let its memory be reclaimed.
+                depotSize.decrementAndGet();
+                allocated.decrementAndGet();
+                return;
+            }
+            depot.offer(buffer);
+        }
+
+        private void trim() {
+            while (pollDepot() != null) {
+                allocated.decrementAndGet();
+            }
+        }
+
+        private PoolStats stats() {
+            int currentlyAllocated = allocated.get();
+            long leased = live.sum();
+            return new PoolStats(bufferSize, currentlyAllocated, leased, Math.max(0, currentlyAllocated - leased),
+                    highWater.get(), fallbackAllocations.sum(), exhaustions.sum());
+        }
+    }
+
+    /**
+     * A tiny LIFO stack of buffers owned by a single thread.
+     */
+    private static final class Magazine {
+        private final ByteBuffer[] buffers;
+        private int count;
+
+        private Magazine(int capacity) {
+            this.buffers = new ByteBuffer[capacity];
+        }
+
+        private ByteBuffer pop() {
+            if (count == 0) {
+                return null;
+            }
+            ByteBuffer buffer = buffers[--count];
+            buffers[count] = null;
+            return buffer;
+        }
+
+        private boolean push(ByteBuffer buffer) {
+            if (count == buffers.length) {
+                return false;
+            }
+            buffers[count++] = buffer;
+            return true;
+        }
+
+        private int capacity() {
+            return buffers.length;
+        }
+    }
+
+    /**
+     * Identifies a leased buffer by identity: the equality of ByteBuffers compares their content.
+     */
+    private record Lease(ByteBuffer buffer) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Lease other && other.buffer == buffer;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(buffer);
+        }
+    }
+
+    /**
+     * The thread-local value; its reachability tracks the lifetime of the owning thread.
+     */
+    private record MagazineSet(Magazine[] magazines) {}
+
+    /**
+     * Cleaner action that returns the content of a dead thread's magazines to the depots.
+     * It must not reference the MagazineSet itself, or the set would never become unreachable.
+     */
+    private record MagazineReclaimer(Magazine[] magazines, SizeClass[] sizeClasses) implements Runnable {
+        @Override
+        public void run() {
+            for (int i = 0; i < magazines.length; i++) {
+                ByteBuffer buffer;
+                while ((buffer = magazines[i].pop()) != null) {
+                    sizeClasses[i].returnToDepot(buffer);
+                }
+            }
+        }
+    }
+}
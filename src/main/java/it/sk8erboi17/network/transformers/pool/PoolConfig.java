@@ -0,0 +1,45 @@
+package it.sk8erboi17.network.transformers.pool;
+
+/**
+ * Tuning knobs of a {@link ByteBuffersPool}.
+ * The defaults can be overridden with system properties, so the shared instance
+ * can be configured without touching code:
+ * <ul>
+ *     <li>{@code pipelines.pool.maxBytesPerClass} - direct memory each size class may grow to (default 64 MB)</li>
+ *     <li>{@code pipelines.pool.maxIdleBytesPerClass} - idle memory kept in the shared depot before trimming (default 8 MB)</li>
+ *     <li>{@code pipelines.pool.magazineSize} - buffers cached per thread and size class (default 16)</li>
+ *     <li>{@code pipelines.pool.exhaustionPolicy} - {@code FAIL_FAST} or {@code ALLOCATE} (default)</li>
+ * </ul>
+ *
+ * @param maxBytesPerClass     Upper bound of pooled direct memory for each size class.
+ * @param maxIdleBytesPerClass Idle memory above this bound is released when buffers come back.
+ * @param magazineSize         Capacity of the per-thread cache of each size class.
+ * @param exhaustionPolicy     What to do when a size class has reached its cap.
+ */
+public record PoolConfig(long maxBytesPerClass, long maxIdleBytesPerClass, int magazineSize, ExhaustionPolicy exhaustionPolicy) {
+
+    public enum ExhaustionPolicy {
+        /** Throw a PoolExhaustedException immediately. */
+        FAIL_FAST,
+        /** Hand out an unpooled heap buffer that is simply dropped on release. */
+        ALLOCATE
+    }
+
+    public PoolConfig {
+        if (maxBytesPerClass <= 0 || maxIdleBytesPerClass < 0 || magazineSize < 0) {
+            throw new IllegalArgumentException("Invalid pool configuration.");
+        }
+        if (exhaustionPolicy == null) {
+            throw new IllegalArgumentException("exhaustionPolicy cannot be null.");
+        }
+    }
+
+    public static PoolConfig defaults() {
+        return new PoolConfig(
+                Long.getLong("pipelines.pool.maxBytesPerClass", 64L * 1024 * 1024),
+                Long.getLong("pipelines.pool.maxIdleBytesPerClass", 8L * 1024 * 1024),
+                Integer.getInteger("pipelines.pool.magazineSize", 16),
+                ExhaustionPolicy.valueOf(System.getProperty("pipelines.pool.exhaustionPolicy", ExhaustionPolicy.ALLOCATE.name()))
+        );
+    }
+}
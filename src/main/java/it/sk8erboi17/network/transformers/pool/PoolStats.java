@@ -0,0 +1,18 @@
+package it.sk8erboi17.network.transformers.pool;
+
+/**
+ * A point-in-time snapshot of one size class of the {@link ByteBuffersPool}.
+ * Counters are read without locking, so they are only approximately consistent with each other.
+ *
+ * @param bufferSize          The capacity of the buffers of this class.
+ * @param allocated           Pooled direct buffers currently in existence (leased + idle).
+ * @param live                Pooled buffers currently leased to callers.
+ * @param idle                Pooled buffers waiting in the depot or in thread-local magazines.
+ * @param highWater           The highest value {@code allocated} has ever reached.
+ * @param fallbackAllocations Unpooled buffers handed out because the class was at its cap.
+ * @param exhaustions         Acquisitions that hit the cap.
+ */
+public record PoolStats(int bufferSize, int allocated, long live, long idle, int highWater,
+                        long fallbackAllocations, long exhaustions) {
+
+}
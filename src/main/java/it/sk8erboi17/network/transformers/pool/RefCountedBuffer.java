@@ -0,0 +1,71 @@
+package it.sk8erboi17.network.transformers.pool;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A ByteBuffer shared by several owners, returned to its pool when the last owner releases it.
+ * A new instance starts with a reference count of one, held by its creator.
+ */
+public final class RefCountedBuffer {
+
+    private final ByteBuffer buffer;
+    private final ByteBuffersPool pool;
+    private final AtomicInteger refCnt = new AtomicInteger(1);
+
+    /**
+     * @param buffer The shared buffer.
+     * @param pool The pool the buffer goes back to, or null if it is not pooled.
+     */
+    public RefCountedBuffer(ByteBuffer buffer, ByteBuffersPool pool) {
+        if (buffer == null) {
+            throw new IllegalArgumentException("Buffer cannot be null.");
+        }
+        this.buffer = buffer;
+        this.pool = pool;
+    }
+
+    public ByteBuffer buffer() {
+        return buffer;
+    }
+
+    public int refCnt() {
+        return refCnt.get();
+    }
+
+    /**
+     * Adds an owner.
+     *
+     * @throws IllegalStateException if the buffer has already been released by its last owner.
+     */
+    public RefCountedBuffer retain() {
+        int count;
+        do {
+            count = refCnt.get();
+            if (count <= 0) {
+                throw new IllegalStateException("Buffer already released.");
+            }
+        } while (!refCnt.compareAndSet(count, count + 1));
+        return this;
+    }
+
+    /**
+     * Removes an owner, returning the buffer to its pool if it was the last one.
+     *
+     * @return true if this call released the buffer.
+     */
+    public boolean release() {
+        int count = refCnt.decrementAndGet();
+        if (count == 0) {
+            if (pool != null) {
+                pool.release(buffer);
+            }
+            return true;
+        }
+        if (count < 0) {
+            refCnt.incrementAndGet();
+            throw new IllegalStateException("Buffer released more times than it was retained.");
+        }
+        return false;
+    }
+}
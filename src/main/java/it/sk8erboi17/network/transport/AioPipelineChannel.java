@@ -0,0 +1,130 @@
+package it.sk8erboi17.network.transport;
+
+import it.sk8erboi17.listeners.output.AsyncChannelSocket;
+import it.sk8erboi17.listeners.response.Callback;
+import it.sk8erboi17.network.transformers.TypeNetwork;
+import it.sk8erboi17.network.transformers.decoder.DataDecoder;
+import it.sk8erboi17.network.transformers.decoder.op.FrameDecoder;
+import it.sk8erboi17.network.transformers.encoder.AbstractDataEncoder;
+import it.sk8erboi17.network.transformers.encoder.DataEncoder;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@link PipelineChannel} over an {@link AsynchronousSocketChannel}: reads and writes are
+ * completion-handler chains run by the channel group's threads.
+ * <p>
+ * There is one instance per socket, obtained with {@link #of(AsynchronousSocketChannel)}: the pipelines
+ * built from the same socket share it, and with it the single outbound queue of the connection.
+ * An AsynchronousSocketChannel allows only one pending write, so two queues on one socket would
+ * collide with a WritePendingException.
+ */
+public class AioPipelineChannel implements PipelineChannel {
+
+    // The channel of every open socket; an entry is removed when its channel is closed.
+    private static final Map<AsynchronousSocketChannel, AioPipelineChannel> CHANNELS = new ConcurrentHashMap<>();
+
+    private final AsynchronousSocketChannel socketChannel;
+    private final DataEncoder encoder;
+    private volatile DataDecoder decoder;
+    private volatile boolean readingPaused;
+
+    private AioPipelineChannel(AsynchronousSocketChannel socketChannel) {
+        this.socketChannel = socketChannel;
+        this.encoder = new DataEncoder(socketChannel, this::close);
+        // Whatever closes the connection, a write failure, the read loop or close(), reports it to the encoder.
+        encoder.addCloseListener(() -> CHANNELS.remove(socketChannel, this));
+    }
+
+    /**
+     * Returns the channel of the given socket, creating it the first time.
+     */
+    public static AioPipelineChannel of(AsynchronousSocketChannel socketChannel) {
+        if (socketChannel == null) {
+            throw new IllegalArgumentException("SocketChannel cannot be null.");
+        }
+        AioPipelineChannel channel = CHANNELS.computeIfAbsent(socketChannel, AioPipelineChannel::new);
+        if (!socketChannel.isOpen()) {
+            // Closed before or while registering: do not keep it.
+            channel.close();
+        }
+        return channel;
+    }
+
+    @Override
+    public TypeNetwork getType() {
+        return TypeNetwork.AIO;
+    }
+
+    @Override
+    public SocketAddress getRemoteAddress() {
+        try {
+            return socketChannel.getRemoteAddress();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return socketChannel.isOpen();
+    }
+
+    @Override
+    public void close() {
+        AsyncChannelSocket.closeChannelSocketChannel(socketChannel);
+        encoder.onChannelClosed();
+        DataDecoder current = decoder;
+        if (current != null) {
+            current.onChannelClosed();
+        }
+    }
+
+    @Override
+    public AbstractDataEncoder getEncoder() {
+        return encoder;
+    }
+
+    @Override
+    public void startReading(FrameDecoder frameDecoder, Callback callback) {
+        DataDecoder dataDecoder = new DataDecoder(socketChannel, callback, frameDecoder);
+        // The read loop closes the socket itself when the peer goes away.
+        frameDecoder.addDisconnectListener(encoder::onChannelClosed);
+        if (readingPaused) {
+            dataDecoder.pauseDecoding();
+        }
+        this.decoder = dataDecoder;
+        dataDecoder.startDecoding();
+    }
+
+    @Override
+    public void pauseReading() {
+        readingPaused = true;
+        DataDecoder current = decoder;
+        if (current != null) {
+            current.pauseDecoding();
+        }
+    }
+
+    @Override
+    public void resumeReading() {
+        readingPaused = false;
+        DataDecoder current = decoder;
+        if (current != null) {
+            current.resumeDecoding();
+        }
+    }
+
+    @Override
+    public boolean isReadingPaused() {
+        return readingPaused;
+    }
+
+    public AsynchronousSocketChannel getSocketChannel() {
+        return socketChannel;
+    }
+}
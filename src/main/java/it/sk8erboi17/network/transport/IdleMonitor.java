@@ -0,0 +1,142 @@
+package it.sk8erboi17.network.transport;
+
+import it.sk8erboi17.network.transformers.decoder.op.FrameDecoder;
+import it.sk8erboi17.network.transformers.encoder.AbstractDataEncoder;
+import it.sk8erboi17.network.transformers.encoder.op.FrameEncoder;
+import it.sk8erboi17.utils.HashedWheelTimer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches one connection for inactivity, on a shared {@link HashedWheelTimer}.
+ * <p>
+ * Reads and writes only stamp the time they happened; they never touch the timer. The monitor keeps
+ * a single timeout per connection, set to the nearest of its deadlines, and when it fires compares
+ * the stamps with the configured limits:
+ * <ul>
+ *     <li>nothing received for {@code readIdleMillis}: the peer is considered dead and the connection closed;</li>
+ *     <li>nothing sent for {@code writeIdleMillis}: a heartbeat is queued on the connection's single outbound
+ *     queue, and written by the transport's own threads, so that the peer's own read-idle check keeps seeing
+ *     this side alive.</li>
+ * </ul>
+ * A limit of zero disables that check, and reads paused on purpose do not count as idleness.
+ * The monitor stops by itself once the connection is closed.
+ */
+public final class IdleMonitor implements Runnable {
+    private static final Logger log = LoggerFactory.getLogger(IdleMonitor.class);
+
+    /** Read-idle limit applied when none is configured, as the former per-read timeout of the AIO transport. */
+    public static final long DEFAULT_READ_IDLE_MILLIS = 15_000;
+
+    private final PipelineChannel channel;
+    private final FrameDecoder frameDecoder;
+    private final AbstractDataEncoder encoder;
+    private final FrameEncoder frameEncoder;
+    private final HashedWheelTimer timer;
+    private final long readIdleNanos;
+    private final long writeIdleNanos;
+    private volatile HashedWheelTimer.Timeout timeout;
+    private volatile boolean cancelled;
+    // Last time reads were seen paused: nothing is received then, and that is not idleness. Timer thread only.
+    private long lastPausedNanos = System.nanoTime();
+
+    private IdleMonitor(PipelineChannel channel, FrameDecoder frameDecoder, HashedWheelTimer timer, long readIdleMillis, long writeIdleMillis) {
+        this.channel = channel;
+        this.frameDecoder = frameDecoder;
+        this.encoder = channel.getEncoder();
+        // The timer thread must not block: heartbeats are written by the transport's own threads.
+        this.frameEncoder = writeIdleMillis > 0 ? new FrameEncoder(encoder::sendLater) : null;
+        this.timer = timer;
+        this.readIdleNanos = TimeUnit.MILLISECONDS.toNanos(readIdleMillis);
+        this.writeIdleNanos = TimeUnit.MILLISECONDS.toNanos(writeIdleMillis);
+    }
+
+    /**
+     * Starts watching a connection on the shared timer.
+     *
+     * @param frameDecoder The decoder the connection's reads are fed to.
+     * @param readIdleMillis Inactivity after which the connection is closed; 0 to never close it.
+     * @param writeIdleMillis Inactivity after which a heartbeat is sent; 0 to never send one.
+     * @return The monitor, or null if both limits are disabled.
+     */
+    public static IdleMonitor watch(PipelineChannel channel, FrameDecoder frameDecoder, long readIdleMillis, long writeIdleMillis) {
+        return watch(channel, frameDecoder, HashedWheelTimer.shared(), readIdleMillis, writeIdleMillis);
+    }
+
+    public static IdleMonitor watch(PipelineChannel channel, FrameDecoder frameDecoder, HashedWheelTimer timer, long readIdleMillis, long writeIdleMillis) {
+        if (readIdleMillis < 0 || writeIdleMillis < 0) {
+            throw new IllegalArgumentException("Idle timeouts cannot be negative.");
+        }
+        if (readIdleMillis == 0 && writeIdleMillis == 0) {
+            return null;
+        }
+        IdleMonitor monitor = new IdleMonitor(channel, frameDecoder, timer, readIdleMillis, writeIdleMillis);
+        monitor.schedule(Math.min(positiveOrMax(monitor.readIdleNanos), positiveOrMax(monitor.writeIdleNanos)));
+        return monitor;
+    }
+
+    @Override
+    public void run() {
+        if (cancelled || !channel.isOpen()) {
+            return;
+        }
+        long now = System.nanoTime();
+        long next = Long.MAX_VALUE;
+
+        if (readIdleNanos > 0) {
+            if (channel.isReadingPaused()) {
+                lastPausedNanos = now;
+            }
+            long readIdle = Math.min(now - frameDecoder.getLastReadNanos(), now - lastPausedNanos);
+            if (readIdle >= readIdleNanos) {
+                log.warn("Timeout: Client {} inactive for {} ms. Closing connection.", channel.getRemoteAddress(), TimeUnit.NANOSECONDS.toMillis(readIdle));
+                channel.close();
+                return;
+            }
+            next = readIdleNanos - readIdle;
+        }
+
+        if (writeIdleNanos > 0) {
+            long writeIdle = now - encoder.getLastWriteNanos();
+            if (writeIdle >= writeIdleNanos) {
+                // Bytes still queued mean a write is in progress: the connection is busy, not idle.
+                if (encoder.getPendingBytes() == 0) {
+                    frameEncoder.sendHeartbeat(null);
+                }
+                writeIdle = 0;
+            }
+            next = Math.min(next, writeIdleNanos - writeIdle);
+        }
+
+        schedule(next);
+    }
+
+    private void schedule(long delayNanos) {
+        if (cancelled) {
+            return;
+        }
+        HashedWheelTimer.Timeout scheduled = timer.schedule(this, delayNanos, TimeUnit.NANOSECONDS);
+        timeout = scheduled;
+        // A cancel() that ran meanwhile may have cancelled the previous timeout instead of this one.
+        if (cancelled) {
+            scheduled.cancel();
+        }
+    }
+
+    /**
+     * Stops watching the connection: the pending check is cancelled and no further one is scheduled.
+     */
+    public void cancel() {
+        cancelled = true;
+        HashedWheelTimer.Timeout current = timeout;
+        if (current != null) {
+            current.cancel();
+        }
+    }
+
+    private static long positiveOrMax(long nanos) {
+        return nanos > 0 ? nanos : Long.MAX_VALUE;
+    }
+}
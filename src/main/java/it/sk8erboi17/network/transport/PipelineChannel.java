@@ -0,0 +1,63 @@
+package it.sk8erboi17.network.transport;
+
+import it.sk8erboi17.listeners.response.Callback;
+import it.sk8erboi17.network.transformers.TypeNetwork;
+import it.sk8erboi17.network.transformers.decoder.op.FrameDecoder;
+import it.sk8erboi17.network.transformers.encoder.AbstractDataEncoder;
+
+import java.net.SocketAddress;
+
+/**
+ * A connection, independent of the transport that moves its bytes.
+ * <p>
+ * {@link it.sk8erboi17.network.pipeline.in.PipelineIn} and {@link it.sk8erboi17.network.pipeline.out.PipelineOut}
+ * work on top of this interface, so the same pipelines run over any {@link TypeNetwork}:
+ * the transport only decides who performs the reads and the writes.
+ */
+public interface PipelineChannel {
+
+    TypeNetwork getType();
+
+    /**
+     * Returns the address of the peer, or null if it cannot be determined.
+     */
+    SocketAddress getRemoteAddress();
+
+    boolean isOpen();
+
+    /**
+     * Closes the connection. Queued writes are failed. Idempotent.
+     */
+    void close();
+
+    /**
+     * Returns the outbound queue of this connection. There is exactly one per channel,
+     * shared by everything that writes to it.
+     */
+    AbstractDataEncoder getEncoder();
+
+    /**
+     * Starts feeding the bytes read from the connection to the frame decoder. Must be called once.
+     *
+     * @param frameDecoder The decoder of this connection.
+     * @param callback The callback that receives the decoded messages.
+     */
+    void startReading(FrameDecoder frameDecoder, Callback callback);
+
+    /**
+     * Stops reading the connection until {@link #resumeReading()}, so that a consumer can catch up.
+     * What the peer keeps sending piles up in the socket buffers, then TCP flow control stops it: nothing
+     * is buffered by the pipeline. Frames already read are still delivered. The connection is not
+     * considered idle while paused.
+     * <p>
+     * Idempotent, and safe to call from any thread, callbacks included; it may be called before {@link #startReading}.
+     */
+    void pauseReading();
+
+    /**
+     * Resumes reading after {@link #pauseReading()}. Idempotent, and safe to call from any thread.
+     */
+    void resumeReading();
+
+    boolean isReadingPaused();
+}
@@ -0,0 +1,21 @@
+package it.sk8erboi17.network.transport;
+
+/**
+ * Receives the connections accepted by a server, whatever their transport.
+ */
+public interface PipelineConnectionRequest {
+
+    /**
+     * Handles a newly accepted client connection.
+     *
+     * @param channel The accepted connection; reads start once a PipelineIn is built on it.
+     */
+    void acceptConnection(PipelineChannel channel);
+
+    /**
+     * Handles a failure during the connection acceptance process.
+     *
+     * @param exc The exception that occurred.
+     */
+    void onConnectionFailed(Throwable exc);
+}
@@ -0,0 +1,105 @@
+package it.sk8erboi17.network.transport;
+
+import it.sk8erboi17.ConnectionRequest;
+import it.sk8erboi17.Listener;
+import it.sk8erboi17.listeners.input.AsyncInputSocket;
+import it.sk8erboi17.listeners.output.AsyncChannelSocket;
+import it.sk8erboi17.network.transformers.TypeNetwork;
+import it.sk8erboi17.network.transport.blocking.BlockingTransport;
+import it.sk8erboi17.network.transport.nio.NioEventLoopGroup;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.AsynchronousServerSocketChannel;
+import java.nio.channels.AsynchronousSocketChannel;
+
+/**
+ * Opens client and server connections with the transport chosen through {@link TypeNetwork},
+ * so a deployment can switch transport without touching its pipelines.
+ * <p>
+ * The NIO event loops are created on first use; their number defaults to the number of
+ * processors and can be set with the {@code pipelines.nio.threads} system property.
+ */
+public final class Transports {
+
+    private static NioEventLoopGroup nioGroup;
+
+    private Transports() {
+    }
+
+    /**
+     * Opens a connection to the given address. Blocks until it is established.
+     */
+    public static PipelineChannel connect(InetSocketAddress address, TypeNetwork type) throws IOException {
+        return switch (type) {
+            case AIO -> AioPipelineChannel.of(AsyncChannelSocket.createChannel(address));
+            case NIO -> nioGroup().connect(address);
+            case VIRTUAL -> BlockingTransport.connect(address);
+        };
+    }
+
+    /**
+     * Binds the given address, with a backlog of {@link Listener#DEFAULT_BACKLOG}, and passes every accepted connection to {@code request}.
+     *
+     * @return The server channel; close it to stop accepting.
+     */
+    public static Closeable listen(InetSocketAddress address, TypeNetwork type, PipelineConnectionRequest request) throws IOException {
+        return listen(address, type, Listener.DEFAULT_BACKLOG, request);
+    }
+
+    /**
+     * Binds the given address and passes every accepted connection to {@code request}.
+     *
+     * @param backlog The number of pending connections the kernel may queue while they wait to be accepted.
+     * @return The server channel; close it to stop accepting.
+     */
+    public static Closeable listen(InetSocketAddress address, TypeNetwork type, int backlog, PipelineConnectionRequest request) throws IOException {
+        switch (type) {
+            case AIO -> {
+                AsynchronousServerSocketChannel serverChannel = AsyncInputSocket.createInput(address, backlog, false);
+                Listener.getInstance().startConnectionListen(serverChannel, new ConnectionRequest() {
+                    @Override
+                    public void acceptConnection(AsynchronousSocketChannel socketChannel, Object attachment) {
+                        request.acceptConnection(AioPipelineChannel.of(socketChannel));
+                    }
+
+                    @Override
+                    public void onConnectionFailed(Throwable exc) {
+                        request.onConnectionFailed(exc);
+                    }
+                });
+                return serverChannel;
+            }
+            case NIO -> {
+                return nioGroup().bind(address, backlog, request);
+            }
+            case VIRTUAL -> {
+                return BlockingTransport.bind(address, backlog, request);
+            }
+            default -> throw new IllegalArgumentException("Unsupported transport: " + type);
+        }
+    }
+
+    /**
+     * Returns the event loops of the NIO transport, creating them on first use.
+     */
+    public static synchronized NioEventLoopGroup nioGroup() throws IOException {
+        if (nioGroup == null) {
+            int threads = Integer.getInteger("pipelines.nio.threads", Runtime.getRuntime().availableProcessors());
+            nioGroup = new NioEventLoopGroup(Math.max(1, threads));
+        }
+        return nioGroup;
+    }
+
+    /**
+     * Stops the NIO event loops, closing their connections. The AIO side is shut down
+     * through {@link AsyncChannelSocket#shutdown()} and {@link Listener#closeListener()}.
+     */
+    public static synchronized void shutdown() {
+        if (nioGroup != null) {
+            nioGroup.shutdown();
+            nioGroup = null;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package it.sk8erboi17.network.transport.blocking;
+
+import it.sk8erboi17.network.transformers.encoder.AbstractDataEncoder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.Executor;
+
+/**
+ * Writes the outbound queue of a blocking connection.
+ * <p>
+ * Writes are plain blocking gathering writes, performed by the thread that owns the write loop:
+ * the first sender that finds the encoder idle writes its frame and everything queued behind it
+ * by the other senders, then returns. On virtual threads a full socket buffer only parks the
+ * writing thread.
+ */
+class BlockingDataEncoder extends AbstractDataEncoder {
+
+    private final BlockingPipelineChannel channel;
+
+    BlockingDataEncoder(BlockingPipelineChannel channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    protected boolean write(ByteBuffer[] buffers, int count) throws IOException {
+        SocketChannel socketChannel = channel.getSocketChannel();
+        ByteBuffer last = buffers[count - 1];
+        while (last.hasRemaining()) {
+            socketChannel.write(buffers, 0, count);
+        }
+        return true;
+    }
+
+    /**
+     * The writes of a blocking connection may block, so {@link #sendLater} hands them to another thread.
+     */
+    @Override
+    protected Executor writeExecutor() {
+        return task -> VirtualThreads.execute("pipelines-write", task);
+    }
+
+    @Override
+    protected boolean isChannelOpen() {
+        return channel.isOpen();
+    }
+
+    @Override
+    protected void closeChannel() {
+        channel.close();
+    }
+}
@@ -0,0 +1,175 @@
+package it.sk8erboi17.network.transport.blocking;
+
+import it.sk8erboi17.exception.MaxBufferSizeExceededException;
+import it.sk8erboi17.exception.PoolExhaustedException;
+import it.sk8erboi17.listeners.response.Callback;
+import it.sk8erboi17.network.transformers.TypeNetwork;
+import it.sk8erboi17.network.transformers.decoder.AdaptiveReadBuffer;
+import it.sk8erboi17.network.transformers.decoder.op.FrameDecoder;
+import it.sk8erboi17.network.transformers.encoder.AbstractDataEncoder;
+import it.sk8erboi17.network.transformers.pool.ByteBuffersPool;
+import it.sk8erboi17.network.transport.PipelineChannel;
+import it.sk8erboi17.utils.FailWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link PipelineChannel} over a blocking {@link SocketChannel}, read by a dedicated thread.
+ * <p>
+ * The read loop is a plain sequence of blocking reads, each one decoded in place by the
+ * connection's {@link FrameDecoder}, on a virtual thread of its own (see {@link VirtualThreads}).
+ * Writes are blocking too, performed by the senders through a {@link BlockingDataEncoder}.
+ */
+public class BlockingPipelineChannel implements PipelineChannel {
+    private static final Logger log = LoggerFactory.getLogger(BlockingPipelineChannel.class);
+
+    private final SocketChannel socketChannel;
+    private final BlockingDataEncoder encoder;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private volatile boolean readingPaused;
+    // The reading thread waits here while reads are paused.
+    private final ReentrantLock pauseLock = new ReentrantLock();
+    private final Condition resumed = pauseLock.newCondition();
+
+    public BlockingPipelineChannel(SocketChannel socketChannel) throws IOException {
+        if (socketChannel == null) {
+            throw new IllegalArgumentException("SocketChannel cannot be null.");
+        }
+        socketChannel.configureBlocking(true);
+        this.socketChannel = socketChannel;
+        this.encoder = new BlockingDataEncoder(this);
+    }
+
+    @Override
+    public TypeNetwork getType() {
+        return TypeNetwork.VIRTUAL;
+    }
+
+    @Override
+    public SocketAddress getRemoteAddress() {
+        try {
+            return socketChannel.getRemoteAddress();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed.get() && socketChannel.isOpen();
+    }
+
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            try {
+                // Also wakes up the reading thread, which then releases the read buffer.
+                socketChannel.close();
+            } catch (IOException e) {
+                log.error("Error while closing channel: {}", e.getMessage());
+                FailWriter.writeFile("Error while closing channel: ", e);
+            }
+            signalReader();
+            encoder.onChannelClosed();
+        }
+    }
+
+    @Override
+    public void pauseReading() {
+        readingPaused = true;
+    }
+
+    @Override
+    public void resumeReading() {
+        readingPaused = false;
+        signalReader();
+    }
+
+    @Override
+    public boolean isReadingPaused() {
+        return readingPaused;
+    }
+
+    private void signalReader() {
+        pauseLock.lock();
+        try {
+            resumed.signalAll();
+        } finally {
+            pauseLock.unlock();
+        }
+    }
+
+    /**
+     * Blocks the reading thread while reads are paused.
+     *
+     * @return false if the channel has been closed meanwhile.
+     */
+    private boolean awaitResume() throws InterruptedException {
+        pauseLock.lock();
+        try {
+            while (readingPaused && !closed.get()) {
+                resumed.await();
+            }
+        } finally {
+            pauseLock.unlock();
+        }
+        return !closed.get();
+    }
+
+    @Override
+    public AbstractDataEncoder getEncoder() {
+        return encoder;
+    }
+
+    @Override
+    public void startReading(FrameDecoder frameDecoder, Callback callback) {
+        VirtualThreads.start("pipelines-read", () -> readLoop(frameDecoder, callback));
+    }
+
+    private void readLoop(FrameDecoder frameDecoder, Callback callback) {
+        AdaptiveReadBuffer readBuffer = new AdaptiveReadBuffer(ByteBuffersPool.getInstance());
+        try {
+            while (true) {
+                if (readingPaused && !awaitResume()) {
+                    return;
+                }
+                ByteBuffer buffer = readBuffer.attach();
+                int bytesRead = socketChannel.read(buffer);
+                if (bytesRead == -1) {
+                    log.info("Client {} disconnected.", getRemoteAddress());
+                    return;
+                }
+                frameDecoder.decode(socketChannel, readBuffer.getLease(), callback);
+                readBuffer.record(bytesRead);
+            }
+        } catch (MaxBufferSizeExceededException | PoolExhaustedException e) {
+            log.error("Failed to acquire buffer for read operation. Closing connection for {}.", getRemoteAddress(), e);
+            FailWriter.writeFile("Failed to acquire buffer for read operation. Closing connection for " + getRemoteAddress(), e);
+        } catch (IOException e) {
+            if (!closed.get()) {
+                log.error("Read operation failed for client {}: {}", getRemoteAddress(), e.getMessage(), e);
+                FailWriter.writeFile("Read operation failed for client " + getRemoteAddress(), e);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            FailWriter.writeFile("Frame decoder threw an exception for client " + getRemoteAddress() + ". Closing connection.", e);
+        } finally {
+            frameDecoder.onClientDisconnected(socketChannel);
+            readBuffer.release();
+            close();
+        }
+    }
+
+    public SocketChannel getSocketChannel() {
+        return socketChannel;
+    }
+}
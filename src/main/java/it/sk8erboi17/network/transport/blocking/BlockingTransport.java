@@ -0,0 +1,75 @@
+package it.sk8erboi17.network.transport.blocking;
+
+import it.sk8erboi17.network.transport.PipelineConnectionRequest;
+import it.sk8erboi17.utils.FailWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Opens connections of the thread-per-connection transport ({@link it.sk8erboi17.network.transformers.TypeNetwork#VIRTUAL}).
+ */
+public final class BlockingTransport {
+    private static final Logger log = LoggerFactory.getLogger(BlockingTransport.class);
+
+    private BlockingTransport() {
+    }
+
+    /**
+     * Opens a connection to the given address. Blocks until it is established.
+     */
+    public static BlockingPipelineChannel connect(InetSocketAddress address) throws IOException {
+        return new BlockingPipelineChannel(SocketChannel.open(address));
+    }
+
+    /**
+     * Binds a server socket and accepts connections on it, with blocking accepts on a thread of
+     * its own, until it is closed. Each accepted connection is handed to {@code request} on a
+     * new thread, so a slow handshake never delays the next accept.
+     *
+     * @return The server channel; close it to stop accepting.
+     */
+    public static ServerSocketChannel bind(InetSocketAddress address, PipelineConnectionRequest request) throws IOException {
+        return bind(address, 0, request);
+    }
+
+    /**
+     * @param backlog The number of pending connections the kernel may queue while they wait to be accepted,
+     *                or 0 for the platform's default.
+     */
+    public static ServerSocketChannel bind(InetSocketAddress address, int backlog, PipelineConnectionRequest request) throws IOException {
+        ServerSocketChannel serverChannel = ServerSocketChannel.open().bind(address, backlog);
+        VirtualThreads.start("pipelines-accept", () -> acceptLoop(serverChannel, request));
+        return serverChannel;
+    }
+
+    private static void acceptLoop(ServerSocketChannel serverChannel, PipelineConnectionRequest request) {
+        while (serverChannel.isOpen()) {
+            SocketChannel socketChannel;
+            try {
+                socketChannel = serverChannel.accept();
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                log.error("Error with connection {}", e.getMessage(), e);
+                FailWriter.writeFile("Error with connection ", e);
+                request.onConnectionFailed(e);
+                continue;
+            }
+            VirtualThreads.start("pipelines-accepted", () -> {
+                try {
+                    request.acceptConnection(new BlockingPipelineChannel(socketChannel));
+                } catch (Exception e) {
+                    log.error("Error with connection {}", e.getMessage(), e);
+                    FailWriter.writeFile("Error with connection ", e);
+                    request.onConnectionFailed(e);
+                }
+            });
+        }
+    }
+}
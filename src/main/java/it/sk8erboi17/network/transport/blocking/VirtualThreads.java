@@ -0,0 +1,117 @@
+package it.sk8erboi17.network.transport.blocking;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Creates the threads of the blocking transport: virtual threads when the runtime has them
+ * (Java 21+), daemon platform threads otherwise.
+ * <p>
+ * The library is compiled for Java 17, so {@code Thread.ofVirtual()} is looked up reflectively,
+ * once; the resulting factory is then used directly, with no reflection per thread.
+ */
+public final class VirtualThreads {
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreads.class);
+
+    private static final ThreadFactory VIRTUAL_FACTORY = lookupVirtualFactory();
+    // Thread.isVirtual(), or null before Java 21.
+    private static final MethodHandle IS_VIRTUAL = lookupIsVirtual();
+    private static final AtomicLong PLATFORM_COUNTER = new AtomicLong();
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * Returns true if threads are virtual, false if the runtime predates virtual threads.
+     */
+    public static boolean isAvailable() {
+        return VIRTUAL_FACTORY != null;
+    }
+
+    /**
+     * Returns true if the current thread is a virtual thread.
+     */
+    public static boolean isCurrentThreadVirtual() {
+        if (IS_VIRTUAL == null) {
+            return false;
+        }
+        try {
+            return (boolean) IS_VIRTUAL.invokeExact(Thread.currentThread());
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+    /**
+     * Starts a new thread running the task.
+     */
+    public static Thread start(String name, Runnable task) {
+        Thread thread;
+        if (VIRTUAL_FACTORY != null) {
+            thread = VIRTUAL_FACTORY.newThread(task);
+            thread.setName(name);
+        } else {
+            thread = new Thread(task, name + "-" + PLATFORM_COUNTER.incrementAndGet());
+            thread.setDaemon(true);
+        }
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Runs a short task on a thread other than the caller's: a new virtual thread, or a pooled daemon
+     * platform thread when the runtime predates virtual threads, since starting a platform thread
+     * would then cost more than most such tasks.
+     */
+    public static void execute(String name, Runnable task) {
+        if (VIRTUAL_FACTORY != null) {
+            start(name, task);
+        } else {
+            PlatformPool.EXECUTOR.execute(task);
+        }
+    }
+
+    /**
+     * The platform threads of {@link #execute}, created on first use. Idle threads exit after a minute.
+     */
+    private static final class PlatformPool {
+        private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "pipelines-pooled-" + PLATFORM_COUNTER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static MethodHandle lookupIsVirtual() {
+        try {
+            return MethodHandles.publicLookup().findVirtual(Thread.class, "isVirtual", MethodType.methodType(boolean.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    private static ThreadFactory lookupVirtualFactory() {
+        try {
+            Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            Object builder = ofVirtual.invoke(null);
+            // Invoke through the public interface: the builder's own class is not accessible.
+            Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (NoSuchMethodException | ClassNotFoundException e) {
+            log.info("Virtual threads are not available on this runtime: the blocking transport uses platform threads.");
+            return null;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.warn("Virtual threads could not be enabled: the blocking transport uses platform threads. Cause: {}", e.getMessage());
+            return null;
+        }
+    }
+}
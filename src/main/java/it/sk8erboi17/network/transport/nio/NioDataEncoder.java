@@ -0,0 +1,75 @@
+package it.sk8erboi17.network.transport.nio;
+
+import it.sk8erboi17.network.transformers.encoder.AbstractDataEncoder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.Executor;
+
+/**
+ * Writes the outbound queue of an NIO connection with non-blocking gathering writes.
+ * <p>
+ * A write is attempted directly by the thread that owns the write loop, usually the sender,
+ * so an uncongested connection never wakes up its event loop. Only when the socket buffer
+ * is full does the encoder ask the loop for OP_WRITE; the rest of the batch is then written
+ * by the loop thread as soon as the socket becomes writable again.
+ */
+class NioDataEncoder extends AbstractDataEncoder {
+
+    private final NioPipelineChannel channel;
+    // True while the encoder waits for OP_WRITE. Handed over to the loop thread through its task queue.
+    private boolean writePending;
+
+    NioDataEncoder(NioPipelineChannel channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    protected Executor writeExecutor() {
+        return channel.getEventLoop()::execute;
+    }
+
+    @Override
+    protected boolean write(ByteBuffer[] buffers, int count) throws IOException {
+        channel.getSocketChannel().write(buffers, 0, count);
+        if (!buffers[count - 1].hasRemaining()) {
+            return true;
+        }
+        writePending = true;
+        channel.requestWrite();
+        return false;
+    }
+
+    /**
+     * Called on the loop thread when the socket is writable again.
+     */
+    void onWritable() {
+        if (writePending) {
+            writePending = false;
+            writeCompleted();
+        }
+    }
+
+    /**
+     * Called on the loop thread once the channel is closed: fails the write waiting for OP_WRITE, if any,
+     * and runs the close listeners.
+     */
+    void onClosed() {
+        if (writePending) {
+            writePending = false;
+            writeFailed(new ClosedChannelException());
+        }
+        onChannelClosed();
+    }
+
+    @Override
+    protected boolean isChannelOpen() {
+        return channel.isOpen();
+    }
+
+    @Override
+    protected void closeChannel() {
+        channel.close();
+    }
+}
@@ -0,0 +1,160 @@
+package it.sk8erboi17.network.transport.nio;
+
+import it.sk8erboi17.utils.FailWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One thread owning one {@link Selector}.
+ * <p>
+ * Every channel registered with a loop stays pinned to it for its whole life: its readiness
+ * events, its reads and the continuation of its pending writes all run on this thread, with
+ * no handoff. Other threads interact with the loop only through {@link #execute(Runnable)}.
+ */
+public class NioEventLoop {
+    private static final Logger log = LoggerFactory.getLogger(NioEventLoop.class);
+
+    /**
+     * Reacts to the readiness of a registered channel. Attached to its selection key.
+     */
+    interface ReadyHandler {
+        /**
+         * The channel has been registered. Called on the loop thread, before any readiness event.
+         */
+        default void onRegistered(SelectionKey key) {
+        }
+
+        void onReady(SelectionKey key);
+
+        /**
+         * The loop is shutting down: release everything tied to the channel.
+         */
+        void onLoopClosed();
+    }
+
+    private final Selector selector;
+    private final Thread thread;
+    // MPSC: any thread may submit, only the loop thread runs the tasks.
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private volatile boolean running = true;
+
+    NioEventLoop(String name) throws IOException {
+        this.selector = Selector.open();
+        this.thread = new Thread(this::run, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    public boolean inEventLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Runs the task on the loop thread, after the current round of events.
+     */
+    public void execute(Runnable task) {
+        tasks.offer(task);
+        if (!inEventLoop()) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Registers a non-blocking channel with this loop. Completes on the loop thread.
+     */
+    CompletableFuture<SelectionKey> register(SelectableChannel channel, int interestOps, ReadyHandler handler) {
+        CompletableFuture<SelectionKey> future = new CompletableFuture<>();
+        execute(() -> {
+            try {
+                SelectionKey key = channel.register(selector, interestOps, handler);
+                handler.onRegistered(key);
+                future.complete(key);
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                if (tasks.isEmpty()) {
+                    selector.select();
+                } else {
+                    // Tasks submitted by the loop itself do not wake the selector up: do not block.
+                    selector.selectNow();
+                }
+                runTasks();
+                processSelectedKeys();
+            } catch (ClosedSelectorException e) {
+                break;
+            } catch (Throwable t) {
+                // Never let a single failure kill the loop and every connection pinned to it.
+                log.error("Unexpected error in event loop {}: {}", thread.getName(), t.getMessage(), t);
+                FailWriter.writeFile("Unexpected error in event loop " + thread.getName(), t);
+            }
+        }
+        runTasks();
+        closeAll();
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (Throwable t) {
+                log.error("Event loop task failed: {}", t.getMessage(), t);
+                FailWriter.writeFile("Event loop task failed: ", t);
+            }
+        }
+    }
+
+    private void processSelectedKeys() {
+        Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+        while (iterator.hasNext()) {
+            SelectionKey key = iterator.next();
+            iterator.remove();
+            if (key.isValid() && key.attachment() instanceof ReadyHandler handler) {
+                handler.onReady(key);
+            }
+        }
+    }
+
+    private void closeAll() {
+        try {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof ReadyHandler handler) {
+                    handler.onLoopClosed();
+                }
+            }
+            selector.close();
+        } catch (IOException | ClosedSelectorException e) {
+            log.error("Error while closing event loop {}: {}", thread.getName(), e.getMessage());
+            FailWriter.writeFile("Error while closing event loop " + thread.getName(), e);
+        }
+    }
+
+    /**
+     * Stops the loop and closes every channel registered with it.
+     */
+    void shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        running = false;
+        selector.wakeup();
+        if (!inEventLoop()) {
+            thread.join(unit.toMillis(timeout));
+        }
+    }
+}
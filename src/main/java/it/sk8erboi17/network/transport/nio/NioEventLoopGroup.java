@@ -0,0 +1,248 @@
+package it.sk8erboi17.network.transport.nio;
+
+import it.sk8erboi17.Listener;
+import it.sk8erboi17.network.transport.PipelineConnectionRequest;
+import it.sk8erboi17.utils.FailWriter;
+import it.sk8erboi17.utils.HashedWheelTimer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A fixed set of {@link NioEventLoop}s serving the NIO transport.
+ * Connections are spread across the loops round-robin and stay pinned to the loop they get.
+ * <p>
+ * Server sockets are accepted on a loop, but accepted connections are set up and handed to
+ * {@link PipelineConnectionRequest#acceptConnection} on a separate executor, so that a slow
+ * handshake never stalls the I/O of the connections sharing that loop.
+ */
+public class NioEventLoopGroup {
+    private static final Logger log = LoggerFactory.getLogger(NioEventLoopGroup.class);
+
+    // Connections accepted for one readiness event before yielding to the other channels of the loop.
+    private static final int MAX_ACCEPTS_PER_EVENT = 64;
+    // How long a server socket stops accepting after a failed accept, e.g. when out of file descriptors.
+    private static final long ACCEPT_BACKOFF_MILLIS = 100;
+
+    private final NioEventLoop[] loops;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ExecutorService executors;
+    private final boolean ownsExecutor;
+
+    /**
+     * Creates the loops, handing accepted connections to a pool of threads of the group's own.
+     */
+    public NioEventLoopGroup(int numThreads) throws IOException {
+        this(numThreads, Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors() / 2)), true);
+    }
+
+    /**
+     * Creates the loops, handing accepted connections to the given executor, which stays owned by the caller.
+     */
+    public NioEventLoopGroup(int numThreads, ExecutorService executor) throws IOException {
+        this(numThreads, executor, false);
+    }
+
+    private NioEventLoopGroup(int numThreads, ExecutorService executors, boolean ownsExecutor) throws IOException {
+        if (numThreads <= 0) {
+            throw new IllegalArgumentException("The number of event loops must be positive.");
+        }
+        this.executors = executors;
+        this.ownsExecutor = ownsExecutor;
+        loops = new NioEventLoop[numThreads];
+        for (int i = 0; i < numThreads; i++) {
+            loops[i] = new NioEventLoop("pipelines-nio-" + i);
+        }
+    }
+
+    public NioEventLoop next() {
+        return loops[Math.floorMod(next.getAndIncrement(), loops.length)];
+    }
+
+    /**
+     * Opens a connection to the given address and pins it to one of the loops.
+     * Blocks until the connection is established, like {@link it.sk8erboi17.listeners.output.AsyncChannelSocket#createChannel}.
+     */
+    public NioPipelineChannel connect(InetSocketAddress address) throws IOException {
+        SocketChannel socketChannel = SocketChannel.open(address);
+        try {
+            return register(socketChannel).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            socketChannel.close();
+            throw new IOException("Interrupted while registering the channel", e);
+        } catch (ExecutionException e) {
+            socketChannel.close();
+            throw new IOException("Error while registering the channel: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Pins a connected socket channel to one of the loops. The returned future completes on that loop.
+     */
+    public CompletableFuture<NioPipelineChannel> register(SocketChannel socketChannel) throws IOException {
+        return register(socketChannel, next());
+    }
+
+    private CompletableFuture<NioPipelineChannel> register(SocketChannel socketChannel, NioEventLoop loop) throws IOException {
+        socketChannel.configureBlocking(false);
+        NioPipelineChannel channel = new NioPipelineChannel(socketChannel, loop);
+        // Interest in reads is only added once a pipeline starts reading.
+        return loop.register(socketChannel, 0, channel).thenApply(key -> channel);
+    }
+
+    /**
+     * Binds a server socket, with a backlog of {@link Listener#DEFAULT_BACKLOG}, and accepts connections on it until it is closed.
+     *
+     * @return The server channel; close it to stop accepting.
+     */
+    public ServerSocketChannel bind(InetSocketAddress address, PipelineConnectionRequest request) throws IOException {
+        return bind(address, Listener.DEFAULT_BACKLOG, request);
+    }
+
+    /**
+     * Binds a server socket and accepts connections on it until it is closed. Every accepted
+     * connection is pinned to a loop and passed to {@code request} on the group's executor.
+     *
+     * @param backlog The number of pending connections the kernel may queue while they wait to be accepted.
+     * @return The server channel; close it to stop accepting.
+     */
+    public ServerSocketChannel bind(InetSocketAddress address, int backlog, PipelineConnectionRequest request) throws IOException {
+        if (backlog <= 0) {
+            throw new IllegalArgumentException("The backlog must be positive.");
+        }
+        ServerSocketChannel serverChannel = ServerSocketChannel.open().bind(address, backlog);
+        serverChannel.configureBlocking(false);
+        NioEventLoop loop = next();
+        loop.register(serverChannel, SelectionKey.OP_ACCEPT, new Acceptor(serverChannel, loop, request));
+        return serverChannel;
+    }
+
+    /**
+     * Stops every loop and closes all their channels, then, if the group owns it, its executor.
+     */
+    public void shutdown() {
+        for (NioEventLoop loop : loops) {
+            try {
+                loop.shutdown(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.error("Event loop shutdown interrupted: {}", e.getMessage());
+                FailWriter.writeFile("Event loop shutdown interrupted: ", e);
+                return;
+            }
+        }
+        if (ownsExecutor) {
+            executors.shutdown();
+            try {
+                if (!executors.awaitTermination(5, TimeUnit.SECONDS)) {
+                    executors.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.error("Executor shutdown interrupted: {}", e.getMessage());
+            }
+        }
+    }
+
+    // Runs on the executor: registering with a loop and the user's handshake both stay off the accepting loop.
+    private void setUp(SocketChannel socketChannel, PipelineConnectionRequest request) {
+        NioEventLoop loop = next();
+        try {
+            register(socketChannel, loop).whenCompleteAsync((channel, exc) -> {
+                if (exc != null) {
+                    closeQuietly(socketChannel);
+                    request.onConnectionFailed(exc);
+                    return;
+                }
+                try {
+                    request.acceptConnection(channel);
+                } catch (Exception e) {
+                    log.error("Error with connection {}", e.getMessage(), e);
+                    FailWriter.writeFile("Error with connection ", e);
+                    request.onConnectionFailed(e);
+                }
+            }, executors);
+        } catch (IOException e) {
+            closeQuietly(socketChannel);
+            request.onConnectionFailed(e);
+        }
+    }
+
+    private static void closeQuietly(SocketChannel socketChannel) {
+        try {
+            socketChannel.close();
+        } catch (IOException e) {
+            log.error("Error while closing channel: {}", e.getMessage());
+        }
+    }
+
+    private final class Acceptor implements NioEventLoop.ReadyHandler {
+        private final ServerSocketChannel serverChannel;
+        private final NioEventLoop loop;
+        private final PipelineConnectionRequest request;
+
+        private Acceptor(ServerSocketChannel serverChannel, NioEventLoop loop, PipelineConnectionRequest request) {
+            this.serverChannel = serverChannel;
+            this.loop = loop;
+            this.request = request;
+        }
+
+        @Override
+        public void onReady(SelectionKey key) {
+            for (int i = 0; i < MAX_ACCEPTS_PER_EVENT; i++) {
+                SocketChannel socketChannel;
+                try {
+                    socketChannel = serverChannel.accept();
+                } catch (IOException e) {
+                    log.error("Error with connection {}", e.getMessage(), e);
+                    FailWriter.writeFile("Error with connection ", e);
+                    request.onConnectionFailed(e);
+                    backOff(key);
+                    return;
+                }
+                if (socketChannel == null) {
+                    return;
+                }
+                try {
+                    executors.execute(() -> setUp(socketChannel, request));
+                } catch (RejectedExecutionException e) {
+                    // The group is shutting down: nobody will take care of this connection.
+                    closeQuietly(socketChannel);
+                }
+            }
+        }
+
+        // The pending connection stays queued while accept fails, e.g. out of file descriptors: with OP_ACCEPT
+        // still set, the selector would report it again at once and the loop would spin on the failure.
+        private void backOff(SelectionKey key) {
+            key.interestOps(0);
+            HashedWheelTimer.shared().schedule(() -> loop.execute(() -> {
+                if (key.isValid()) {
+                    key.interestOps(SelectionKey.OP_ACCEPT);
+                }
+            }), ACCEPT_BACKOFF_MILLIS, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void onLoopClosed() {
+            try {
+                serverChannel.close();
+            } catch (IOException e) {
+                log.error("Error while closing server channel: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package it.sk8erboi17.network.transport.nio;
+
+import it.sk8erboi17.exception.MaxBufferSizeExceededException;
+import it.sk8erboi17.exception.PoolExhaustedException;
+import it.sk8erboi17.listeners.response.Callback;
+import it.sk8erboi17.network.transformers.TypeNetwork;
+import it.sk8erboi17.network.transformers.decoder.AdaptiveReadBuffer;
+import it.sk8erboi17.network.transformers.decoder.op.FrameDecoder;
+import it.sk8erboi17.network.transformers.encoder.AbstractDataEncoder;
+import it.sk8erboi17.network.transformers.pool.ByteBuffersPool;
+import it.sk8erboi17.network.transport.PipelineChannel;
+import it.sk8erboi17.utils.FailWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A {@link PipelineChannel} over a non-blocking {@link SocketChannel}, pinned to one {@link NioEventLoop}.
+ * <p>
+ * Reads run on the loop thread, straight into the connection's {@link AdaptiveReadBuffer} and
+ * through its {@link FrameDecoder}, exactly like the AIO read loop but without a completion
+ * handler per read. Writes go through a {@link NioDataEncoder}.
+ */
+public class NioPipelineChannel implements PipelineChannel, NioEventLoop.ReadyHandler {
+    private static final Logger log = LoggerFactory.getLogger(NioPipelineChannel.class);
+
+    // Reads performed for one readiness event before yielding to the other connections of the loop.
+    private static final int MAX_READS_PER_EVENT = 16;
+
+    private final SocketChannel socketChannel;
+    private final NioEventLoop loop;
+    private final NioDataEncoder encoder;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private volatile boolean readingPaused;
+    private SelectionKey key;
+
+    // Inbound state, only touched by the loop thread.
+    private FrameDecoder frameDecoder;
+    private Callback callback;
+    private AdaptiveReadBuffer readBuffer;
+
+    NioPipelineChannel(SocketChannel socketChannel, NioEventLoop loop) {
+        this.socketChannel = socketChannel;
+        this.loop = loop;
+        this.encoder = new NioDataEncoder(this);
+    }
+
+    @Override
+    public void onRegistered(SelectionKey key) {
+        this.key = key;
+    }
+
+    @Override
+    public TypeNetwork getType() {
+        return TypeNetwork.NIO;
+    }
+
+    @Override
+    public SocketAddress getRemoteAddress() {
+        try {
+            return socketChannel.getRemoteAddress();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed.get() && socketChannel.isOpen();
+    }
+
+    @Override
+    public AbstractDataEncoder getEncoder() {
+        return encoder;
+    }
+
+    @Override
+    public void startReading(FrameDecoder frameDecoder, Callback callback) {
+        loop.execute(() -> {
+            this.frameDecoder = frameDecoder;
+            this.callback = callback;
+            this.readBuffer = new AdaptiveReadBuffer(ByteBuffersPool.getInstance());
+            updateReadInterest();
+        });
+    }
+
+    @Override
+    public void pauseReading() {
+        readingPaused = true;
+        loop.execute(this::updateReadInterest);
+    }
+
+    @Override
+    public void resumeReading() {
+        readingPaused = false;
+        loop.execute(this::updateReadInterest);
+    }
+
+    @Override
+    public boolean isReadingPaused() {
+        return readingPaused;
+    }
+
+    /**
+     * Registers or drops the interest in reads, after the latest pause or resume. Runs on the loop thread.
+     */
+    private void updateReadInterest() {
+        if (frameDecoder == null || !key.isValid()) {
+            // Not reading yet, or closed.
+            return;
+        }
+        if (readingPaused) {
+            key.interestOpsAnd(~SelectionKey.OP_READ);
+        } else {
+            key.interestOpsOr(SelectionKey.OP_READ);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            closeSocket();
+            loop.execute(this::onClosed);
+        }
+    }
+
+    /**
+     * Asks the loop to resume the pending write once the socket becomes writable.
+     */
+    void requestWrite() {
+        loop.execute(() -> {
+            if (key.isValid()) {
+                key.interestOpsOr(SelectionKey.OP_WRITE);
+            } else {
+                encoder.onClosed();
+            }
+        });
+    }
+
+    @Override
+    public void onReady(SelectionKey key) {
+        if (key.isWritable()) {
+            key.interestOpsAnd(~SelectionKey.OP_WRITE);
+            encoder.onWritable();
+        }
+        if (key.isValid() && key.isReadable()) {
+            read();
+        }
+    }
+
+    private void read() {
+        for (int i = 0; i < MAX_READS_PER_EVENT && !readingPaused; i++) {
+            ByteBuffer buffer;
+            try {
+                buffer = readBuffer.attach();
+            } catch (MaxBufferSizeExceededException | PoolExhaustedException e) {
+                log.error("Failed to acquire buffer for read operation. Closing connection for {}.", getRemoteAddress(), e);
+                FailWriter.writeFile("Failed to acquire buffer for read operation. Closing connection for " + getRemoteAddress(), e);
+                close();
+                return;
+            }
+
+            int bytesRead;
+            try {
+                bytesRead = socketChannel.read(buffer);
+            } catch (IOException e) {
+                if (!closed.get()) {
+                    log.error("Read operation failed for client {}: {}", getRemoteAddress(), e.getMessage(), e);
+                    FailWriter.writeFile("Read operation failed for client " + getRemoteAddress(), e);
+                }
+                close();
+                return;
+            }
+
+            if (bytesRead == -1) {
+                log.info("Client {} disconnected.", getRemoteAddress());
+                close();
+                return;
+            }
+            if (bytesRead == 0) {
+                // Idle connections hold no buffer between events; the next one leases it again.
+                readBuffer.release();
+                return;
+            }
+
+            try {
+                frameDecoder.decode(socketChannel, readBuffer.getLease(), callback);
+            } catch (Exception e) {
+                FailWriter.writeFile("Frame decoder threw an exception for client " + getRemoteAddress() + ". Closing connection.", e);
+                close();
+                return;
+            }
+            readBuffer.record(bytesRead);
+
+            if (bytesRead < buffer.capacity()) {
+                // The socket has been drained.
+                readBuffer.release();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Releases the connection's resources. Runs on the loop thread.
+     */
+    private void onClosed() {
+        if (key != null) {
+            key.cancel();
+        }
+        encoder.onClosed();
+        if (frameDecoder != null) {
+            frameDecoder.onClientDisconnected(socketChannel);
+        }
+        if (readBuffer != null) {
+            readBuffer.release();
+        }
+    }
+
+    @Override
+    public void onLoopClosed() {
+        if (closed.compareAndSet(false, true)) {
+            closeSocket();
+        }
+        onClosed();
+    }
+
+    private void closeSocket() {
+        try {
+            socketChannel.close();
+        } catch (IOException e) {
+            log.error("Error while closing channel: {}", e.getMessage());
+            FailWriter.writeFile("Error while closing channel: ", e);
+        }
+    }
+
+    public SocketChannel getSocketChannel() {
+        return socketChannel;
+    }
+
+    public NioEventLoop getEventLoop() {
+        return loop;
+    }
+}
@@ -0,0 +1,220 @@
+package it.sk8erboi17.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * A timer for very many short, coarse-grained timeouts, such as one per connection.
+ * <p>
+ * Timeouts are hashed into a ring of buckets by the tick they expire on; a single thread advances
+ * one bucket per tick and runs the timeouts that are due. Scheduling and cancelling are O(1) and
+ * lock-free for the caller: a new timeout goes through a queue that the timer thread drains at every
+ * tick, and a cancelled one is simply skipped and unlinked when its bucket comes round. Timeouts
+ * fire up to one tick late, never early.
+ * <p>
+ * Tasks run on the timer thread and must not block.
+ */
+public final class HashedWheelTimer {
+    private static final Logger log = LoggerFactory.getLogger(HashedWheelTimer.class);
+
+    private static HashedWheelTimer shared;
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    // MPSC: any thread schedules, only the timer thread polls.
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final Thread worker;
+    private final long startNanos;
+    private volatile boolean running = true;
+    // Ticks elapsed since start, only written by the timer thread.
+    private long tick;
+
+    /**
+     * @param name The name of the timer thread.
+     * @param tickDuration The resolution of the timer.
+     * @param ticksPerWheel The number of buckets; rounded up to a power of two.
+     */
+    public HashedWheelTimer(String name, long tickDuration, TimeUnit unit, int ticksPerWheel) {
+        if (tickDuration <= 0 || ticksPerWheel <= 0) {
+            throw new IllegalArgumentException("Tick duration and wheel size must be positive.");
+        }
+        this.tickNanos = unit.toNanos(tickDuration);
+        int size = Integer.highestOneBit(ticksPerWheel - 1) << 1;
+        this.wheel = new Bucket[Math.max(1, size)];
+        for (int i = 0; i < wheel.length; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = wheel.length - 1;
+        this.startNanos = System.nanoTime();
+        this.worker = new Thread(this::run, name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Returns the timer shared by the whole library, with a 100 ms tick, creating it on first use.
+     */
+    public static synchronized HashedWheelTimer shared() {
+        if (shared == null) {
+            shared = new HashedWheelTimer("pipelines-timer", 100, TimeUnit.MILLISECONDS, 512);
+        }
+        return shared;
+    }
+
+    /**
+     * Runs {@code task} on the timer thread once {@code delay} has elapsed.
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        Timeout timeout = new Timeout(task, System.nanoTime() + Math.max(0, unit.toNanos(delay)));
+        if (!running) {
+            timeout.state = Timeout.CANCELLED;
+            return timeout;
+        }
+        pending.offer(timeout);
+        return timeout;
+    }
+
+    /**
+     * Stops the timer thread. Timeouts that have not fired yet never will.
+     */
+    public void stop() {
+        running = false;
+        worker.interrupt();
+    }
+
+    private void run() {
+        while (running) {
+            long deadline = startNanos + (tick + 1) * tickNanos;
+            long sleepNanos = deadline - System.nanoTime();
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    if (!running) {
+                        break;
+                    }
+                    continue;
+                }
+            }
+            transferPending();
+            wheel[(int) (tick & mask)].expire(tick);
+            tick++;
+        }
+        pending.clear();
+    }
+
+    private void transferPending() {
+        Timeout timeout;
+        // Bounded, so that a flood of new timeouts cannot stall the wheel.
+        for (int i = 0; i < 100_000 && (timeout = pending.poll()) != null; i++) {
+            if (timeout.state == Timeout.CANCELLED) {
+                continue;
+            }
+            long expiryTick = Math.max((timeout.deadline - startNanos + tickNanos - 1) / tickNanos, tick);
+            // The bucket of the current tick is expired right after this transfer.
+            timeout.expiryTick = expiryTick;
+            wheel[(int) (expiryTick & mask)].add(timeout);
+        }
+    }
+
+    /**
+     * A scheduled task. Cancelling it is O(1) and safe from any thread.
+     */
+    public static final class Timeout {
+        private static final int WAITING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        private final Runnable task;
+        private final long deadline;
+        private volatile int state;
+
+        // Bucket state, only touched by the timer thread.
+        private long expiryTick;
+        private Timeout next;
+        private Timeout prev;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * @return true if the timeout had not fired yet and never will.
+         */
+        public boolean cancel() {
+            return STATE.compareAndSet(this, WAITING, CANCELLED);
+        }
+
+        public boolean isCancelled() {
+            return state == CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state == EXPIRED;
+        }
+    }
+
+    /**
+     * A doubly linked list of timeouts, only touched by the timer thread.
+     */
+    private static final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.prev = tail;
+            timeout.next = null;
+            if (tail == null) {
+                head = timeout;
+            } else {
+                tail.next = timeout;
+            }
+            tail = timeout;
+        }
+
+        void expire(long currentTick) {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.state == Timeout.CANCELLED) {
+                    remove(timeout);
+                } else if (timeout.expiryTick <= currentTick) {
+                    remove(timeout);
+                    if (Timeout.STATE.compareAndSet(timeout, Timeout.WAITING, Timeout.EXPIRED)) {
+                        try {
+                            timeout.task.run();
+                        } catch (Throwable t) {
+                            log.error("Timer task failed: {}", t.getMessage(), t);
+                            FailWriter.writeFile("Timer task failed: ", t);
+                        }
+                    }
+                }
+                timeout = next;
+            }
+        }
+
+        private void remove(Timeout timeout) {
+            if (timeout.prev == null) {
+                head = timeout.next;
+            } else {
+                timeout.prev.next = timeout.next;
+            }
+            if (timeout.next == null) {
+                tail = timeout.prev;
+            } else {
+                timeout.next.prev = timeout.prev;
+            }
+            timeout.next = null;
+            timeout.prev = null;
+        }
+    }
+}
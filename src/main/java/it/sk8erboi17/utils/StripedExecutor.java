@@ -0,0 +1,142 @@
+package it.sk8erboi17.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of single-threaded stripes. Tasks submitted to the same stripe run one at a time, in
+ * submission order; tasks of different stripes run in parallel.
+ * <p>
+ * Binding every connection to one stripe keeps its messages in order while spreading the
+ * connections over all the workers, and keeps slow consumers off the I/O threads: a slow task
+ * only delays the connections of its own stripe.
+ * <p>
+ * The queue of every stripe is bounded, so a stripe that falls behind cannot pile up tasks without limit.
+ */
+public final class StripedExecutor implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(StripedExecutor.class);
+
+    private static StripedExecutor shared;
+
+    private final ThreadPoolExecutor[] stripes;
+    private final AtomicInteger nextStripe = new AtomicInteger();
+
+    /**
+     * Tasks a stripe may hold waiting for its worker when none is configured.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 4096;
+
+    /**
+     * @param name The prefix of the worker thread names.
+     * @param stripes The number of worker threads.
+     */
+    public StripedExecutor(String name, int stripes) {
+        this(name, stripes, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param name The prefix of the worker thread names.
+     * @param stripes The number of worker threads.
+     * @param queueCapacity The number of tasks a stripe holds waiting for its worker. Once it is full,
+     *                      submitting to that stripe blocks until the worker catches up.
+     */
+    public StripedExecutor(String name, int stripes, int queueCapacity) {
+        if (stripes <= 0) {
+            throw new IllegalArgumentException("The number of stripes must be positive.");
+        }
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("The queue capacity must be positive.");
+        }
+        this.stripes = new ThreadPoolExecutor[stripes];
+        for (int i = 0; i < stripes; i++) {
+            String threadName = name + "-" + i;
+            this.stripes[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(queueCapacity), task -> {
+                Thread thread = new Thread(task, threadName);
+                thread.setDaemon(true);
+                return thread;
+            }, StripedExecutor::waitForRoom);
+        }
+    }
+
+    /**
+     * Blocks the submitter of a task to a full stripe until there is room for it: the last resort
+     * against a stripe falling behind, since connections pause their reads long before; see
+     * {@link it.sk8erboi17.network.DispatchingCallback}.
+     */
+    private static void waitForRoom(Runnable task, ThreadPoolExecutor stripe) {
+        if (stripe.isShutdown()) {
+            throw new RejectedExecutionException("Executor stripe closed.");
+        }
+        try {
+            stripe.getQueue().put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for room in the executor stripe.", e);
+        }
+    }
+
+    /**
+     * Returns the executor shared by the whole library, with one stripe per processor, creating it on first use.
+     */
+    public static synchronized StripedExecutor shared() {
+        if (shared == null) {
+            shared = new StripedExecutor("pipelines-dispatch", Runtime.getRuntime().availableProcessors());
+        }
+        return shared;
+    }
+
+    /**
+     * Picks the stripe for a new connection, round-robin.
+     */
+    public int nextStripe() {
+        return Math.floorMod(nextStripe.getAndIncrement(), stripes.length);
+    }
+
+    /**
+     * Runs the task on the given stripe, after every task already submitted to it.
+     * A task that throws is logged and does not affect the following ones.
+     * Blocks while the queue of the stripe is full.
+     */
+    public void execute(int stripe, Runnable task) {
+        try {
+            stripes[stripe].execute(() -> {
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    log.error("Dispatched task failed: {}", t.getMessage(), t);
+                    FailWriter.writeFile("Dispatched task failed: ", t);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("Dropping a task submitted to closed executor stripe {}.", stripe);
+        }
+    }
+
+    public int getStripes() {
+        return stripes.length;
+    }
+
+    /**
+     * Stops the workers once the tasks already submitted have run.
+     */
+    @Override
+    public void close() {
+        for (ThreadPoolExecutor stripe : stripes) {
+            stripe.shutdown();
+        }
+        try {
+            for (ThreadPoolExecutor stripe : stripes) {
+                stripe.awaitTermination(5, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
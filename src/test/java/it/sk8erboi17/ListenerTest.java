@@ -0,0 +1,93 @@
+package it.sk8erboi17;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.AsynchronousServerSocketChannel;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ListenerTest {
+
+    private final Listener listener = new Listener();
+    private final Queue<AsynchronousSocketChannel> accepted = new ConcurrentLinkedQueue<>();
+
+    @AfterEach
+    void close() throws IOException {
+        listener.close();
+        for (AsynchronousSocketChannel channel : accepted) {
+            channel.close();
+        }
+    }
+
+    private ConnectionRequest countingRequest(CountDownLatch latch) {
+        return new ConnectionRequest() {
+            @Override
+            public void acceptConnection(AsynchronousSocketChannel socketChannel, Object attachment) {
+                accepted.add(socketChannel);
+                latch.countDown();
+            }
+
+            @Override
+            public void onConnectionFailed(Throwable exc) {
+            }
+        };
+    }
+
+    @Test
+    void acceptsOnEveryAcceptorOfTheSamePort() throws Exception {
+        int clients = 50;
+        CountDownLatch all = new CountDownLatch(clients);
+        List<AsynchronousServerSocketChannel> bound = listener.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 3, countingRequest(all));
+
+        Set<InetSocketAddress> addresses = bound.stream().map(ListenerTest::localAddress).collect(Collectors.toSet());
+        assertEquals(1, addresses.size());
+        List<SocketChannel> connections = new ArrayList<>();
+        try {
+            for (int i = 0; i < clients; i++) {
+                connections.add(SocketChannel.open(addresses.iterator().next()));
+            }
+            assertTrue(all.await(5, TimeUnit.SECONDS), "accepted " + accepted.size());
+        } finally {
+            for (SocketChannel connection : connections) {
+                connection.close();
+            }
+        }
+    }
+
+    @Test
+    void stopsAcceptingOnceClosed() throws Exception {
+        List<AsynchronousServerSocketChannel> bound = listener.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1, countingRequest(new CountDownLatch(1)));
+        InetSocketAddress address = localAddress(bound.get(0));
+
+        listener.close();
+
+        assertFalse(bound.get(0).isOpen());
+        assertThrows(IllegalStateException.class, () -> listener.startConnectionListen(bound.get(0), countingRequest(new CountDownLatch(1))));
+        assertThrows(IOException.class, () -> SocketChannel.open(address).close());
+    }
+
+    private static InetSocketAddress localAddress(AsynchronousServerSocketChannel channel) {
+        try {
+            return (InetSocketAddress) channel.getLocalAddress();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
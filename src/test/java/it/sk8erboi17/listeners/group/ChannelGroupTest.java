@@ -0,0 +1,248 @@
+package it.sk8erboi17.listeners.group;
+
+import it.sk8erboi17.listeners.response.Callback;
+import it.sk8erboi17.network.pipeline.in.PipelineIn;
+import it.sk8erboi17.network.pipeline.out.PipelineOut;
+import it.sk8erboi17.network.pipeline.out.content.Request;
+import it.sk8erboi17.network.transformers.TypeNetwork;
+import it.sk8erboi17.network.transformers.decoder.op.FrameDecoder;
+import it.sk8erboi17.network.transformers.encoder.AbstractDataEncoder;
+import it.sk8erboi17.network.transformers.encoder.RecordingEncoder;
+import it.sk8erboi17.network.transport.AioPipelineChannel;
+import it.sk8erboi17.network.transport.PipelineChannel;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousServerSocketChannel;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChannelGroupTest {
+
+    private static final int MESSAGES = 2_000;
+
+    private static void waitUntil(BooleanSupplier condition, long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    void publishesWithoutWritingOnThePublishingThread() throws InterruptedException {
+        ExecutorService writer = Executors.newSingleThreadExecutor(task -> new Thread(task, "writer"));
+        Set<String> writingThreads = ConcurrentHashMap.newKeySet();
+        RecordingEncoder encoder = new RecordingEncoder() {
+            @Override
+            protected Executor writeExecutor() {
+                return writer;
+            }
+
+            @Override
+            protected boolean write(ByteBuffer[] buffers, int count) {
+                writingThreads.add(Thread.currentThread().getName());
+                return super.write(buffers, count);
+            }
+        };
+        try {
+            ChannelGroup group = new ChannelGroup();
+            group.add(new FakeChannel(encoder));
+            for (int i = 0; i < 10; i++) {
+                assertEquals(1, group.publish(i));
+            }
+
+            waitUntil(() -> encoder.getQueuedFrames() == 0 && encoder.written().length > 0, 2000);
+            assertEquals(Set.of("writer"), writingThreads);
+        } finally {
+            writer.shutdownNow();
+        }
+    }
+
+    @Test
+    void aMemberBlockedInAWriteDoesNotHoldUpThePublisher() throws InterruptedException {
+        CountDownLatch unblock = new CountDownLatch(1);
+        ExecutorService writer = Executors.newCachedThreadPool();
+        RecordingEncoder blocked = new RecordingEncoder() {
+            @Override
+            protected Executor writeExecutor() {
+                return writer;
+            }
+
+            @Override
+            protected boolean write(ByteBuffer[] buffers, int count) {
+                // A blocking write to a peer that does not read.
+                try {
+                    unblock.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.write(buffers, count);
+            }
+        };
+        RecordingEncoder fast = new RecordingEncoder();
+        try {
+            ChannelGroup group = new ChannelGroup();
+            group.add(new FakeChannel(blocked));
+            group.add(new FakeChannel(fast));
+
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+                for (int i = 0; i < 10; i++) {
+                    assertEquals(2, group.publish("update " + i));
+                }
+            });
+            assertTrue(fast.written().length > 0);
+
+            unblock.countDown();
+            waitUntil(() -> blocked.written().length == fast.written().length, 2000);
+            assertEquals(fast.written().length, blocked.written().length);
+        } finally {
+            unblock.countDown();
+            writer.shutdownNow();
+        }
+    }
+
+    @Test
+    void publishesOnTheQueueSharedWithAPipelineOutOfTheSameSocket() throws Exception {
+        try (AsynchronousServerSocketChannel server = AsynchronousServerSocketChannel.open()
+                .bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))) {
+            Future<AsynchronousSocketChannel> accepted = server.accept();
+            AsynchronousSocketChannel clientSide = AsynchronousSocketChannel.open();
+            clientSide.connect(server.getLocalAddress()).get(5, TimeUnit.SECONDS);
+            AsynchronousSocketChannel serverSide = accepted.get(5, TimeUnit.SECONDS);
+            try {
+                Queue<Object> received = new ConcurrentLinkedQueue<>();
+                Queue<Throwable> errors = new ConcurrentLinkedQueue<>();
+                CountDownLatch all = new CountDownLatch(2 * MESSAGES);
+                new PipelineIn(clientSide, new Callback() {
+                    @Override
+                    public void complete(Object o) {
+                        received.add(o);
+                        all.countDown();
+                    }
+
+                    @Override
+                    public void completeExceptionally(Throwable throwable) {
+                        errors.add(throwable);
+                    }
+                }, 1 << 20);
+
+                ChannelGroup group = new ChannelGroup();
+                assertTrue(group.add(new PipelineIn(serverSide, ignored(), 1 << 20)));
+                PipelineOut out = new PipelineOut(serverSide);
+                Thread outThread = new Thread(() -> {
+                    for (int i = 0; i < MESSAGES; i++) {
+                        out.handleRequest(request(i));
+                    }
+                });
+                outThread.start();
+                for (int i = 0; i < MESSAGES; i++) {
+                    group.publish("published " + i);
+                }
+                outThread.join();
+
+                assertTrue(all.await(10, TimeUnit.SECONDS), "received " + received.size());
+                assertTrue(errors.isEmpty(), errors.toString());
+                assertTrue(serverSide.isOpen());
+                assertEquals(MESSAGES, received.stream().filter(String.class::isInstance).count());
+            } finally {
+                AioPipelineChannel.of(clientSide).close();
+                AioPipelineChannel.of(serverSide).close();
+            }
+        }
+    }
+
+    private static Callback ignored() {
+        return new Callback() {
+            @Override
+            public void complete(Object o) {
+            }
+
+            @Override
+            public void completeExceptionally(Throwable throwable) {
+            }
+        };
+    }
+
+    private static Request request(Object message) {
+        return new Request() {
+            @Override
+            public Object getMessage() {
+                return message;
+            }
+
+            @Override
+            public Callback getCallback() {
+                return null;
+            }
+        };
+    }
+
+    private static final class FakeChannel implements PipelineChannel {
+        private final AbstractDataEncoder encoder;
+        private volatile boolean open = true;
+
+        private FakeChannel(AbstractDataEncoder encoder) {
+            this.encoder = encoder;
+        }
+
+        @Override
+        public TypeNetwork getType() {
+            return TypeNetwork.VIRTUAL;
+        }
+
+        @Override
+        public SocketAddress getRemoteAddress() {
+            return new InetSocketAddress("127.0.0.1", 0);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+
+        @Override
+        public AbstractDataEncoder getEncoder() {
+            return encoder;
+        }
+
+        @Override
+        public void startReading(FrameDecoder frameDecoder, Callback callback) {
+        }
+
+        @Override
+        public void pauseReading() {
+        }
+
+        @Override
+        public void resumeReading() {
+        }
+
+        @Override
+        public boolean isReadingPaused() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package it.sk8erboi17.listeners.group;
+
+import it.sk8erboi17.listeners.response.Callback;
+import it.sk8erboi17.network.pipeline.out.PipelineOut;
+import it.sk8erboi17.network.pipeline.out.content.Request;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.AsynchronousServerSocketChannel;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.CompletionHandler;
+import java.util.HashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PipelineClientPoolTest {
+
+    private final PipelineGroupManager groupManager = new PipelineGroupManager(2);
+    private final Queue<AsynchronousSocketChannel> accepted = new ConcurrentLinkedQueue<>();
+    private AsynchronousServerSocketChannel server;
+    private InetSocketAddress address;
+
+    @BeforeEach
+    void listen() throws IOException {
+        server = AsynchronousServerSocketChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        address = (InetSocketAddress) server.getLocalAddress();
+        server.accept(null, new CompletionHandler<AsynchronousSocketChannel, Void>() {
+            @Override
+            public void completed(AsynchronousSocketChannel result, Void attachment) {
+                accepted.add(result);
+                server.accept(null, this);
+            }
+
+            @Override
+            public void failed(Throwable exc, Void attachment) {
+            }
+        });
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        server.close();
+        for (AsynchronousSocketChannel channel : accepted) {
+            channel.close();
+        }
+        groupManager.shutdown();
+    }
+
+    private PipelineClientPool connect(int size, PipelineClientPool.Balancing balancing) throws Exception {
+        return new PipelineClientPoolBuilder(groupManager, address)
+                .setSize(size)
+                .setBalancing(balancing)
+                .setReconnectDelayMillis(10)
+                .connect()
+                .get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void cyclesThroughEveryConnection() throws Exception {
+        try (PipelineClientPool pool = connect(3, PipelineClientPool.Balancing.ROUND_ROBIN)) {
+            assertEquals(3, pool.getLiveConnections());
+            Set<PipelineOut> picked = new HashSet<>();
+            for (int i = 0; i < 3; i++) {
+                picked.add(pool.next());
+            }
+            assertEquals(3, picked.size());
+            assertEquals(picked, Set.of(pool.next(), pool.next(), pool.next()));
+        }
+    }
+
+    @Test
+    void skipsAClosedConnectionAndReplacesIt() throws Exception {
+        try (PipelineClientPool pool = connect(2, PipelineClientPool.Balancing.LEAST_PENDING_BYTES)) {
+            PipelineOut closed = pool.next();
+            closed.getChannel().close();
+
+            for (int i = 0; i < 10; i++) {
+                assertNotSame(closed, pool.next());
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (pool.getLiveConnections() < 2 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(2, pool.getLiveConnections());
+        }
+    }
+
+    @Test
+    void failsRequestsOnceClosed() throws Exception {
+        PipelineClientPool pool = connect(2, PipelineClientPool.Balancing.ROUND_ROBIN);
+        pool.close();
+
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        pool.handleRequest(new Request() {
+            @Override
+            public Object getMessage() {
+                return "lost";
+            }
+
+            @Override
+            public Callback getCallback() {
+                return new Callback() {
+                    @Override
+                    public void complete(Object o) {
+                        result.complete(o);
+                    }
+
+                    @Override
+                    public void completeExceptionally(Throwable throwable) {
+                        result.completeExceptionally(throwable);
+                    }
+                };
+            }
+        });
+
+        assertNull(pool.next());
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> result.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(ClosedChannelException.class, failure.getCause());
+    }
+
+    @Test
+    void failsToStartWhenTheServerIsUnreachable() throws Exception {
+        server.close();
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> connect(2, PipelineClientPool.Balancing.ROUND_ROBIN));
+        assertInstanceOf(IOException.class, failure.getCause());
+    }
+}
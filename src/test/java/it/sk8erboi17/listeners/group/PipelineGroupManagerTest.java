@@ -0,0 +1,83 @@
+package it.sk8erboi17.listeners.group;
+
+import it.sk8erboi17.network.pipeline.out.PipelineOut;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.AsynchronousServerSocketChannel;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PipelineGroupManagerTest {
+
+    private final PipelineGroupManager groupManager = new PipelineGroupManager(2);
+    private final Queue<AsynchronousSocketChannel> accepted = new ConcurrentLinkedQueue<>();
+    private AsynchronousServerSocketChannel server;
+
+    @BeforeEach
+    void listen() throws IOException {
+        server = AsynchronousServerSocketChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        server.accept(null, new CompletionHandler<AsynchronousSocketChannel, Void>() {
+            @Override
+            public void completed(AsynchronousSocketChannel result, Void attachment) {
+                accepted.add(result);
+                server.accept(null, this);
+            }
+
+            @Override
+            public void failed(Throwable exc, Void attachment) {
+            }
+        });
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        server.close();
+        for (AsynchronousSocketChannel channel : accepted) {
+            channel.close();
+        }
+        groupManager.shutdown();
+    }
+
+    @Test
+    void opensManyConnectionsAtOnceWithoutBlocking() throws Exception {
+        InetSocketAddress address = (InetSocketAddress) server.getLocalAddress();
+        List<CompletableFuture<PipelineOut>> connections = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            connections.add(groupManager.connectAsync(address));
+        }
+
+        CompletableFuture.allOf(connections.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+
+        for (CompletableFuture<PipelineOut> connection : connections) {
+            assertTrue(connection.join().getChannel().isOpen());
+            connection.join().getChannel().close();
+        }
+    }
+
+    @Test
+    void failsTheFutureWhenTheConnectionIsRefused() throws Exception {
+        InetSocketAddress address = (InetSocketAddress) server.getLocalAddress();
+        server.close();
+
+        CompletableFuture<PipelineOut> connection = groupManager.connectAsync(address, 5, TimeUnit.SECONDS);
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> connection.get(10, TimeUnit.SECONDS));
+        assertInstanceOf(IOException.class, failure.getCause());
+    }
+}
@@ -0,0 +1,186 @@
+package it.sk8erboi17.listeners.response;
+
+import it.sk8erboi17.listeners.input.operations.ListenData;
+import it.sk8erboi17.network.transformers.FrameFragments;
+import it.sk8erboi17.network.transformers.decoder.op.FrameDecoder;
+import it.sk8erboi17.network.transformers.encoder.RecordingEncoder;
+import it.sk8erboi17.network.transformers.encoder.op.FrameEncoder;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StreamConsumerTest {
+
+    private final TestChannel channel = new TestChannel();
+    private final List<Object> received = new ArrayList<>();
+    private final Callback callback = new Callback() {
+        @Override
+        public void complete(Object o) {
+            received.add(o);
+        }
+
+        @Override
+        public void completeExceptionally(Throwable throwable) {
+            received.add(throwable);
+        }
+    };
+
+    private void decode(FrameDecoder decoder, byte[] wire, int readSize) {
+        for (int offset = 0; offset < wire.length; offset += readSize) {
+            int length = Math.min(readSize, wire.length - offset);
+            decoder.decode(channel, ByteBuffer.allocate(readSize).put(wire, offset, length), callback);
+        }
+    }
+
+    private static FrameDecoder newDecoder(StreamConsumer consumer) {
+        return new FrameDecoder(1024, FrameFragments.MAX_FRAGMENT_LENGTH, FrameDecoder.DEFAULT_MAX_MESSAGE_LENGTH, new ListenData(), consumer);
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] data = new byte[length];
+        new Random(9).nextBytes(data);
+        return data;
+    }
+
+    @Test
+    void streamsALargeArrayInChunksAndSmallMessagesToTheCallback() {
+        byte[] data = randomBytes(3 * FrameFragments.MAX_FRAGMENT_LENGTH + 17);
+        RecordingEncoder wire = new RecordingEncoder();
+        FrameEncoder encoder = new FrameEncoder(wire);
+        encoder.sendByteArray(data, null);
+        encoder.sendInt(5, null);
+        RecordingConsumer consumer = new RecordingConsumer();
+
+        decode(newDecoder(consumer), wire.written(), 8192);
+
+        assertEquals(List.of("start 6 " + data.length, "end"), consumer.events);
+        assertArrayEquals(data, consumer.bytes.toByteArray());
+        assertEquals(4, consumer.chunks);
+        assertTrue(consumer.largestChunk <= FrameFragments.MAX_FRAGMENT_LENGTH);
+        assertEquals(List.of(5), received);
+    }
+
+    @Test
+    void streamsStringsAsTheirUtf8Bytes() {
+        String text = "streamed \u00e8 ".repeat(10_000);
+        RecordingEncoder wire = new RecordingEncoder();
+        new FrameEncoder(wire).sendString(text, null);
+        RecordingConsumer consumer = new RecordingConsumer();
+
+        decode(newDecoder(consumer), wire.written(), wire.written().length);
+
+        byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+        assertEquals(List.of("start 1 " + utf8.length, "end"), consumer.events);
+        assertEquals(text, consumer.bytes.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void abortsTheMessageWhenTheConsumerFailsAndKeepsTheConnection() {
+        RecordingEncoder wire = new RecordingEncoder();
+        FrameEncoder encoder = new FrameEncoder(wire);
+        encoder.sendByteArray(randomBytes(2 * FrameFragments.MAX_FRAGMENT_LENGTH), null);
+        encoder.sendString("next", null);
+        RecordingConsumer consumer = new RecordingConsumer() {
+            @Override
+            public void onChunk(ByteBuffer chunk) {
+                throw new IllegalStateException("disk full");
+            }
+        };
+
+        decode(newDecoder(consumer), wire.written(), 4096);
+
+        assertEquals(List.of("start 6 " + 2 * FrameFragments.MAX_FRAGMENT_LENGTH, "abort IllegalStateException"), consumer.events);
+        assertFalse(channel.closed);
+        assertEquals(List.of("next"), received);
+    }
+
+    @Test
+    void abortsTheMessageWhenTheConnectionCloses() {
+        RecordingEncoder wire = new RecordingEncoder();
+        new FrameEncoder(wire).sendByteArray(randomBytes(2 * FrameFragments.MAX_FRAGMENT_LENGTH), null);
+        RecordingConsumer consumer = new RecordingConsumer();
+        FrameDecoder decoder = newDecoder(consumer);
+        byte[] bytes = wire.written();
+
+        decode(decoder, Arrays.copyOf(bytes, bytes.length / 2), 4096);
+        decoder.onClientDisconnected(channel);
+
+        assertEquals(2, consumer.events.size());
+        assertEquals("abort EOFException", consumer.events.get(1));
+        assertInstanceOf(EOFException.class, consumer.abortCause);
+    }
+
+    @Test
+    void writesEveryChunkToAChannel() {
+        byte[] data = randomBytes(FrameFragments.MAX_FRAGMENT_LENGTH + 1);
+        RecordingEncoder wire = new RecordingEncoder();
+        new FrameEncoder(wire).sendByteArray(data, null);
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+
+        decode(newDecoder(StreamConsumer.toChannel(Channels.newChannel(sink))), wire.written(), 1500);
+
+        assertArrayEquals(data, sink.toByteArray());
+    }
+
+    private static class RecordingConsumer implements StreamConsumer {
+        final List<String> events = new ArrayList<>();
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int chunks;
+        int largestChunk;
+        Throwable abortCause;
+
+        @Override
+        public void onStart(long length, byte marker) {
+            events.add("start " + marker + " " + length);
+        }
+
+        @Override
+        public void onChunk(ByteBuffer chunk) {
+            chunks++;
+            largestChunk = Math.max(largestChunk, chunk.remaining());
+            while (chunk.hasRemaining()) {
+                bytes.write(chunk.get());
+            }
+        }
+
+        @Override
+        public void onEnd() {
+            events.add("end");
+        }
+
+        @Override
+        public void onAbort(Throwable cause) {
+            abortCause = cause;
+            events.add("abort " + cause.getClass().getSimpleName());
+        }
+    }
+
+    private static final class TestChannel implements Channel {
+        volatile boolean closed;
+
+        @Override
+        public boolean isOpen() {
+            return !closed;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
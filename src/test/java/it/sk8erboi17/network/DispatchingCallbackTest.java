@@ -0,0 +1,144 @@
+package it.sk8erboi17.network;
+
+import it.sk8erboi17.listeners.response.Callback;
+import it.sk8erboi17.network.transformers.TypeNetwork;
+import it.sk8erboi17.network.transformers.decoder.op.FrameDecoder;
+import it.sk8erboi17.network.transformers.encoder.AbstractDataEncoder;
+import it.sk8erboi17.network.transport.PipelineChannel;
+import it.sk8erboi17.utils.StripedExecutor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.SocketAddress;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DispatchingCallbackTest {
+
+    private final StripedExecutor executor = new StripedExecutor("dispatch-test", 1);
+    private final PausableChannel channel = new PausableChannel();
+    private final List<Object> delivered = new CopyOnWriteArrayList<>();
+    private final Callback target = new Callback() {
+        @Override
+        public void complete(Object o) {
+            delivered.add(o);
+        }
+
+        @Override
+        public void completeExceptionally(Throwable throwable) {
+            delivered.add(throwable);
+        }
+    };
+
+    @AfterEach
+    void close() {
+        executor.close();
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    void deliversTheBatchesOfAConnectionInOrder() throws InterruptedException {
+        DispatchingCallback callback = new DispatchingCallback(target, executor, channel, 4);
+        for (int read = 0; read < 100; read++) {
+            callback.complete(2 * read);
+            callback.complete(2 * read + 1);
+            callback.flush();
+        }
+
+        waitUntil(() -> delivered.size() == 200);
+        assertEquals(IntStream.range(0, 200).boxed().toList(), delivered);
+    }
+
+    @Test
+    void pausesReadingWhileTheWorkerFallsBehind() throws InterruptedException {
+        CountDownLatch blocked = new CountDownLatch(1);
+        executor.execute(0, () -> {
+            try {
+                blocked.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        DispatchingCallback callback = new DispatchingCallback(target, executor, channel, 4);
+
+        for (int read = 0; read < 4; read++) {
+            callback.complete(read);
+            callback.flush();
+        }
+        assertFalse(channel.isReadingPaused());
+        callback.complete(4);
+        callback.flush();
+        assertTrue(channel.isReadingPaused());
+
+        blocked.countDown();
+        waitUntil(() -> !channel.isReadingPaused());
+        assertFalse(channel.isReadingPaused());
+        waitUntil(() -> delivered.size() == 5);
+        assertEquals(List.of(0, 1, 2, 3, 4), delivered);
+        assertEquals(List.of(true, false), channel.changes);
+    }
+
+    private static final class PausableChannel implements PipelineChannel {
+        final List<Boolean> changes = new CopyOnWriteArrayList<>();
+        private volatile boolean paused;
+
+        @Override
+        public TypeNetwork getType() {
+            return TypeNetwork.NIO;
+        }
+
+        @Override
+        public SocketAddress getRemoteAddress() {
+            return null;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public AbstractDataEncoder getEncoder() {
+            return null;
+        }
+
+        @Override
+        public void startReading(FrameDecoder frameDecoder, Callback callback) {
+        }
+
+        @Override
+        public void pauseReading() {
+            paused = true;
+            changes.add(true);
+        }
+
+        @Override
+        public void resumeReading() {
+            paused = false;
+            changes.add(false);
+        }
+
+        @Override
+        public boolean isReadingPaused() {
+            return paused;
+        }
+    }
+}
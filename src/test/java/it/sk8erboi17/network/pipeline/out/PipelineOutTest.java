@@ -0,0 +1,109 @@
+package it.sk8erboi17.network.pipeline.out;
+
+import it.sk8erboi17.listeners.response.Callback;
+import it.sk8erboi17.network.transformers.TypeNetwork;
+import it.sk8erboi17.network.transformers.decoder.op.FrameDecoder;
+import it.sk8erboi17.network.transformers.encoder.AbstractDataEncoder;
+import it.sk8erboi17.network.transformers.encoder.RecordingEncoder;
+import it.sk8erboi17.network.transformers.encoder.op.PreparedFrame;
+import it.sk8erboi17.network.transport.PipelineChannel;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class PipelineOutTest {
+
+    @Test
+    void broadcastSkipsAndReportsChannelsAboveTheirHighWatermark() {
+        RecordingEncoder fast = new RecordingEncoder();
+        RecordingEncoder slow = new RecordingEncoder();
+        slow.setWatermarks(0, 1);
+        slow.holdWrites();
+        PipelineChannel fastChannel = new FakeChannel(fast);
+        PipelineChannel slowChannel = new FakeChannel(slow);
+
+        PreparedFrame frame = PreparedFrame.of(42);
+        try {
+            // The first write stays pending and pushes the slow channel past its high watermark.
+            assertEquals(2, PipelineOut.broadcast(frame, List.of(fastChannel, slowChannel)));
+            assertFalse(slow.isWritable());
+
+            List<PipelineChannel> skipped = new ArrayList<>();
+            assertEquals(1, PipelineOut.broadcast(frame, List.of(fastChannel, slowChannel), skipped::add));
+            assertEquals(List.of(slowChannel), skipped);
+        } finally {
+            frame.release();
+        }
+
+        assertEquals(2 * frame.size(), fast.written().length);
+        slow.completePendingWrite();
+        assertEquals(frame.size(), slow.written().length);
+    }
+
+    @Test
+    void broadcastSkipsClosedChannelsWithoutReportingThem() {
+        FakeChannel closed = new FakeChannel(new RecordingEncoder());
+        closed.close();
+        List<PipelineChannel> skipped = new ArrayList<>();
+
+        assertEquals(0, PipelineOut.broadcast("hello", List.of(closed), skipped::add));
+        assertEquals(List.of(), skipped);
+    }
+
+    private static final class FakeChannel implements PipelineChannel {
+        private final AbstractDataEncoder encoder;
+        private volatile boolean open = true;
+
+        private FakeChannel(AbstractDataEncoder encoder) {
+            this.encoder = encoder;
+        }
+
+        @Override
+        public TypeNetwork getType() {
+            return TypeNetwork.NIO;
+        }
+
+        @Override
+        public SocketAddress getRemoteAddress() {
+            return new InetSocketAddress("127.0.0.1", 0);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+
+        @Override
+        public AbstractDataEncoder getEncoder() {
+            return encoder;
+        }
+
+        @Override
+        public void startReading(FrameDecoder frameDecoder, Callback callback) {
+        }
+
+        @Override
+        public void pauseReading() {
+        }
+
+        @Override
+        public void resumeReading() {
+        }
+
+        @Override
+        public boolean isReadingPaused() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package it.sk8erboi17.network.rpc;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InFlightTableTest {
+
+    @Test
+    void roundsTheCapacityUpToAPowerOfTwo() {
+        assertEquals(1, new InFlightTable(1).capacity());
+        assertEquals(8, new InFlightTable(5).capacity());
+        assertEquals(8, new InFlightTable(8).capacity());
+        assertThrows(IllegalArgumentException.class, () -> new InFlightTable(0));
+    }
+
+    @Test
+    void removesACallOnlyOnce() {
+        InFlightTable table = new InFlightTable(4);
+        RpcChannel.PendingCall call = new RpcChannel.PendingCall();
+
+        assertTrue(table.register(call));
+
+        assertSame(call, table.remove(call.id));
+        assertNull(table.remove(call.id));
+        assertFalse(table.remove(call));
+    }
+
+    @Test
+    void aStaleIdDoesNotRemoveTheCallReusingItsSlot() {
+        InFlightTable table = new InFlightTable(4);
+        List<RpcChannel.PendingCall> calls = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            RpcChannel.PendingCall call = new RpcChannel.PendingCall();
+            assertTrue(table.register(call));
+            assertEquals(i, call.id);
+            calls.add(call);
+        }
+        RpcChannel.PendingCall first = calls.get(0);
+        assertSame(first, table.remove(first.id));
+
+        RpcChannel.PendingCall reusing = new RpcChannel.PendingCall();
+        assertTrue(table.register(reusing));
+
+        assertEquals(first.id + 4, reusing.id);
+        // A late response to the first call finds the slot taken by another id.
+        assertNull(table.remove(first.id));
+        assertSame(reusing, table.remove(reusing.id));
+    }
+
+    @Test
+    void skipsBusySlotsAndFailsWhenFull() {
+        InFlightTable table = new InFlightTable(4);
+        List<RpcChannel.PendingCall> calls = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            RpcChannel.PendingCall call = new RpcChannel.PendingCall();
+            assertTrue(table.register(call));
+            calls.add(call);
+        }
+        assertFalse(table.register(new RpcChannel.PendingCall()));
+
+        // Only slot 2 is free: the ids of the busy slots are skipped.
+        table.remove(calls.get(2));
+        RpcChannel.PendingCall call = new RpcChannel.PendingCall();
+        assertTrue(table.register(call));
+        assertEquals(2, call.id & 3);
+
+        AtomicInteger drained = new AtomicInteger();
+        table.drain(pending -> drained.incrementAndGet());
+        assertEquals(4, drained.get());
+        assertNull(table.remove(call.id));
+    }
+
+    @Test
+    void aTimeoutAndAResponseRacingForACallHaveOneWinner() throws Exception {
+        InFlightTable table = new InFlightTable(16);
+        int rounds = 5_000;
+        AtomicInteger responses = new AtomicInteger();
+        AtomicInteger timeouts = new AtomicInteger();
+        for (int round = 0; round < rounds; round++) {
+            RpcChannel.PendingCall call = new RpcChannel.PendingCall();
+            assertTrue(table.register(call));
+            CyclicBarrier start = new CyclicBarrier(2);
+            Thread response = new Thread(() -> {
+                await(start);
+                if (table.remove(call.id) == call) {
+                    responses.incrementAndGet();
+                }
+            });
+            response.start();
+            await(start);
+            if (table.remove(call)) {
+                timeouts.incrementAndGet();
+            }
+            response.join();
+        }
+        assertEquals(rounds, responses.get() + timeouts.get());
+    }
+
+    private static void await(CyclicBarrier barrier) {
+        try {
+            barrier.await();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package it.sk8erboi17.network.transformers;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CompactFramesTest {
+
+    private static final int[] BOUNDARIES = {
+            0, 1, 127, 128, 16_383, 16_384, 2_097_151, 2_097_152, 268_435_455, 268_435_456, Integer.MAX_VALUE
+    };
+    private static final int[] SIZES = {1, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5};
+
+    @Test
+    void encodesEveryBoundaryInTheExpectedSize() {
+        for (int i = 0; i < BOUNDARIES.length; i++) {
+            int value = BOUNDARIES[i];
+            ByteBuffer buffer = ByteBuffer.allocate(CompactFrames.MAX_VARINT_SIZE);
+            CompactFrames.putVarint(buffer, value);
+
+            assertEquals(SIZES[i], CompactFrames.varintSize(value), "size of " + value);
+            assertEquals(SIZES[i], buffer.position(), "bytes written for " + value);
+            assertEquals(value, CompactFrames.getVarint(buffer, 0), "decoded " + value);
+        }
+    }
+
+    @Test
+    void readsAtTheGivenIndexWithoutMovingThePosition() {
+        ByteBuffer buffer = ByteBuffer.allocate(8).put((byte) 0x7F);
+        CompactFrames.putVarint(buffer, 300);
+
+        assertEquals(300, CompactFrames.getVarint(buffer, 1));
+        assertEquals(3, buffer.position());
+    }
+
+    @Test
+    void rejectsVarintsLongerThanFiveBytes() {
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[]{(byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x01});
+
+        assertEquals(-1, CompactFrames.getVarint(buffer, 0));
+    }
+
+    @Test
+    void rejectsValuesThatDoNotFitANonNegativeInt() {
+        // 2^31: the fifth byte carries the sign bit.
+        ByteBuffer negative = ByteBuffer.wrap(new byte[]{(byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x08});
+        // Bits above 32 are set in the fifth byte.
+        ByteBuffer tooLarge = ByteBuffer.wrap(new byte[]{(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x7F});
+
+        assertEquals(-1, CompactFrames.getVarint(negative, 0));
+        assertEquals(-1, CompactFrames.getVarint(tooLarge, 0));
+    }
+}
@@ -0,0 +1,134 @@
+package it.sk8erboi17.network.transformers;
+
+import it.sk8erboi17.exception.ProtocolIncompleteException;
+import it.sk8erboi17.listeners.input.operations.ListenData;
+import it.sk8erboi17.listeners.response.Callback;
+import it.sk8erboi17.network.transformers.compression.CompressionCodecs;
+import it.sk8erboi17.network.transformers.decoder.op.FrameDecoder;
+import it.sk8erboi17.network.transformers.encoder.RecordingEncoder;
+import it.sk8erboi17.network.transformers.encoder.op.FrameEncoder;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompressedFramesTest {
+
+    private static final byte COMPRESSED_STRING = (byte) (CompressedFrames.COMPRESSED | 0x01);
+
+    private final TestChannel channel = new TestChannel();
+    private final List<Object> received = new ArrayList<>();
+    private final Callback callback = new Callback() {
+        @Override
+        public void complete(Object o) {
+            received.add(o);
+        }
+
+        @Override
+        public void completeExceptionally(Throwable throwable) {
+            received.add(throwable);
+        }
+    };
+    private final FrameDecoder decoder = new FrameDecoder(1024, FrameFragments.MAX_FRAGMENT_LENGTH, new ListenData());
+
+    private void decode(byte[] wire) {
+        decoder.decode(channel, ByteBuffer.allocate(wire.length).put(wire), callback);
+    }
+
+    private static byte[] frame(byte marker, byte[] payload) {
+        return ByteBuffer.allocate(1 + Integer.BYTES + 1 + payload.length)
+                .put((byte) 0x01).putInt(1 + payload.length).put(marker).put(payload).array();
+    }
+
+    @Test
+    void compressesLargeMessagesAndRestoresThemOnReceipt() {
+        String text = "compressible ".repeat(1_000);
+        byte[] bytes = new byte[20_000];
+        Arrays.fill(bytes, (byte) 7);
+        RecordingEncoder wire = new RecordingEncoder();
+        FrameEncoder encoder = new FrameEncoder(wire);
+        encoder.enableCompression(CompressionCodecs.DEFLATE, 64);
+
+        encoder.sendString(text, null);
+        int afterString = wire.written().length;
+        encoder.sendByteArray(bytes, null);
+        encoder.sendString("short", null);
+
+        byte[] written = wire.written();
+        assertTrue(CompressedFrames.isCompressed(written[5]));
+        assertTrue(afterString < text.length() / 10);
+        assertTrue(written.length < 2_000);
+        decode(written);
+        assertEquals(3, received.size());
+        assertEquals(text, received.get(0));
+        assertArrayEquals(bytes, (byte[]) received.get(1));
+        assertEquals("short", received.get(2));
+    }
+
+    @Test
+    void sendsMessagesBelowTheThresholdUncompressed() {
+        RecordingEncoder wire = new RecordingEncoder();
+        FrameEncoder encoder = new FrameEncoder(wire);
+        encoder.enableCompression(CompressionCodecs.DEFLATE, 1024);
+
+        encoder.sendString("a".repeat(1000), null);
+
+        assertFalse(CompressedFrames.isCompressed(wire.written()[5]));
+    }
+
+    @Test
+    void reportsACompressedFrameShorterThanItsHeaderAndKeepsTheConnection() {
+        byte[] truncated = frame(COMPRESSED_STRING, new byte[]{CompressionCodecs.DEFLATE, 0, 0});
+        RecordingEncoder wire = new RecordingEncoder();
+        new FrameEncoder(wire).sendString("next", null);
+
+        decode(concat(truncated, wire.written()));
+
+        assertEquals(2, received.size());
+        assertInstanceOf(ProtocolIncompleteException.class, received.get(0));
+        assertEquals("next", received.get(1));
+        assertTrue(channel.isOpen());
+    }
+
+    @Test
+    void reportsCorruptCompressedData() {
+        byte[] payload = ByteBuffer.allocate(CompressedFrames.OVERHEAD + 4)
+                .put(CompressionCodecs.DEFLATE).putInt(100).putInt(0xDEADBEEF).array();
+
+        decode(frame(COMPRESSED_STRING, payload));
+
+        assertEquals(1, received.size());
+        assertInstanceOf(DataFormatException.class, received.get(0));
+        assertTrue(channel.isOpen());
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] both = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, both, first.length, second.length);
+        return both;
+    }
+
+    private static final class TestChannel implements Channel {
+        volatile boolean closed;
+
+        @Override
+        public boolean isOpen() {
+            return !closed;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
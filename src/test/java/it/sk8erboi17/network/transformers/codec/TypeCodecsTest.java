@@ -0,0 +1,100 @@
+package it.sk8erboi17.network.transformers.codec;
+
+import it.sk8erboi17.network.transformers.encoder.RecordingEncoder;
+import it.sk8erboi17.network.transformers.encoder.op.FrameEncoder;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// The registry is global: every test registers types of its own, under markers of its own.
+class TypeCodecsTest {
+
+    private static <T> TypeCodec<T> emptyCodec() {
+        return new TypeCodec<>() {
+            @Override
+            public int sizeOf(T value) {
+                return 0;
+            }
+
+            @Override
+            public void encode(T value, ByteBuffer out) {
+            }
+
+            @Override
+            public T decode(ByteBuffer payload) {
+                return null;
+            }
+        };
+    }
+
+    // The type byte of the frame written for the value.
+    private static byte markerSentFor(Object value) {
+        RecordingEncoder wire = new RecordingEncoder();
+        new FrameEncoder(wire).send(value, null);
+        return wire.written()[5];
+    }
+
+    static class Shape {
+    }
+
+    static final class Square extends Shape {
+    }
+
+    @Test
+    void aMoreSpecificTypeRegisteredLaterTakesOver() {
+        TypeCodecs.register((byte) 0x70, Shape.class, emptyCodec());
+        assertEquals(0x70, markerSentFor(new Square()));
+
+        TypeCodecs.register((byte) 0x71, Square.class, emptyCodec());
+
+        assertEquals(0x71, markerSentFor(new Square()));
+        assertEquals(0x70, markerSentFor(new Shape()));
+    }
+
+    interface Named {
+    }
+
+    interface Timed {
+    }
+
+    interface Event extends Named {
+    }
+
+    static final class NamedFirst implements Named, Timed {
+    }
+
+    static final class TimedFirst implements Timed, Named {
+    }
+
+    static class Base implements Timed {
+    }
+
+    static final class Derived extends Base implements Event {
+    }
+
+    @Test
+    void resolvesInterfacesInDeclarationOrder() {
+        TypeCodecs.register((byte) 0x72, Named.class, emptyCodec());
+        TypeCodecs.register((byte) 0x73, Timed.class, emptyCodec());
+
+        assertSame(Named.class, TypeCodecs.forType(NamedFirst.class).type());
+        assertSame(Timed.class, TypeCodecs.forType(TimedFirst.class).type());
+        // The interfaces of the superclass come before the interfaces that Event extends.
+        assertSame(Timed.class, TypeCodecs.forType(Derived.class).type());
+    }
+
+    @Test
+    void rejectsDuplicatesAndResolvesUnknownTypesToNothing() {
+        TypeCodecs.register((byte) 0x74, StringBuilder.class, emptyCodec());
+
+        assertThrows(IllegalArgumentException.class, () -> TypeCodecs.register((byte) 0x74, Thread.class, emptyCodec()));
+        assertThrows(IllegalArgumentException.class, () -> TypeCodecs.register((byte) 0x75, StringBuilder.class, emptyCodec()));
+        assertThrows(IllegalArgumentException.class, () -> TypeCodecs.register((byte) 0x05, Thread.class, emptyCodec()));
+        assertNull(TypeCodecs.forType(Thread.class));
+    }
+}
@@ -0,0 +1,193 @@
+package it.sk8erboi17.network.transformers.decoder.op;
+
+import it.sk8erboi17.listeners.input.operations.ListenData;
+import it.sk8erboi17.listeners.response.Callback;
+import it.sk8erboi17.network.transformers.FrameFragments;
+import it.sk8erboi17.network.transformers.encoder.RecordingEncoder;
+import it.sk8erboi17.network.transformers.encoder.op.FrameEncoder;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrameDecoderTest {
+
+    private final TestChannel channel = new TestChannel();
+
+    private final List<Object> received = new ArrayList<>();
+    private final List<Throwable> failures = new ArrayList<>();
+    private final Callback callback = new Callback() {
+        @Override
+        public void complete(Object o) {
+            received.add(o);
+        }
+
+        @Override
+        public void completeExceptionally(Throwable throwable) {
+            failures.add(throwable);
+        }
+    };
+
+    /**
+     * Feeds the bytes to the decoder as reads of at most {@code readSize} bytes.
+     */
+    private void decode(FrameDecoder decoder, byte[] wire, int readSize) {
+        for (int offset = 0; offset < wire.length; offset += readSize) {
+            int length = Math.min(readSize, wire.length - offset);
+            decoder.decode(channel, ByteBuffer.allocate(readSize).put(wire, offset, length), callback);
+        }
+    }
+
+    private static FrameDecoder newDecoder() {
+        return new FrameDecoder(1024, FrameFragments.MAX_FRAGMENT_LENGTH, new ListenData());
+    }
+
+    private static byte[] frame(byte marker, byte[] payload) {
+        return ByteBuffer.allocate(1 + Integer.BYTES + 1 + payload.length)
+                .put((byte) 0x01).putInt(1 + payload.length).put(marker).put(payload).array();
+    }
+
+    private static byte[] firstFragment(byte marker, long totalLength, byte[] chunk) {
+        return frame(FrameFragments.FRAGMENT_START, ByteBuffer.allocate(1 + Long.BYTES + chunk.length)
+                .put(marker).putLong(totalLength).put(chunk).array());
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteBuffer buffer = ByteBuffer.allocate(Arrays.stream(parts).mapToInt(part -> part.length).sum());
+        for (byte[] part : parts) {
+            buffer.put(part);
+        }
+        return buffer.array();
+    }
+
+    private static byte[] randomBytes(int length, long seed) {
+        byte[] data = new byte[length];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    @Test
+    void reassemblesFragmentedMessagesSplitAcrossReads() {
+        RecordingEncoder wire = new RecordingEncoder();
+        FrameEncoder encoder = new FrameEncoder(wire);
+        byte[] large = randomBytes(3 * FrameFragments.MAX_FRAGMENT_LENGTH + 1234, 1);
+        String longString = "fragmented ".repeat(20_000);
+        encoder.sendByteArray(large, null);
+        encoder.sendInt(42, null);
+        encoder.sendString(longString, null);
+        encoder.sendString("after", null);
+
+        decode(newDecoder(), wire.written(), 1000);
+
+        assertTrue(failures.isEmpty(), () -> "failures: " + failures);
+        assertEquals(4, received.size());
+        assertArrayEquals(large, (byte[]) received.get(0));
+        assertEquals(42, received.get(1));
+        assertEquals(longString, received.get(2));
+        assertEquals("after", received.get(3));
+    }
+
+    @Test
+    void decodesTheSameWhateverTheReadSize() {
+        RecordingEncoder wire = new RecordingEncoder();
+        FrameEncoder encoder = new FrameEncoder(wire);
+        encoder.enableCompactHeaders();
+        byte[] large = randomBytes(FrameFragments.MAX_FRAGMENT_LENGTH + 1, 2);
+        encoder.sendString("compact", null);
+        encoder.sendByteArray(large, null);
+        encoder.sendLong(Long.MIN_VALUE, null);
+        byte[] bytes = wire.written();
+
+        for (int readSize : new int[]{1, 7, 4096, bytes.length}) {
+            received.clear();
+            decode(newDecoder(), bytes, readSize);
+
+            assertTrue(failures.isEmpty(), () -> "failures: " + failures);
+            assertEquals(3, received.size(), "read size " + readSize);
+            assertEquals("compact", received.get(0));
+            assertTrue(Arrays.equals(large, (byte[]) received.get(1)), "read size " + readSize);
+            assertEquals(Long.MIN_VALUE, received.get(2));
+        }
+    }
+
+    @Test
+    void closesTheConnectionOnAMessageLargerThanTheLimit() {
+        RecordingEncoder wire = new RecordingEncoder();
+        new FrameEncoder(wire).sendByteArray(randomBytes(2 * FrameFragments.MAX_FRAGMENT_LENGTH, 3), null);
+        FrameDecoder decoder = new FrameDecoder(1024, FrameFragments.MAX_FRAGMENT_LENGTH, FrameFragments.MAX_FRAGMENT_LENGTH, new ListenData());
+
+        decode(decoder, wire.written(), 4096);
+
+        assertTrue(channel.closed);
+        assertTrue(received.isEmpty());
+    }
+
+    @Test
+    void closesTheConnectionOnFragmentsBeyondTheAnnouncedLength() {
+        byte[] wire = concat(
+                firstFragment((byte) 0x06, 8, new byte[]{0, 0, 0, 4, 1, 2}),
+                frame(FrameFragments.FRAGMENT_CONTINUATION, new byte[]{3, 4, 5}));
+
+        decode(newDecoder(), wire, wire.length);
+
+        assertTrue(channel.closed);
+        assertTrue(received.isEmpty());
+    }
+
+    @Test
+    void closesTheConnectionOnAFrameInTheMiddleOfAFragmentedMessage() {
+        byte[] wire = concat(
+                firstFragment((byte) 0x06, 8, new byte[]{0, 0, 0, 4, 1}),
+                frame((byte) 0x02, new byte[]{0, 0, 0, 1}));
+
+        decode(newDecoder(), wire, wire.length);
+
+        assertTrue(channel.closed);
+        assertTrue(received.isEmpty());
+    }
+
+    @Test
+    void closesTheConnectionOnAContinuationWithoutAFirstFragment() {
+        byte[] wire = frame(FrameFragments.FRAGMENT_CONTINUATION, new byte[]{1, 2, 3});
+
+        decode(newDecoder(), wire, wire.length);
+
+        assertTrue(channel.closed);
+    }
+
+    @Test
+    void deliversAMessageWhoseLastFragmentCompletesItExactly() {
+        byte[] wire = concat(
+                firstFragment((byte) 0x06, 8, new byte[]{0, 0, 0, 4, 1}),
+                frame(FrameFragments.FRAGMENT_CONTINUATION, new byte[]{2, 3, 4}));
+
+        decode(newDecoder(), wire, 5);
+
+        assertFalse(channel.closed);
+        assertEquals(1, received.size());
+        assertArrayEquals(new byte[]{1, 2, 3, 4}, (byte[]) received.get(0));
+    }
+
+    static final class TestChannel implements Channel {
+        volatile boolean closed;
+
+        @Override
+        public boolean isOpen() {
+            return !closed;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
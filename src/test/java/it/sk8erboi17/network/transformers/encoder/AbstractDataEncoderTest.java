@@ -0,0 +1,146 @@
+package it.sk8erboi17.network.transformers.encoder;
+
+import it.sk8erboi17.listeners.response.Callback;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AbstractDataEncoderTest {
+
+    private static ByteBuffer intFrame(int value) {
+        return ByteBuffer.allocate(Integer.BYTES).putInt(value).flip();
+    }
+
+    private static Callback recordingCallback(List<Object> completed) {
+        return new Callback() {
+            @Override
+            public void complete(Object o) {
+                completed.add(o);
+            }
+
+            @Override
+            public void completeExceptionally(Throwable throwable) {
+                completed.add(throwable);
+            }
+        };
+    }
+
+    @Test
+    void writesAndCompletesFramesInTheOrderTheyWereQueued() {
+        RecordingEncoder encoder = new RecordingEncoder();
+        encoder.holdWrites();
+        List<Object> completed = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            int value = i;
+            encoder.send(new WriteContext(new ByteBuffer[]{intFrame(i)}, new Callback() {
+                @Override
+                public void complete(Object o) {
+                    completed.add(value);
+                }
+
+                @Override
+                public void completeExceptionally(Throwable throwable) {
+                    completed.add(throwable);
+                }
+            }, null));
+        }
+        assertEquals(99, encoder.getQueuedFrames());
+
+        encoder.completePendingWrite();
+
+        ByteBuffer written = ByteBuffer.wrap(encoder.written());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, written.getInt());
+            assertEquals(i, completed.get(i));
+        }
+        assertEquals(0, encoder.getPendingBytes());
+    }
+
+    @Test
+    void keepsTheOrderOfEachSenderUnderConcurrency() throws InterruptedException {
+        RecordingEncoder encoder = new RecordingEncoder();
+        int senders = 4;
+        int frames = 5000;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int s = 0; s < senders; s++) {
+            int sender = s;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < frames; i++) {
+                    encoder.send(new WriteContext(new ByteBuffer[]{intFrame(sender), intFrame(i)}, null, null));
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        int[] next = new int[senders];
+        ByteBuffer written = ByteBuffer.wrap(encoder.written());
+        while (written.hasRemaining()) {
+            int sender = written.getInt();
+            assertEquals(next[sender]++, written.getInt());
+        }
+        for (int s = 0; s < senders; s++) {
+            assertEquals(frames, next[s]);
+        }
+    }
+
+    @Test
+    void signalsTheWatermarksOnceEach() {
+        RecordingEncoder encoder = new RecordingEncoder();
+        encoder.setWatermarks(8, 16);
+        List<Boolean> changes = new CopyOnWriteArrayList<>();
+        encoder.setWritabilityListener(changes::add);
+        encoder.holdWrites();
+
+        for (int i = 0; i < 5; i++) {
+            encoder.send(intFrame(i), null);
+        }
+        assertEquals(20, encoder.getPendingBytes());
+        assertFalse(encoder.isWritable());
+        assertEquals(List.of(false), changes);
+
+        encoder.completePendingWrite();
+        assertEquals(0, encoder.getPendingBytes());
+        assertTrue(encoder.isWritable());
+        assertEquals(List.of(false, true), changes);
+    }
+
+    @Test
+    void aThrowingCallbackDoesNotStallTheQueue() {
+        RecordingEncoder encoder = new RecordingEncoder();
+        encoder.send(new WriteContext(new ByteBuffer[]{intFrame(1)}, new Callback() {
+            @Override
+            public void complete(Object o) {
+                throw new IllegalStateException("callback failure");
+            }
+
+            @Override
+            public void completeExceptionally(Throwable throwable) {
+            }
+        }, null));
+        List<Object> completed = new ArrayList<>();
+        encoder.send(new WriteContext(new ByteBuffer[]{intFrame(2)}, recordingCallback(completed), null));
+
+        assertEquals(8, encoder.written().length);
+        assertEquals(1, completed.size());
+        assertEquals(0, encoder.getQueuedFrames());
+    }
+}
@@ -0,0 +1,78 @@
+package it.sk8erboi17.network.transformers.encoder;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * An outbound queue that writes into memory, for tests.
+ * <p>
+ * By default every write completes at once. Once {@link #holdWrites()} is called, writes stay pending
+ * until {@link #completePendingWrite()}, as they would on a slow connection.
+ */
+public class RecordingEncoder extends AbstractDataEncoder {
+
+    private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+    private volatile boolean open = true;
+    private boolean holding;
+    private ByteBuffer[] pending;
+    private int pendingCount;
+
+    public synchronized void holdWrites() {
+        holding = true;
+    }
+
+    public boolean hasPendingWrite() {
+        synchronized (this) {
+            return pending != null;
+        }
+    }
+
+    /**
+     * Writes out the pending write, and lets the following ones complete at once.
+     */
+    public void completePendingWrite() {
+        synchronized (this) {
+            holding = false;
+            drain(pending, pendingCount);
+            pending = null;
+        }
+        writeCompleted();
+    }
+
+    public synchronized byte[] written() {
+        return written.toByteArray();
+    }
+
+    @Override
+    protected boolean write(ByteBuffer[] buffers, int count) {
+        synchronized (this) {
+            if (holding) {
+                pending = Arrays.copyOf(buffers, count);
+                pendingCount = count;
+                return false;
+            }
+            drain(buffers, count);
+            return true;
+        }
+    }
+
+    private void drain(ByteBuffer[] buffers, int count) {
+        for (int i = 0; i < count; i++) {
+            ByteBuffer buffer = buffers[i];
+            while (buffer.hasRemaining()) {
+                written.write(buffer.get());
+            }
+        }
+    }
+
+    @Override
+    protected boolean isChannelOpen() {
+        return open;
+    }
+
+    @Override
+    protected void closeChannel() {
+        open = false;
+    }
+}
@@ -0,0 +1,64 @@
+package it.sk8erboi17.network.transformers.encoder.op;
+
+import it.sk8erboi17.network.transformers.encoder.RecordingEncoder;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PreparedFrameTest {
+
+    private static List<RecordingEncoder> heldEncoders(int count) {
+        List<RecordingEncoder> encoders = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            RecordingEncoder encoder = new RecordingEncoder();
+            encoder.holdWrites();
+            encoders.add(encoder);
+        }
+        return encoders;
+    }
+
+    @Test
+    void releasesTheBufferOnceReleasedAndEveryWriteHasCompleted() {
+        List<RecordingEncoder> encoders = heldEncoders(3);
+        PreparedFrame frame = PreparedFrame.of("shared");
+        for (RecordingEncoder encoder : encoders) {
+            frame.sendTo(encoder, null);
+        }
+        assertEquals(4, frame.refCnt());
+
+        frame.release();
+        assertEquals(3, frame.refCnt());
+        for (int i = 0; i < encoders.size(); i++) {
+            encoders.get(i).completePendingWrite();
+            assertEquals(2 - i, frame.refCnt());
+        }
+
+        byte[] first = encoders.get(0).written();
+        assertEquals(frame.size(), first.length);
+        for (RecordingEncoder encoder : encoders) {
+            assertArrayEquals(first, encoder.written());
+        }
+    }
+
+    @Test
+    void keepsTheBufferUntilTheCreatorReleasesIt() {
+        List<RecordingEncoder> encoders = heldEncoders(2);
+        PreparedFrame frame = PreparedFrame.of(7L);
+        for (RecordingEncoder encoder : encoders) {
+            frame.sendTo(encoder, null);
+        }
+        for (RecordingEncoder encoder : encoders) {
+            encoder.completePendingWrite();
+        }
+        assertEquals(1, frame.refCnt());
+
+        frame.release();
+        assertEquals(0, frame.refCnt());
+        assertThrows(IllegalStateException.class, () -> frame.sendTo(new RecordingEncoder(), null));
+    }
+}
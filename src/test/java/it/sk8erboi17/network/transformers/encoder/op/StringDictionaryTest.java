@@ -0,0 +1,110 @@
+package it.sk8erboi17.network.transformers.encoder.op;
+
+import it.sk8erboi17.listeners.input.operations.ListenData;
+import it.sk8erboi17.listeners.response.Callback;
+import it.sk8erboi17.network.transformers.DictionaryFrames;
+import it.sk8erboi17.network.transformers.FrameFragments;
+import it.sk8erboi17.network.transformers.decoder.op.FrameDecoder;
+import it.sk8erboi17.network.transformers.encoder.RecordingEncoder;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StringDictionaryTest {
+
+    @Test
+    void evictsTheLeastRecentlySentString() {
+        StringDictionary dictionary = new StringDictionary(2);
+        int a = dictionary.assign("a");
+        int b = dictionary.assign("b");
+        assertEquals(a, dictionary.lookup("a"));
+
+        // "b" is now the least recently sent: "c" takes its slot.
+        assertEquals(b, dictionary.assign("c"));
+        assertEquals(-1, dictionary.lookup("b"));
+        assertEquals(a, dictionary.lookup("a"));
+    }
+
+    @Test
+    void reusesTheSlotOfAStringWhoseDefinitionFailed() {
+        StringDictionary dictionary = new StringDictionary(4);
+        int a = dictionary.assign("a");
+        dictionary.release("a");
+
+        assertEquals(-1, dictionary.lookup("a"));
+        assertEquals(a, dictionary.assign("b"));
+    }
+
+    @Test
+    void definesOnceThenReferencesAndTheReceiverFollows() {
+        RecordingEncoder wire = new RecordingEncoder();
+        FrameEncoder encoder = new FrameEncoder(wire);
+        encoder.enableCompactHeaders();
+        encoder.enableStringDictionary(2);
+        List<String> sent = List.of("alpha", "beta", "alpha", "alpha", "gamma", "beta", "alpha", "gamma");
+        List<Integer> frameSizes = new ArrayList<>();
+        for (String s : sent) {
+            int before = wire.written().length;
+            encoder.sendString(s, null);
+            frameSizes.add(wire.written().length - before);
+        }
+
+        // A reference is the compact header, the marker and a one-byte slot.
+        assertEquals(4, frameSizes.get(2));
+        assertEquals(4, frameSizes.get(3));
+        // "beta" was evicted by "gamma", so it is defined again.
+        assertTrue(frameSizes.get(5) > 4);
+
+        List<Object> received = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        FrameDecoder decoder = new FrameDecoder(1024, FrameFragments.MAX_FRAGMENT_LENGTH, new ListenData());
+        byte[] bytes = wire.written();
+        decoder.decode(new TestChannel(), ByteBuffer.allocate(bytes.length).put(bytes), new Callback() {
+            @Override
+            public void complete(Object o) {
+                received.add(o);
+            }
+
+            @Override
+            public void completeExceptionally(Throwable throwable) {
+                failures.add(throwable);
+            }
+        });
+
+        assertTrue(failures.isEmpty(), () -> "failures: " + failures);
+        assertEquals(sent, received.stream().map(Object::toString).toList());
+    }
+
+    @Test
+    void sendsLongStringsInFull() {
+        RecordingEncoder wire = new RecordingEncoder();
+        FrameEncoder encoder = new FrameEncoder(wire);
+        encoder.enableStringDictionary(4);
+        String longString = "x".repeat(DictionaryFrames.MAX_STRING_LENGTH + 1);
+        encoder.sendString(longString, null);
+        int first = wire.written().length;
+        encoder.sendString(longString, null);
+
+        assertEquals(2 * first, wire.written().length);
+    }
+
+    private static final class TestChannel implements Channel {
+        volatile boolean closed;
+
+        @Override
+        public boolean isOpen() {
+            return !closed;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
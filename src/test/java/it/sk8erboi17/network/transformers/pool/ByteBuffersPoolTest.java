@@ -0,0 +1,120 @@
+package it.sk8erboi17.network.transformers.pool;
+
+import it.sk8erboi17.exception.MaxBufferSizeExceededException;
+import it.sk8erboi17.exception.PoolExhaustedException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ByteBuffersPoolTest {
+
+    private static final int MAGAZINE_SIZE = 4;
+
+    private static ByteBuffersPool newPool(long maxBytesPerClass, PoolConfig.ExhaustionPolicy policy) {
+        return new ByteBuffersPool(new PoolConfig(maxBytesPerClass, maxBytesPerClass, MAGAZINE_SIZE, policy));
+    }
+
+    private static PoolStats small(ByteBuffersPool pool) {
+        return pool.stats().get(0);
+    }
+
+    @Test
+    void leasesTheSmallestClassThatFits() throws Exception {
+        ByteBuffersPool pool = newPool(1024 * 1024, PoolConfig.ExhaustionPolicy.FAIL_FAST);
+
+        assertEquals(ByteBuffersPool.SMALL_SIZE, pool.acquire(1).capacity());
+        assertEquals(ByteBuffersPool.MEDIUM_SIZE, pool.acquire(ByteBuffersPool.SMALL_SIZE + 1).capacity());
+        assertEquals(ByteBuffersPool.LARGE_SIZE, pool.acquire(ByteBuffersPool.LARGE_SIZE).capacity());
+        assertThrows(MaxBufferSizeExceededException.class, () -> pool.acquire(ByteBuffersPool.LARGE_SIZE + 1));
+    }
+
+    @Test
+    void reusesReleasedBuffersFromTheThreadMagazine() throws Exception {
+        ByteBuffersPool pool = newPool(1024 * 1024, PoolConfig.ExhaustionPolicy.FAIL_FAST);
+        ByteBuffer first = pool.acquire(100);
+        first.putInt(7);
+        pool.release(first);
+
+        ByteBuffer second = pool.acquire(100);
+        assertSame(first, second);
+        assertEquals(0, second.position());
+        assertEquals(second.capacity(), second.limit());
+        assertEquals(1, small(pool).allocated());
+    }
+
+    @Test
+    void spillsAFullMagazineToTheDepotForOtherThreads() throws Exception {
+        ByteBuffersPool pool = newPool(1024 * 1024, PoolConfig.ExhaustionPolicy.FAIL_FAST);
+        List<ByteBuffer> buffers = new ArrayList<>();
+        for (int i = 0; i < 3 * MAGAZINE_SIZE; i++) {
+            buffers.add(pool.acquire(ByteBuffersPool.SMALL_SIZE));
+        }
+        buffers.forEach(pool::release);
+        assertEquals(0, small(pool).live());
+        assertEquals(3 * MAGAZINE_SIZE, small(pool).idle());
+
+        // Another thread finds the spilled buffers in the depot instead of allocating new ones.
+        List<ByteBuffer> reused = new ArrayList<>();
+        Thread other = new Thread(() -> {
+            try {
+                for (int i = 0; i < 2 * MAGAZINE_SIZE; i++) {
+                    reused.add(pool.acquire(ByteBuffersPool.SMALL_SIZE));
+                }
+            } catch (Exception e) {
+                throw new AssertionError(e);
+            }
+        });
+        other.start();
+        other.join();
+
+        assertEquals(2 * MAGAZINE_SIZE, reused.size());
+        assertTrue(buffers.containsAll(reused));
+        assertEquals(3 * MAGAZINE_SIZE, small(pool).allocated());
+    }
+
+    @Test
+    void failsFastOrFallsBackToTheHeapOnceAtItsCap() throws Exception {
+        ByteBuffersPool failFast = newPool(2 * ByteBuffersPool.SMALL_SIZE, PoolConfig.ExhaustionPolicy.FAIL_FAST);
+        failFast.acquire(1);
+        failFast.acquire(1);
+        assertThrows(PoolExhaustedException.class, () -> failFast.acquire(1));
+        assertEquals(1, small(failFast).exhaustions());
+
+        ByteBuffersPool allocate = newPool(ByteBuffersPool.SMALL_SIZE, PoolConfig.ExhaustionPolicy.ALLOCATE);
+        allocate.acquire(1);
+        ByteBuffer fallback = allocate.acquire(1);
+        assertFalse(fallback.isDirect());
+        allocate.release(fallback);
+        assertEquals(1, small(allocate).fallbackAllocations());
+        assertEquals(1, small(allocate).live());
+    }
+
+    @Test
+    void rejectsADoubleRelease() throws Exception {
+        ByteBuffersPool pool = newPool(1024 * 1024, PoolConfig.ExhaustionPolicy.FAIL_FAST);
+        ByteBuffer buffer = pool.acquire(1);
+        pool.release(buffer);
+
+        assertThrows(IllegalStateException.class, () -> pool.release(buffer));
+        assertEquals(0, small(pool).live());
+        // The buffer is handed out only once.
+        assertSame(buffer, pool.acquire(1));
+        assertFalse(buffer == pool.acquire(1));
+    }
+
+    @Test
+    void rejectsBuffersItDidNotLease() {
+        ByteBuffersPool pool = newPool(1024 * 1024, PoolConfig.ExhaustionPolicy.FAIL_FAST);
+
+        assertThrows(IllegalStateException.class, () -> pool.release(ByteBuffer.allocateDirect(ByteBuffersPool.SMALL_SIZE)));
+        assertThrows(IllegalArgumentException.class, () -> pool.release(ByteBuffer.allocateDirect(100)));
+    }
+}
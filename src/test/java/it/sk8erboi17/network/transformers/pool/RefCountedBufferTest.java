@@ -0,0 +1,68 @@
+package it.sk8erboi17.network.transformers.pool;
+
+import it.sk8erboi17.listeners.response.PayloadView;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RefCountedBufferTest {
+
+    private static ByteBuffersPool newPool() {
+        return new ByteBuffersPool(new PoolConfig(1024 * 1024, 1024 * 1024, 4, PoolConfig.ExhaustionPolicy.FAIL_FAST));
+    }
+
+    private static long live(ByteBuffersPool pool) {
+        return pool.stats().get(0).live();
+    }
+
+    @Test
+    void returnsTheBufferToThePoolWithTheLastRelease() throws Exception {
+        ByteBuffersPool pool = newPool();
+        RefCountedBuffer buffer = new RefCountedBuffer(pool.acquire(ByteBuffersPool.SMALL_SIZE), pool);
+        buffer.retain();
+        assertEquals(2, buffer.refCnt());
+        assertEquals(1, live(pool));
+
+        assertFalse(buffer.release());
+        assertEquals(1, live(pool));
+        assertTrue(buffer.release());
+        assertEquals(0, live(pool));
+    }
+
+    @Test
+    void rejectsUseAfterTheLastRelease() throws Exception {
+        ByteBuffersPool pool = newPool();
+        RefCountedBuffer buffer = new RefCountedBuffer(pool.acquire(ByteBuffersPool.SMALL_SIZE), pool);
+        buffer.release();
+
+        assertThrows(IllegalStateException.class, buffer::retain);
+        assertThrows(IllegalStateException.class, buffer::release);
+        assertEquals(0, buffer.refCnt());
+        assertEquals(0, live(pool));
+    }
+
+    @Test
+    void payloadViewsKeepTheirBufferAliveAndReleaseItOnce() throws Exception {
+        ByteBuffersPool pool = newPool();
+        RefCountedBuffer owner = new RefCountedBuffer(pool.acquire(ByteBuffersPool.SMALL_SIZE), pool);
+        ByteBuffer payload = owner.buffer().put(new byte[]{1, 2, 3}).flip();
+        PayloadView view = PayloadView.of(payload, owner);
+        PayloadView duplicate = view.retainedDuplicate();
+        owner.release();
+        assertEquals(1, live(pool));
+
+        view.release();
+        assertThrows(IllegalStateException.class, view::release);
+        assertThrows(IllegalStateException.class, view::retainedDuplicate);
+        assertEquals(1, live(pool));
+
+        assertEquals(3, duplicate.length());
+        duplicate.release();
+        assertEquals(0, live(pool));
+    }
+}
@@ -0,0 +1,195 @@
+package it.sk8erboi17.network.transport;
+
+import it.sk8erboi17.listeners.response.Callback;
+import it.sk8erboi17.network.pipeline.in.PipelineIn;
+import it.sk8erboi17.network.pipeline.out.PipelineOut;
+import it.sk8erboi17.network.pipeline.out.content.Request;
+import it.sk8erboi17.network.transformers.compression.CompressionCodecs;
+import it.sk8erboi17.network.transformers.compression.DeflateCodec;
+import it.sk8erboi17.network.transformers.encoder.op.FrameEncoder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.AsynchronousServerSocketChannel;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AioPipelineChannelTest {
+
+    private static final int MESSAGES = 5_000;
+    private static final byte COUNTING_CODEC = 99;
+
+    private AsynchronousServerSocketChannel server;
+    private AsynchronousSocketChannel serverSide;
+    private AsynchronousSocketChannel clientSide;
+
+    @BeforeEach
+    void connect() throws Exception {
+        server = AsynchronousServerSocketChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        Future<AsynchronousSocketChannel> accepted = server.accept();
+        clientSide = AsynchronousSocketChannel.open();
+        clientSide.connect(server.getLocalAddress()).get(5, TimeUnit.SECONDS);
+        serverSide = accepted.get(5, TimeUnit.SECONDS);
+    }
+
+    @AfterEach
+    void close() throws Exception {
+        AioPipelineChannel.of(clientSide).close();
+        AioPipelineChannel.of(serverSide).close();
+        server.close();
+    }
+
+    @Test
+    void sharesOneChannelPerSocket() {
+        AioPipelineChannel channel = AioPipelineChannel.of(serverSide);
+
+        assertSame(channel, new PipelineOut(serverSide).getChannel());
+        assertSame(channel.getEncoder(), new PipelineOut(serverSide).getChannel().getEncoder());
+
+        channel.close();
+        assertNotSame(channel, AioPipelineChannel.of(serverSide));
+    }
+
+    @Test
+    void writesFromAPipelineOutAndAPipelineInOfTheSameSocketDoNotCollide() throws Exception {
+        Queue<Object> received = new ConcurrentLinkedQueue<>();
+        Queue<Throwable> errors = new ConcurrentLinkedQueue<>();
+        CountDownLatch all = new CountDownLatch(2 * MESSAGES);
+        new PipelineIn(clientSide, new Callback() {
+            @Override
+            public void complete(Object o) {
+                received.add(o);
+                all.countDown();
+            }
+
+            @Override
+            public void completeExceptionally(Throwable throwable) {
+                errors.add(throwable);
+            }
+        }, 1 << 20);
+
+        PipelineOut out = new PipelineOut(serverSide);
+        PipelineIn in = new PipelineIn(serverSide, ignored(), 1 << 20);
+        FrameEncoder inWriter = new FrameEncoder(in.getChannel().getEncoder());
+        Thread outThread = new Thread(() -> {
+            for (int i = 0; i < MESSAGES; i++) {
+                out.handleRequest(request(i));
+            }
+        });
+        Thread inThread = new Thread(() -> {
+            for (int i = 0; i < MESSAGES; i++) {
+                inWriter.sendString("in " + i, null);
+            }
+        });
+        outThread.start();
+        inThread.start();
+        outThread.join();
+        inThread.join();
+
+        assertTrue(all.await(10, TimeUnit.SECONDS), "received " + received.size());
+        assertTrue(errors.isEmpty(), errors.toString());
+        assertTrue(serverSide.isOpen());
+        assertEquals(MESSAGES, received.stream().filter(Integer.class::isInstance).count());
+        assertEquals(MESSAGES, received.stream().filter(String.class::isInstance).count());
+    }
+
+    @Test
+    void readsNothingWhilePausedAndCatchesUpOnResume() throws Exception {
+        Queue<Object> received = new ConcurrentLinkedQueue<>();
+        AioPipelineChannel channel = AioPipelineChannel.of(clientSide);
+        channel.pauseReading();
+        new PipelineIn(clientSide, new Callback() {
+            @Override
+            public void complete(Object o) {
+                received.add(o);
+            }
+
+            @Override
+            public void completeExceptionally(Throwable throwable) {
+            }
+        }, 1 << 20);
+
+        PipelineOut out = new PipelineOut(serverSide);
+        for (int i = 0; i < 10; i++) {
+            out.handleRequest(request(i));
+        }
+        Thread.sleep(200);
+        assertTrue(received.isEmpty());
+        assertTrue(channel.isReadingPaused());
+
+        channel.resumeReading();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (received.size() < 10 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(10, received.size());
+    }
+
+    @Test
+    void endsTheCompressorOfAPipelineOutWhenThePeerDisconnects() throws Exception {
+        AtomicInteger ended = new AtomicInteger();
+        CompressionCodecs.register(COUNTING_CODEC, () -> new DeflateCodec() {
+            @Override
+            public byte getId() {
+                return COUNTING_CODEC;
+            }
+
+            @Override
+            public synchronized void end() {
+                super.end();
+                ended.incrementAndGet();
+            }
+        });
+        PipelineOut out = new PipelineOut(serverSide);
+        out.enableCompression(COUNTING_CODEC, 64);
+        // Only the PipelineIn reads the socket, so only it sees the peer go away.
+        new PipelineIn(serverSide, ignored(), 1 << 20);
+
+        clientSide.close();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (ended.get() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, ended.get());
+    }
+
+    private static Request request(Object message) {
+        return new Request() {
+            @Override
+            public Object getMessage() {
+                return message;
+            }
+
+            @Override
+            public Callback getCallback() {
+                return null;
+            }
+        };
+    }
+
+    private static Callback ignored() {
+        return new Callback() {
+            @Override
+            public void complete(Object o) {
+            }
+
+            @Override
+            public void completeExceptionally(Throwable throwable) {
+            }
+        };
+    }
+}
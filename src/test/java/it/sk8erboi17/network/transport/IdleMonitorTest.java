@@ -0,0 +1,176 @@
+package it.sk8erboi17.network.transport;
+
+import it.sk8erboi17.listeners.input.operations.ListenData;
+import it.sk8erboi17.listeners.response.Callback;
+import it.sk8erboi17.network.transformers.FrameFragments;
+import it.sk8erboi17.network.transformers.TypeNetwork;
+import it.sk8erboi17.network.transformers.decoder.op.FrameDecoder;
+import it.sk8erboi17.network.transformers.encoder.AbstractDataEncoder;
+import it.sk8erboi17.network.transformers.encoder.RecordingEncoder;
+import it.sk8erboi17.utils.HashedWheelTimer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IdleMonitorTest {
+
+    // Size of a heartbeat frame with the standard header.
+    private static final int HEARTBEAT_SIZE = 6;
+
+    private final HashedWheelTimer timer = new HashedWheelTimer("idle-monitor-test", 5, TimeUnit.MILLISECONDS, 64);
+    private final RecordingEncoder encoder = new RecordingEncoder();
+    private final FakeChannel channel = new FakeChannel(encoder);
+    private final FrameDecoder decoder = new FrameDecoder(1024, FrameFragments.MAX_FRAGMENT_LENGTH, new ListenData());
+
+    @AfterEach
+    void stopTimer() {
+        timer.stop();
+    }
+
+    private static void waitUntil(BooleanSupplier condition, long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    void closesAConnectionThatStaysSilent() throws InterruptedException {
+        IdleMonitor.watch(channel, decoder, timer, 50, 0);
+
+        waitUntil(() -> !channel.isOpen(), 2000);
+        assertFalse(channel.isOpen());
+    }
+
+    @Test
+    void sendsHeartbeatsWhileNothingElseIsSent() throws InterruptedException {
+        IdleMonitor.watch(channel, decoder, timer, 0, 20);
+
+        waitUntil(() -> encoder.written().length >= 3 * HEARTBEAT_SIZE, 2000);
+        byte[] written = encoder.written();
+        assertTrue(written.length >= 3 * HEARTBEAT_SIZE);
+        assertEquals(0, written.length % HEARTBEAT_SIZE);
+        assertTrue(channel.isOpen());
+    }
+
+    @Test
+    void writesHeartbeatsOnTheTransportThreadsRatherThanOnTheTimer() throws InterruptedException {
+        ExecutorService writer = Executors.newSingleThreadExecutor(task -> new Thread(task, "writer"));
+        Set<String> writingThreads = ConcurrentHashMap.newKeySet();
+        RecordingEncoder threadedEncoder = new RecordingEncoder() {
+            @Override
+            protected Executor writeExecutor() {
+                return writer;
+            }
+
+            @Override
+            protected boolean write(ByteBuffer[] buffers, int count) {
+                writingThreads.add(Thread.currentThread().getName());
+                return super.write(buffers, count);
+            }
+        };
+        try {
+            IdleMonitor.watch(new FakeChannel(threadedEncoder), decoder, timer, 0, 20);
+
+            waitUntil(() -> threadedEncoder.written().length >= 2 * HEARTBEAT_SIZE, 2000);
+            assertTrue(threadedEncoder.written().length >= 2 * HEARTBEAT_SIZE);
+            assertEquals(Set.of("writer"), writingThreads);
+        } finally {
+            writer.shutdownNow();
+        }
+    }
+
+    @Test
+    void stopsAfterCancelEvenOnceItHasRescheduledItself() throws InterruptedException {
+        IdleMonitor monitor = IdleMonitor.watch(channel, decoder, timer, 0, 20);
+        waitUntil(() -> encoder.written().length >= 2 * HEARTBEAT_SIZE, 2000);
+
+        monitor.cancel();
+        // Let a check already running finish.
+        Thread.sleep(50);
+        int sent = encoder.written().length;
+        Thread.sleep(200);
+
+        assertEquals(sent, encoder.written().length);
+    }
+
+    @Test
+    void neverClosesACancelledMonitor() throws InterruptedException {
+        IdleMonitor monitor = IdleMonitor.watch(channel, decoder, timer, 50, 0);
+        monitor.cancel();
+        Thread.sleep(200);
+
+        assertTrue(channel.isOpen());
+    }
+
+    @Test
+    void watchesNothingWhenBothLimitsAreDisabled() {
+        assertNull(IdleMonitor.watch(channel, decoder, timer, 0, 0));
+    }
+
+    private static final class FakeChannel implements PipelineChannel {
+        private final AbstractDataEncoder encoder;
+        private volatile boolean open = true;
+
+        private FakeChannel(AbstractDataEncoder encoder) {
+            this.encoder = encoder;
+        }
+
+        @Override
+        public TypeNetwork getType() {
+            return TypeNetwork.NIO;
+        }
+
+        @Override
+        public SocketAddress getRemoteAddress() {
+            return new InetSocketAddress("127.0.0.1", 0);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+
+        @Override
+        public AbstractDataEncoder getEncoder() {
+            return encoder;
+        }
+
+        @Override
+        public void startReading(FrameDecoder frameDecoder, Callback callback) {
+        }
+
+        @Override
+        public void pauseReading() {
+        }
+
+        @Override
+        public void resumeReading() {
+        }
+
+        @Override
+        public boolean isReadingPaused() {
+            return false;
+        }
+    }
+}
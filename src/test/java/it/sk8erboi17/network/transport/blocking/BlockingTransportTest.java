@@ -0,0 +1,104 @@
+package it.sk8erboi17.network.transport.blocking;
+
+import it.sk8erboi17.listeners.response.SimpleCallback;
+import it.sk8erboi17.network.pipeline.in.PipelineIn;
+import it.sk8erboi17.network.transformers.TypeNetwork;
+import it.sk8erboi17.network.transformers.decoder.op.FrameDecoder;
+import it.sk8erboi17.network.transformers.encoder.op.FrameEncoder;
+import it.sk8erboi17.network.transport.PipelineChannel;
+import it.sk8erboi17.network.transport.PipelineConnectionRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BlockingTransportTest {
+
+    private static final int MESSAGES = 2_000;
+
+    private ServerSocketChannel server;
+    private final List<PipelineChannel> accepted = new CopyOnWriteArrayList<>();
+    private final CompletableFuture<PipelineIn> serverPipeline = new CompletableFuture<>();
+
+    @BeforeEach
+    void listen() throws Exception {
+        // Echoes every message back to the client.
+        server = BlockingTransport.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), new PipelineConnectionRequest() {
+            @Override
+            public void acceptConnection(PipelineChannel channel) {
+                accepted.add(channel);
+                FrameEncoder echo = new FrameEncoder(channel.getEncoder());
+                serverPipeline.complete(new PipelineIn(channel, new SimpleCallback(message -> echo.send(message, null), e -> {
+                }), 1 << 20, FrameDecoder.DEFAULT_MAX_MESSAGE_LENGTH, false, null));
+            }
+
+            @Override
+            public void onConnectionFailed(Throwable exc) {
+            }
+        });
+    }
+
+    @AfterEach
+    void close() throws Exception {
+        server.close();
+        accepted.forEach(PipelineChannel::close);
+    }
+
+    @Test
+    void echoesMessagesInOrderOverAThreadPerConnection() throws Exception {
+        Queue<Object> echoed = new ConcurrentLinkedQueue<>();
+        CountDownLatch all = new CountDownLatch(MESSAGES);
+        BlockingPipelineChannel client = BlockingTransport.connect((InetSocketAddress) server.getLocalAddress());
+        try {
+            new PipelineIn(client, new SimpleCallback(message -> {
+                echoed.add(message);
+                all.countDown();
+            }, e -> {
+            }), 1 << 20, FrameDecoder.DEFAULT_MAX_MESSAGE_LENGTH, false, null);
+
+            assertEquals(TypeNetwork.VIRTUAL, client.getType());
+            FrameEncoder out = new FrameEncoder(client.getEncoder());
+            for (int i = 0; i < MESSAGES; i++) {
+                out.sendInt(i, null);
+            }
+
+            assertTrue(all.await(10, TimeUnit.SECONDS), "echoed " + echoed.size());
+            assertEquals(IntStream.range(0, MESSAGES).boxed().toList(), List.copyOf(echoed));
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    void reportsThePeerClosingTheConnection() throws Exception {
+        BlockingPipelineChannel client = BlockingTransport.connect((InetSocketAddress) server.getLocalAddress());
+        PipelineIn pipeline = serverPipeline.get(5, TimeUnit.SECONDS);
+        CountDownLatch disconnected = new CountDownLatch(1);
+        pipeline.addDisconnectListener(disconnected::countDown);
+
+        client.close();
+
+        assertTrue(disconnected.await(5, TimeUnit.SECONDS));
+        // The reading thread closes its side right after reporting the disconnection.
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (pipeline.getChannel().isOpen() && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertFalse(pipeline.getChannel().isOpen());
+    }
+}
@@ -0,0 +1,76 @@
+package it.sk8erboi17.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StripedExecutorTest {
+
+    private final StripedExecutor executor = new StripedExecutor("striped-test", 2, 2);
+
+    @AfterEach
+    void close() {
+        executor.close();
+    }
+
+    @Test
+    void runsTheTasksOfAStripeInOrderAndSurvivesFailures() throws InterruptedException {
+        List<Integer> ran = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(1);
+        for (int i = 0; i < 50; i++) {
+            int task = i;
+            executor.execute(1, () -> {
+                if (task == 10) {
+                    throw new IllegalStateException("task failure");
+                }
+                ran.add(task);
+            });
+        }
+        executor.execute(1, done::countDown);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(49, ran.size());
+        assertEquals(49, ran.get(ran.size() - 1));
+    }
+
+    @Test
+    void blocksTheSubmitterWhileTheStripeIsFull() throws InterruptedException {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch running = new CountDownLatch(1);
+        executor.execute(0, () -> {
+            running.countDown();
+            try {
+                blocked.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        // Fills the queue of the stripe.
+        executor.execute(0, () -> {
+        });
+        executor.execute(0, () -> {
+        });
+
+        CountDownLatch submitted = new CountDownLatch(1);
+        Thread submitter = new Thread(() -> {
+            executor.execute(0, () -> {
+            });
+            submitted.countDown();
+        });
+        submitter.start();
+
+        assertFalse(submitted.await(100, TimeUnit.MILLISECONDS));
+        blocked.countDown();
+        assertTrue(submitted.await(5, TimeUnit.SECONDS));
+        submitter.join();
+    }
+}